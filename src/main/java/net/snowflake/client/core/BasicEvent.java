@@ -4,6 +4,10 @@
 
 package net.snowflake.client.core;
 
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
 import static net.snowflake.client.jdbc.SnowflakeUtil.systemGetProperty;
 
 /**
@@ -23,6 +27,11 @@ public class BasicEvent extends Event
   private static final String EVENT_DUMP_PROP = "snowflake.dump_events";
   private static final Boolean doDump = systemGetProperty(EVENT_DUMP_PROP) != null;
 
+  // Thread safe, shared by all state transition events
+  private static final DateTimeFormatter TIMESTAMP_FORMAT =
+      DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss'Z'")
+          .withZone(ZoneOffset.UTC);
+
   public enum QueryState
   {
     QUERY_STARTED(1, "Query Started", "{" + requestId + "}"),
@@ -62,9 +71,54 @@ public class BasicEvent extends Event
     private final String argString;
   }
 
+  // State transition of the event, null for events with a plain message
+  private final QueryState state;
+  private final Object[] stateArgs;
+  private final long timestampMs;
+
   public BasicEvent(Event.EventType type, String message)
   {
     super(type, message);
+    this.state = null;
+    this.stateArgs = null;
+    this.timestampMs = System.currentTimeMillis();
+  }
+
+  /**
+   * Creates a state transition event. The message is rendered from the
+   * state and its arguments when it is first read, so that creating the
+   * event on the query path does not format anything.
+   *
+   * @param state new state
+   * @param args  arguments of the argString of the state
+   */
+  public BasicEvent(QueryState state, Object... args)
+  {
+    super(EventType.STATE_TRANSITION, null);
+    this.state = state;
+    this.stateArgs = args;
+    this.timestampMs = System.currentTimeMillis();
+  }
+
+  public QueryState getState()
+  {
+    return state;
+  }
+
+  @Override
+  public String getMessage()
+  {
+    String message = super.getMessage();
+    if (message == null && state != null)
+    {
+      message = "{newState: " + state.getDescription() + ", " +
+                "info: " + String.format(state.getArgString(), stateArgs) + ", " +
+                "timestamp: " +
+                TIMESTAMP_FORMAT.format(Instant.ofEpochMilli(timestampMs)) +
+                "}";
+      setMessage(message);
+    }
+    return message;
   }
 
   @Override
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2012-2019 Snowflake Computing Inc. All rights reserved.
+ */
+
+package net.snowflake.client.core;
+
+import net.snowflake.client.log.SFLoggerFactory;
+
+import javax.net.ssl.SSLContext;
+import java.security.KeyFactory;
+import java.security.Signature;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Initializes, on a background thread at driver load, what the first
+ * connection would otherwise initialize on the connecting thread: the JSSE
+ * providers, the JVM trust store with the root CA certificates, the OCSP
+ * response cache file, and the providers used to sign key pair
+ * authentication tokens.
+ * <p>
+ * Enabled with the net.snowflake.jdbc.preloadOnDriverLoad system property,
+ * for applications paying the cost of the first connection on every start,
+ * e.g. serverless functions. The default OCSP response cache file is read,
+ * so the property should not be used with a custom cache file.
+ * <p>
+ * The preload runs on a dedicated pool of daemon threads, not on the
+ * common fork join pool shared with the application.
+ * <p>
+ * The logger is only created by the background threads, not when the
+ * driver class is loaded.
+ */
+public class ConnectionPreloader
+{
+  static final String PRELOAD_PROPERTY = "net.snowflake.jdbc.preloadOnDriverLoad";
+
+  /**
+   * Holds the pool, created on first use
+   */
+  private static class ExecutorHolder
+  {
+    private static final AtomicInteger threadCount = new AtomicInteger();
+
+    // threads are only kept for a minute after their last task
+    private static final ExecutorService executor =
+        Executors.newCachedThreadPool(runnable ->
+        {
+          Thread thread = new Thread(
+              runnable,
+              "snowflake-preload (" + threadCount.incrementAndGet() + ")");
+          thread.setDaemon(true);
+          return thread;
+        });
+  }
+
+  /**
+   * Start the preload if enabled by the system property
+   */
+  public static void preloadInBackground()
+  {
+    String enabled;
+    try
+    {
+      enabled = System.getProperty(PRELOAD_PROPERTY);
+    }
+    catch (SecurityException ex)
+    {
+      return;
+    }
+    if (!Boolean.parseBoolean(enabled))
+    {
+      return;
+    }
+    runAsync(ConnectionPreloader::preload);
+  }
+
+  static void preload()
+  {
+    try
+    {
+      SSLContext.getInstance("TLS").init(null, null, null);
+      SFTrustManager.preload();
+      KeyFactory.getInstance("RSA");
+      Signature.getInstance("SHA256withRSA");
+    }
+    catch (Throwable ex)
+    {
+      // the connection initializes whatever failed here and reports it
+      SFLoggerFactory.getLogger(ConnectionPreloader.class).debug(
+          "preload failed, the first connection initializes it: {}",
+          ex.getMessage());
+    }
+  }
+
+  /**
+   * Run an initialization on the preload threads
+   *
+   * @param task initialization to run
+   * @return future completed when the task completes, exceptionally if it
+   * failed
+   */
+  static CompletableFuture<Void> runAsync(Runnable task)
+  {
+    return CompletableFuture.runAsync(task, ExecutorHolder.executor);
+  }
+}
@@ -23,13 +23,48 @@ public class DownloaderMetrics
    */
   private final long millisParsing;
 
+  /**
+   * number of duplicate chunk requests sent for slow responses
+   */
+  private final long hedgedRequests;
+
+  /**
+   * number of duplicate chunk requests that returned first
+   */
+  private final long hedgedRequestsWon;
+
+  /**
+   * number of times the prefetch slots were adjusted to the consumption rate
+   */
+  private final long prefetchAdjustments;
+
+  /**
+   * number of chunks allowed in flight when the downloader terminated
+   */
+  private final long prefetchSlots;
+
   public DownloaderMetrics(long millisWaiting,
                            long millisDownloading,
                            long millisParsing)
+  {
+    this(millisWaiting, millisDownloading, millisParsing, 0, 0, 0, 0);
+  }
+
+  public DownloaderMetrics(long millisWaiting,
+                           long millisDownloading,
+                           long millisParsing,
+                           long hedgedRequests,
+                           long hedgedRequestsWon,
+                           long prefetchAdjustments,
+                           long prefetchSlots)
   {
     this.millisWaiting = millisWaiting;
     this.millisDownloading = millisDownloading;
     this.millisParsing = millisParsing;
+    this.hedgedRequests = hedgedRequests;
+    this.hedgedRequestsWon = hedgedRequestsWon;
+    this.prefetchAdjustments = prefetchAdjustments;
+    this.prefetchSlots = prefetchSlots;
   }
 
   long getMillisWaiting()
@@ -46,4 +81,24 @@ public class DownloaderMetrics
   {
     return millisParsing;
   }
+
+  long getHedgedRequests()
+  {
+    return hedgedRequests;
+  }
+
+  long getHedgedRequestsWon()
+  {
+    return hedgedRequestsWon;
+  }
+
+  long getPrefetchAdjustments()
+  {
+    return prefetchAdjustments;
+  }
+
+  long getPrefetchSlots()
+  {
+    return prefetchSlots;
+  }
 }
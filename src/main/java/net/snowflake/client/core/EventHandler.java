@@ -11,14 +11,11 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintWriter;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Comparator;
-import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.TimeZone;
 import java.util.TreeSet;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -32,6 +29,7 @@ import java.util.zip.GZIPOutputStream;
 
 import org.joda.time.DateTime;
 
+import net.snowflake.client.log.JDK14Logger;
 import net.snowflake.client.log.SFLogger;
 import net.snowflake.client.log.SFLoggerFactory;
 
@@ -112,7 +110,9 @@ public class EventHandler extends Handler
     {
       logger.debug("Dumping log buffer to local disk");
 
-      // Dump the buffered log contents to disk.
+      // Dump the buffered log contents to disk, including the records
+      // still queued by asynchronous logging.
+      JDK14Logger.flushAsyncLog();
       this.dumpLogBuffer(incident.uuid);
 
       // Dump thread state
@@ -148,10 +148,10 @@ public class EventHandler extends Handler
   private final Map<String, DateTime> throttledIncidents;
 
   // Queue to buffer events while they are waiting to be flushed
-  private final ArrayList<Event> eventBuffer;
+  private final EventRingBuffer<Event> eventBuffer;
 
-  // Queue to buffer log messages
-  private final ArrayList<LogRecord> logBuffer;
+  // Queue to buffer log messages, the oldest are dropped when it is full
+  private final EventRingBuffer<LogRecord> logBuffer;
 
   // Executor to periodically flush the eventBuffer
   private ScheduledExecutorService flusher;
@@ -161,8 +161,8 @@ public class EventHandler extends Handler
     this.maxEntries = maxEntries;
     this.flushPeriodMs = flushPeriodMs;
 
-    eventBuffer = new ArrayList<>();
-    logBuffer = new ArrayList<>();
+    eventBuffer = new EventRingBuffer<>(maxEntries);
+    logBuffer = new EventRingBuffer<>((int) LOG_BUFFER_SIZE);
 
     logDumpPathPrefix = EventUtil.getDumpPathPrefix();
 
@@ -175,7 +175,7 @@ public class EventHandler extends Handler
    *
    * @return size of eventBuffer
    */
-  public synchronized int getBufferSize()
+  public int getBufferSize()
   {
     return eventBuffer.size();
   }
@@ -185,7 +185,7 @@ public class EventHandler extends Handler
    *
    * @return size of log buffer
    */
-  public synchronized long getLogBufferSize()
+  public long getLogBufferSize()
   {
     return logBuffer.size();
   }
@@ -231,11 +231,19 @@ public class EventHandler extends Handler
 
   /*
    * Pushes an event onto the event buffer and flushes if specified or if
-   * the buffer has reached maximum capacity.
+   * the buffer has reached maximum capacity. Lock free, producers only wait
+   * for each other when the buffer is full.
    */
-  private synchronized void pushEvent(Event event, boolean flushBuffer)
+  private void pushEvent(Event event, boolean flushBuffer)
   {
-    eventBuffer.add(event);
+    while (!eventBuffer.offer(event))
+    {
+      if (this.flushEventBuffer() == 0)
+      {
+        // the oldest event is still being written by another producer
+        Thread.yield();
+      }
+    }
 
     if (flushBuffer || eventBuffer.size() >= maxEntries)
     {
@@ -274,32 +282,17 @@ public class EventHandler extends Handler
 
 
   /**
-   * Triggers a state transition event to @newState with an identifier
-   * (eg, requestId, jobUUID, etc)
+   * Triggers a state transition event to @newState with the identifiers of
+   * the state (eg, requestId, jobUUID, etc). The event message is only
+   * rendered when it is read.
    *
-   * @param newState   new state
-   * @param identifier event id
+   * @param newState new state
+   * @param args     arguments of the argString of the state
    */
   void triggerStateTransition(BasicEvent.QueryState newState,
-                              String identifier)
+                              Object... args)
   {
-    String msg = "{newState: " + newState.getDescription() + ", " +
-                 "info: " + identifier + ", " +
-                 "timestamp: " + getCurrentTimestamp() +
-                 "}";
-
-    Event triggeredEvent =
-        new BasicEvent(Event.EventType.STATE_TRANSITION, msg);
-
-    pushEvent(triggeredEvent, false);
-  }
-
-  static String getCurrentTimestamp()
-  {
-    DateFormat fmt = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
-    fmt.setTimeZone(TimeZone.getTimeZone("UTC"));
-    return fmt.format(new Date());
-
+    pushEvent(new BasicEvent(newState, args), false);
   }
 
 
@@ -310,7 +303,7 @@ public class EventHandler extends Handler
    */
   public void dumpLogBuffer(String identifier)
   {
-    final ArrayList<LogRecord> logBufferCopy;
+    final List<LogRecord> logBufferCopy = new ArrayList<>();
     final PrintWriter logDumper;
     final OutputStream outStream;
     Formatter formatter = this.getFormatter();
@@ -339,12 +332,8 @@ public class EventHandler extends Handler
 
     logger.debug("EventHandler dumping log buffer to {}", logDumpPath);
 
-    // Copy logBuffer because this is potentially long running.
-    synchronized (this)
-    {
-      logBufferCopy = new ArrayList<>(logBuffer);
-      logBuffer.clear();
-    }
+    // Drain logBuffer because this is potentially long running.
+    logBuffer.drainTo(logBufferCopy);
 
     File outputFile = new File(logDumpPath);
 
@@ -468,32 +457,29 @@ public class EventHandler extends Handler
   } // cleanupSfDumps(...)
 
   /**
-   * Function to copy the event buffer, clear it, and iterate of the copy,
+   * Function to drain the event buffer and iterate over the drained events,
    * calling each event's flush() method one by one.
    * <p>
-   * NOTE: This function is subject to a race condition; while the buffer copy
-   * is being iterated over, the next round of buffer entries could be flushed
-   * creating a flush order that is not "strictly consistent". While this could
-   * hypothetically also cause the system to run out of memory due to an
-   * unbounded number of eventBuffer copies, that scenario is unlikely.
+   * NOTE: Concurrent flushes drain disjoint sets of events, so while one
+   * copy is being iterated over, the next round of buffer entries could be
+   * flushed creating a flush order that is not "strictly consistent".
+   *
+   * @return number of events flushed
    */
-  private void flushEventBuffer()
+  private int flushEventBuffer()
   {
-    ArrayList<Event> eventBufferCopy;
+    List<Event> eventBufferCopy = new ArrayList<>();
 
     logger.debug("Flushing eventBuffer");
 
-    // Copy event buffer because this may be long running
-    synchronized (this)
-    {
-      eventBufferCopy = new ArrayList<>(eventBuffer);
-      eventBuffer.clear();
-    }
+    // Drain event buffer because this may be long running
+    eventBuffer.drainTo(eventBufferCopy);
 
     for (Event event : eventBufferCopy)
     {
       event.flush();
     }
+    return eventBufferCopy.size();
   }
 
   /**
@@ -562,7 +548,7 @@ public class EventHandler extends Handler
    * @param record log record
    */
   @Override
-  public synchronized void publish(LogRecord record)
+  public void publish(LogRecord record)
   {
     if (!super.isLoggable(record) || this.getLevel() != null &&
                                      record.getLevel().intValue() < this.getLevel().intValue())
@@ -570,15 +556,7 @@ public class EventHandler extends Handler
       return;
     }
 
-    synchronized (logBuffer)
-    {
-      if (logBuffer.size() == LOG_BUFFER_SIZE)
-      {
-        logBuffer.remove(0);
-      }
-
-      logBuffer.add(record);
-    }
+    logBuffer.offerOverwrite(record);
   }
 
   @Override
@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2012-2019 Snowflake Computing Inc. All rights reserved.
+ */
+
+package net.snowflake.client.core;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Fixed size, lock free, multi producer multi consumer ring buffer used by
+ * the EventHandler to buffer events and log records.
+ * <p>
+ * Every slot carries a sequence number telling whether it is free for the
+ * producer at a position or filled for the consumer at a position, so
+ * producers only compete on one compare-and-set of the tail and never wait
+ * for each other.
+ *
+ * @param <E> element type
+ */
+class EventRingBuffer<E>
+{
+  private final int mask;
+
+  private final AtomicReferenceArray<E> elements;
+
+  private final AtomicLongArray sequences;
+
+  // next position to write
+  private final AtomicLong tail = new AtomicLong();
+
+  // next position to read
+  private final AtomicLong head = new AtomicLong();
+
+  /**
+   * @param capacity minimum number of elements, rounded up to a power of two
+   */
+  EventRingBuffer(int capacity)
+  {
+    int size = Integer.highestOneBit(Math.max(1, capacity));
+    if (size < capacity)
+    {
+      size <<= 1;
+    }
+    mask = size - 1;
+    elements = new AtomicReferenceArray<>(size);
+    sequences = new AtomicLongArray(size);
+    for (int i = 0; i < size; i++)
+    {
+      sequences.set(i, i);
+    }
+  }
+
+  int capacity()
+  {
+    return mask + 1;
+  }
+
+  /**
+   * @param element element to append
+   * @return false if the buffer is full
+   */
+  boolean offer(E element)
+  {
+    long position = tail.get();
+    while (true)
+    {
+      int index = (int) position & mask;
+      long available = sequences.get(index) - position;
+      if (available == 0)
+      {
+        if (tail.compareAndSet(position, position + 1))
+        {
+          elements.lazySet(index, element);
+          // ordered store, publishes the element to the consumers
+          sequences.lazySet(index, position + 1);
+          return true;
+        }
+        position = tail.get();
+      }
+      else if (available < 0)
+      {
+        // the slot still holds the element written one lap ago
+        return false;
+      }
+      else
+      {
+        // another producer took the position
+        position = tail.get();
+      }
+    }
+  }
+
+  /**
+   * Append an element, dropping the oldest elements while the buffer is full
+   *
+   * @param element element to append
+   */
+  void offerOverwrite(E element)
+  {
+    while (!offer(element))
+    {
+      poll();
+    }
+  }
+
+  /**
+   * @return oldest element, or null if the buffer is empty
+   */
+  E poll()
+  {
+    long position = head.get();
+    while (true)
+    {
+      int index = (int) position & mask;
+      long available = sequences.get(index) - (position + 1);
+      if (available == 0)
+      {
+        if (head.compareAndSet(position, position + 1))
+        {
+          return take(position);
+        }
+        position = head.get();
+      }
+      else if (available < 0)
+      {
+        // nothing written at the position yet
+        return null;
+      }
+      else
+      {
+        position = head.get();
+      }
+    }
+  }
+
+  /**
+   * Remove the elements currently in the buffer, oldest first. The
+   * consecutive elements ready to be read are claimed together with one
+   * compare-and-set of the head.
+   *
+   * @param collection collection to add the elements to
+   * @return number of elements removed, at most the capacity
+   */
+  int drainTo(Collection<? super E> collection)
+  {
+    int count = 0;
+    while (count < capacity())
+    {
+      long position = head.get();
+      int ready = 0;
+      while (count + ready < capacity() &&
+             sequences.get((int) (position + ready) & mask) ==
+             position + ready + 1)
+      {
+        ready++;
+      }
+      if (ready == 0)
+      {
+        break;
+      }
+      if (head.compareAndSet(position, position + ready))
+      {
+        for (int i = 0; i < ready; i++)
+        {
+          collection.add(take(position + i));
+        }
+        count += ready;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Read the element at a position claimed by the caller and free its slot
+   */
+  private E take(long position)
+  {
+    int index = (int) position & mask;
+    E element = elements.get(index);
+    elements.lazySet(index, null);
+    // ordered store, frees the slot for the producer of the next lap
+    sequences.lazySet(index, position + mask + 1);
+    return element;
+  }
+
+  /**
+   * @return approximate number of elements, exact when no thread is
+   * writing or reading
+   */
+  int size()
+  {
+    long size = tail.get() - head.get();
+    return (int) Math.max(0, Math.min(size, capacity()));
+  }
+}
@@ -77,12 +77,12 @@ public class EventUtil
   }
 
   public static void triggerStateTransition(BasicEvent.QueryState newState,
-                                            String identifier)
+                                            Object... args)
   {
     EventHandler eh = eventHandler.get();
     if (eh != null)
     {
-      eh.triggerStateTransition(newState, identifier);
+      eh.triggerStateTransition(newState, args);
     }
   }
 
@@ -6,17 +6,15 @@ package net.snowflake.client.core;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import net.snowflake.client.log.SFLogger;
 import net.snowflake.client.log.SFLoggerFactory;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
 import java.io.Reader;
-import java.io.Writer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
@@ -24,9 +22,22 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import static net.snowflake.client.jdbc.SnowflakeUtil.systemGetProperty;
 
+/**
+ * Cache file shared by the driver processes of a host, e.g. the OCSP
+ * response cache and the temporary credential cache.
+ * <p>
+ * The top level fields of the cached JSON object are stored as the entries
+ * of a MappedCacheFile, next to the JSON cache file written by the previous
+ * versions: writing appends the fields which changed, and reading does not
+ * wait for writers. The JSON file is read once, when no binary cache file
+ * was written yet, and is left for the previous versions.
+ */
 class FileCacheManager
 {
   private static final
@@ -48,6 +59,7 @@ class FileCacheManager
 
   private File cacheFile;
   private File cacheLockFile;
+  private MappedCacheFile mappedCacheFile;
 
   private File cacheDir;
 
@@ -101,6 +113,26 @@ class FileCacheManager
     this.cacheFile = newCacheFile;
     this.cacheDir = newCacheFile.getParentFile();
     this.baseCacheFileName = newCacheFile.getName();
+    this.cacheLockFile = new File(
+        this.cacheDir, this.baseCacheFileName + ".lck");
+    this.mappedCacheFile = new MappedCacheFile(
+        mappedCacheFileOf(newCacheFile), this.cacheExpirationInMilliseconds);
+  }
+
+  /**
+   * Gets the binary cache file stored next to a JSON cache file
+   *
+   * @param jsonCacheFile JSON cache file
+   * @return the binary cache file
+   */
+  static File mappedCacheFileOf(File jsonCacheFile)
+  {
+    String name = jsonCacheFile.getName();
+    if (name.endsWith(".json"))
+    {
+      name = name.substring(0, name.length() - ".json".length());
+    }
+    return new File(jsonCacheFile.getParentFile(), name + ".bin");
   }
 
   FileCacheManager build()
@@ -166,23 +198,27 @@ class FileCacheManager
 
     File cacheFileTmp = new File(
         this.cacheDir, this.baseCacheFileName).getAbsoluteFile();
+    File mappedCacheFileTmp = mappedCacheFileOf(cacheFileTmp);
     try
     {
       // create an empty file if not exists and return true.
       // If exists. the method returns false.
       // In this particular case, it doesn't matter as long as the file is
       // writable.
-      cacheFileTmp.createNewFile();
+      mappedCacheFileTmp.createNewFile();
       this.cacheFile = cacheFileTmp.getCanonicalFile();
       this.cacheLockFile = new File(
           this.cacheFile.getParentFile(), this.baseCacheFileName + ".lck");
+      this.mappedCacheFile = new MappedCacheFile(
+          mappedCacheFileTmp.getCanonicalFile(),
+          this.cacheExpirationInMilliseconds);
     }
     catch (IOException | SecurityException ex)
     {
       throw new RuntimeException(
           String.format(
               "Failed to touch the cache file: %s",
-              cacheFileTmp.getAbsoluteFile())
+              mappedCacheFileTmp.getAbsoluteFile())
       );
     }
     return this;
@@ -193,31 +229,30 @@ class FileCacheManager
    */
   JsonNode readCacheFile()
   {
-    if (cacheFile == null || !this.checkCacheLockFile())
+    if (mappedCacheFile == null)
     {
-      // no cache or the cache is not valid.
+      // no cache
       return null;
     }
     try
     {
-      if (!cacheFile.exists())
+      Map<String, String> entries = mappedCacheFile.read();
+      if (entries == null)
       {
-        LOGGER.debug(
-            "Cache file doesn't exists. File: {}", cacheFile);
-        return null;
+        return migrateJsonCacheFile();
       }
-
-      try (Reader reader = new InputStreamReader(
-          new FileInputStream(cacheFile), DEFAULT_FILE_ENCODING))
+      ObjectNode result = OBJECT_MAPPER.createObjectNode();
+      for (Map.Entry<String, String> entry : entries.entrySet())
       {
-        return OBJECT_MAPPER.readTree(reader);
+        result.set(entry.getKey(), OBJECT_MAPPER.readTree(entry.getValue()));
       }
+      return result;
     }
     catch (IOException ex)
     {
       LOGGER.debug(
           "Failed to read the cache file. No worry. File: {}, Err: {}",
-          cacheFile, ex);
+          mappedCacheFile.getFile(), ex);
     }
     return null;
   }
@@ -225,37 +260,72 @@ class FileCacheManager
   void writeCacheFile(JsonNode input)
   {
     LOGGER.debug("Writing cache file. File={}", cacheFile);
-    if (cacheFile == null || !tryLockCacheFile())
+    if (mappedCacheFile == null || input == null || !input.isObject())
     {
-      // no cache file or it failed to lock file
+      // no cache file or nothing to cache
       return;
     }
-    // NOTE: must unlock cache file
+    Map<String, String> entries = new LinkedHashMap<>();
+    for (Iterator<Map.Entry<String, JsonNode>> itr = input.fields(); itr.hasNext(); )
+    {
+      Map.Entry<String, JsonNode> field = itr.next();
+      entries.put(field.getKey(), field.getValue().toString());
+    }
     try
     {
-      if (input == null)
-      {
-        return;
-      }
-      try (Writer writer = new OutputStreamWriter(
-          new FileOutputStream(cacheFile), DEFAULT_FILE_ENCODING))
+      if (!mappedCacheFile.write(entries))
       {
-        writer.write(input.toString());
+        LOGGER.debug("Failed to lock the cache file.");
       }
     }
     catch (IOException ex)
     {
       LOGGER.debug(
           "Failed to write the cache file. File: {}",
-          cacheFile);
+          mappedCacheFile.getFile());
     }
-    finally
+  }
+
+  /**
+   * Reads the JSON cache file written by the previous versions and writes
+   * its content to the binary cache file, so that it is read only once.
+   *
+   * @return the content of the JSON cache file, or null
+   */
+  private JsonNode migrateJsonCacheFile()
+  {
+    JsonNode result = readJsonCacheFile();
+    LOGGER.debug("Migrating the cache file. File: {}", cacheFile);
+    writeCacheFile(result != null && result.isObject() ?
+                   result : OBJECT_MAPPER.createObjectNode());
+    return result;
+  }
+
+  private JsonNode readJsonCacheFile()
+  {
+    if (cacheFile == null || !cacheFile.exists() || cacheFile.length() == 0)
     {
-      if (!unlockCacheFile())
-      {
-        LOGGER.debug("Failed to unlock cache file");
-      }
+      LOGGER.debug(
+          "Cache file doesn't exists. File: {}", cacheFile);
+      return null;
+    }
+    if (!this.checkCacheLockFile())
+    {
+      // the cache is not valid.
+      return null;
+    }
+    try (Reader reader = new InputStreamReader(
+        new FileInputStream(cacheFile), DEFAULT_FILE_ENCODING))
+    {
+      return OBJECT_MAPPER.readTree(reader);
+    }
+    catch (IOException ex)
+    {
+      LOGGER.debug(
+          "Failed to read the cache file. No worry. File: {}, Err: {}",
+          cacheFile, ex);
     }
+    return null;
   }
 
   void deleteCacheFile()
@@ -269,48 +339,14 @@ class FileCacheManager
     }
 
     unlockCacheFile();
-    if (!cacheFile.delete())
+    if (cacheFile.exists() && !cacheFile.delete())
     {
       LOGGER.debug("Failed to delete the file: {}", cacheFile);
     }
-  }
-
-  /**
-   * Tries to lock the cache file
-   *
-   * @return true if success or false
-   */
-  private boolean tryLockCacheFile()
-  {
-    int cnt = 0;
-    boolean locked = false;
-    while (cnt < 100 && !(locked = lockCacheFile()))
-    {
-      try
-      {
-        Thread.sleep(100);
-      }
-      catch (InterruptedException ex)
-      {
-        // doesn't matter
-      }
-      ++cnt;
-    }
-    if (!locked)
+    if (!mappedCacheFile.delete())
     {
-      LOGGER.debug("Failed to lock the cache file.");
+      LOGGER.debug("Failed to delete the file: {}", mappedCacheFile.getFile());
     }
-    return locked;
-  }
-
-  /**
-   * Lock cache file by creating a lock directory
-   *
-   * @return true if success or false
-   */
-  private boolean lockCacheFile()
-  {
-    return cacheLockFile.mkdirs();
   }
 
   /**
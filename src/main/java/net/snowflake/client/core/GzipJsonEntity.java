@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2012-2019 Snowflake Computing Inc. All rights reserved.
+ */
+
+package net.snowflake.client.core;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.http.entity.AbstractHttpEntity;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Request entity that serializes an object as JSON and gzips it while it
+ * is written to the connection, using chunked transfer encoding. The
+ * caller sets the content-encoding header of the request.
+ * <p>
+ * No serialized or compressed copy of the body is kept in memory. The
+ * entity is repeatable: a retried request serializes the object again.
+ */
+public class GzipJsonEntity extends AbstractHttpEntity
+{
+  private final ObjectMapper mapper;
+
+  private final Object value;
+
+  /**
+   * @param mapper object mapper used to serialize the value
+   * @param value  request body
+   */
+  public GzipJsonEntity(ObjectMapper mapper, Object value)
+  {
+    this.mapper = mapper;
+    this.value = value;
+    setContentType("application/json");
+    setChunked(true);
+  }
+
+  @Override
+  public boolean isRepeatable()
+  {
+    return true;
+  }
+
+  @Override
+  public long getContentLength()
+  {
+    return -1;
+  }
+
+  /**
+   * Only used if the client needs the body as a stream, e.g. for logging.
+   * The request itself is sent through writeTo().
+   */
+  @Override
+  public InputStream getContent() throws IOException
+  {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    writeTo(out);
+    return new ByteArrayInputStream(out.toByteArray());
+  }
+
+  @Override
+  public void writeTo(OutputStream outstream) throws IOException
+  {
+    GZIPOutputStream gzos = new GZIPOutputStream(outstream);
+    try (JsonGenerator generator = mapper.getFactory().createGenerator(gzos))
+    {
+      // the connection stream is closed by the http client
+      generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+      mapper.writeValue(generator, value);
+    }
+    gzos.finish();
+    outstream.flush();
+  }
+
+  @Override
+  public boolean isStreaming()
+  {
+    return false;
+  }
+}
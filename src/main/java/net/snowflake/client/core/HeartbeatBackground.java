@@ -4,58 +4,108 @@
 
 package net.snowflake.client.core;
 
+import net.snowflake.client.jdbc.metrics.Counter;
+import net.snowflake.client.jdbc.metrics.Histogram;
+import net.snowflake.client.jdbc.metrics.MetricsRegistry;
 import net.snowflake.client.log.SFLogger;
 import net.snowflake.client.log.SFLoggerFactory;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
 import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static net.snowflake.client.jdbc.SnowflakeUtil.systemGetProperty;
 
 /**
  * This class is a singleton which is running inside driver to heartbeat
  * snowflake server for each connection
+ * <p>
+ * The sessions are kept in a timing wheel: an array of slots, one per
+ * second, each holding the sessions due in that second modulo the size of
+ * the wheel. A ticker thread visits one slot per second and hands the due
+ * sessions to a small pool of heartbeat threads, so the cost of a tick only
+ * depends on the sessions in the slot, and a slow heartbeat only delays its
+ * own session. The first heartbeat of a session is spread randomly over the
+ * last quarter of its interval so that sessions opened together, e.g. by a
+ * connection pool, do not all heartbeat in the same second.
+ * <p>
+ * A session which ran a query during the last interval is known to be alive
+ * by the server, so its heartbeat is skipped and rescheduled one interval
+ * after the query.
  */
 public class HeartbeatBackground implements Runnable
 {
-  private static HeartbeatBackground singleton = new HeartbeatBackground();
-
   /**
    * The logger.
    */
   private static final SFLogger LOGGER =
       SFLoggerFactory.getLogger(HeartbeatBackground.class);
 
-  // default master token validity (in seconds) is 4 hours
-  private long masterTokenValidityInSecs = 4 * 3600;
+  static final String PARALLELISM_PROPERTY =
+      "net.snowflake.jdbc.heartbeatParallelism";
 
-  /**
-   * How often heartbeat executes is calculated based on master token validity
-   * and the headroom
-   */
-  private long heartBeatIntervalInSecs = masterTokenValidityInSecs / 4;
+  private static final int DEFAULT_PARALLELISM = 4;
 
-  // Scheduler handling the main heartbeat background
-  private ScheduledExecutorService scheduler = null;
+  // number of slots, a power of two
+  private static final int WHEEL_SIZE = 1024;
+
+  private static final long TICK_MILLIS = 1000;
+
+  private static final Histogram heartbeatLatency =
+      MetricsRegistry.getInstance().histogram("heartbeat.micros");
 
-  // future for a scheduled heartbeat task
-  ScheduledFuture<?> heartbeatFuture;
+  private static final Counter failedHeartbeats =
+      MetricsRegistry.getInstance().counter("heartbeat.failed");
+
+  // heartbeats skipped because the previous one had not completed
+  private static final Counter missedHeartbeats =
+      MetricsRegistry.getInstance().counter("heartbeat.missed");
+
+  // heartbeats skipped because the session was used by a query
+  private static final Counter coalescedHeartbeats =
+      MetricsRegistry.getInstance().counter("heartbeat.coalesced");
+
+  private static HeartbeatBackground singleton = new HeartbeatBackground(
+      getParallelism());
+
+  private final List<Queue<Heartbeat>> wheel = new ArrayList<>(WHEEL_SIZE);
 
   /**
-   * List of sessions to heartbeat. Use weak hash map so that if a session
-   * object is deleted and garbaged collected, it will be removed from the
-   * list so that we will not keep doing heartbeat for it. This is to take
-   * care of the case when some application does not close session before it
-   * goes out of scope.
+   * Sessions to heartbeat. Use weak hash map so that if a session object is
+   * deleted and garbaged collected, it will be removed from the list so that
+   * we will not keep doing heartbeat for it. This is to take care of the case
+   * when some application does not close session before it goes out of
+   * scope. The wheel only keeps weak references to the sessions as well.
    */
-  WeakHashMap<SFSession, Boolean> sessions = new WeakHashMap<>();
+  private final Map<SFSession, Heartbeat> sessions =
+      Collections.synchronizedMap(new WeakHashMap<>());
 
-  // When is the last time heartbeat started
-  private long lastHeartbeatStartTimeInSecs = 0;
+  // last tick visited by the ticker
+  private volatile long processedTick;
+
+  private final Executor heartbeatPool;
+
+  // Scheduler running the ticks
+  private ScheduledExecutorService scheduler = null;
+
+  // future of the periodic tick, null when there is no session
+  private ScheduledFuture<?> tickFuture;
 
   // Method to get the heartbeat instance
   public static HeartbeatBackground getInstance()
@@ -63,96 +113,136 @@ public class HeartbeatBackground implements Runnable
     return singleton;
   }
 
+  private static int getParallelism()
+  {
+    String parallelism = systemGetProperty(PARALLELISM_PROPERTY);
+    try
+    {
+      return parallelism == null ? DEFAULT_PARALLELISM :
+             Math.max(1, Integer.parseInt(parallelism));
+    }
+    catch (NumberFormatException ex)
+    {
+      return DEFAULT_PARALLELISM;
+    }
+  }
+
+  /**
+   * @param parallelism maximum number of concurrent heartbeats
+   */
+  private HeartbeatBackground(int parallelism)
+  {
+    this(newHeartbeatPool(parallelism));
+  }
+
   /**
-   * private constructor so that no one can try to create one
+   * Only the singleton and the tests create instances
+   *
+   * @param heartbeatPool executor running the heartbeats
    */
-  private HeartbeatBackground()
+  HeartbeatBackground(Executor heartbeatPool)
+  {
+    for (int i = 0; i < WHEEL_SIZE; i++)
+    {
+      wheel.add(new ConcurrentLinkedQueue<>());
+    }
+    processedTick = System.currentTimeMillis() / TICK_MILLIS;
+    this.heartbeatPool = heartbeatPool;
+  }
+
+  private static Executor newHeartbeatPool(int parallelism)
+  {
+    ThreadPoolExecutor heartbeatPool = new ThreadPoolExecutor(
+        parallelism, parallelism, 60, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<>(), daemonThreadFactory("heartbeat"));
+    heartbeatPool.allowCoreThreadTimeOut(true);
+    return heartbeatPool;
+  }
+
+  private static ThreadFactory daemonThreadFactory(final String name)
   {
+    final AtomicInteger count = new AtomicInteger();
+    return runnable ->
+    {
+      Thread thread = new Thread(runnable,
+                                 name + " (" + count.incrementAndGet() + ")");
+      thread.setDaemon(true);
+      return thread;
+    };
   }
 
   /**
    * Method to add a session
    * <p>
-   * It will compare the master token validity and stored master token validity
-   * and if it is less, we will update the stored one and the heartbeat interval
-   * and reschedule heartbeat.
+   * The session is heartbeated every heartbeatFrequencyInSecs seconds, or
+   * more often if needed to check the master token four times during its
+   * validity.
    * <p>
    * This method is called when a session is created.
    *
    * @param session                   the session will be added
    * @param masterTokenValidityInSecs time interval for which client need to
    *                                  check validity of master token with server
+   * @param heartbeatFrequencyInSecs  heartbeat interval requested by the session
    */
-  synchronized protected void addSession(SFSession session,
-                                         long masterTokenValidityInSecs, int heartbeatFrequencyInSecs)
+  protected void addSession(SFSession session,
+                            long masterTokenValidityInSecs,
+                            int heartbeatFrequencyInSecs)
   {
-    boolean requireReschedule = false;
-
-    long oldHeartBeatIntervalInSecs = this.heartBeatIntervalInSecs;
-    this.heartBeatIntervalInSecs = (long) heartbeatFrequencyInSecs;
-
-    if (this.heartBeatIntervalInSecs > masterTokenValidityInSecs / 4)
-    {
-      this.heartBeatIntervalInSecs = masterTokenValidityInSecs / 4;
-    }
+    // the master token validity is unknown if the server did not return it
+    long intervalInSecs = masterTokenValidityInSecs > 0 ?
+        Math.min(heartbeatFrequencyInSecs, masterTokenValidityInSecs / 4) :
+        heartbeatFrequencyInSecs;
 
-    LOGGER.debug("update heartbeat interval"
-                 + " from {} to {}",
-                 oldHeartBeatIntervalInSecs,
-                 this.heartBeatIntervalInSecs);
+    LOGGER.debug("heartbeat interval of the session: {}", intervalInSecs);
 
-    // heartbeat rescheduling required
-    requireReschedule = true;
-
-    // add session to the list to be heartbeated
-    sessions.put(session, Boolean.TRUE);
+    add(session, intervalInSecs, System.currentTimeMillis());
 
     /*
-     * Create scheduler if it is the first time. It uses a custom thread
-     * factory that will create daemon thread so that it will not block
-     * JVM from exiting.
+     * Start the ticks if there was no session. Synchronized with the tick
+     * stopping itself, so that a tick is scheduled whenever there is any
+     * session.
      */
-    if (this.scheduler == null)
+    synchronized (this)
     {
-      LOGGER.debug("create heartbeat thread pool");
-      this.scheduler = Executors.newScheduledThreadPool(
-          1,
-          new ThreadFactory()
-          {
-            @Override
-            public Thread newThread(Runnable runnable)
-            {
-              Thread thread =
-                  Executors.defaultThreadFactory().newThread(runnable);
-              thread.setName("heartbeat (" + thread.getId() + ")");
-              thread.setDaemon(true);
-              return thread;
-            }
-          });
+      if (tickFuture == null)
+      {
+        if (scheduler == null)
+        {
+          LOGGER.debug("create heartbeat thread");
+          scheduler = Executors.newSingleThreadScheduledExecutor(
+              daemonThreadFactory("heartbeat-ticker"));
+        }
+        LOGGER.debug("schedule heartbeat ticks");
+        tickFuture = scheduler.scheduleAtFixedRate(
+            this, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+      }
     }
+  }
 
-    // schedule a heartbeat task if none exists
-    if (heartbeatFuture == null)
+  /**
+   * Add a session to the wheel
+   *
+   * @param session        session
+   * @param intervalInSecs heartbeat interval
+   * @param nowMillis      current time
+   */
+  void add(SFSession session, long intervalInSecs, long nowMillis)
+  {
+    long intervalTicks = Math.max(1, intervalInSecs * 1000 / TICK_MILLIS);
+    Heartbeat heartbeat = new Heartbeat(session, intervalTicks);
+
+    Heartbeat previous = sessions.put(session, heartbeat);
+    if (previous != null)
     {
-      LOGGER.debug("schedule heartbeat task");
-      this.scheduleHeartbeat();
+      previous.cancelled = true;
     }
-    // or reschedule if the master token validity has been reduced (rare event)
-    else if (requireReschedule)
-    {
-      LOGGER.debug("Cancel existing heartbeat task");
 
-      // Cancel existing task if not started yet and reschedule
-      if (heartbeatFuture.cancel(false))
-      {
-        LOGGER.debug("Canceled existing heartbeat task, reschedule");
-        this.scheduleHeartbeat();
-      }
-      else
-      {
-        LOGGER.debug("Failed to cancel existing heartbeat task");
-      }
-    }
+    // spread the first heartbeat over the last quarter of the interval
+    long spread = intervalTicks / 4;
+    long delay = intervalTicks -
+                 (spread > 0 ? ThreadLocalRandom.current().nextLong(spread) : 0);
+    schedule(heartbeat, nowMillis / TICK_MILLIS + delay);
   }
 
   /**
@@ -164,100 +254,156 @@ public class HeartbeatBackground implements Runnable
    *
    * @param session the session will be removed
    */
-  synchronized protected void removeSession(SFSession session)
+  protected void removeSession(SFSession session)
   {
-    sessions.remove(session);
+    Heartbeat heartbeat = sessions.remove(session);
+    if (heartbeat != null)
+    {
+      // dropped from the wheel at its next visit
+      heartbeat.cancelled = true;
+    }
   }
 
-  /**
-   * Schedule the next heartbeat
-   */
-  private void scheduleHeartbeat()
+  private void schedule(Heartbeat heartbeat, long deadlineTick)
   {
-    // elapsed time in seconds since the last heartbeat
-    long elapsedSecsSinceLastHeartBeat =
-        System.currentTimeMillis() / 1000 - lastHeartbeatStartTimeInSecs;
-
-    /*
-     * The initial delay for the new scheduling is 0 if the elapsed
-     * time is more than the heartbeat time interval, otherwise it is the
-     * difference between the heartbeat time interval and the elapsed time.
-     */
-    long initialDelay = Math.max(heartBeatIntervalInSecs -
-                                 elapsedSecsSinceLastHeartBeat, 0);
-
-    LOGGER.debug(
-        "schedule heartbeat task with initial delay of {} seconds",
-        initialDelay);
-
-    // Creates and executes a periodic action to send heartbeats
-    this.heartbeatFuture =
-        this.scheduler.schedule(this, initialDelay, TimeUnit.SECONDS);
+    // a slot being visited may have been drained already
+    heartbeat.deadlineTick = Math.max(deadlineTick, processedTick + 1);
+    wheel.get((int) (heartbeat.deadlineTick & (WHEEL_SIZE - 1))).add(heartbeat);
   }
 
   /**
-   * Run heartbeat: for each session send a heartbeat request and schedule
-   * next heartbeat as long as there are sessions left.
-   * <p>
-   * Notice that the synchronization is only around the code that visits the
-   * global sessions map and the code that schedules
-   * next heartbeat, but not around the heartbeat calls for each session in
-   * order to minimize the chance of blocking the adding of a session by
-   * performing the heartbeats. This is because adding a session is called from
-   * JDBC connection creation call which directly affects application
-   * performance.
+   * Run a tick of the wheel, and stop the ticks if there is no session left.
    */
   @Override
   public void run()
   {
     /*
-     * Remember current time as the heartbeat start time. This is used for
-     * calculating the delay for the next heartbeat.
+     * The following is synchronized with the method to add a session so that
+     * we always make sure the ticks are scheduled when there is any session
+     * left.
      */
-    this.lastHeartbeatStartTimeInSecs = System.currentTimeMillis() / 1000;
+    synchronized (this)
+    {
+      if (sessions.isEmpty())
+      {
+        LOGGER.debug("no need for heartbeat since no more sessions");
 
-    Set<SFSession> sessionsToHeartbeat = new HashSet<SFSession>();
+        tickFuture.cancel(false);
+        tickFuture = null;
+        return;
+      }
+    }
 
-    // synchronously get a copy of the sessions from the global list
-    synchronized (this)
+    try
     {
-      sessionsToHeartbeat.addAll(sessions.keySet());
+      tick(System.currentTimeMillis());
     }
+    catch (Throwable ex)
+    {
+      // an exception would cancel the periodic ticks
+      LOGGER.error("heartbeat error - message=" + ex.getMessage(), ex);
+    }
+  }
 
-    // heartbeat every session.
-    for (SFSession session : sessionsToHeartbeat)
+  /**
+   * Visit the slots from the last visited one to the current time. Several
+   * slots are visited if the previous tick was late, at most the whole wheel.
+   *
+   * @param nowMillis current time
+   */
+  void tick(long nowMillis)
+  {
+    long nowTick = nowMillis / TICK_MILLIS;
+    long tick = Math.max(processedTick + 1, nowTick - WHEEL_SIZE + 1);
+    for (; tick <= nowTick; tick++)
     {
-      try
+      Queue<Heartbeat> slot = wheel.get((int) (tick & (WHEEL_SIZE - 1)));
+      List<Heartbeat> due = new ArrayList<>();
+      Heartbeat heartbeat;
+      while ((heartbeat = slot.poll()) != null)
       {
-        session.heartbeat();
+        due.add(heartbeat);
       }
-      catch (Throwable ex)
+      processedTick = tick;
+
+      for (Heartbeat dueHeartbeat : due)
       {
-        LOGGER.error("heartbeat error - message=" + ex.getMessage(), ex);
+        SFSession session = dueHeartbeat.session.get();
+        if (dueHeartbeat.cancelled || session == null)
+        {
+          continue;
+        }
+        if (dueHeartbeat.deadlineTick > nowTick)
+        {
+          // due in a later round of the wheel
+          slot.add(dueHeartbeat);
+          continue;
+        }
+        fire(dueHeartbeat, session, nowMillis);
       }
     }
+  }
 
-    /*
-     * The following is synchronized with the methods to add or remove a
-     * session so that we always make sure we have one heartbeat task scheduled
-     * when there is any session left.
-     */
-    synchronized (this)
+  private void fire(Heartbeat heartbeat, SFSession session, long nowMillis)
+  {
+    long nowTick = nowMillis / TICK_MILLIS;
+    long lastActivityTick = session.getLastActivityTimeMillis() / TICK_MILLIS;
+    if (lastActivityTick + heartbeat.intervalTicks > nowTick)
     {
-      // schedule next heartbeat
-      if (sessions.size() > 0)
-      {
-        LOGGER.debug("schedule next heartbeat run");
+      coalescedHeartbeats.increment();
+      schedule(heartbeat, lastActivityTick + heartbeat.intervalTicks);
+      return;
+    }
 
-        scheduleHeartbeat();
-      }
-      else
-      {
-        LOGGER.debug("no need for heartbeat since no more sessions");
+    schedule(heartbeat, nowTick + heartbeat.intervalTicks);
 
-        // no need to heartbeat if no more session
-        this.heartbeatFuture = null;
-      }
+    if (!heartbeat.inFlight.compareAndSet(false, true))
+    {
+      missedHeartbeats.increment();
+      LOGGER.debug("previous heartbeat of the session has not completed");
+      return;
+    }
+
+    heartbeatPool.execute(() ->
+                          {
+                            long startNanos = System.nanoTime();
+                            try
+                            {
+                              session.heartbeat();
+                              heartbeatLatency.recordElapsedSince(startNanos);
+                            }
+                            catch (Throwable ex)
+                            {
+                              failedHeartbeats.increment();
+                              LOGGER.error("heartbeat error - message=" +
+                                           ex.getMessage(), ex);
+                            }
+                            finally
+                            {
+                              heartbeat.inFlight.set(false);
+                            }
+                          });
+  }
+
+  /**
+   * A session in the wheel
+   */
+  private static class Heartbeat
+  {
+    private final WeakReference<SFSession> session;
+
+    private final long intervalTicks;
+
+    private volatile long deadlineTick;
+
+    private volatile boolean cancelled;
+
+    private final AtomicBoolean inFlight = new AtomicBoolean();
+
+    Heartbeat(SFSession session, long intervalTicks)
+    {
+      this.session = new WeakReference<>(session);
+      this.intervalTicks = intervalTicks;
     }
   }
 }
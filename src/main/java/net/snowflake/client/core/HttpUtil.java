@@ -6,18 +6,25 @@ package net.snowflake.client.core;
 
 import com.amazonaws.ClientConfiguration;
 import com.amazonaws.http.apache.SdkProxyRoutePlanner;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Strings;
 import com.microsoft.azure.storage.OperationContext;
 import net.snowflake.client.jdbc.ErrorCode;
 import net.snowflake.client.jdbc.RestRequest;
 import net.snowflake.client.jdbc.SnowflakeSQLException;
 import net.snowflake.client.jdbc.SnowflakeUtil;
+import net.snowflake.client.jdbc.metrics.Histogram;
+import net.snowflake.client.jdbc.metrics.MetricsRegistry;
 import net.snowflake.client.log.ArgSupplier;
 import net.snowflake.client.log.SFLogger;
 import net.snowflake.client.log.SFLoggerFactory;
 import net.snowflake.client.util.SecretDetector;
 import net.snowflake.common.core.SqlState;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.TeeInputStream;
+import org.apache.http.HttpClientConnection;
 import org.apache.http.HttpHost;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.Credentials;
@@ -28,6 +35,9 @@ import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.config.Registry;
 import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.routing.HttpRoute;
 import org.apache.http.conn.socket.ConnectionSocketFactory;
 import org.apache.http.conn.socket.PlainConnectionSocketFactory;
 import org.apache.http.impl.client.BasicCredentialsProvider;
@@ -35,24 +45,28 @@ import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.DefaultRedirectStrategy;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
 import org.apache.http.protocol.HttpContext;
 import org.apache.http.ssl.SSLInitializationException;
 import org.apache.http.util.EntityUtils;
 
 import javax.net.ssl.TrustManager;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.StringWriter;
 import java.net.InetSocketAddress;
 import java.net.Proxy;
 import java.net.Socket;
+import java.nio.charset.StandardCharsets;
 import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.ToIntFunction;
 
 import static org.apache.http.client.config.CookieSpecs.DEFAULT;
 import static org.apache.http.client.config.CookieSpecs.IGNORE_COOKIES;
@@ -61,6 +75,8 @@ public class HttpUtil
 {
   static final SFLogger logger = SFLoggerFactory.getLogger(HttpUtil.class);
 
+  private static final ObjectMapper mapper = ObjectMapperFactory.getObjectMapper();
+
   static final int DEFAULT_MAX_CONNECTIONS = 100;
   static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 100;
   static final int DEFAULT_CONNECTION_TIMEOUT = 60000;
@@ -69,6 +85,9 @@ public class HttpUtil
   static final int DEFAULT_IDLE_CONNECTION_TIMEOUT = 5; // secs
   static final int DEFAULT_DOWNLOADED_CONDITION_TIMEOUT = 3600; // secs
 
+  // bytes of a response which is not valid JSON kept for the error message
+  private static final int INVALID_RESPONSE_PREFIX_SIZE = 64 * 1024;
+
   /**
    * The unique httpClient shared by all connections. This will benefit long-
    * lived clients
@@ -86,6 +105,27 @@ public class HttpUtil
    */
   private static PoolingHttpClientConnectionManager connectionManager = null;
 
+  private static final Histogram requestLatency =
+      MetricsRegistry.getInstance().histogram("http.request.micros");
+
+  // time spent waiting for a connection lease from the pool
+  private static final Histogram leaseWaitLatency =
+      MetricsRegistry.getInstance().histogram("http.pool.wait.micros");
+
+  static
+  {
+    // the connection manager is replaced when the http clients are reset
+    MetricsRegistry registry = MetricsRegistry.getInstance();
+    registry.gauge("http.pool.leased",
+                   () -> getPoolStat(PoolStats::getLeased));
+    registry.gauge("http.pool.pending",
+                   () -> getPoolStat(PoolStats::getPending));
+    registry.gauge("http.pool.available",
+                   () -> getPoolStat(PoolStats::getAvailable));
+    registry.gauge("http.pool.max",
+                   () -> getPoolStat(PoolStats::getMax));
+  }
+
   /**
    * default request configuration, to be copied on individual requests.
    */
@@ -179,8 +219,9 @@ public class HttpUtil
       // 1) OCSP service is down for reasons, 2) PowerMock test tht doesn't
       // care OCSP checks.
       // OCSP FailOpen is ON by default
+      // The trust manager is only created by the first TLS handshake.
       TrustManager[] tm = {
-          new SFTrustManager(ocspMode, ocspCacheFile)};
+          new LazyTrustManager(ocspMode, ocspCacheFile)};
       trustManagers = tm;
     }
     try
@@ -195,7 +236,15 @@ public class HttpUtil
 
       // Build a connection manager with enough connections
       connectionManager = new PoolingHttpClientConnectionManager(registry, null, null, null, DEFAULT_TTL,
-                                                                 TimeUnit.SECONDS);
+                                                                 TimeUnit.SECONDS)
+      {
+        @Override
+        public ConnectionRequest requestConnection(HttpRoute route,
+                                                   Object state)
+        {
+          return timeLease(super.requestConnection(route, state));
+        }
+      };
       connectionManager.setMaxTotal(DEFAULT_MAX_CONNECTIONS);
       connectionManager.setDefaultMaxPerRoute(DEFAULT_MAX_CONNECTIONS_PER_ROUTE);
 
@@ -240,6 +289,40 @@ public class HttpUtil
     }
   }
 
+  /**
+   * Record how long the lease of a pooled connection waits
+   *
+   * @param request connection request of the pool
+   * @return the request, recording its wait in http.pool.wait.micros
+   */
+  private static ConnectionRequest timeLease(final ConnectionRequest request)
+  {
+    return new ConnectionRequest()
+    {
+      @Override
+      public HttpClientConnection get(long timeout, TimeUnit timeUnit)
+      throws InterruptedException, ExecutionException,
+             ConnectionPoolTimeoutException
+      {
+        long startNanos = System.nanoTime();
+        try
+        {
+          return request.get(timeout, timeUnit);
+        }
+        finally
+        {
+          leaseWaitLatency.recordElapsedSince(startNanos);
+        }
+      }
+
+      @Override
+      public boolean cancel()
+      {
+        return request.cancel();
+      }
+    };
+  }
+
   /**
    * Gets HttpClient with insecureMode false
    *
@@ -343,6 +426,16 @@ public class HttpUtil
            connectionManager.getTotalStats().toString();
   }
 
+  /**
+   * @param stat statistic of the connection pool
+   * @return value of the statistic, 0 if the pool is not created yet
+   */
+  private static long getPoolStat(ToIntFunction<PoolStats> stat)
+  {
+    PoolingHttpClientConnectionManager manager = connectionManager;
+    return manager == null ? 0 : stat.applyAsInt(manager.getTotalStats());
+  }
+
   /**
    * Enables/disables use of the SOCKS proxy when creating sockets
    *
@@ -454,6 +547,109 @@ public class HttpUtil
         ocspMode);
   }
 
+  /**
+   * Executes a HTTP request for Snowflake and parses the response as JSON
+   * while it is read from the connection, so the body is never buffered
+   * as a String.
+   *
+   * @param httpRequest            HttpRequestBase
+   * @param retryTimeout           retry timeout
+   * @param injectSocketTimeout    injecting socket timeout
+   * @param canceling              canceling?
+   * @param includeRetryParameters whether to include retry parameters in
+   *                               retried requests
+   * @param retryOnHTTP403         whether to retry on HTTP 403 or not
+   * @param ocspMode               OCSP mode
+   * @param invalidResponse        receives the beginning of the response if
+   *                               it is not valid JSON, may be null
+   * @return response in JSON, or null if the response is not valid JSON
+   * @throws SnowflakeSQLException if Snowflake error occurs
+   * @throws IOException           raises if a general IO error occurs
+   */
+  public static JsonNode executeRequestJSON(HttpRequestBase httpRequest,
+                                            int retryTimeout,
+                                            int injectSocketTimeout,
+                                            AtomicBoolean canceling,
+                                            boolean includeRetryParameters,
+                                            boolean retryOnHTTP403,
+                                            OCSPMode ocspMode,
+                                            StringBuilder invalidResponse)
+  throws SnowflakeSQLException, IOException
+  {
+    return executeRequestInternal(
+        httpRequest,
+        retryTimeout,
+        injectSocketTimeout,
+        canceling,
+        false, // with cookie (do we need cookie?)
+        includeRetryParameters,
+        true, // include request GUID
+        retryOnHTTP403,
+        ocspMode,
+        ins ->
+        {
+          // only the beginning of the response is kept, for the error
+          ByteArrayOutputStream prefix =
+              new BoundedByteArrayOutputStream(INVALID_RESPONSE_PREFIX_SIZE);
+          try
+          {
+            return mapper.readTree(new TeeInputStream(ins, prefix));
+          }
+          catch (JsonProcessingException ex)
+          {
+            String responsePrefix =
+                new String(prefix.toByteArray(), StandardCharsets.UTF_8);
+            logger.error("Bad result json: {}, JSON parsing exception: {}",
+                         responsePrefix, ex.getLocalizedMessage());
+            if (invalidResponse != null)
+            {
+              invalidResponse.setLength(0);
+              invalidResponse.append(responsePrefix);
+            }
+            return null;
+          }
+        });
+  }
+
+  /**
+   * Keeps the first bytes written to it and drops the rest
+   */
+  private static class BoundedByteArrayOutputStream extends ByteArrayOutputStream
+  {
+    private final int maxSize;
+
+    BoundedByteArrayOutputStream(int maxSize)
+    {
+      this.maxSize = maxSize;
+    }
+
+    @Override
+    public synchronized void write(int b)
+    {
+      if (count < maxSize)
+      {
+        super.write(b);
+      }
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len)
+    {
+      super.write(b, off, Math.min(len, maxSize - count));
+    }
+  }
+
+  /**
+   * Reads the body of a successful response
+   *
+   * @param <T> type of the parsed body
+   */
+  @FunctionalInterface
+  interface ResponseBodyReader<T>
+  {
+    T read(InputStream ins) throws IOException;
+  }
+
   /**
    * Helper to execute a request with retry and check and throw exception if
    * response is not success.
@@ -486,6 +682,54 @@ public class HttpUtil
                                                boolean retryOnHTTP403,
                                                OCSPMode ocspMode)
   throws SnowflakeSQLException, IOException
+  {
+    return executeRequestInternal(
+        httpRequest,
+        retryTimeout,
+        injectSocketTimeout,
+        canceling,
+        withoutCookies,
+        includeRetryParameters,
+        includeRequestGuid,
+        retryOnHTTP403,
+        ocspMode,
+        ins -> IOUtils.toString(ins, "UTF-8"));
+  }
+
+  /**
+   * Helper to execute a request with retry and check and throw exception if
+   * response is not success. The response body is handed to the reader
+   * as a stream.
+   * <p>
+   * Connection under the httpRequest is released.
+   *
+   * @param httpRequest            request object contains all the information
+   * @param retryTimeout           retry timeout (in seconds)
+   * @param injectSocketTimeout    simulate socket timeout
+   * @param canceling              canceling flag
+   * @param withoutCookies         whether this request should ignore cookies
+   * @param includeRetryParameters whether to include retry parameters in
+   *                               retried requests
+   * @param includeRequestGuid     whether to include request_guid
+   * @param retryOnHTTP403         whether to retry on HTTP 403
+   * @param ocspMode               OCSPMode
+   * @param bodyReader             reads the response body
+   * @param <T>                    type of the parsed body
+   * @return response parsed by the reader
+   * @throws SnowflakeSQLException if Snowflake error occurs
+   * @throws IOException           raises if a general IO error occurs
+   */
+  private static <T> T executeRequestInternal(HttpRequestBase httpRequest,
+                                              int retryTimeout,
+                                              int injectSocketTimeout,
+                                              AtomicBoolean canceling,
+                                              boolean withoutCookies,
+                                              boolean includeRetryParameters,
+                                              boolean includeRequestGuid,
+                                              boolean retryOnHTTP403,
+                                              OCSPMode ocspMode,
+                                              ResponseBodyReader<T> bodyReader)
+  throws SnowflakeSQLException, IOException
   {
     // HttpRequest.toString() contains request URI. Scrub any credentials, if
     // present, before logging
@@ -496,11 +740,12 @@ public class HttpUtil
                  (ArgSupplier) HttpUtil::getHttpClientStats,
                  requestInfoScrubbed);
 
-    String theString;
-    StringWriter writer = null;
+    T theBody;
     CloseableHttpResponse response = null;
     try
     {
+      // includes the wait for a connection of the pool and the retries
+      long startTime = System.nanoTime();
       response = RestRequest.execute(getHttpClient(ocspMode),
                                      httpRequest,
                                      retryTimeout,
@@ -510,6 +755,7 @@ public class HttpUtil
                                      includeRetryParameters,
                                      includeRequestGuid,
                                      retryOnHTTP403);
+      requestLatency.recordElapsedSince(startTime);
 
       if (response == null ||
           response.getStatusLine().getStatusCode() != 200)
@@ -531,17 +777,13 @@ public class HttpUtil
                               "null response"));
       }
 
-      writer = new StringWriter();
       try (InputStream ins = response.getEntity().getContent())
       {
-        IOUtils.copy(ins, writer, "UTF-8");
+        theBody = bodyReader.read(ins);
       }
-
-      theString = writer.toString();
     }
     finally
     {
-      IOUtils.closeQuietly(writer);
       IOUtils.closeQuietly(response);
     }
 
@@ -550,7 +792,7 @@ public class HttpUtil
         (ArgSupplier) HttpUtil::getHttpClientStats,
         requestInfoScrubbed);
 
-    return theString;
+    return theBody;
   }
 
   // This is a workaround for JDK-7036144.
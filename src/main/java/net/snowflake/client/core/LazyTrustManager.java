@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2012-2019 Snowflake Computing Inc. All rights reserved.
+ */
+
+package net.snowflake.client.core;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.X509ExtendedTrustManager;
+import java.io.File;
+import java.net.Socket;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+
+/**
+ * Trust manager creating the SFTrustManager on the first TLS handshake.
+ * <p>
+ * Creating the SFTrustManager loads the JVM trust store, the OCSP response
+ * cache and Bouncy Castle. The HTTP client is built before the first
+ * request, so a session which only talks plain HTTP, e.g. to a local stub
+ * server, would otherwise pay for them without ever checking a certificate.
+ */
+class LazyTrustManager extends X509ExtendedTrustManager
+{
+  private final OCSPMode ocspMode;
+
+  private final File cacheFile;
+
+  private volatile SFTrustManager trustManager;
+
+  /**
+   * @param ocspMode  OCSP mode
+   * @param cacheFile cache file, or null for the default one
+   */
+  LazyTrustManager(OCSPMode ocspMode, File cacheFile)
+  {
+    this.ocspMode = ocspMode;
+    this.cacheFile = cacheFile;
+  }
+
+  private SFTrustManager getTrustManager()
+  {
+    SFTrustManager result = trustManager;
+    if (result == null)
+    {
+      synchronized (this)
+      {
+        result = trustManager;
+        if (result == null)
+        {
+          result = trustManager = new SFTrustManager(ocspMode, cacheFile);
+        }
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public void checkClientTrusted(X509Certificate[] chain, String authType)
+  throws CertificateException
+  {
+    getTrustManager().checkClientTrusted(chain, authType);
+  }
+
+  @Override
+  public void checkServerTrusted(X509Certificate[] chain, String authType)
+  throws CertificateException
+  {
+    getTrustManager().checkServerTrusted(chain, authType);
+  }
+
+  @Override
+  public void checkClientTrusted(X509Certificate[] chain, String authType,
+                                 Socket socket) throws CertificateException
+  {
+    getTrustManager().checkClientTrusted(chain, authType, socket);
+  }
+
+  @Override
+  public void checkClientTrusted(X509Certificate[] chain, String authType,
+                                 SSLEngine sslEngine)
+  throws CertificateException
+  {
+    getTrustManager().checkClientTrusted(chain, authType, sslEngine);
+  }
+
+  @Override
+  public void checkServerTrusted(X509Certificate[] chain, String authType,
+                                 Socket socket) throws CertificateException
+  {
+    getTrustManager().checkServerTrusted(chain, authType, socket);
+  }
+
+  @Override
+  public void checkServerTrusted(X509Certificate[] chain, String authType,
+                                 SSLEngine sslEngine)
+  throws CertificateException
+  {
+    getTrustManager().checkServerTrusted(chain, authType, sslEngine);
+  }
+
+  @Override
+  public X509Certificate[] getAcceptedIssuers()
+  {
+    return getTrustManager().getAcceptedIssuers();
+  }
+}
@@ -0,0 +1,480 @@
+/*
+ * Copyright (c) 2012-2019 Snowflake Computing Inc. All rights reserved.
+ */
+
+package net.snowflake.client.core;
+
+import net.snowflake.client.log.SFLogger;
+import net.snowflake.client.log.SFLoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.zip.CRC32;
+
+/**
+ * Binary key value cache file shared by the driver processes of a host.
+ * <p>
+ * The file is a header followed by an append only log of records:
+ * <pre>
+ *   header: magic (int), version (int), creation time in ms (long)
+ *   record: key length (int), value length (int, -1 for a removed key),
+ *           key (UTF-8), value (UTF-8), CRC32 of all the previous fields (int)
+ * </pre>
+ * The latest record of a key wins. Writers append the records of the keys
+ * which changed while holding an OS lock on a separate lock file, and
+ * rewrite the file to a temporary file renamed over it once the records
+ * of changed and removed keys outweigh the live ones. The file is never
+ * truncated in place, so readers take no lock: they map the file as it is
+ * and stop at the first record which is incomplete or fails its checksum,
+ * i.e. one still being appended.
+ * <p>
+ * The content read last is kept with the offset it was read to, and the
+ * next read only decodes the records appended since. The file is mapped and
+ * decoded again only when it was replaced by a rewrite, i.e. its file key or
+ * the creation time of its header changed. The mapping is not kept once
+ * decoded.
+ */
+class MappedCacheFile
+{
+  private static final SFLogger LOGGER =
+      SFLoggerFactory.getLogger(MappedCacheFile.class);
+
+  private static final int MAGIC = 0x53464331; // "SFC1"
+
+  private static final int VERSION = 1;
+
+  static final int HEADER_SIZE = 16;
+
+  private static final int RECORD_OVERHEAD = 12;
+
+  // the file is not compacted below this amount of outdated records
+  private static final long COMPACTION_MIN_BYTES = 64 * 1024;
+
+  // mapped files cannot be replaced on Windows, so the file is read instead
+  private static final boolean MAP_FILE =
+      Constants.getOS() != Constants.OS.WINDOWS;
+
+  private final File file;
+
+  private final File lockFile;
+
+  private final long expirationInMilliseconds;
+
+  // content read last, and the file key of the file it was read from
+  private Content cachedContent;
+
+  private Object cachedFileKey;
+
+  /**
+   * Content of the file
+   */
+  static class Content
+  {
+    final Map<String, String> entries = new LinkedHashMap<>();
+
+    // size of the latest record of each key
+    final Map<String, Integer> recordSizes = new LinkedHashMap<>();
+
+    long creationTime;
+
+    // bytes of the records superseded by a later record of the same key
+    long outdatedBytes;
+
+    // end of the last valid record
+    long validBytes;
+
+    Content()
+    {
+    }
+
+    Content(Content other)
+    {
+      entries.putAll(other.entries);
+      recordSizes.putAll(other.recordSizes);
+      creationTime = other.creationTime;
+      outdatedBytes = other.outdatedBytes;
+      validBytes = other.validBytes;
+    }
+
+    boolean isExpired(long expirationInMilliseconds, long currentTime)
+    {
+      return creationTime < currentTime - expirationInMilliseconds;
+    }
+  }
+
+  /**
+   * Constructor
+   *
+   * @param file                     cache file
+   * @param expirationInMilliseconds age of the file after which its entries
+   *                                 are ignored and the file is rewritten
+   */
+  MappedCacheFile(File file, long expirationInMilliseconds)
+  {
+    this.file = file;
+    this.lockFile = new File(file.getParentFile(), file.getName() + ".lck");
+    this.expirationInMilliseconds = expirationInMilliseconds;
+  }
+
+  File getFile()
+  {
+    return file;
+  }
+
+  /**
+   * Reads the entries of the cache file
+   *
+   * @return the entries, read only, empty if the file expired, or null if the
+   * file was not written yet
+   * @throws IOException if the file cannot be read
+   */
+  Map<String, String> read() throws IOException
+  {
+    Content content = readContent();
+    if (content.creationTime == 0)
+    {
+      return null;
+    }
+    if (content.isExpired(expirationInMilliseconds, System.currentTimeMillis()))
+    {
+      LOGGER.debug("Cache file expired. File: {}", file);
+      return Collections.emptyMap();
+    }
+    // the content is kept for the next read
+    return Collections.unmodifiableMap(content.entries);
+  }
+
+  /**
+   * Replaces the entries of the cache file, appending only the entries which
+   * changed
+   *
+   * @param entries new entries
+   * @return true if written, false if the file is locked by another writer
+   * @throws IOException if the file cannot be written
+   */
+  boolean write(Map<String, String> entries) throws IOException
+  {
+    try (FileChannel lockChannel = FileChannel.open(
+        lockFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+         FileLock lock = tryLock(lockChannel))
+    {
+      if (lock == null)
+      {
+        LOGGER.debug("Cache file is locked by another writer. File: {}", file);
+        return false;
+      }
+      Content content = readContent();
+      long currentTime = System.currentTimeMillis();
+
+      ByteBuffer changes = encodeChanges(content, entries);
+      // the changes mostly supersede records of the same size
+      long outdatedBytes = content.outdatedBytes + changes.remaining();
+      long liveBytes = content.validBytes - HEADER_SIZE - content.outdatedBytes;
+      // no other writer is appending, so an invalid record is corrupted
+      if (content.creationTime == 0 || content.validBytes != file.length()
+          || content.isExpired(expirationInMilliseconds, currentTime)
+          || outdatedBytes > Math.max(liveBytes, COMPACTION_MIN_BYTES))
+      {
+        rewrite(entries, currentTime);
+      }
+      else if (changes.hasRemaining())
+      {
+        try (FileChannel channel = FileChannel.open(
+            file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.APPEND))
+        {
+          while (changes.hasRemaining())
+          {
+            channel.write(changes);
+          }
+        }
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Deletes the cache file
+   *
+   * @return true if deleted
+   */
+  boolean delete()
+  {
+    return file.delete();
+  }
+
+  private static FileLock tryLock(FileChannel channel) throws IOException
+  {
+    for (int cnt = 0; cnt < 100; ++cnt)
+    {
+      try
+      {
+        FileLock lock = channel.tryLock();
+        if (lock != null)
+        {
+          return lock;
+        }
+      }
+      catch (OverlappingFileLockException ex)
+      {
+        // locked by another thread of this process
+      }
+      try
+      {
+        Thread.sleep(100);
+      }
+      catch (InterruptedException ex)
+      {
+        Thread.currentThread().interrupt();
+        return null;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Reads the content of the file, decoding only the records appended since
+   * the previous call unless the file was replaced. The content returned is
+   * kept for the next calls and must not be modified; they decode the
+   * appended records into a copy of it.
+   *
+   * @return the content
+   * @throws IOException if the file cannot be read
+   */
+  synchronized Content readContent() throws IOException
+  {
+    if (!file.exists())
+    {
+      cachedContent = null;
+      return new Content();
+    }
+    // read before the file is opened: if it is replaced in between, the
+    // next call sees a different key and decodes the file again
+    Object fileKey = Files.readAttributes(
+        file.toPath(), BasicFileAttributes.class).fileKey();
+    try (FileChannel channel = FileChannel.open(
+        file.toPath(), StandardOpenOption.READ))
+    {
+      long size = channel.size();
+      if (size < HEADER_SIZE)
+      {
+        cachedContent = null;
+        return new Content();
+      }
+      Content content = cachedContent;
+      if (content == null || !Objects.equals(fileKey, cachedFileKey)
+          || size < content.validBytes
+          || readCreationTime(channel) != content.creationTime)
+      {
+        // new or replaced file
+        content = new Content();
+        ByteBuffer buffer;
+        if (MAP_FILE)
+        {
+          buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        else
+        {
+          buffer = read(channel, 0, size);
+        }
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+        {
+          LOGGER.debug("Invalid cache file format. File: {}", file);
+          cachedContent = null;
+          return content;
+        }
+        content.creationTime = buffer.getLong();
+        content.validBytes = HEADER_SIZE;
+        decodeRecords(buffer, 0, content);
+      }
+      else if (size > content.validBytes)
+      {
+        // the content returned before is not modified, it may still be used
+        content = new Content(content);
+        decodeRecords(read(channel, content.validBytes,
+                           size - content.validBytes),
+                      content.validBytes, content);
+      }
+      cachedContent = content;
+      cachedFileKey = fileKey;
+      return content;
+    }
+  }
+
+  private static long readCreationTime(FileChannel channel) throws IOException
+  {
+    ByteBuffer header = read(channel, 0, HEADER_SIZE);
+    return header.getInt() == MAGIC && header.getInt() == VERSION ?
+           header.getLong() : -1;
+  }
+
+  private static ByteBuffer read(FileChannel channel, long position, long size)
+  throws IOException
+  {
+    ByteBuffer buffer = ByteBuffer.allocate((int) size);
+    while (buffer.hasRemaining() &&
+           channel.read(buffer, position + buffer.position()) >= 0)
+    {
+      // read the whole range
+    }
+    buffer.flip();
+    return buffer;
+  }
+
+  /**
+   * Decodes the valid records of a buffer into the content
+   *
+   * @param buffer buffer positioned at the first record to decode
+   * @param offset offset of the buffer in the file
+   * @param content content to update
+   */
+  private void decodeRecords(ByteBuffer buffer, long offset, Content content)
+  {
+    while (buffer.remaining() >= RECORD_OVERHEAD)
+    {
+      int start = buffer.position();
+      int keyLength = buffer.getInt();
+      int valueLength = buffer.getInt();
+      int length = keyLength + Math.max(valueLength, 0);
+      if (keyLength < 0 || valueLength < -1 || length < 0
+          || buffer.remaining() < length + 4)
+      {
+        // incomplete record being appended
+        break;
+      }
+      byte[] key = new byte[keyLength];
+      buffer.get(key);
+      byte[] value = valueLength < 0 ? null : new byte[valueLength];
+      if (value != null)
+      {
+        buffer.get(value);
+      }
+      if (buffer.getInt() != checksum(keyLength, valueLength, key, value))
+      {
+        LOGGER.debug("Invalid cache file record. File: {}", file);
+        break;
+      }
+      String k = new String(key, StandardCharsets.UTF_8);
+      Integer previousSize =
+          content.recordSizes.put(k, buffer.position() - start);
+      if (previousSize != null)
+      {
+        content.outdatedBytes += previousSize;
+      }
+      if (value == null)
+      {
+        content.entries.remove(k);
+        content.outdatedBytes += buffer.position() - start;
+        content.recordSizes.remove(k);
+      }
+      else
+      {
+        content.entries.put(k, new String(value, StandardCharsets.UTF_8));
+      }
+      content.validBytes = offset + buffer.position();
+    }
+  }
+
+  private void rewrite(Map<String, String> entries, long currentTime)
+  throws IOException
+  {
+    ByteBuffer records = encodeChanges(new Content(), entries);
+    ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + records.remaining());
+    buffer.putInt(MAGIC).putInt(VERSION).putLong(currentTime).put(records);
+    buffer.flip();
+
+    File tmpFile = File.createTempFile(file.getName(), ".tmp",
+                                       file.getParentFile());
+    try
+    {
+      try (FileChannel channel = FileChannel.open(
+          tmpFile.toPath(), StandardOpenOption.WRITE))
+      {
+        while (buffer.hasRemaining())
+        {
+          channel.write(buffer);
+        }
+      }
+      // readers keep reading the previous file they opened
+      Files.move(tmpFile.toPath(), file.toPath(),
+                 StandardCopyOption.REPLACE_EXISTING,
+                 StandardCopyOption.ATOMIC_MOVE);
+    }
+    finally
+    {
+      tmpFile.delete();
+    }
+  }
+
+  /**
+   * Encodes the records to append for the entries which differ from the
+   * content of the file
+   */
+  private static ByteBuffer encodeChanges(Content content,
+                                          Map<String, String> entries)
+  {
+    Map<byte[], byte[]> records = new LinkedHashMap<>();
+    int size = 0;
+    for (Map.Entry<String, String> entry : entries.entrySet())
+    {
+      if (!entry.getValue().equals(content.entries.get(entry.getKey())))
+      {
+        byte[] key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+        byte[] value = entry.getValue().getBytes(StandardCharsets.UTF_8);
+        records.put(key, value);
+        size += RECORD_OVERHEAD + key.length + value.length;
+      }
+    }
+    for (String removed : content.entries.keySet())
+    {
+      if (!entries.containsKey(removed))
+      {
+        byte[] key = removed.getBytes(StandardCharsets.UTF_8);
+        records.put(key, null);
+        size += RECORD_OVERHEAD + key.length;
+      }
+    }
+
+    ByteBuffer buffer = ByteBuffer.allocate(size);
+    for (Map.Entry<byte[], byte[]> record : records.entrySet())
+    {
+      byte[] key = record.getKey();
+      byte[] value = record.getValue();
+      int valueLength = value == null ? -1 : value.length;
+      buffer.putInt(key.length).putInt(valueLength).put(key);
+      if (value != null)
+      {
+        buffer.put(value);
+      }
+      buffer.putInt(checksum(key.length, valueLength, key, value));
+    }
+    buffer.flip();
+    return buffer;
+  }
+
+  private static int checksum(int keyLength, int valueLength, byte[] key,
+                              byte[] value)
+  {
+    CRC32 crc = new CRC32();
+    crc.update(ByteBuffer.allocate(8).putInt(keyLength).putInt(valueLength)
+                   .array());
+    crc.update(key);
+    if (value != null)
+    {
+      crc.update(value);
+    }
+    return (int) crc.getValue();
+  }
+}
@@ -0,0 +1,505 @@
+/*
+ * Copyright (c) 2012-2019 Snowflake Computing Inc. All rights reserved.
+ */
+
+package net.snowflake.client.core;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import net.snowflake.client.log.SFLogger;
+import net.snowflake.client.log.SFLoggerFactory;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Client side cache of query results, stored as gzipped query responses in
+ * a local directory.
+ * <p>
+ * Only SELECT results returned entirely in the query response, i.e. without
+ * result chunks, are cached. Queries calling functions whose result changes
+ * between executions, e.g. sequences, CURRENT_TIMESTAMP(), RANDOM() or
+ * RESULT_SCAN(LAST_QUERY_ID()), are not cached, and neither are the queries
+ * of a session which created temporary objects. Entries are keyed by the
+ * normalized SQL text, the bind values and the session context the query
+ * runs in. They expire after a TTL and are evicted in LRU order once the
+ * directory exceeds its size limit.
+ * <p>
+ * The driver drops all entries of a directory when a session using it
+ * executes DML, DDL or ALTER SESSION, and touches an invalidation file so
+ * that the other processes sharing the directory ignore the entries written
+ * before. Changes made by other clients are only picked up once the
+ * entries expire.
+ * <p>
+ * Sessions configured with the same directory share one cache, created
+ * with the settings of the first of them. The files are reused by later
+ * processes and only readable by the owner of the process.
+ */
+class QueryResultCache
+{
+  private static final SFLogger logger =
+      SFLoggerFactory.getLogger(QueryResultCache.class);
+
+  private static final ObjectMapper mapper =
+      ObjectMapperFactory.getObjectMapper();
+
+  private static final String FILE_SUFFIX = ".json.gz";
+
+  // modified whenever the entries are invalidated
+  private static final String INVALIDATION_FILE = "invalidated";
+
+  private static final boolean POSIX =
+      FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+
+  private static final Pattern SELECT =
+      Pattern.compile("^(select|with)\\b");
+
+  // functions whose result changes between executions, or which read the
+  // results of previous queries of the session
+  private static final Pattern NON_DETERMINISTIC = Pattern.compile(
+      "\\b(nextval|current_\\w+|localtime|localtimestamp|sysdate|" +
+      "systimestamp|getdate|random|randstr|uniform|normal|zipf|" +
+      "uuid_string|seq[1248]|sample|tablesample|result_scan|" +
+      "last_query_id|last_transaction)\\b");
+
+  private static final Pattern CREATE_TEMPORARY = Pattern.compile(
+      "\\bcreate\\s+(or\\s+replace\\s+)?((local|global)\\s+)?" +
+      "(temp|temporary|volatile)\\b");
+
+  private static final Map<Path, QueryResultCache> caches =
+      new ConcurrentHashMap<>();
+
+  private final Path directory;
+
+  private final long ttlInMillis;
+
+  private final long maxBytes;
+
+  // size of the cached files in LRU order
+  private final LinkedHashMap<String, Long> entries =
+      new LinkedHashMap<>(16, 0.75f, true);
+
+  private long totalBytes = 0;
+
+  private final LongAdder hitCount = new LongAdder();
+  private final LongAdder missCount = new LongAdder();
+  private final LongAdder evictionCount = new LongAdder();
+
+  QueryResultCache(Path directory, long ttlInMillis, long maxBytes)
+  throws IOException
+  {
+    this.directory = directory;
+    this.ttlInMillis = ttlInMillis;
+    this.maxBytes = maxBytes;
+
+    if (POSIX)
+    {
+      Files.createDirectories(directory, PosixFilePermissions.asFileAttribute(
+          PosixFilePermissions.fromString("rwx------")));
+    }
+    else
+    {
+      Files.createDirectories(directory);
+    }
+
+    // pick up the entries left by previous processes, oldest first
+    File[] files = directory.toFile().listFiles(
+        (dir, name) -> name.endsWith(FILE_SUFFIX));
+    if (files != null)
+    {
+      Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+      for (File file : files)
+      {
+        String name = file.getName();
+        entries.put(name.substring(0, name.length() - FILE_SUFFIX.length()),
+                    file.length());
+        totalBytes += file.length();
+      }
+    }
+  }
+
+  /**
+   * Get the cache of a directory, creating it on first use
+   *
+   * @param directory   cache directory
+   * @param ttlInMillis time to live of an entry in milliseconds
+   * @param maxBytes    maximum size of the directory
+   * @return cache or null if the directory cannot be used
+   */
+  static QueryResultCache getInstance(Path directory, long ttlInMillis,
+                                      long maxBytes)
+  {
+    Path key = directory.toAbsolutePath().normalize();
+    try
+    {
+      return caches.computeIfAbsent(key, path ->
+      {
+        try
+        {
+          return new QueryResultCache(path, ttlInMillis, maxBytes);
+        }
+        catch (IOException ex)
+        {
+          throw new IllegalStateException(ex);
+        }
+      });
+    }
+    catch (IllegalStateException ex)
+    {
+      logger.debug("Cannot cache query results in {}: {}",
+                   directory, ex.getLocalizedMessage());
+      return null;
+    }
+  }
+
+  /**
+   * Build the cache key of a query
+   *
+   * @param context           session context the query runs in, e.g. the
+   *                          server url, user, role, warehouse, database
+   *                          and schema
+   * @param sessionParameters session parameters set on the connection
+   * @param sql               SQL text
+   * @param bindings          bind values, may be null
+   * @return cache key
+   */
+  static String key(String[] context, Map<String, Object> sessionParameters,
+                    String sql, Map<String, ParameterBindingDTO> bindings)
+  {
+    StringBuilder builder = new StringBuilder();
+    for (String value : context)
+    {
+      builder.append(value).append('\u0000');
+    }
+    builder.append(new TreeMap<>(sessionParameters)).append('\u0000');
+    builder.append(normalizeSql(sql)).append('\u0000');
+    if (bindings != null)
+    {
+      try
+      {
+        builder.append(mapper.writeValueAsString(new TreeMap<>(bindings)));
+      }
+      catch (JsonProcessingException ex)
+      {
+        return null;
+      }
+    }
+    return DigestUtils.sha256Hex(builder.toString());
+  }
+
+  /**
+   * Trim the SQL text and collapse whitespace outside of quoted strings and
+   * identifiers, so that reformatted queries share an entry. Line breaks
+   * are kept since they end line comments.
+   *
+   * @param sql SQL text
+   * @return normalized SQL text
+   */
+  static String normalizeSql(String sql)
+  {
+    StringBuilder builder = new StringBuilder(sql.length());
+    char quote = 0;
+    char pendingSpace = 0;
+    for (int i = 0; i < sql.length(); i++)
+    {
+      char c = sql.charAt(i);
+      if (quote == 0 && Character.isWhitespace(c))
+      {
+        if (builder.length() > 0 && pendingSpace != '\n')
+        {
+          pendingSpace = (c == '\n' || c == '\r') ? '\n' : ' ';
+        }
+        continue;
+      }
+      if (pendingSpace != 0)
+      {
+        builder.append(pendingSpace);
+        pendingSpace = 0;
+      }
+      builder.append(c);
+
+      if (quote == 0 && (c == '\'' || c == '"'))
+      {
+        quote = c;
+      }
+      else if (c == quote)
+      {
+        // a doubled quote is an escaped quote and reopens the string
+        quote = 0;
+      }
+    }
+    return builder.toString();
+  }
+
+  /**
+   * @param sql SQL text
+   * @return true if the query is a SELECT whose result may be cached
+   */
+  static boolean isCacheableQuery(String sql)
+  {
+    String normalized = normalizeSql(sql).toLowerCase(Locale.ROOT);
+    return SELECT.matcher(normalized).find() &&
+           !NON_DETERMINISTIC.matcher(normalized).find();
+  }
+
+  /**
+   * @param sql SQL text
+   * @return true if the statement creates a temporary object, which may
+   * shadow the objects the cached results were read from
+   */
+  static boolean createsTemporaryObject(String sql)
+  {
+    return CREATE_TEMPORARY.matcher(sql.toLowerCase(Locale.ROOT)).find();
+  }
+
+  /**
+   * @param result query response
+   * @return true if the response holds a complete SELECT result
+   */
+  static boolean isCacheable(JsonNode result)
+  {
+    JsonNode data = result.path("data");
+    return result.path("success").asBoolean() &&
+           SFStatementType.lookUpTypeById(
+               data.path("statementTypeId").asLong()).isSelect() &&
+           data.path("chunks").size() == 0 &&
+           data.path("resultIds").asText().isEmpty();
+  }
+
+  /**
+   * @param key cache key
+   * @return cached query response, without query id since no query ran, or
+   * null
+   */
+  JsonNode get(String key)
+  {
+    File file = directory.resolve(key + FILE_SUFFIX).toFile();
+    synchronized (this)
+    {
+      // a lookup moves the entry to the most recently used end
+      if (entries.get(key) == null)
+      {
+        missCount.increment();
+        return null;
+      }
+      long lastModified = file.lastModified();
+      if (System.currentTimeMillis() - lastModified >= ttlInMillis ||
+          lastModified <= getLastInvalidationTime())
+      {
+        remove(key);
+        evictionCount.increment();
+        missCount.increment();
+        return null;
+      }
+    }
+
+    try (InputStream in = new GZIPInputStream(Files.newInputStream(file.toPath())))
+    {
+      JsonNode result = mapper.readTree(in);
+      if (result.path("data") instanceof ObjectNode)
+      {
+        ((ObjectNode) result.path("data")).remove("queryId");
+      }
+      hitCount.increment();
+      return result;
+    }
+    catch (IOException ex)
+    {
+      logger.debug("Failed to read cached query result {}: {}",
+                   file, ex.getLocalizedMessage());
+      synchronized (this)
+      {
+        remove(key);
+      }
+      missCount.increment();
+      return null;
+    }
+  }
+
+  /**
+   * Cache a query response
+   *
+   * @param key            cache key
+   * @param result         query response
+   * @param queryStartTime time the query was sent, the response is not
+   *                       cached if the entries were invalidated since
+   */
+  void put(String key, JsonNode result, long queryStartTime)
+  {
+    Path target = directory.resolve(key + FILE_SUFFIX);
+    try
+    {
+      if (getLastInvalidationTime() >= queryStartTime)
+      {
+        logger.debug("Cached query results were invalidated while the " +
+                     "query was running");
+        return;
+      }
+
+      // write to a temporary file first so that readers never see a
+      // partially written entry
+      Path tmp = Files.createTempFile(directory, key, ".tmp", ownerOnly());
+      try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(tmp)))
+      {
+        mapper.writeValue(out, result);
+      }
+      long size = Files.size(tmp);
+      Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING,
+                 StandardCopyOption.ATOMIC_MOVE);
+
+      synchronized (this)
+      {
+        Long previous = entries.put(key, size);
+        totalBytes += size - (previous != null ? previous : 0);
+        evict();
+      }
+    }
+    catch (IOException ex)
+    {
+      logger.debug("Failed to cache query result {}: {}",
+                   target, ex.getLocalizedMessage());
+    }
+  }
+
+  /**
+   * Evict the least recently used entries until the directory fits in its
+   * size limit
+   */
+  private void evict()
+  {
+    while (totalBytes > maxBytes && !entries.isEmpty())
+    {
+      remove(entries.keySet().iterator().next());
+      evictionCount.increment();
+    }
+  }
+
+  private void remove(String key)
+  {
+    Long size = entries.remove(key);
+    if (size != null)
+    {
+      totalBytes -= size;
+    }
+    try
+    {
+      Files.deleteIfExists(directory.resolve(key + FILE_SUFFIX));
+    }
+    catch (IOException ex)
+    {
+      logger.debug("Failed to delete cached query result {}: {}",
+                   key, ex.getLocalizedMessage());
+    }
+  }
+
+  /**
+   * @return attributes of a file only the owner can read and write
+   */
+  private static FileAttribute<?>[] ownerOnly()
+  {
+    return POSIX ?
+           new FileAttribute<?>[]{PosixFilePermissions.asFileAttribute(
+               PosixFilePermissions.fromString("rw-------"))} :
+           new FileAttribute<?>[0];
+  }
+
+  /**
+   * @return time the entries were last invalidated by any process, or 0
+   */
+  private long getLastInvalidationTime()
+  {
+    try
+    {
+      return Files.getLastModifiedTime(
+          directory.resolve(INVALIDATION_FILE)).toMillis();
+    }
+    catch (IOException ex)
+    {
+      return 0;
+    }
+  }
+
+  /**
+   * Drop all entries, e.g. after the driver has seen a DML statement
+   */
+  synchronized void invalidateAll()
+  {
+    Path invalidationFile = directory.resolve(INVALIDATION_FILE);
+    try
+    {
+      try
+      {
+        Files.createFile(invalidationFile, ownerOnly());
+      }
+      catch (FileAlreadyExistsException ex)
+      {
+        // touched below
+      }
+      Files.setLastModifiedTime(invalidationFile,
+                                FileTime.fromMillis(System.currentTimeMillis()));
+    }
+    catch (IOException ex)
+    {
+      logger.debug("Failed to invalidate the cached query results of " +
+                   "other processes: {}", ex.getLocalizedMessage());
+    }
+
+    if (!entries.isEmpty())
+    {
+      logger.debug("invalidate {} cached query results", entries.size());
+      for (String key : entries.keySet().toArray(new String[0]))
+      {
+        remove(key);
+      }
+    }
+  }
+
+  synchronized int size()
+  {
+    return entries.size();
+  }
+
+  synchronized long getTotalBytes()
+  {
+    return totalBytes;
+  }
+
+  long getHitCount()
+  {
+    return hitCount.sum();
+  }
+
+  long getMissCount()
+  {
+    return missCount.sum();
+  }
+
+  long getEvictionCount()
+  {
+    return evictionCount.sum();
+  }
+}
@@ -19,17 +19,22 @@ import net.snowflake.common.core.SFBinaryFormat;
 import net.snowflake.common.core.SnowflakeDateTimeFormat;
 import net.snowflake.common.core.SqlState;
 import org.apache.arrow.memory.RootAllocator;
+import org.apache.commons.io.input.CharSequenceInputStream;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
 import java.sql.Date;
 import java.sql.SQLException;
 import java.sql.Time;
 import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.List;
 import java.util.TimeZone;
+import java.util.concurrent.CompletableFuture;
 
 import static net.snowflake.client.core.StmtUtil.eventHandler;
 import static net.snowflake.client.jdbc.SnowflakeUtil.systemGetProperty;
@@ -148,9 +153,7 @@ public class SFArrowResultSet extends SFBaseResultSet implements DataConversionC
     }
 
     eventHandler.triggerStateTransition(BasicEvent.QueryState.CONSUMING_RESULT,
-                                        String.format(
-                                            BasicEvent.QueryState.CONSUMING_RESULT
-                                                .getArgString(), queryId, 0));
+                                        queryId, 0);
   }
 
   /**
@@ -197,30 +200,18 @@ public class SFArrowResultSet extends SFBaseResultSet implements DataConversionC
 
     // sort result set if needed
     String rowsetBase64 = resultSetSerializable.getFirstChunkStringData();
-    if (rowsetBase64 == null || rowsetBase64.isEmpty())
+    if (sortResult)
+    {
+      this.currentChunkIterator = getSortedResultChunkIterator(rowsetBase64);
+    }
+    else if (rowsetBase64 == null || rowsetBase64.isEmpty())
     {
       this.currentChunkIterator = ArrowResultChunk.getEmptyChunkIterator();
     }
     else
     {
-      if (sortResult)
-      {
-        // we don't support sort result when there are offline chunks
-        if (resultSetSerializable.getChunkFileCount() > 0)
-        {
-          throw new SnowflakeSQLException(SqlState.FEATURE_NOT_SUPPORTED,
-                                          ErrorCode.CLIENT_SIDE_SORTING_NOT_SUPPORTED
-                                              .getMessageCode());
-        }
-
-        this.currentChunkIterator = getSortedFirstResultChunk(
-            resultSetSerializable.getFirstChunkStringData()).getIterator(this);
-      }
-      else
-      {
-        this.currentChunkIterator =
-            buildFirstChunk(resultSetSerializable.getFirstChunkStringData()).getIterator(this);
-      }
+      this.currentChunkIterator =
+          buildFirstChunk(rowsetBase64).getIterator(this);
     }
   }
 
@@ -258,10 +249,8 @@ public class SFArrowResultSet extends SFBaseResultSet implements DataConversionC
         {
           eventHandler.triggerStateTransition(
               BasicEvent.QueryState.CONSUMING_RESULT,
-              String.format(
-                  BasicEvent.QueryState.CONSUMING_RESULT.getArgString(),
-                  queryId,
-                  nextChunkIndex));
+              queryId,
+              nextChunkIndex);
 
           ArrowResultChunk
               nextChunk = (ArrowResultChunk) chunkDownloader.getNextChunkToConsume();
@@ -324,8 +313,10 @@ public class SFArrowResultSet extends SFBaseResultSet implements DataConversionC
   private ArrowResultChunk buildFirstChunk(String rowsetBase64)
   throws SQLException
   {
-    byte[] bytes = Base64.getDecoder().decode(rowsetBase64);
-    ByteArrayInputStream inputStream = new ByteArrayInputStream(bytes);
+    // decode while arrow reads the stream instead of materializing the
+    // decoded rowset as a byte array first
+    InputStream inputStream = Base64.getDecoder().wrap(
+        new CharSequenceInputStream(rowsetBase64, StandardCharsets.ISO_8859_1));
 
     // create a result chunk
     ArrowResultChunk resultChunk = new ArrowResultChunk("", 0, 0, 0, rootAllocator);
@@ -345,26 +336,97 @@ public class SFArrowResultSet extends SFBaseResultSet implements DataConversionC
   }
 
   /**
-   * Decode rowset returned in query response the load data into arrow vectors
-   * and sort data
+   * Load all chunks of the result, sort each of them and merge them.
+   * <p>
+   * The chunks are sorted in parallel while the remaining chunks are
+   * downloaded. The sort keys are computed on this thread since the
+   * converters use the formatters of the result set. The chunks and their
+   * sort keys are kept until the merge is done with them, so the result
+   * fails if they need more than the memory limit of the result set.
    *
    * @param rowsetBase64 first chunk of rowset in arrow format and base64
    *                     encoded
-   * @return result chunk with arrow data already being loaded
+   * @return iterator going through the rows of all chunks in sorted order
    */
-  private ArrowResultChunk getSortedFirstResultChunk(String rowsetBase64) throws SQLException
+  private ArrowChunkIterator getSortedResultChunkIterator(String rowsetBase64)
+  throws SQLException
   {
-    ArrowResultChunk resultChunk = buildFirstChunk(rowsetBase64);
+    List<ArrowResultChunk> chunks = new ArrayList<>();
+    List<CompletableFuture<Void>> sorts = new ArrayList<>();
+    long sortedChunksMemory = 0;
+    try
+    {
+      if (rowsetBase64 != null && !rowsetBase64.isEmpty())
+      {
+        sortedChunksMemory +=
+            startSort(buildFirstChunk(rowsetBase64), chunks, sorts);
+      }
 
-    // enable sorted chunk, the sorting happens when the result chunk is ready to consume
-    resultChunk.enableSortFirstResultChunk();
-    return resultChunk;
+      while (nextChunkIndex < chunkCount)
+      {
+        ArrowResultChunk nextChunk =
+            (ArrowResultChunk) chunkDownloader.getNextChunkToConsume();
+        if (nextChunk == null)
+        {
+          throw new SnowflakeSQLException(
+              SqlState.INTERNAL_ERROR,
+              ErrorCode.INTERNAL_ERROR.getMessageCode(),
+              "Expect chunk but got null for chunk index " + nextChunkIndex);
+        }
+        nextChunkIndex++;
+
+        // the downloader frees a chunk once the next one is consumed, and
+        // stops accounting for its memory
+        sortedChunksMemory +=
+            startSort(nextChunk.transferData(), chunks, sorts);
+
+        long memoryLimit = resultSetSerializable.getMemoryLimit();
+        if (memoryLimit > 0 && sortedChunksMemory > memoryLimit)
+        {
+          logger.debug("Sorted chunks need more than the memory limit: {} > {}",
+                       sortedChunksMemory, memoryLimit);
+          throw new SnowflakeSQLException(
+              ErrorCode.MAX_RESULT_LIMIT_EXCEEDED);
+        }
+      }
+
+      CompletableFuture.allOf(sorts.toArray(new CompletableFuture<?>[0])).join();
+    }
+    catch (InterruptedException ex)
+    {
+      chunks.forEach(ArrowResultChunk::freeData);
+      throw new SnowflakeSQLException(SqlState.QUERY_CANCELED,
+                                      ErrorCode.INTERRUPTED.getMessageCode());
+    }
+    catch (SQLException | RuntimeException ex)
+    {
+      CompletableFuture.allOf(sorts.toArray(new CompletableFuture<?>[0]))
+          .exceptionally(e -> null).join();
+      chunks.forEach(ArrowResultChunk::freeData);
+      throw ex;
+    }
+
+    logger.debug("Sorted {} chunks", chunks.size());
+    return ArrowResultChunk.getSortedIterator(chunks);
   }
 
+  /**
+   * @return memory held by the chunk until the merge is done with it
+   */
+  private long startSort(ArrowResultChunk chunk,
+                         List<ArrowResultChunk> chunks,
+                         List<CompletableFuture<Void>> sorts)
+  throws SnowflakeSQLException
+  {
+    chunks.add(chunk);
+    chunk.prepareSort(this);
+    sorts.add(CompletableFuture.runAsync(chunk::sort));
+    return chunk.computeSortedChunkMemory();
+  }
 
   /**
-   * Fetch next row of first chunkd in sorted order. If the result set huge,
-   * then rest of the chunks are ignored.
+   * Fetch next row in sorted order. All chunks have been loaded and sorted
+   * when the result set was created.
    */
   private boolean fetchNextRowSorted() throws SnowflakeSQLException
   {
@@ -375,10 +437,13 @@ public class SFArrowResultSet extends SFBaseResultSet implements DataConversionC
     }
     else
     {
-      currentChunkIterator.getChunk().freeData();
-
-      // no more chunks as sorted is only supported
-      // for one chunk
+      currentChunkIterator.freeData();
+      if (chunkCount > 0)
+      {
+        logger.debug("End of chunks");
+        DownloaderMetrics metrics = chunkDownloader.terminate();
+        logChunkDownloaderMetrics(metrics);
+      }
       return false;
     }
   }
@@ -597,7 +662,7 @@ public class SFArrowResultSet extends SFBaseResultSet implements DataConversionC
     super.close();
 
     // always make sure to free this current chunk
-    currentChunkIterator.getChunk().freeData();
+    currentChunkIterator.freeData();
 
     if (chunkDownloader != null)
     {
@@ -684,6 +749,20 @@ public class SFArrowResultSet extends SFBaseResultSet implements DataConversionC
                 metrics.getMillisDownloading());
       logMetric(TelemetryField.TIME_PARSING_CHUNKS,
                 metrics.getMillisParsing());
+      if (metrics.getHedgedRequests() > 0)
+      {
+        logMetric(TelemetryField.HEDGED_CHUNK_REQUESTS,
+                  metrics.getHedgedRequests());
+        logMetric(TelemetryField.HEDGED_CHUNK_REQUESTS_WON,
+                  metrics.getHedgedRequestsWon());
+      }
+      if (metrics.getPrefetchAdjustments() > 0)
+      {
+        logMetric(TelemetryField.PREFETCH_ADJUSTMENTS,
+                  metrics.getPrefetchAdjustments());
+        logMetric(TelemetryField.PREFETCH_SLOTS,
+                  metrics.getPrefetchSlots());
+      }
     }
   }
 
@@ -40,6 +40,7 @@ public class SFLoginInput
   private PrivateKey privateKey;
   private String application;
   private String idToken;
+  private boolean issueSessionFromIdToken;
   private String serviceName;
   private OCSPMode ocspMode;
 
@@ -289,6 +290,17 @@ public class SFLoginInput
     return this;
   }
 
+  boolean isIssueSessionFromIdToken()
+  {
+    return issueSessionFromIdToken;
+  }
+
+  SFLoginInput setIssueSessionFromIdToken(boolean issueSessionFromIdToken)
+  {
+    this.issueSessionFromIdToken = issueSessionFromIdToken;
+    return this;
+  }
+
   Map<String, Object> getSessionParameters()
   {
     return sessionParameters;
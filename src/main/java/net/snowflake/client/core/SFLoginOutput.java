@@ -14,6 +14,7 @@ public class SFLoginOutput
   private String sessionToken;
   private String masterToken;
   private long masterTokenValidityInSeconds;
+  private long sessionTokenValidityInSeconds;
   private String idToken;
   private String databaseVersion;
   private int databaseMajorVersion;
@@ -175,6 +176,29 @@ public class SFLoginOutput
     return masterTokenValidityInSeconds;
   }
 
+  SFLoginOutput setMasterTokenValidityInSeconds(
+      long masterTokenValidityInSeconds)
+  {
+    this.masterTokenValidityInSeconds = masterTokenValidityInSeconds;
+    return this;
+  }
+
+  /**
+   * @return validity of the session token, or 0 if the server did not
+   * return it
+   */
+  long getSessionTokenValidityInSeconds()
+  {
+    return sessionTokenValidityInSeconds;
+  }
+
+  SFLoginOutput setSessionTokenValidityInSeconds(
+      long sessionTokenValidityInSeconds)
+  {
+    this.sessionTokenValidityInSeconds = sessionTokenValidityInSeconds;
+    return this;
+  }
+
   boolean isUpdatedByTokenRequest()
   {
     return updatedByTokenRequest;
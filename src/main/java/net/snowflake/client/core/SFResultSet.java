@@ -5,7 +5,6 @@
 package net.snowflake.client.core;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import net.snowflake.client.core.BasicEvent.QueryState;
 import net.snowflake.client.jdbc.ErrorCode;
 import net.snowflake.client.jdbc.JsonResultChunk;
 import net.snowflake.client.jdbc.SnowflakeResultChunk;
@@ -107,7 +106,7 @@ public class SFResultSet extends SFJsonResultSet
     }
 
     eventHandler.triggerStateTransition(BasicEvent.QueryState.CONSUMING_RESULT,
-                                        String.format(QueryState.CONSUMING_RESULT.getArgString(), queryId, 0));
+                                        queryId, 0);
   }
 
   /**
@@ -213,9 +212,8 @@ public class SFResultSet extends SFJsonResultSet
       {
         eventHandler.triggerStateTransition(
             BasicEvent.QueryState.CONSUMING_RESULT,
-            String.format(QueryState.CONSUMING_RESULT.getArgString(),
-                          queryId,
-                          nextChunkIndex));
+            queryId,
+            nextChunkIndex);
 
         SnowflakeResultChunk nextChunk = chunkDownloader.getNextChunkToConsume();
 
@@ -270,6 +268,20 @@ public class SFResultSet extends SFJsonResultSet
                 metrics.getMillisDownloading());
       logMetric(TelemetryField.TIME_PARSING_CHUNKS,
                 metrics.getMillisParsing());
+      if (metrics.getHedgedRequests() > 0)
+      {
+        logMetric(TelemetryField.HEDGED_CHUNK_REQUESTS,
+                  metrics.getHedgedRequests());
+        logMetric(TelemetryField.HEDGED_CHUNK_REQUESTS_WON,
+                  metrics.getHedgedRequestsWon());
+      }
+      if (metrics.getPrefetchAdjustments() > 0)
+      {
+        logMetric(TelemetryField.PREFETCH_ADJUSTMENTS,
+                  metrics.getPrefetchAdjustments());
+        logMetric(TelemetryField.PREFETCH_SLOTS,
+                  metrics.getPrefetchSlots());
+      }
     }
   }
 
@@ -9,27 +9,37 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Strings;
 import net.snowflake.client.jdbc.ErrorCode;
 import net.snowflake.client.jdbc.SnowflakeConnectString;
+import net.snowflake.client.jdbc.SnowflakeMetadataCache;
 import net.snowflake.client.jdbc.SnowflakeSQLException;
 import net.snowflake.client.jdbc.SnowflakeType;
 import net.snowflake.client.jdbc.SnowflakeUtil;
+import net.snowflake.client.jdbc.metrics.MetricsRegistry;
 import net.snowflake.client.jdbc.telemetry.Telemetry;
 import net.snowflake.client.jdbc.telemetry.TelemetryClient;
 import net.snowflake.client.log.JDK14Logger;
 import net.snowflake.client.log.SFLogger;
 import net.snowflake.client.log.SFLoggerFactory;
 import net.snowflake.common.core.ClientAuthnDTO;
+import net.snowflake.common.core.SqlState;
 import org.apache.http.HttpHeaders;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.utils.URIBuilder;
 
+import java.nio.file.Paths;
 import java.security.PrivateKey;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
@@ -58,9 +68,26 @@ public class SFSession
 
   private boolean isClosed = true;
 
-  private String sessionToken;
-  private String masterToken;
+  // renewed in the background by SessionTokenRenewer
+  private volatile String sessionToken;
+  private volatile String masterToken;
   private long masterTokenValidityInSeconds;
+  private long sessionTokenValidityInSeconds;
+
+  // background renewal of the current session token
+  private ScheduledFuture<?> tokenRenewal;
+
+  // renewal request in progress, joined by the other threads renewing the
+  // same token
+  private CompletableFuture<Void> pendingRenewal;
+
+  // time spent in each phase of open(), in microseconds
+  private final Map<String, Long> openPhaseMicros =
+      Collections.synchronizedMap(new LinkedHashMap<>());
+
+  // last time a statement was executed with the session, so that the
+  // heartbeat can skip the sessions in use
+  private volatile long lastActivityTimeMillis;
   private String sessionId;
 
   private String idToken;
@@ -204,6 +231,27 @@ public class SFSession
   // validate the default parameters by GS?
   private boolean validateDefaultParameters;
 
+  // whether the result chunk prefetch adapts to the consumption rate
+  private boolean adaptivePrefetch = false;
+
+  // cache of DatabaseMetaData SHOW results, null if disabled
+  private SnowflakeMetadataCache metadataCache;
+
+  // whether ALTER SESSION or SET changed parameters or variables of the session
+  private volatile boolean sessionStateAltered = false;
+
+  // default max number of SHOW results kept in a per-connection cache
+  private static final int DEFAULT_METADATA_CACHE_SIZE = 1000;
+
+  // client side cache of query results, null if disabled
+  private QueryResultCache queryResultCache;
+
+  // whether temporary objects were created, bypassing the query result cache
+  private volatile boolean temporaryObjectsCreated = false;
+
+  // default max size of a query result cache directory in MB
+  private static final int DEFAULT_QUERY_RESULT_CACHE_SIZE = 100;
+
   public void addProperty(SFSessionProperty sfSessionProperty,
                           Object propertyValue)
   throws SFException
@@ -327,6 +375,17 @@ public class SFSession
           }
           break;
 
+        case METADATA_CACHE:
+          metadataCache = (SnowflakeMetadataCache) propertyValue;
+          break;
+
+        case ADAPTIVE_PREFETCH:
+          if (propertyValue != null)
+          {
+            adaptivePrefetch = SFLoginInput.getBooleanValue(propertyValue);
+          }
+          break;
+
         default:
           break;
       }
@@ -417,8 +476,14 @@ public class SFSession
    */
   public synchronized void open() throws SFException, SnowflakeSQLException
   {
+    long openStartNanos = System.nanoTime();
+    openPhaseMicros.clear();
+
     performSanityCheckOnProperties();
 
+    initMetadataCache();
+    initQueryResultCache();
+
     HttpUtil.configureCustomProxyProperties(connectionPropertiesMap);
 
     logger.debug(
@@ -489,6 +554,9 @@ public class SFSession
             (String) connectionPropertiesMap.get(SFSessionProperty.TOKEN))
         .setIdToken(
             (String) connectionPropertiesMap.get(SFSessionProperty.ID_TOKEN))
+        .setIssueSessionFromIdToken(Boolean.TRUE.equals(
+            connectionPropertiesMap.get(
+                SFSessionProperty.ISSUE_SESSION_FROM_ID_TOKEN)))
         .setPasscodeInPassword(passcodeInPassword)
         .setPasscode(
             (String) connectionPropertiesMap.get(SFSessionProperty.PASSCODE))
@@ -504,12 +572,20 @@ public class SFSession
         .setServiceName(this.getServiceName())
         .setOCSPMode(getOCSPMode());
 
+    recordOpenPhase("properties", openStartNanos);
+
     // propagate OCSP mode to SFTrustManager. Note OCSP setting is global on JVM.
+    long httpClientStartNanos = System.nanoTime();
     HttpUtil.initHttpClient(loginInput.getOCSPMode(), null);
+    recordOpenPhase("httpClient", httpClientStartNanos);
 
+    long loginStartNanos = System.nanoTime();
     SFLoginOutput loginOutput = SessionUtil.openSession(loginInput);
+    recordOpenPhase("login", loginStartNanos);
     isClosed = false;
 
+    long parametersStartNanos = System.nanoTime();
+
     if (loginOutput.isUpdatedByTokenRequest())
     {
       setCurrentObjects(loginInput, loginOutput);
@@ -523,6 +599,7 @@ public class SFSession
     databaseMinorVersion = loginOutput.getDatabaseMinorVersion();
     httpClientSocketTimeout = loginOutput.getHttpClientSocketTimeout();
     masterTokenValidityInSeconds = loginOutput.getMasterTokenValidityInSeconds();
+    scheduleTokenRenewal(loginOutput.getSessionTokenValidityInSeconds());
     database = loginOutput.getSessionDatabase();
     schema = loginOutput.getSessionSchema();
     role = loginOutput.getSessionRole();
@@ -573,8 +650,34 @@ public class SFSession
                                       "Warehouse", loginWarehouse, warehouse));
     }
 
+    recordOpenPhase("parameters", parametersStartNanos);
+
     // start heartbeat for this session so that the master token will not expire
     startHeartbeatForThisSession();
+
+    recordOpenPhase("total", openStartNanos);
+    logger.debug("session opened, time per phase in microseconds: {}",
+                 openPhaseMicros);
+  }
+
+  private void recordOpenPhase(String phase, long startNanos)
+  {
+    long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+    openPhaseMicros.put(phase, micros);
+    MetricsRegistry.getInstance().histogram("connect." + phase + ".micros")
+        .record(micros);
+  }
+
+  /**
+   * @return time spent in each phase of the last open(), in microseconds.
+   * The http client is built concurrently with the login.
+   */
+  public Map<String, Long> getOpenPhaseMicros()
+  {
+    synchronized (openPhaseMicros)
+    {
+      return new LinkedHashMap<>(openPhaseMicros);
+    }
   }
 
   public OCSPMode getOCSPMode()
@@ -659,6 +762,103 @@ public class SFSession
     }
   }
 
+  /**
+   * Use the metadata cache given in the connection properties, or create a
+   * cache for this session if a TTL is specified.
+   */
+  private void initMetadataCache()
+  {
+    if (metadataCache != null)
+    {
+      return;
+    }
+
+    Integer ttlInSeconds = (Integer) connectionPropertiesMap.get(
+        SFSessionProperty.METADATA_CACHE_TTL);
+    if (ttlInSeconds != null && ttlInSeconds > 0)
+    {
+      Integer size = (Integer) connectionPropertiesMap.get(
+          SFSessionProperty.METADATA_CACHE_SIZE);
+      metadataCache = new SnowflakeMetadataCache(
+          ttlInSeconds * 1000L,
+          size != null && size > 0 ? size : DEFAULT_METADATA_CACHE_SIZE);
+    }
+  }
+
+  /**
+   * @return cache of DatabaseMetaData SHOW results, or null if disabled
+   */
+  public SnowflakeMetadataCache getMetadataCache()
+  {
+    return metadataCache;
+  }
+
+  /**
+   * @return true if ALTER SESSION or SET ran on this session, i.e. some of
+   * its parameters or variables may differ from the ones it was opened with
+   */
+  public boolean isSessionStateAltered()
+  {
+    return sessionStateAltered;
+  }
+
+  public void setSessionStateAltered(boolean sessionStateAltered)
+  {
+    this.sessionStateAltered = sessionStateAltered;
+  }
+
+  /**
+   * Use a query result cache if both a directory and a TTL are specified
+   * in the connection properties.
+   */
+  private void initQueryResultCache()
+  {
+    String directory = (String) connectionPropertiesMap.get(
+        SFSessionProperty.QUERY_RESULT_CACHE_DIRECTORY);
+    Integer ttlInSeconds = (Integer) connectionPropertiesMap.get(
+        SFSessionProperty.QUERY_RESULT_CACHE_TTL);
+    if (directory != null && !directory.isEmpty() &&
+        ttlInSeconds != null && ttlInSeconds > 0)
+    {
+      Integer sizeInMB = (Integer) connectionPropertiesMap.get(
+          SFSessionProperty.QUERY_RESULT_CACHE_SIZE);
+      queryResultCache = QueryResultCache.getInstance(
+          Paths.get(directory),
+          ttlInSeconds * 1000L,
+          (sizeInMB != null && sizeInMB > 0 ?
+           sizeInMB : DEFAULT_QUERY_RESULT_CACHE_SIZE) * 1024L * 1024L);
+    }
+  }
+
+  /**
+   * @return client side query result cache, or null if disabled
+   */
+  QueryResultCache getQueryResultCache()
+  {
+    return queryResultCache;
+  }
+
+  /**
+   * @return true if the session created temporary objects
+   */
+  boolean hasTemporaryObjects()
+  {
+    return temporaryObjectsCreated;
+  }
+
+  void setTemporaryObjectsCreated()
+  {
+    temporaryObjectsCreated = true;
+  }
+
+  /**
+   * @return session parameters specified in the connection properties
+   */
+  Map<String, Object> getSessionParameters()
+  {
+    return sessionParametersMap;
+  }
+
   public String getDatabaseVersion()
   {
     return databaseVersion;
@@ -676,44 +876,195 @@ public class SFSession
 
   public String getSessionId() { return sessionId; }
 
+  /**
+   * @return master token validity in seconds returned by the login response
+   */
+  public long getMasterTokenValidityInSeconds()
+  {
+    return masterTokenValidityInSeconds;
+  }
+
+  /**
+   * Record that a request using the session token succeeded
+   */
+  void recordActivity()
+  {
+    lastActivityTimeMillis = System.currentTimeMillis();
+  }
+
+  /**
+   * @return last time a request using the session token succeeded, or 0
+   */
+  long getLastActivityTimeMillis()
+  {
+    return lastActivityTimeMillis;
+  }
+
+  /**
+   * Check whether the session is still usable by sending a heartbeat. The
+   * heartbeat renews the session token if it has expired.
+   *
+   * @return true if the heartbeat succeeded, false otherwise
+   */
+  public boolean isValid()
+  {
+    if (isClosed)
+    {
+      return false;
+    }
+
+    try
+    {
+      heartbeat();
+      return true;
+    }
+    catch (Throwable ex)
+    {
+      logger.debug("session validation failed: {}", ex.getMessage());
+      return false;
+    }
+  }
+
   /**
    * A helper function to call global service and renew session.
+   * <p>
+   * Only one renewal request runs at a time; a thread renewing the token
+   * while a renewal is in progress waits for its outcome. The request is sent
+   * without holding the session monitor, so that the other synchronized
+   * methods of the session are not blocked by the network call.
    *
    * @param prevSessionToken the session token that has expired
    * @throws SnowflakeSQLException if failed to renew the session
    * @throws SFException           if failed to renew the session
    */
-  synchronized void renewSession(String prevSessionToken)
+  void renewSession(String prevSessionToken)
   throws SFException, SnowflakeSQLException
   {
-    if (sessionToken != null &&
-        !sessionToken.equals(prevSessionToken))
+    CompletableFuture<Void> renewal;
+    SFLoginInput loginInput = null;
+    synchronized (this)
+    {
+      if (sessionToken != null &&
+          !sessionToken.equals(prevSessionToken))
+      {
+        logger.debug("not renew session because session token has not been updated.");
+        return;
+      }
+
+      renewal = pendingRenewal;
+      if (renewal == null)
+      {
+        renewal = pendingRenewal = new CompletableFuture<>();
+
+        loginInput = new SFLoginInput();
+        loginInput.setServerUrl(
+            (String) connectionPropertiesMap.get(SFSessionProperty.SERVER_URL))
+            .setSessionToken(sessionToken)
+            .setMasterToken(masterToken)
+            .setIdToken(idToken)
+            .setLoginTimeout(loginTimeout)
+            .setDatabaseName(this.getDatabase())
+            .setSchemaName(this.getSchema())
+            .setRole(this.getRole())
+            .setWarehouse(this.getWarehouse())
+            .setOCSPMode(getOCSPMode());
+      }
+    }
+
+    if (loginInput == null)
     {
-      logger.debug("not renew session because session token has not been updated.");
+      logger.debug("wait for the session renewal in progress");
+      awaitRenewal(renewal);
       return;
     }
 
-    SFLoginInput loginInput = new SFLoginInput();
-    loginInput.setServerUrl(
-        (String) connectionPropertiesMap.get(SFSessionProperty.SERVER_URL))
-        .setSessionToken(sessionToken)
-        .setMasterToken(masterToken)
-        .setIdToken(idToken)
-        .setLoginTimeout(loginTimeout)
-        .setDatabaseName(this.getDatabase())
-        .setSchemaName(this.getSchema())
-        .setRole(this.getRole())
-        .setWarehouse(this.getWarehouse())
-        .setOCSPMode(getOCSPMode());
+    try
+    {
+      SFLoginOutput loginOutput = SessionUtil.renewSession(loginInput);
+
+      synchronized (this)
+      {
+        if (loginOutput.isUpdatedByTokenRequestIssue())
+        {
+          setCurrentObjects(loginInput, loginOutput);
+        }
+        sessionToken = loginOutput.getSessionToken();
+        masterToken = loginOutput.getMasterToken();
+        scheduleTokenRenewal(loginOutput.getSessionTokenValidityInSeconds());
+        pendingRenewal = null;
+      }
+      renewal.complete(null);
+    }
+    catch (Throwable ex)
+    {
+      synchronized (this)
+      {
+        pendingRenewal = null;
+      }
+      renewal.completeExceptionally(ex);
+      throw ex;
+    }
+  }
 
-    SFLoginOutput loginOutput = SessionUtil.renewSession(loginInput);
+  /**
+   * Wait for a renewal started by another thread
+   *
+   * @param renewal the renewal in progress
+   * @throws SnowflakeSQLException if the renewal failed or the wait was
+   *                               interrupted
+   * @throws SFException           if the renewal failed
+   */
+  private static void awaitRenewal(CompletableFuture<Void> renewal)
+  throws SFException, SnowflakeSQLException
+  {
+    try
+    {
+      renewal.get();
+    }
+    catch (InterruptedException ex)
+    {
+      Thread.currentThread().interrupt();
+      throw new SnowflakeSQLException(SqlState.QUERY_CANCELED,
+                                      ErrorCode.INTERRUPTED.getMessageCode());
+    }
+    catch (ExecutionException ex)
+    {
+      Throwable cause = ex.getCause();
+      if (cause instanceof SFException)
+      {
+        throw (SFException) cause;
+      }
+      if (cause instanceof SnowflakeSQLException)
+      {
+        throw (SnowflakeSQLException) cause;
+      }
+      if (cause instanceof RuntimeException)
+      {
+        throw (RuntimeException) cause;
+      }
+      throw (Error) cause;
+    }
+  }
 
-    if (loginOutput.isUpdatedByTokenRequestIssue())
+  /**
+   * Schedule the background renewal of the current session token, replacing
+   * the renewal of the previous token
+   *
+   * @param validityInSeconds validity of the token, 0 if the server did not
+   *                          return it and the previous validity applies
+   */
+  synchronized void scheduleTokenRenewal(long validityInSeconds)
+  {
+    if (validityInSeconds > 0)
     {
-      setCurrentObjects(loginInput, loginOutput);
+      sessionTokenValidityInSeconds = validityInSeconds;
     }
-    sessionToken = loginOutput.getSessionToken();
-    masterToken = loginOutput.getMasterToken();
+    if (tokenRenewal != null)
+    {
+      tokenRenewal.cancel(false);
+    }
+    tokenRenewal = SessionTokenRenewer.getInstance().schedule(
+        this, sessionToken, sessionTokenValidityInSeconds);
   }
 
   /**
@@ -739,6 +1090,15 @@ public class SFSession
     // stop heartbeat for this session
     stopHeartbeatForThisSession();
 
+    synchronized (this)
+    {
+      if (tokenRenewal != null)
+      {
+        tokenRenewal.cancel(false);
+        tokenRenewal = null;
+      }
+    }
+
     if (isClosed)
     {
       return;
@@ -1047,6 +1407,11 @@ public class SFSession
     return this.resultColumnCaseInsensitive;
   }
 
+  public boolean isAdaptivePrefetch()
+  {
+    return this.adaptivePrefetch;
+  }
+
   public String getDatabase()
   {
     return this.database;
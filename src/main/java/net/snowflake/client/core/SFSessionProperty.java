@@ -5,6 +5,7 @@
 package net.snowflake.client.core;
 
 import net.snowflake.client.jdbc.ErrorCode;
+import net.snowflake.client.jdbc.SnowflakeMetadataCache;
 
 import java.security.PrivateKey;
 import java.util.regex.Pattern;
@@ -29,6 +30,8 @@ public enum SFSessionProperty
   TOKEN("token", false, String.class),
   ID_TOKEN("id_token", false, String.class),
   ID_TOKEN_PASSWORD("id_token_password", false, String.class),
+  // set by the connection pool to issue a session from the given id token
+  ISSUE_SESSION_FROM_ID_TOKEN("issueSessionFromIdToken", false, Boolean.class),
   ROLE("role", false, String.class),
   AUTHENTICATOR("authenticator", false, String.class),
   OKTA_USERNAME("oktausername", false, String.class),
@@ -53,7 +56,17 @@ public enum SFSessionProperty
   PROXY_USER("proxyUser", false, String.class),
   PROXY_PASSWORD("proxyPassword", false, String.class),
   NON_PROXY_HOSTS("nonProxyHosts", false, String.class),
-  VALIDATE_DEFAULT_PARAMETERS("validateDefaultParameters", false, Boolean.class);
+  VALIDATE_DEFAULT_PARAMETERS("validateDefaultParameters", false, Boolean.class),
+  // DatabaseMetaData cache
+  METADATA_CACHE("metadataCache", false, SnowflakeMetadataCache.class),
+  METADATA_CACHE_TTL("metadataCacheTtl", false, Integer.class),
+  METADATA_CACHE_SIZE("metadataCacheSize", false, Integer.class),
+  // client side query result cache
+  QUERY_RESULT_CACHE_DIRECTORY("queryResultCacheDirectory", false, String.class),
+  QUERY_RESULT_CACHE_TTL("queryResultCacheTtl", false, Integer.class),
+  QUERY_RESULT_CACHE_SIZE("queryResultCacheSize", false, Integer.class),
+  // adjust the result chunk prefetch to the consumption rate
+  ADAPTIVE_PREFETCH("adaptivePrefetch", false, Boolean.class);
 
   // property key in string
   private String propertyKey;
@@ -5,11 +5,11 @@
 package net.snowflake.client.core;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import net.snowflake.client.core.BasicEvent.QueryState;
 import net.snowflake.client.core.bind.BindException;
 import net.snowflake.client.core.bind.BindUploader;
 import net.snowflake.client.jdbc.ErrorCode;
 import net.snowflake.client.jdbc.SnowflakeFileTransferAgent;
+import net.snowflake.client.jdbc.SnowflakeMetadataCache;
 import net.snowflake.client.jdbc.SnowflakeReauthenticationRequest;
 import net.snowflake.client.jdbc.SnowflakeSQLException;
 import net.snowflake.client.jdbc.telemetry.TelemetryData;
@@ -247,11 +247,43 @@ public class SFStatement
       throw new SQLException("connection is closed");
     }
 
-    Object result = executeHelper(sql,
-                                  StmtUtil.SF_MEDIA_TYPE,
-                                  parameterBindings,
-                                  describeOnly,
-                                  internal);
+    QueryResultCache queryResultCache = session.getQueryResultCache();
+    String resultCacheKey = null;
+    Object result = null;
+    long queryStartTime = System.currentTimeMillis();
+    if (queryResultCache != null && !describeOnly && !internal &&
+        !session.hasTemporaryObjects() &&
+        QueryResultCache.isCacheableQuery(sql))
+    {
+      resultCacheKey = QueryResultCache.key(
+          new String[]{session.getServerUrl(), session.getUser(),
+                       session.getRole(), session.getWarehouse(),
+                       session.getDatabase(), session.getSchema()},
+          session.getSessionParameters(), sql, parameterBindings);
+      if (resultCacheKey != null)
+      {
+        result = queryResultCache.get(resultCacheKey);
+        if (result != null)
+        {
+          logger.debug("Query result found in the client side cache");
+        }
+      }
+    }
+
+    if (result == null)
+    {
+      result = executeHelper(sql,
+                             StmtUtil.SF_MEDIA_TYPE,
+                             parameterBindings,
+                             describeOnly,
+                             internal);
+
+      if (resultCacheKey != null && result instanceof JsonNode &&
+          QueryResultCache.isCacheable((JsonNode) result))
+      {
+        queryResultCache.put(resultCacheKey, (JsonNode) result, queryStartTime);
+      }
+    }
 
     if (result == null)
     {
@@ -275,6 +307,10 @@ public class SFStatement
       resultSet = SFResultSetFactory.getResultSet(jsonResult, this, sortResult);
       childResults = ResultUtil.getChildResults(session, requestId, jsonResult);
 
+      invalidateMetadataCacheOnDDL();
+      invalidateQueryResultCacheOnUpdate(sql);
+      recordSessionStateChange();
+
       // if child results are available, skip over this result set and set the
       // current result to the first child's result.
       // we still construct the first result set for its side effects.
@@ -321,6 +357,93 @@ public class SFStatement
     return resultSet;
   }
 
+  /**
+   * DDL may change the objects returned by DatabaseMetaData, so drop the
+   * cached SHOW results of this session if the statement or any of the
+   * statements of a multi statement query is a DDL.
+   */
+  private void invalidateMetadataCacheOnDDL()
+  {
+    SnowflakeMetadataCache metadataCache = session.getMetadataCache();
+    if (metadataCache == null)
+    {
+      return;
+    }
+
+    boolean isDDL = resultSet.getStatementType() == SFStatementType.DDL;
+    for (SFChildResult childResult : childResults)
+    {
+      isDDL |= childResult.getType() == SFStatementType.DDL;
+    }
+
+    if (isDDL)
+    {
+      metadataCache.invalidateAll();
+    }
+  }
+
+  /**
+   * DML and DDL may change the results of cached queries, and ALTER SESSION
+   * may change how they are computed, so drop the cached query results if
+   * the statement or any of the statements of a multi statement query is
+   * one of them. A session which created temporary objects stops using the
+   * cache, since they may shadow the objects of other sessions.
+   *
+   * @param sql SQL text of the statement
+   */
+  private void invalidateQueryResultCacheOnUpdate(String sql)
+  {
+    QueryResultCache queryResultCache = session.getQueryResultCache();
+    if (queryResultCache == null)
+    {
+      return;
+    }
+
+    boolean isUpdate = isResultCacheInvalidating(resultSet.getStatementType());
+    for (SFChildResult childResult : childResults)
+    {
+      isUpdate |= isResultCacheInvalidating(childResult.getType());
+    }
+
+    if (isUpdate)
+    {
+      queryResultCache.invalidateAll();
+      if (QueryResultCache.createsTemporaryObject(sql))
+      {
+        session.setTemporaryObjectsCreated();
+      }
+    }
+  }
+
+  private static boolean isResultCacheInvalidating(SFStatementType type)
+  {
+    return type.isDML() || type.isDDL() || type == SFStatementType.ALTER_SESSION;
+  }
+
+  /**
+   * Flag the session if the statement or any of the statements of a multi
+   * statement query is ALTER SESSION or another SCL command such as SET,
+   * so that a connection pool does not hand the altered session out again.
+   */
+  private void recordSessionStateChange()
+  {
+    boolean isAltering = isSessionStateAltering(resultSet.getStatementType());
+    for (SFChildResult childResult : childResults)
+    {
+      isAltering |= isSessionStateAltering(childResult.getType());
+    }
+
+    if (isAltering)
+    {
+      session.setSessionStateAltered(true);
+    }
+  }
+
+  private static boolean isSessionStateAltering(SFStatementType type)
+  {
+    return type == SFStatementType.ALTER_SESSION || type == SFStatementType.SCL;
+  }
+
   /**
    * Set a time bomb to cancel the outstanding query when timeout is reached.
    *
@@ -408,7 +531,7 @@ public class SFStatement
       }
 
       EventUtil.triggerStateTransition(BasicEvent.QueryState.QUERY_STARTED,
-                                       String.format(QueryState.QUERY_STARTED.getArgString(), requestId));
+                                       requestId);
 
       // if there are a large number of bind values, we should upload them to stage
       // instead of passing them in the payload (if enabled)
@@ -542,6 +665,9 @@ public class SFStatement
       }
       while (sessionRenewed && !canceling.get());
 
+      // the query kept the session alive, its heartbeat can be skipped
+      session.recordActivity();
+
       // Debugging/Testing for incidents
       if (Boolean.TRUE.toString().equalsIgnoreCase(systemGetProperty("snowflake.enable_incident_test1")))
       {
@@ -838,7 +964,7 @@ public class SFStatement
     {
       EventUtil.triggerStateTransition(
           BasicEvent.QueryState.QUERY_ENDED,
-          String.format(QueryState.QUERY_ENDED.getArgString(), requestId));
+          requestId);
     }
 
     resultSet = null;
@@ -15,6 +15,8 @@ import com.nimbusds.jose.JWSVerifier;
 import com.nimbusds.jose.crypto.RSASSAVerifier;
 import com.nimbusds.jwt.SignedJWT;
 import net.snowflake.client.jdbc.OCSPErrorCode;
+import net.snowflake.client.jdbc.metrics.Histogram;
+import net.snowflake.client.jdbc.metrics.MetricsRegistry;
 import net.snowflake.client.log.SFLogger;
 import net.snowflake.client.log.SFLoggerFactory;
 import net.snowflake.client.util.DecorrelatedJitterBackoff;
@@ -81,6 +83,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.lang.ref.WeakReference;
 import java.math.BigInteger;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -103,6 +106,7 @@ import java.text.MessageFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.HashSet;
@@ -111,7 +115,16 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TimeZone;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import static net.snowflake.client.jdbc.SnowflakeUtil.systemGetProperty;
@@ -162,6 +175,11 @@ public class SFTrustManager extends X509ExtendedTrustManager
    */
   private static final ObjectMapper OBJECT_MAPPER =
       ObjectMapperFactory.getObjectMapper();
+  /**
+   * Latency of the revocation checks of certificate chains
+   */
+  private static final Histogram ocspCheckLatency =
+      MetricsRegistry.getInstance().histogram("ocsp.check.micros");
   /**
    * System property name to specify cache directory.
    */
@@ -218,6 +236,28 @@ public class SFTrustManager extends X509ExtendedTrustManager
    * Maximum sleeping time in retry (ms)
    */
   private static final long MAX_SLEEPING_TIME_IN_MILLISECONDS = 16000L;
+  /**
+   * Maximum number of OCSP responses cached in memory
+   */
+  static final int OCSP_RESPONSE_CACHE_MAX_ENTRIES = 10000;
+  /**
+   * Maximum number of revocation checks of a certificate chain running in
+   * parallel across all threads
+   */
+  private static final int MAX_PARALLEL_REVOCATION_CHECKS = 16;
+  /**
+   * Interval of the background refresh of the cached OCSP responses
+   */
+  private static final long OCSP_RESPONSE_REFRESH_INTERVAL_IN_SECONDS = 300L;
+  /**
+   * Cached OCSP responses are refreshed this long before they expire
+   */
+  private static final long OCSP_RESPONSE_REFRESH_AHEAD_IN_SECONDS = 3600L;
+  /**
+   * System property to disable the background refresh of OCSP responses
+   */
+  private static final String OCSP_RESPONSE_REFRESH_DISABLED_PROP =
+      "net.snowflake.jdbc.ocspResponseRefreshDisabled";
   /**
    * Map from signature algorithm ASN1 object to the name.
    */
@@ -230,7 +270,33 @@ public class SFTrustManager extends X509ExtendedTrustManager
   /**
    * OCSP Response cache
    */
-  private final static Map<OcspResponseCacheKey, SFPair<Long, String>> OCSP_RESPONSE_CACHE = new ConcurrentHashMap<>();
+  final static Map<OcspResponseCacheKey, OcspResponseCacheEntry> OCSP_RESPONSE_CACHE = new ConcurrentHashMap<>();
+  /**
+   * OCSP requests in flight, so that threads checking the same certificate
+   * at the same time share a single request to the OCSP responder
+   */
+  final static Map<OcspResponseCacheKey, CompletableFuture<OCSPResp>> OCSP_RESPONSE_IN_FLIGHT =
+      new ConcurrentHashMap<>();
+  /**
+   * Certificates whose cached OCSP response is refreshed in the background.
+   * A target is dropped once its response leaves the cache or its trust
+   * manager is garbage collected.
+   */
+  final static Map<OcspResponseCacheKey, OcspRefreshTarget> OCSP_REFRESH_TARGETS =
+      new ConcurrentHashMap<>();
+  /**
+   * Executes the revocation checks of a certificate chain in parallel. The
+   * calling thread runs the check itself when all workers are busy.
+   */
+  private final static ThreadPoolExecutor REVOCATION_CHECK_EXECUTOR = new ThreadPoolExecutor(
+      0, MAX_PARALLEL_REVOCATION_CHECKS, 60L, TimeUnit.SECONDS,
+      new SynchronousQueue<>(), newDaemonThreadFactory("ocsp-revocation-check"),
+      new ThreadPoolExecutor.CallerRunsPolicy());
+  /**
+   * Scheduler of the background refresh, created on the first successful
+   * revocation check
+   */
+  private static volatile ScheduledExecutorService ocspResponseRefresher;
   /**
    * Date and timestamp format
    */
@@ -252,7 +318,7 @@ public class SFTrustManager extends X509ExtendedTrustManager
    * RootCA cache
    */
   private static Map<Integer, Certificate> ROOT_CA = new ConcurrentHashMap<>();
-  private final static AtomicBoolean WAS_CACHE_UPDATED = new AtomicBoolean();
+  final static AtomicBoolean WAS_CACHE_UPDATED = new AtomicBoolean();
   private final static AtomicBoolean WAS_CACHE_READ = new AtomicBoolean();
   /**
    * OCSP HTTP client
@@ -294,16 +360,6 @@ public class SFTrustManager extends X509ExtendedTrustManager
     OCSP_RESPONSE_CODE_TO_STRING.put(OCSPResp.UNAUTHORIZED, "unauthorized");
   }
 
-  static
-  {
-    // Add Bouncy Castle to the security provider. This is required to
-    // verify the signature on OCSP response and attached certificates.
-    if (Security.getProvider(BOUNCY_CASTLE_PROVIDER) == null)
-    {
-      Security.addProvider(new BouncyCastleProvider());
-    }
-  }
-
   static
   {
     DATE_FORMAT_UTC.setTimeZone(TimeZone.getTimeZone("UTC"));
@@ -358,6 +414,21 @@ public class SFTrustManager extends X509ExtendedTrustManager
     }
   }
 
+  /**
+   * Load the JVM trust store, the root CA certificates and the default OCSP
+   * response cache file ahead of the first connection. The cache file given
+   * to a trust manager created later is then not read.
+   */
+  static void preload()
+  {
+    getTrustManager(KeyManagerFactory.getDefaultAlgorithm());
+    BouncyCastleHolder.register();
+    if (!WAS_CACHE_READ.getAndSet(true))
+    {
+      readJsonStoreCache(fileCacheManager.readCacheFile());
+    }
+  }
+
   /**
    * Deletes OCSP response cache file from disk.
    */
@@ -508,7 +579,7 @@ public class SFTrustManager extends X509ExtendedTrustManager
    * @param elem A JSON element
    * @return OcspResponseCacheKey object
    */
-  private static SFPair<OcspResponseCacheKey, SFPair<Long, String>>
+  private static SFPair<OcspResponseCacheKey, OcspResponseCacheEntry>
   decodeCacheFromJSON(Map.Entry<String, JsonNode> elem) throws IOException
   {
     long currentTimeSecond = new Date().getTime() / 1000;
@@ -534,12 +605,12 @@ public class SFTrustManager extends X509ExtendedTrustManager
     if (currentTimeSecond - CACHE_EXPIRATION_IN_SECONDS <= producedAt)
     {
       // add cache
-      return SFPair.of(k, SFPair.of(producedAt, ocspResp));
+      return SFPair.of(k, new OcspResponseCacheEntry(producedAt, ocspResp));
     }
     else
     {
       // delete cache
-      return SFPair.of(k, SFPair.of(producedAt, null));
+      return SFPair.of(k, new OcspResponseCacheEntry(producedAt, null));
     }
   }
 
@@ -553,12 +624,12 @@ public class SFTrustManager extends X509ExtendedTrustManager
     try
     {
       ObjectNode out = OBJECT_MAPPER.createObjectNode();
-      for (Map.Entry<OcspResponseCacheKey, SFPair<Long, String>> elem :
+      for (Map.Entry<OcspResponseCacheKey, OcspResponseCacheEntry> elem :
           OCSP_RESPONSE_CACHE.entrySet())
       {
         OcspResponseCacheKey key = elem.getKey();
-        SFPair<Long, String> value0 = elem.getValue();
-        long currentTimeSecond = value0.left;
+        OcspResponseCacheEntry value0 = elem.getValue();
+        long currentTimeSecond = value0.cachedTimeSecond;
 
         DigestCalculator digest = new SHA1DigestCalculator();
         AlgorithmIdentifier algo = digest.getAlgorithmIdentifier();
@@ -568,7 +639,7 @@ public class SFTrustManager extends X509ExtendedTrustManager
         CertID cid = new CertID(algo, nameHash, keyHash, serialNumber);
         ArrayNode vout = OBJECT_MAPPER.createArrayNode();
         vout.add(currentTimeSecond);
-        vout.add(value0.right);
+        vout.add(value0.ocspRespB64);
         out.set(
             Base64.encodeBase64String(cid.toASN1Primitive().getEncoded()),
             vout);
@@ -593,12 +664,12 @@ public class SFTrustManager extends X509ExtendedTrustManager
     {
       for (Iterator<Map.Entry<String, JsonNode>> itr = m.fields(); itr.hasNext(); )
       {
-        SFPair<OcspResponseCacheKey, SFPair<Long, String>> ky =
+        SFPair<OcspResponseCacheKey, OcspResponseCacheEntry> ky =
             decodeCacheFromJSON(itr.next());
-        if (ky != null && ky.right != null && ky.right.right != null)
+        if (ky != null && ky.right != null && ky.right.ocspRespB64 != null)
         {
           // valid range. cache the result in memory
-          OCSP_RESPONSE_CACHE.put(ky.left, ky.right);
+          putOcspResponseCache(ky.left, ky.right);
           WAS_CACHE_UPDATED.set(true);
         }
         else if (ky != null && OCSP_RESPONSE_CACHE.containsKey(ky.left))
@@ -615,6 +686,96 @@ public class SFTrustManager extends X509ExtendedTrustManager
     }
   }
 
+  /**
+   * Adds an OCSP response to the cache, evicting the oldest responses if
+   * the cache is full.
+   *
+   * @param key   OCSP response cache key
+   * @param value cached OCSP response
+   */
+  static void putOcspResponseCache(OcspResponseCacheKey key,
+                                   OcspResponseCacheEntry value)
+  {
+    OCSP_RESPONSE_CACHE.put(key, value);
+    if (OCSP_RESPONSE_CACHE.size() > OCSP_RESPONSE_CACHE_MAX_ENTRIES)
+    {
+      evictOcspResponseCache();
+    }
+  }
+
+  /**
+   * Evicts the expired responses and then the oldest ones until the cache
+   * is 10% below its capacity, so that eviction does not run on every put.
+   */
+  private synchronized static void evictOcspResponseCache()
+  {
+    if (OCSP_RESPONSE_CACHE.size() <= OCSP_RESPONSE_CACHE_MAX_ENTRIES)
+    {
+      return;
+    }
+    long expiredTimeSecond = new Date().getTime() / 1000L - CACHE_EXPIRATION_IN_SECONDS;
+    int targetSize = OCSP_RESPONSE_CACHE_MAX_ENTRIES * 9 / 10;
+
+    List<Map.Entry<OcspResponseCacheKey, OcspResponseCacheEntry>> entries =
+        new ArrayList<>(OCSP_RESPONSE_CACHE.entrySet());
+    entries.sort(Comparator.comparingLong(e -> e.getValue().cachedTimeSecond));
+    int evicted = 0;
+    for (Map.Entry<OcspResponseCacheKey, OcspResponseCacheEntry> elem : entries)
+    {
+      if (OCSP_RESPONSE_CACHE.size() <= targetSize &&
+          elem.getValue().cachedTimeSecond >= expiredTimeSecond)
+      {
+        break;
+      }
+      if (OCSP_RESPONSE_CACHE.remove(elem.getKey(), elem.getValue()))
+      {
+        OCSP_REFRESH_TARGETS.remove(elem.getKey());
+        evicted++;
+      }
+    }
+    LOGGER.debug("Evicted {} OCSP responses from the cache.", evicted);
+    WAS_CACHE_UPDATED.set(true);
+  }
+
+  private static ThreadFactory newDaemonThreadFactory(final String name)
+  {
+    return new ThreadFactory()
+    {
+      @Override
+      public Thread newThread(Runnable runnable)
+      {
+        Thread thread = Executors.defaultThreadFactory().newThread(runnable);
+        thread.setName(name + " (" + thread.getId() + ")");
+        thread.setDaemon(true);
+        return thread;
+      }
+    };
+  }
+
+  /**
+   * Adds Bouncy Castle to the security providers on the first OCSP signature
+   * verification rather than when the class is loaded, since loading the
+   * provider loads a few hundred classes which a connection served from the
+   * OCSP response cache, or not checking OCSP, never uses.
+   */
+  private static class BouncyCastleHolder
+  {
+    static
+    {
+      // Add Bouncy Castle to the security provider. This is required to
+      // verify the signature on OCSP response and attached certificates.
+      if (Security.getProvider(BOUNCY_CASTLE_PROVIDER) == null)
+      {
+        Security.addProvider(new BouncyCastleProvider());
+      }
+    }
+
+    static void register()
+    {
+      // the static initializer runs once, on the first call
+    }
+  }
+
   /**
    * Verifies the signature of the data
    *
@@ -636,6 +797,7 @@ public class SFTrustManager extends X509ExtendedTrustManager
         throw new NoSuchAlgorithmException(
             String.format("Unsupported signature OID. OID: %s", idf));
       }
+      BouncyCastleHolder.register();
       Signature signer = Signature.getInstance(
           algorithm, BouncyCastleProvider.PROVIDER_NAME);
 
@@ -844,7 +1006,7 @@ public class SFTrustManager extends X509ExtendedTrustManager
    * @param algorithm algorithm.
    * @return TrustManager object.
    */
-  private X509TrustManager getTrustManager(String algorithm)
+  private static X509TrustManager getTrustManager(String algorithm)
   {
     try
     {
@@ -943,6 +1105,20 @@ public class SFTrustManager extends X509ExtendedTrustManager
    * @throws CertificateException if any certificate validation fails
    */
   void validateRevocationStatus(X509Certificate[] chain, String peerHost) throws CertificateException
+  {
+    long startTime = System.nanoTime();
+    try
+    {
+      validateRevocationStatusInternal(chain, peerHost);
+    }
+    finally
+    {
+      ocspCheckLatency.recordElapsedSince(startTime);
+    }
+  }
+
+  private void validateRevocationStatusInternal(X509Certificate[] chain, String peerHost)
+  throws CertificateException
   {
     final List<Certificate> bcChain = convertToBouncyCastleCertificate(chain);
     final List<SFPair<Certificate, Certificate>> pairIssuerSubjectList =
@@ -1001,14 +1177,72 @@ public class SFTrustManager extends X509ExtendedTrustManager
    * @param pairIssuerSubjectList a list of pair of issuer and subject certificates.
    * @throws CertificateException raises if any error occurs.
    */
-  private void executeRevocationStatusChecks(
+  void executeRevocationStatusChecks(
       List<SFPair<Certificate, Certificate>> pairIssuerSubjectList, String peerHost)
   throws CertificateException
   {
-    long currentTimeSecond = new Date().getTime() / 1000L;
-    for (SFPair<Certificate, Certificate> pairIssuerSubject : pairIssuerSubjectList)
+    final long currentTimeSecond = new Date().getTime() / 1000L;
+    if (pairIssuerSubjectList.size() <= 1)
     {
-      executeOneRevocationStatusCheck(pairIssuerSubject, currentTimeSecond, peerHost);
+      for (SFPair<Certificate, Certificate> pairIssuerSubject : pairIssuerSubjectList)
+      {
+        executeOneRevocationStatusCheck(pairIssuerSubject, currentTimeSecond, peerHost);
+      }
+      return;
+    }
+
+    // check the rest of the chain in parallel with the first pair so that
+    // the handshake waits for the slowest OCSP responder instead of the sum
+    // of all of them.
+    List<Future<Void>> futures = new ArrayList<>();
+    for (final SFPair<Certificate, Certificate> pairIssuerSubject :
+        pairIssuerSubjectList.subList(1, pairIssuerSubjectList.size()))
+    {
+      futures.add(REVOCATION_CHECK_EXECUTOR.submit(() -> {
+        executeOneRevocationStatusCheck(pairIssuerSubject, currentTimeSecond, peerHost);
+        return null;
+      }));
+    }
+
+    CertificateException error = null;
+    try
+    {
+      executeOneRevocationStatusCheck(pairIssuerSubjectList.get(0), currentTimeSecond, peerHost);
+    }
+    catch (CertificateException ex)
+    {
+      error = ex;
+    }
+
+    for (Future<Void> future : futures)
+    {
+      try
+      {
+        future.get();
+      }
+      catch (ExecutionException ex)
+      {
+        if (error == null)
+        {
+          error = ex.getCause() instanceof CertificateException ?
+                  (CertificateException) ex.getCause() :
+                  new CertificateException(ex.getCause());
+        }
+      }
+      catch (InterruptedException ex)
+      {
+        Thread.currentThread().interrupt();
+        if (error == null)
+        {
+          error = new CertificateException(
+              "Interrupted while checking the certificate revocation status.", ex);
+        }
+      }
+    }
+
+    if (error != null)
+    {
+      throw error;
     }
   }
 
@@ -1027,7 +1261,7 @@ public class SFTrustManager extends X509ExtendedTrustManager
    * @param currentTimeSecond the current timestamp
    * @throws CertificateException if certificate exception is raised.
    */
-  private void executeOneRevocationStatusCheck(
+  void executeOneRevocationStatusCheck(
       SFPair<Certificate, Certificate> pairIssuerSubject, long currentTimeSecond,
       String peerHost)
   throws CertificateException
@@ -1076,7 +1310,7 @@ public class SFTrustManager extends X509ExtendedTrustManager
               break;
             }
           }
-          SFPair<Long, String> value0 = OCSP_RESPONSE_CACHE.get(keyOcspResponse);
+          OcspResponseCacheEntry value0 = OCSP_RESPONSE_CACHE.get(keyOcspResponse);
           OCSPResp ocspResp;
           try
           {
@@ -1085,16 +1319,14 @@ public class SFTrustManager extends X509ExtendedTrustManager
               if (value0 == null)
               {
                 telemetryData.setCacheHit(false);
-                ocspResp = fetchOcspResponse(pairIssuerSubject, req,
-                                             encodeCacheKey(keyOcspResponse), peerHost,
-                                             telemetryData);
+                ocspResp = fetchOcspResponseOnce(pairIssuerSubject, req,
+                                                 keyOcspResponse, peerHost,
+                                                 telemetryData);
 
-                OCSP_RESPONSE_CACHE.put(
-                    keyOcspResponse, SFPair.of(currentTimeSecond,
-                                               ocspResponseToB64(ocspResp)));
+                value0 = new OcspResponseCacheEntry(
+                    currentTimeSecond, ocspResponseToB64(ocspResp), ocspResp);
+                putOcspResponseCache(keyOcspResponse, value0);
                 WAS_CACHE_UPDATED.set(true);
-                value0 = SFPair.of(currentTimeSecond,
-                                   ocspResponseToB64(ocspResp));
               }
               else
               {
@@ -1113,7 +1345,7 @@ public class SFTrustManager extends X509ExtendedTrustManager
                          CertificateIDToString(req.getRequestList()[0].getCertID()));
             try
             {
-              validateRevocationStatusMain(pairIssuerSubject, value0.right);
+              validateRevocationStatusMain(pairIssuerSubject, value0);
               success = true;
               break;
             }
@@ -1124,7 +1356,7 @@ public class SFTrustManager extends X509ExtendedTrustManager
                 throw ex;
               }
               if (ssdManager.getSSDSupportStatus() &&
-                  this.processOCSPBypassSSD(value0.right, keyOcspResponse, peerHost))
+                  this.processOCSPBypassSSD(value0.ocspRespB64, keyOcspResponse, peerHost))
               {
                 // Failed processing OCSP response. Try processing cache value as SSD
                 success = true;
@@ -1210,6 +1442,183 @@ public class SFTrustManager extends X509ExtendedTrustManager
         throw error;
       }
     }
+    else if (OCSP_RESPONSE_CACHE.containsKey(keyOcspResponse))
+    {
+      OCSP_REFRESH_TARGETS.put(keyOcspResponse,
+                               new OcspRefreshTarget(this, pairIssuerSubject, req, peerHost));
+      startOcspResponseRefresher();
+    }
+  }
+
+  /**
+   * Fetches the OCSP response of a certificate. Threads asking for the same
+   * certificate at the same time wait for the request issued by the first
+   * one instead of sending their own.
+   *
+   * @param pairIssuerSubject a pair of issuer and subject certificates
+   * @param req               OCSP Request object
+   * @param keyOcspResponse   OCSP response cache key of the certificate
+   * @return OCSP Response object
+   * @throws CertificateEncodingException if the response cannot be fetched
+   */
+  OCSPResp fetchOcspResponseOnce(
+      SFPair<Certificate, Certificate> pairIssuerSubject, OCSPReq req,
+      OcspResponseCacheKey keyOcspResponse, String peerHost,
+      OCSPTelemetryData telemetryData)
+  throws CertificateEncodingException
+  {
+    CompletableFuture<OCSPResp> future = new CompletableFuture<>();
+    CompletableFuture<OCSPResp> inFlight =
+        OCSP_RESPONSE_IN_FLIGHT.putIfAbsent(keyOcspResponse, future);
+    if (inFlight != null)
+    {
+      LOGGER.debug("Waiting for the in-flight OCSP request of the same certificate.");
+      try
+      {
+        return inFlight.get();
+      }
+      catch (ExecutionException ex)
+      {
+        if (ex.getCause() instanceof CertificateEncodingException)
+        {
+          throw (CertificateEncodingException) ex.getCause();
+        }
+        throw new CertificateEncodingException(
+            "Failed to get OCSP response.", ex.getCause());
+      }
+      catch (InterruptedException ex)
+      {
+        Thread.currentThread().interrupt();
+        throw new CertificateEncodingException(
+            "Interrupted while waiting for the OCSP response.", ex);
+      }
+    }
+
+    try
+    {
+      OCSPResp ocspResp = fetchOcspResponse(pairIssuerSubject, req,
+                                            encodeCacheKey(keyOcspResponse),
+                                            peerHost, telemetryData);
+      future.complete(ocspResp);
+      return ocspResp;
+    }
+    catch (Throwable ex)
+    {
+      future.completeExceptionally(ex);
+      throw ex;
+    }
+    finally
+    {
+      OCSP_RESPONSE_IN_FLIGHT.remove(keyOcspResponse, future);
+    }
+  }
+
+  /**
+   * Starts the background refresh of the cached OCSP responses unless it is
+   * disabled by the system property.
+   */
+  private static void startOcspResponseRefresher()
+  {
+    if (ocspResponseRefresher != null ||
+        Boolean.parseBoolean(systemGetProperty(OCSP_RESPONSE_REFRESH_DISABLED_PROP)))
+    {
+      return;
+    }
+    synchronized (OCSP_REFRESH_TARGETS)
+    {
+      if (ocspResponseRefresher == null)
+      {
+        LOGGER.debug("Starting the background refresh of OCSP responses.");
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            newDaemonThreadFactory("ocsp-response-refresh"));
+        scheduler.scheduleWithFixedDelay(
+            SFTrustManager::refreshOcspResponses,
+            OCSP_RESPONSE_REFRESH_INTERVAL_IN_SECONDS,
+            OCSP_RESPONSE_REFRESH_INTERVAL_IN_SECONDS,
+            TimeUnit.SECONDS);
+        ocspResponseRefresher = scheduler;
+      }
+    }
+  }
+
+  /**
+   * Renews the cached OCSP responses that are about to expire, so that
+   * handshakes keep hitting the cache instead of waiting for the OCSP
+   * responder.
+   */
+  private static void refreshOcspResponses()
+  {
+    try
+    {
+      refreshDueOcspResponses(new Date().getTime() / 1000L);
+      if (WAS_CACHE_UPDATED.getAndSet(false))
+      {
+        JsonNode input = encodeCacheToJSON();
+        fileCacheManager.writeCacheFile(input);
+      }
+    }
+    catch (Throwable ex)
+    {
+      LOGGER.debug("Failed to refresh OCSP responses: {}", ex.getMessage());
+    }
+  }
+
+  /**
+   * Renews the cached OCSP responses due for refresh and drops the targets
+   * whose response left the cache or whose trust manager is gone.
+   *
+   * @param currentTimeSecond current time in seconds
+   */
+  static void refreshDueOcspResponses(long currentTimeSecond)
+  {
+    for (Map.Entry<OcspResponseCacheKey, OcspRefreshTarget> elem :
+        OCSP_REFRESH_TARGETS.entrySet())
+    {
+      OcspResponseCacheEntry value0 = OCSP_RESPONSE_CACHE.get(elem.getKey());
+      SFTrustManager trustManager = elem.getValue().trustManager.get();
+      if (value0 == null || value0.ocspRespB64 == null || trustManager == null)
+      {
+        OCSP_REFRESH_TARGETS.remove(elem.getKey(), elem.getValue());
+      }
+      else if (trustManager.isDueForRefresh(value0, currentTimeSecond))
+      {
+        elem.getValue().refresh(trustManager, elem.getKey(), currentTimeSecond);
+      }
+    }
+  }
+
+  /**
+   * A cached response is due for refresh shortly before the earliest of its
+   * nextUpdate and the expiration of the cache entry.
+   */
+  boolean isDueForRefresh(OcspResponseCacheEntry value0, long currentTimeSecond)
+  {
+    long expirationTimeSecond = value0.cachedTimeSecond + CACHE_EXPIRATION_IN_SECONDS;
+    long refreshAheadSecond = OCSP_RESPONSE_REFRESH_AHEAD_IN_SECONDS;
+    try
+    {
+      OCSPResp ocspResp = value0.getOcspResp();
+      if (ocspResp != null)
+      {
+        SingleResp singleResp =
+            ((BasicOCSPResp) ocspResp.getResponseObject()).getResponses()[0];
+        if (singleResp.getNextUpdate() != null)
+        {
+          long thisUpdateSecond = singleResp.getThisUpdate().getTime() / 1000L;
+          long nextUpdateSecond = singleResp.getNextUpdate().getTime() / 1000L;
+          expirationTimeSecond = Math.min(expirationTimeSecond, nextUpdateSecond);
+          // short lived responses are refreshed in the second half of their
+          // validity
+          refreshAheadSecond = Math.min(refreshAheadSecond,
+                                        (nextUpdateSecond - thisUpdateSecond) / 2);
+        }
+      }
+    }
+    catch (OCSPException | RuntimeException ex)
+    {
+      LOGGER.debug("Failed to decode the cached OCSP response: {}", ex.getMessage());
+    }
+    return currentTimeSecond >= expirationTimeSecond - refreshAheadSecond;
   }
 
   /*
@@ -1218,7 +1627,7 @@ public class SFTrustManager extends X509ExtendedTrustManager
   private boolean checkSSD(OcspResponseCacheKey keyOcspResponse, String peerHost)
   {
     String hostSpecSSD;
-    SFPair<Long, String> resp = OCSP_RESPONSE_CACHE.get(ssdManager.getWildCardCertId());
+    OcspResponseCacheEntry resp = OCSP_RESPONSE_CACHE.get(ssdManager.getWildCardCertId());
     if ((hostSpecSSD = ssdManager.getSSDFromCache()) != null)
     {
       boolean retval = this.processOCSPBypassSSD(hostSpecSSD, keyOcspResponse, peerHost);
@@ -1234,12 +1643,12 @@ public class SFTrustManager extends X509ExtendedTrustManager
         ssdManager.clearSSDCache();
       }
     }
-    else if (resp.right != null)
+    else if (resp.ocspRespB64 != null)
     {
       /*
        * Process WildCard SSD if present
        */
-      if (this.processOCSPBypassSSD(resp.right, ssdManager.getWildCardCertId(), "*"))
+      if (this.processOCSPBypassSSD(resp.ocspRespB64, ssdManager.getWildCardCertId(), "*"))
       {
         return true;
       }
@@ -1278,14 +1687,14 @@ public class SFTrustManager extends X509ExtendedTrustManager
             cid.getIssuerKeyHash().getEncoded(),
             cid.getSerialNumber().getValue());
 
-        SFPair<Long, String> res = OCSP_RESPONSE_CACHE.get(k);
+        OcspResponseCacheEntry res = OCSP_RESPONSE_CACHE.get(k);
         if (res == null)
         {
           LOGGER.debug("Not all OCSP responses for the certificate is in the cache.");
           isCached = false;
           break;
         }
-        else if (currentTimeSecond - CACHE_EXPIRATION_IN_SECONDS > res.left)
+        else if (currentTimeSecond - CACHE_EXPIRATION_IN_SECONDS > res.cachedTimeSecond)
         {
           LOGGER.debug("Cache for CertID expired.");
           isCached = false;
@@ -1295,7 +1704,7 @@ public class SFTrustManager extends X509ExtendedTrustManager
         {
           try
           {
-            validateRevocationStatusMain(pairIssuerSubject, res.right);
+            validateRevocationStatusMain(pairIssuerSubject, res);
           }
           catch (SFOCSPException ex)
           {
@@ -1398,7 +1807,7 @@ public class SFTrustManager extends X509ExtendedTrustManager
    * @return OCSP Response object
    * @throws CertificateEncodingException if any other error occurs
    */
-  private OCSPResp fetchOcspResponse(
+  OCSPResp fetchOcspResponse(
       SFPair<Certificate, Certificate> pairIssuerSubject, OCSPReq req,
       String cid_enc, String hname, OCSPTelemetryData telemetryData)
   throws CertificateEncodingException
@@ -1572,25 +1981,34 @@ public class SFTrustManager extends X509ExtendedTrustManager
   }
 
   /**
-   * Validates the certificate revocation status
+   * Validates the certificate revocation status. A response which was
+   * verified before is only checked against the time range in which it is
+   * valid: the entry is cached by the certificate ID, which includes the
+   * hash of the issuer public key the response was verified with.
    *
    * @param pairIssuerSubject a pair of issuer and subject certificates
-   * @param ocspRespB64       Base64 encoded OCSP Response object
+   * @param cachedResp        OCSP Response cache entry
    * @throws SFOCSPException raises if any other error occurs
    */
-  private void validateRevocationStatusMain(
+  void validateRevocationStatusMain(
       SFPair<Certificate, Certificate> pairIssuerSubject,
-      String ocspRespB64) throws SFOCSPException
+      OcspResponseCacheEntry cachedResp) throws SFOCSPException
   {
+    Date currentTime = new Date();
+    if (cachedResp.isVerifiedAt(currentTime.getTime())
+        && !isAnyValidationTestParameterEnabled())
+    {
+      LOGGER.debug("OK. The OCSP response was verified before.");
+      return;
+    }
     try
     {
-      OCSPResp ocspResp = b64ToOCSPResp(ocspRespB64);
+      OCSPResp ocspResp = cachedResp.getOcspResp();
       if (ocspResp == null)
       {
         throw new SFOCSPException(OCSPErrorCode.INVALID_OCSP_RESPONSE,
                                   "OCSP response is null. The content is invalid.");
       }
-      Date currentTime = new Date();
       BasicOCSPResp basicOcspResp = (BasicOCSPResp) (ocspResp.getResponseObject());
       X509CertificateHolder[] attachedCerts = basicOcspResp.getCerts();
       X509CertificateHolder signVerifyCert;
@@ -1653,6 +2071,8 @@ public class SFTrustManager extends X509ExtendedTrustManager
       }
 
       validateBasicOcspResponse(currentTime, basicOcspResp);
+      cachedResp.setVerified(basicOcspResp,
+                             attachedCerts.length > 0 ? signVerifyCert : null);
     }
     catch (IOException | OCSPException ex)
     {
@@ -1661,6 +2081,17 @@ public class SFTrustManager extends X509ExtendedTrustManager
     }
   }
 
+  /**
+   * Are the test parameters making the validation of a response fail
+   * enabled? A response verified before is then validated again.
+   */
+  private boolean isAnyValidationTestParameterEnabled()
+  {
+    return isEnabledSystemTestParameter(SF_OCSP_TEST_INVALID_SIGNING_CERT) ||
+           isEnabledSystemTestParameter(SF_OCSP_TEST_INJECT_UNKNOWN_STATUS) ||
+           checkOCSPResponseValidityErrorParameter();
+  }
+
   private void checkInvalidSigningCertTestParameter() throws SFOCSPException
   {
     if (isEnabledSystemTestParameter(SF_OCSP_TEST_INVALID_SIGNING_CERT))
@@ -2069,7 +2500,7 @@ public class SFTrustManager extends X509ExtendedTrustManager
     }
   }
 
-  private OCSPResp b64ToOCSPResp(String ocspRespB64)
+  private static OCSPResp b64ToOCSPResp(String ocspRespB64)
   {
     try
     {
@@ -2137,6 +2568,160 @@ public class SFTrustManager extends X509ExtendedTrustManager
     }
   }
 
+  /**
+   * Certificate whose OCSP response is refreshed in the background, along
+   * with the trust manager that checked it. The trust manager is only
+   * weakly referenced so that the refresh does not keep it alive.
+   */
+  static class OcspRefreshTarget
+  {
+    private final WeakReference<SFTrustManager> trustManager;
+    private final SFPair<Certificate, Certificate> pairIssuerSubject;
+    private final OCSPReq req;
+    private final String peerHost;
+
+    OcspRefreshTarget(SFTrustManager trustManager,
+                      SFPair<Certificate, Certificate> pairIssuerSubject,
+                      OCSPReq req,
+                      String peerHost)
+    {
+      this.trustManager = new WeakReference<>(trustManager);
+      this.pairIssuerSubject = pairIssuerSubject;
+      this.req = req;
+      this.peerHost = peerHost;
+    }
+
+    /**
+     * Fetches a new OCSP response and replaces the cached one if it is
+     * valid. A revoked certificate is dropped from the cache so that the
+     * next handshake fails the revocation check.
+     */
+    void refresh(SFTrustManager trustManager,
+                 OcspResponseCacheKey keyOcspResponse,
+                 long currentTimeSecond)
+    {
+      try
+      {
+        OCSPResp ocspResp = trustManager.fetchOcspResponseOnce(
+            pairIssuerSubject, req, keyOcspResponse, peerHost,
+            new OCSPTelemetryData());
+        OcspResponseCacheEntry value = new OcspResponseCacheEntry(
+            currentTimeSecond, trustManager.ocspResponseToB64(ocspResp), ocspResp);
+        trustManager.validateRevocationStatusMain(pairIssuerSubject, value);
+        putOcspResponseCache(keyOcspResponse, value);
+        WAS_CACHE_UPDATED.set(true);
+        LOGGER.debug("Refreshed OCSP response. {}", keyOcspResponse);
+      }
+      catch (SFOCSPException ex)
+      {
+        if (ex.getErrorCode() == OCSPErrorCode.CERTIFICATE_STATUS_REVOKED)
+        {
+          LOGGER.debug("Certificate has been revoked. Removing it from the cache. {}",
+                       keyOcspResponse);
+          OCSP_RESPONSE_CACHE.remove(keyOcspResponse);
+          OCSP_REFRESH_TARGETS.remove(keyOcspResponse);
+          WAS_CACHE_UPDATED.set(true);
+        }
+        else
+        {
+          LOGGER.debug("Failed to refresh OCSP response: {}", ex.getMessage());
+        }
+      }
+      catch (Throwable ex)
+      {
+        LOGGER.debug("Failed to refresh OCSP response: {}", ex.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Cached OCSP response. The Base64 encoded response is the form stored in
+   * the cache file. The response is decoded once, on first use, and the
+   * time range in which it is valid is kept once it is verified, so that
+   * the following checks of the certificate do not decode the response and
+   * verify its signature again.
+   */
+  static class OcspResponseCacheEntry
+  {
+    // time the response was fetched, in seconds
+    final long cachedTimeSecond;
+    final String ocspRespB64;
+
+    private volatile OCSPResp ocspResp;
+
+    // time range in which the verified response is valid, in milliseconds
+    private volatile long validFromMillis = Long.MAX_VALUE;
+    private volatile long validUntilMillis = Long.MIN_VALUE;
+
+    OcspResponseCacheEntry(long cachedTimeSecond, String ocspRespB64)
+    {
+      this(cachedTimeSecond, ocspRespB64, null);
+    }
+
+    OcspResponseCacheEntry(long cachedTimeSecond, String ocspRespB64,
+                           OCSPResp ocspResp)
+    {
+      this.cachedTimeSecond = cachedTimeSecond;
+      this.ocspRespB64 = ocspRespB64;
+      this.ocspResp = ocspResp;
+    }
+
+    /**
+     * @return the decoded response, or null if it cannot be decoded
+     */
+    OCSPResp getOcspResp()
+    {
+      if (ocspResp == null && ocspRespB64 != null)
+      {
+        // racing threads decode the same response
+        ocspResp = b64ToOCSPResp(ocspRespB64);
+      }
+      return ocspResp;
+    }
+
+    /**
+     * Keeps the time range in which the verified response is valid: the
+     * validity of the signing certificate and of every single response.
+     *
+     * @param basicOcspResp  verified response
+     * @param signingCert    certificate attached to the response, or null
+     */
+    void setVerified(BasicOCSPResp basicOcspResp,
+                     X509CertificateHolder signingCert)
+    {
+      long validFrom = Long.MIN_VALUE;
+      long validUntil = Long.MAX_VALUE;
+      if (signingCert != null)
+      {
+        validFrom = signingCert.getNotBefore().getTime();
+        validUntil = signingCert.getNotAfter().getTime();
+      }
+      for (SingleResp singleResp : basicOcspResp.getResponses())
+      {
+        Date thisUpdate = singleResp.getThisUpdate();
+        Date nextUpdate = singleResp.getNextUpdate();
+        if (nextUpdate == null)
+        {
+          // validated every time
+          return;
+        }
+        validFrom = Math.max(validFrom,
+                             thisUpdate.getTime() - MAX_CLOCK_SKEW_IN_MILLISECONDS);
+        validUntil = Math.min(validUntil,
+                              nextUpdate.getTime() +
+                              calculateTolerableVadility(thisUpdate, nextUpdate));
+      }
+      validFromMillis = validFrom;
+      validUntilMillis = validUntil;
+    }
+
+    boolean isVerifiedAt(long currentTimeMillis)
+    {
+      return validFromMillis <= currentTimeMillis &&
+             currentTimeMillis <= validUntilMillis;
+    }
+  }
+
   /**
    * OCSP response cache key object
    */
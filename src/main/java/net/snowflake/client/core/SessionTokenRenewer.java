@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2012-2019 Snowflake Computing Inc. All rights reserved.
+ */
+
+package net.snowflake.client.core;
+
+import net.snowflake.client.jdbc.metrics.Counter;
+import net.snowflake.client.jdbc.metrics.MetricsRegistry;
+import net.snowflake.client.log.SFLogger;
+import net.snowflake.client.log.SFLoggerFactory;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static net.snowflake.client.jdbc.SnowflakeUtil.systemGetProperty;
+
+/**
+ * Renews the session tokens on a background thread shortly before they
+ * expire, so that statements do not have to wait for a renewal after the
+ * server rejected an expired token.
+ * <p>
+ * The renewal goes through SFSession.renewSession, which only renews if the
+ * token has not been renewed by another thread in the meantime, so a
+ * statement racing with the background renewal does not renew twice. A
+ * failed renewal is only logged: the next statement gets the expiration
+ * error and renews, or reauthenticates, as before.
+ * <p>
+ * A single scheduler thread only times the renewals; the renewal requests
+ * run on a small pool, so a slow renewal does not delay the renewal of the
+ * other sessions.
+ * <p>
+ * Disabled unless the net.snowflake.jdbc.proactiveTokenRenewal system
+ * property is true.
+ */
+class SessionTokenRenewer
+{
+  private static final SFLogger logger =
+      SFLoggerFactory.getLogger(SessionTokenRenewer.class);
+
+  static final String PROACTIVE_RENEWAL_PROPERTY =
+      "net.snowflake.jdbc.proactiveTokenRenewal";
+
+  // fraction of the token validity after which the token is renewed
+  private static final double RENEW_AFTER = 0.9;
+
+  // maximum number of renewal requests running in parallel
+  private static final int RENEWAL_PARALLELISM = 4;
+
+  private static final Counter renewals =
+      MetricsRegistry.getInstance().counter("session.backgroundRenewals");
+
+  private static final Counter failedRenewals =
+      MetricsRegistry.getInstance().counter("session.backgroundRenewalsFailed");
+
+  private static final SessionTokenRenewer instance = new SessionTokenRenewer(
+      Boolean.parseBoolean(systemGetProperty(PROACTIVE_RENEWAL_PROPERTY)));
+
+  private final boolean enabled;
+
+  private ScheduledExecutorService scheduler;
+
+  private Executor renewalPool;
+
+  static SessionTokenRenewer getInstance()
+  {
+    return instance;
+  }
+
+  SessionTokenRenewer(boolean enabled)
+  {
+    this.enabled = enabled;
+  }
+
+  /**
+   * Schedule the renewal of a session token
+   *
+   * @param session           session
+   * @param sessionToken      token to renew
+   * @param validityInSeconds validity of the token, 0 if unknown
+   * @return the scheduled renewal, or null if no renewal was scheduled
+   */
+  ScheduledFuture<?> schedule(SFSession session, String sessionToken,
+                              long validityInSeconds)
+  {
+    if (!enabled || validityInSeconds <= 0)
+    {
+      return null;
+    }
+    long delayMillis = (long) (validityInSeconds * 1000 * RENEW_AFTER);
+    logger.debug("schedule session token renewal in {} ms", delayMillis);
+
+    // the renewal must not keep a session which is not closed from being
+    // garbage collected
+    WeakReference<SFSession> sessionRef = new WeakReference<>(session);
+    Executor pool = getRenewalPool();
+    return getScheduler().schedule(
+        () -> pool.execute(() -> renew(sessionRef, sessionToken)),
+        delayMillis, TimeUnit.MILLISECONDS);
+  }
+
+  private synchronized ScheduledExecutorService getScheduler()
+  {
+    if (scheduler == null)
+    {
+      scheduler = Executors.newSingleThreadScheduledExecutor(
+          daemonThreadFactory("session-token-renewer"));
+    }
+    return scheduler;
+  }
+
+  private synchronized Executor getRenewalPool()
+  {
+    if (renewalPool == null)
+    {
+      ThreadPoolExecutor pool = new ThreadPoolExecutor(
+          RENEWAL_PARALLELISM, RENEWAL_PARALLELISM, 60, TimeUnit.SECONDS,
+          new LinkedBlockingQueue<>(),
+          daemonThreadFactory("session-token-renewal"));
+      pool.allowCoreThreadTimeOut(true);
+      renewalPool = pool;
+    }
+    return renewalPool;
+  }
+
+  private static ThreadFactory daemonThreadFactory(final String name)
+  {
+    final AtomicInteger count = new AtomicInteger();
+    return runnable ->
+    {
+      Thread thread = new Thread(runnable,
+                                 name + " (" + count.incrementAndGet() + ")");
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  private static void renew(WeakReference<SFSession> sessionRef,
+                            String sessionToken)
+  {
+    SFSession session = sessionRef.get();
+    if (session == null || session.isClosed())
+    {
+      return;
+    }
+    try
+    {
+      // schedules the renewal of the new token
+      session.renewSession(sessionToken);
+      renewals.increment();
+    }
+    catch (Throwable ex)
+    {
+      failedRenewals.increment();
+      logger.warn("background session token renewal failed: {}",
+                  ex.getMessage());
+    }
+  }
+}
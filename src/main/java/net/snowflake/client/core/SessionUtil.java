@@ -251,7 +251,13 @@ public class SessionUtil
 
     boolean isClientStoreTemporaryCredential = asBoolean(
         loginInput.getSessionParameters().get(CLIENT_STORE_TEMPORARY_CREDENTIAL));
-    if (isClientStoreTemporaryCredential && CredentialManager.getInstance().fillCachedIdToken(loginInput))
+
+    // the connection pool issues sessions from the id token of another
+    // authenticated session, which takes precedence over the cached one
+    if ((loginInput.isIssueSessionFromIdToken() &&
+         !Strings.isNullOrEmpty(loginInput.getIdToken())) ||
+        (isClientStoreTemporaryCredential &&
+         CredentialManager.getInstance().fillCachedIdToken(loginInput)))
     {
       try
       {
@@ -300,6 +306,7 @@ public class SessionUtil
     String sessionWarehouse;
     String sessionId;
     long masterTokenValidityInSeconds;
+    long sessionTokenValidityInSeconds;
     String idToken;
     String databaseVersion = null;
     int databaseMajorVersion = 0;
@@ -586,6 +593,8 @@ public class SessionUtil
           jsonNode.path("data").path("idToken").asText());
       masterTokenValidityInSeconds = jsonNode.path("data").
           path("masterValidityInSeconds").asLong();
+      sessionTokenValidityInSeconds = jsonNode.path("data").
+          path("validityInSeconds").asLong();
       String serverVersion =
           jsonNode.path("data").path("serverVersion").asText();
       sessionId = jsonNode.path("data").path("sessionId").asText();
@@ -722,7 +731,8 @@ public class SessionUtil
                                           sessionWarehouse,
                                           sessionId,
                                           commonParams);
-    ret.setUpdatedByTokenRequest(false);
+    ret.setUpdatedByTokenRequest(false)
+        .setSessionTokenValidityInSeconds(sessionTokenValidityInSeconds);
 
     if (consentCacheIdToken)
     {
@@ -837,6 +847,8 @@ public class SessionUtil
     HttpPost postRequest;
     String sessionToken;
     String masterToken;
+    long sessionTokenValidityInSeconds;
+    long masterTokenValidityInSeconds;
 
     try
     {
@@ -925,6 +937,10 @@ public class SessionUtil
       // session token is in the data field of the returned json response
       sessionToken = jsonNode.path("data").path("sessionToken").asText();
       masterToken = jsonNode.path("data").path("masterToken").asText();
+      sessionTokenValidityInSeconds = jsonNode.path("data").
+          path("validityInSecondsST").asLong();
+      masterTokenValidityInSeconds = jsonNode.path("data").
+          path("validityInSecondsMT").asLong();
     }
     catch (IOException ex)
     {
@@ -940,6 +956,8 @@ public class SessionUtil
     loginOutput
         .setSessionToken(sessionToken)
         .setMasterToken(masterToken)
+        .setSessionTokenValidityInSeconds(sessionTokenValidityInSeconds)
+        .setMasterTokenValidityInSeconds(masterTokenValidityInSeconds)
         .setUpdatedByTokenRequest(true)
         .setUpdatedByTokenRequestIssue(requestType == TokenRequestType.ISSUE);
 
@@ -7,10 +7,11 @@ package net.snowflake.client.core;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Strings;
-import net.snowflake.client.core.BasicEvent.QueryState;
 import net.snowflake.client.jdbc.ErrorCode;
 import net.snowflake.client.jdbc.SnowflakeSQLException;
 import net.snowflake.client.jdbc.SnowflakeUtil;
+import net.snowflake.client.jdbc.metrics.Histogram;
+import net.snowflake.client.jdbc.metrics.MetricsRegistry;
 import net.snowflake.client.log.ArgSupplier;
 import net.snowflake.client.log.SFLogger;
 import net.snowflake.client.log.SFLoggerFactory;
@@ -21,10 +22,8 @@ import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.client.utils.URIBuilder;
-import org.apache.http.entity.ByteArrayEntity;
 import org.apache.http.entity.StringEntity;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.nio.charset.StandardCharsets;
@@ -32,7 +31,6 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.zip.GZIPOutputStream;
 
 /**
  * Statement Util
@@ -67,6 +65,12 @@ public class StmtUtil
 
   static final SFLogger logger = SFLoggerFactory.getLogger(StmtUtil.class);
 
+  private static final Histogram submitLatency =
+      MetricsRegistry.getInstance().histogram("query.submit.micros");
+
+  private static final Histogram pollLatency =
+      MetricsRegistry.getInstance().histogram("query.poll.micros");
+
   /**
    * Input for executing a statement on server
    */
@@ -94,6 +98,9 @@ public class StmtUtil
     boolean retry;
     String prevGetResultURL = null; // previous get result URL from ping pong
 
+    // beginning of the last response which was not valid JSON
+    final StringBuilder invalidResponse = new StringBuilder();
+
     boolean combineDescribe = false;
 
     String describedJobId;
@@ -289,7 +296,7 @@ public class StmtUtil
 
     try
     {
-      String resultAsString = null;
+      JsonNode resultAsJson = null;
 
       // SNOW-20443: if we are retrying and there is get result URL, we
       // don't need to execute the query again
@@ -332,20 +339,13 @@ public class StmtUtil
           sqlJsonBody.setDescribedJobId(stmtInput.describedJobId);
         }
 
-        String json = mapper.writeValueAsString(sqlJsonBody);
-
         logger.debug("JSON: {}",
-                     (ArgSupplier) () -> SecretDetector.maskSecrets(json));
-
-        // SNOW-18057: compress the post body in gzip
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        GZIPOutputStream gzos = new GZIPOutputStream(baos);
-        byte[] bytes = json.getBytes("UTF-8");
-        gzos.write(bytes);
-        gzos.finish();
-        ByteArrayEntity input = new ByteArrayEntity(baos.toByteArray());
-        input.setContentType("application/json");
-        httpRequest.setEntity(input);
+                     (ArgSupplier) () -> SecretDetector.maskSecrets(toJson(sqlJsonBody)));
+
+        // SNOW-18057: compress the post body in gzip. The body is serialized
+        // and compressed while it is sent, so large binds are never copied
+        // into memory as a whole.
+        httpRequest.setEntity(new GzipJsonEntity(mapper, sqlJsonBody));
         httpRequest.addHeader("content-encoding", "gzip");
 
         httpRequest.addHeader("accept", stmtInput.mediaType);
@@ -356,20 +356,23 @@ public class StmtUtil
 
         setServiceNameHeader(stmtInput, httpRequest);
         eventHandler.triggerStateTransition(BasicEvent.QueryState.SENDING_QUERY,
-                                            String.format(QueryState.SENDING_QUERY.getArgString(), stmtInput.requestId));
-
-        resultAsString =
-            HttpUtil.executeRequest(httpRequest,
-                                    stmtInput.networkTimeoutInMillis / 1000,
-                                    stmtInput.injectSocketTimeout,
-                                    stmtInput.canceling,
-                                    true, // include retry parameters
-                                    false, // no retry on HTTP 403
-                                    stmtInput.ocspMode
+                                            stmtInput.requestId);
+
+        long submitStartTime = System.nanoTime();
+        resultAsJson =
+            HttpUtil.executeRequestJSON(httpRequest,
+                                        stmtInput.networkTimeoutInMillis / 1000,
+                                        stmtInput.injectSocketTimeout,
+                                        stmtInput.canceling,
+                                        true, // include retry parameters
+                                        false, // no retry on HTTP 403
+                                        stmtInput.ocspMode,
+                                        stmtInput.invalidResponse
             );
+        submitLatency.recordElapsedSince(submitStartTime);
       }
 
-      return pollForOutput(resultAsString, stmtInput, httpRequest);
+      return pollForOutput(resultAsJson, stmtInput, httpRequest);
     }
     catch (Exception ex)
     {
@@ -408,6 +411,18 @@ public class StmtUtil
     }
   }
 
+  private static String toJson(Object value)
+  {
+    try
+    {
+      return mapper.writeValueAsString(value);
+    }
+    catch (IOException ex)
+    {
+      return "failed to serialize: " + ex.getMessage();
+    }
+  }
+
   private static void setServiceNameHeader(StmtInput stmtInput, HttpRequestBase httpRequest)
   {
     if (!Strings.isNullOrEmpty(stmtInput.serviceName))
@@ -417,7 +432,7 @@ public class StmtUtil
     }
   }
 
-  private static StmtOutput pollForOutput(String resultAsString,
+  private static StmtOutput pollForOutput(JsonNode resultAsJson,
                                           StmtInput stmtInput,
                                           HttpPost httpRequest)
   throws SFException, SnowflakeSQLException
@@ -438,28 +453,12 @@ public class StmtUtil
 
     do
     {
-      pingPongResponseJson = null;
-
-      if (resultAsString != null)
-      {
-        try
-        {
-          pingPongResponseJson = mapper.readTree(resultAsString);
-        }
-        catch (Exception ex)
-        {
-          logger.error("Bad result json: {}, " +
-                       "JSON parsing exception: {}, http request: {}",
-                       resultAsString, ex.getLocalizedMessage(),
-                       httpRequest);
-
-          logger.error("Exception stack trace", ex);
-        }
-      }
+      // the response is parsed while it is read from the connection.
+      // null means there was no response or it was not valid JSON.
+      pingPongResponseJson = resultAsJson;
 
       eventHandler.triggerStateTransition(BasicEvent.QueryState.WAITING_FOR_RESULT,
-                                          "{requestId: " + stmtInput.requestId + "," +
-                                          "pingNumber: " + retries + "}");
+                                          stmtInput.requestId, retries);
 
       if (pingPongResponseJson == null)
       {
@@ -472,7 +471,9 @@ public class StmtUtil
           throw (SFException) IncidentUtil.generateIncidentV2WithException(
               stmtInput.serverUrl,
               stmtInput.sessionToken,
-              new SFException(ErrorCode.BAD_RESPONSE, resultAsString),
+              new SFException(ErrorCode.BAD_RESPONSE,
+                              stmtInput.invalidResponse.length() > 0 ?
+                              stmtInput.invalidResponse.toString() : "null"),
               null,
               stmtInput.requestId);
         }
@@ -529,7 +530,7 @@ public class StmtUtil
           }
         }
 
-        resultAsString = getQueryResult(pingPongResponseJson,
+        resultAsJson = getQueryResult(pingPongResponseJson,
                                         previousGetResultPath,
                                         stmtInput);
 
@@ -554,7 +555,7 @@ public class StmtUtil
     logger.debug("Returning result");
 
     eventHandler.triggerStateTransition(BasicEvent.QueryState.PROCESSING_RESULT,
-                                        String.format(QueryState.PROCESSING_RESULT.getArgString(), stmtInput.requestId));
+                                        stmtInput.requestId);
 
     return new StmtOutput(pingPongResponseJson);
   }
@@ -567,11 +568,11 @@ public class StmtUtil
    * @param inProgressResponse    In progress response in JSON form
    * @param previousGetResultPath previous get results path
    * @param stmtInput             input statement
-   * @return results in string form
+   * @return results in JSON form
    * @throws SFException           exception raised from Snowflake components
    * @throws SnowflakeSQLException exception raised from Snowflake components
    */
-  static protected String getQueryResult(JsonNode inProgressResponse,
+  static protected JsonNode getQueryResult(JsonNode inProgressResponse,
                                          String previousGetResultPath,
                                          StmtInput stmtInput)
   throws SFException, SnowflakeSQLException
@@ -611,11 +612,11 @@ public class StmtUtil
    *
    * @param getResultPath path to results
    * @param stmtInput     object with context information
-   * @return results in string form
+   * @return results in JSON form
    * @throws SFException           exception raised from Snowflake components
    * @throws SnowflakeSQLException exception raised from Snowflake components
    */
-  static protected String getQueryResult(String getResultPath, StmtInput stmtInput)
+  static protected JsonNode getQueryResult(String getResultPath, StmtInput stmtInput)
   throws SFException, SnowflakeSQLException
   {
     HttpGet httpRequest = null;
@@ -640,14 +641,18 @@ public class StmtUtil
 
       setServiceNameHeader(stmtInput, httpRequest);
 
-      return HttpUtil.executeRequest(httpRequest,
-                                     stmtInput.networkTimeoutInMillis / 1000,
-                                     0,
-                                     stmtInput.canceling,
-                                     false, // no retry parameter
-                                     false, // no retry on HTTP 403
-                                     stmtInput.ocspMode
+      long pollStartTime = System.nanoTime();
+      JsonNode result = HttpUtil.executeRequestJSON(httpRequest,
+                                                    stmtInput.networkTimeoutInMillis / 1000,
+                                                    0,
+                                                    stmtInput.canceling,
+                                                    false, // no retry parameter
+                                                    false, // no retry on HTTP 403
+                                                    stmtInput.ocspMode,
+                                                    stmtInput.invalidResponse
       );
+      pollLatency.recordElapsedSince(pollStartTime);
+      return result;
     }
     catch (URISyntaxException | IOException ex)
     {
@@ -683,9 +688,9 @@ public class StmtUtil
         .setServiceName(session.getServiceName())
         .setOCSPMode(session.getOCSPMode());
 
-    String resultAsString = getQueryResult(getResultPath, stmtInput);
+    JsonNode resultAsJson = getQueryResult(getResultPath, stmtInput);
 
-    StmtOutput stmtOutput = pollForOutput(resultAsString, stmtInput, null);
+    StmtOutput stmtOutput = pollForOutput(resultAsJson, stmtInput, null);
     return stmtOutput.getResult();
   }
 
@@ -4,121 +4,115 @@
 package net.snowflake.client.core.arrow;
 
 import net.snowflake.client.core.SFException;
-import org.apache.arrow.memory.BufferAllocator;
-import org.apache.arrow.vector.IntVector;
 import org.apache.arrow.vector.ValueVector;
-import org.apache.arrow.vector.types.Types;
-import org.apache.arrow.vector.types.pojo.FieldType;
 
 import java.util.List;
 import java.util.stream.IntStream;
 
 /**
- * Use quick sort to sort Arrow result chunk
- * The sorted order is represented in the indices vector
+ * Sort Arrow result chunk
+ * The sorted order is represented in the indices array
+ * <p>
+ * Rows are compared by the string values of their columns, the same way
+ * JSON results are compared. The string values are computed once when the
+ * sorter is created, on the calling thread since the converters use the
+ * formatters of the result set. Sorting only compares the computed values,
+ * so it can run on another thread.
  */
 public class ArrowResultChunkIndexSorter
 {
-  private List<ValueVector> resultChunk;
-  private List<ArrowVectorConverter> converters;
   /**
-   * Vector indices to sort.
+   * String values of the rows, by column. null for SQL NULL
    */
-  private IntVector indices;
+  private final String[][] keys;
+
+  private final int rowCount;
+
+  // estimated size of the keys in bytes
+  private long keyBytes;
 
   public ArrowResultChunkIndexSorter(List<ValueVector> resultChunk, List<ArrowVectorConverter> converters)
+  throws SFException
   {
-    this.resultChunk = resultChunk;
-    this.converters = converters;
-    initIndices();
+    this.rowCount = resultChunk.get(0).getValueCount();
+    this.keys = new String[converters.size()][];
+    for (int colIdx = 0; colIdx < converters.size(); colIdx++)
+    {
+      ArrowVectorConverter converter = converters.get(colIdx);
+      String[] columnKeys = new String[rowCount];
+      // array header and references
+      keyBytes += 16 + 8L * rowCount;
+      for (int rowIdx = 0; rowIdx < rowCount; rowIdx++)
+      {
+        columnKeys[rowIdx] = converter.isNull(rowIdx) ? null : converter.toString(rowIdx);
+        if (columnKeys[rowIdx] != null)
+        {
+          // string and array headers, and UTF-16 chars at worst
+          keyBytes += 40 + 2L * columnKeys[rowIdx].length();
+        }
+      }
+      keys[colIdx] = columnKeys;
+    }
   }
 
   /**
-   * initialize original indices
+   * @return estimated memory used by the sort keys, in bytes
    */
-  private void initIndices()
+  public long getMemoryUsage()
   {
-    BufferAllocator rootAllocator = resultChunk.get(0).getAllocator();
-    FieldType fieldType = new FieldType(true,
-                                        Types.MinorType.INT.getType(),
-                                        null, null);
-
-    indices = new IntVector("indices", fieldType, rootAllocator);
-    IntStream.range(0, resultChunk.get(0).getValueCount()).forEach(i -> indices.setSafe(i, i));
+    return keyBytes;
   }
 
   /**
    * This method is only used when sf-property sort is on
    *
    * @return sorted indices
-   * @throws SFException
    */
-  public IntVector sort() throws SFException
-  {
-    quickSort(0, resultChunk.get(0).getValueCount() - 1);
-    return indices;
-  }
-
-  private void quickSort(int low, int high) throws SFException
-  {
-    if (low < high)
-    {
-      int mid = partition(low, high);
-      quickSort(low, mid - 1);
-      quickSort(mid + 1, high);
-    }
-  }
-
-  private int partition(int low, int high) throws SFException
+  public int[] sort()
   {
-    int pivotIndex = indices.get(low);
-
-    while (low < high)
-    {
-      while (low < high && compare(indices.get(high), pivotIndex) >= 0)
-      {
-        high -= 1;
-      }
-      indices.set(low, indices.get(high));
-
-      while (low < high && compare(indices.get(low), pivotIndex) <= 0)
-      {
-        low += 1;
-      }
-      indices.set(high, indices.get(low));
-    }
-
-    indices.setSafe(low, pivotIndex);
-    return low;
+    // merge sort of the boxed indices, stable and not recursive on the
+    // input order
+    return IntStream.range(0, rowCount)
+        .boxed()
+        .sorted((index1, index2) -> compare(index1, this, index2))
+        .mapToInt(Integer::intValue)
+        .toArray();
   }
 
   /**
    * Implement the same compare method as JSON result
    *
-   * @throws SFException
+   * @param index      row of this chunk
+   * @param other      sorter of the chunk to compare with
+   * @param otherIndex row of the other chunk
+   * @return negative, zero or positive if the row of this chunk is
+   * respectively less than, equal to or greater than the row of the other
+   * chunk
    */
-  private int compare(int index1, int index2) throws SFException
+  public int compare(int index, ArrowResultChunkIndexSorter other, int otherIndex)
   {
-    int numCols = converters.size();
+    int numCols = keys.length;
     for (int colIdx = 0; colIdx < numCols; colIdx++)
     {
-      if (converters.get(colIdx).isNull(index1) && converters.get(colIdx).isNull(index2))
+      String value1 = keys[colIdx][index];
+      String value2 = other.keys[colIdx][otherIndex];
+      if (value1 == null && value2 == null)
       {
         continue;
       }
 
       // null is considered bigger than all values
-      if (converters.get(colIdx).isNull(index1))
+      if (value1 == null)
       {
         return 1;
       }
 
-      if (converters.get(colIdx).isNull(index2))
+      if (value2 == null)
       {
         return -1;
       }
 
-      int res = converters.get(colIdx).toString(index1).compareTo(converters.get(colIdx).toString(index2));
+      int res = value1.compareTo(value2);
 
       // continue to next column if no difference
       if (res == 0)
@@ -0,0 +1,299 @@
+/*
+ * Copyright (c) 2012-2019 Snowflake Computing Inc. All rights reserved.
+ */
+
+package net.snowflake.client.core.arrow;
+
+import io.netty.buffer.ArrowBuf;
+import net.snowflake.client.core.SFException;
+import net.snowflake.client.jdbc.ErrorCode;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.vector.BaseFixedWidthVector;
+import org.apache.arrow.vector.BaseVariableWidthVector;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.BitVectorHelper;
+import org.apache.arrow.vector.DateDayVector;
+import org.apache.arrow.vector.DecimalVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.SmallIntVector;
+import org.apache.arrow.vector.TinyIntVector;
+import org.apache.arrow.vector.ValueVector;
+import org.apache.arrow.vector.complex.StructVector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Concatenate arrow vectors of the same type into one vector.
+ * <p>
+ * The target vector is allocated once with the total number of values and
+ * bytes, then the validity bitmaps, data buffers and offset buffers of the
+ * source vectors are copied buffer to buffer instead of value by value.
+ * Offsets of variable width vectors are rebased on the data already copied.
+ */
+public class ArrowVectorConcatenator
+{
+  /**
+   * Concatenate vectors. The source vectors are left untouched.
+   *
+   * @param vectors   vectors of the same type, in order
+   * @param allocator allocator of the concatenated vector
+   * @return new vector holding the values of all vectors
+   * @throws SFException if the vector type is not supported
+   */
+  public static FieldVector concatenate(List<ValueVector> vectors,
+                                        BufferAllocator allocator)
+  throws SFException
+  {
+    FieldVector target =
+        ((FieldVector) vectors.get(0)).getField().createVector(allocator);
+    try
+    {
+      copy(target, vectors);
+    }
+    catch (SFException | RuntimeException ex)
+    {
+      target.close();
+      throw ex;
+    }
+    return target;
+  }
+
+  private static void copy(ValueVector target, List<ValueVector> sources)
+  throws SFException
+  {
+    int valueCount = 0;
+    for (ValueVector source : sources)
+    {
+      valueCount += source.getValueCount();
+    }
+
+    if (target instanceof StructVector)
+    {
+      copyStruct((StructVector) target, sources, valueCount);
+    }
+    else if (target instanceof BaseFixedWidthVector)
+    {
+      copyFixedWidth((BaseFixedWidthVector) target, sources, valueCount);
+    }
+    else if (target instanceof BaseVariableWidthVector)
+    {
+      copyVariableWidth((BaseVariableWidthVector) target, sources, valueCount);
+    }
+    else
+    {
+      throw new SFException(ErrorCode.INTERNAL_ERROR,
+                            "Failed to merge vector due to unknown vector type");
+    }
+  }
+
+  /**
+   * Struct vectors used by Snowflake timestamp types
+   */
+  private static void copyStruct(StructVector target,
+                                 List<ValueVector> sources,
+                                 int valueCount)
+  throws SFException
+  {
+    target.setInitialCapacity(valueCount);
+    target.allocateNew();
+
+    List<FieldVector> children = target.getChildrenFromFields();
+    for (int i = 0; i < children.size(); i++)
+    {
+      List<ValueVector> childSources = new ArrayList<>(sources.size());
+      for (ValueVector source : sources)
+      {
+        childSources.add(((StructVector) source).getChildrenFromFields().get(i));
+      }
+      copy(children.get(i), childSources);
+    }
+
+    int offset = 0;
+    for (ValueVector source : sources)
+    {
+      StructVector struct = (StructVector) source;
+      copyBits(struct.getValidityBuffer(), struct.getValueCount(),
+               target.getValidityBuffer(), offset);
+      offset += struct.getValueCount();
+    }
+    target.setValueCount(valueCount);
+  }
+
+  private static void copyFixedWidth(BaseFixedWidthVector target,
+                                     List<ValueVector> sources,
+                                     int valueCount)
+  throws SFException
+  {
+    // bit vectors pack their values like validity bitmaps
+    int typeWidth = target instanceof BitVector ? 0 : getTypeWidth(target);
+    target.allocateNew(valueCount);
+
+    int offset = 0;
+    for (ValueVector source : sources)
+    {
+      BaseFixedWidthVector vector = (BaseFixedWidthVector) source;
+      int count = vector.getValueCount();
+      copyBits(vector.getValidityBuffer(), count,
+               target.getValidityBuffer(), offset);
+      if (typeWidth == 0)
+      {
+        copyBits(vector.getDataBuffer(), count,
+                 target.getDataBuffer(), offset);
+      }
+      else
+      {
+        target.getDataBuffer().setBytes(offset * typeWidth,
+                                        vector.getDataBuffer(), 0,
+                                        count * typeWidth);
+      }
+      offset += count;
+    }
+    target.setValueCount(valueCount);
+  }
+
+  private static int getTypeWidth(BaseFixedWidthVector vector)
+  throws SFException
+  {
+    if (vector instanceof BigIntVector)
+    {
+      return BigIntVector.TYPE_WIDTH;
+    }
+    else if (vector instanceof DateDayVector)
+    {
+      // days since epoch as 32 bit integers
+      return IntVector.TYPE_WIDTH;
+    }
+    else if (vector instanceof DecimalVector)
+    {
+      return DecimalVector.TYPE_WIDTH;
+    }
+    else if (vector instanceof Float8Vector)
+    {
+      return Float8Vector.TYPE_WIDTH;
+    }
+    else if (vector instanceof IntVector)
+    {
+      return IntVector.TYPE_WIDTH;
+    }
+    else if (vector instanceof SmallIntVector)
+    {
+      return SmallIntVector.TYPE_WIDTH;
+    }
+    else if (vector instanceof TinyIntVector)
+    {
+      return TinyIntVector.TYPE_WIDTH;
+    }
+    throw new SFException(ErrorCode.INTERNAL_ERROR,
+                          "Failed to merge vector due to unknown vector type");
+  }
+
+  private static void copyVariableWidth(BaseVariableWidthVector target,
+                                        List<ValueVector> sources,
+                                        int valueCount)
+  {
+    final int width = BaseVariableWidthVector.OFFSET_WIDTH;
+
+    int byteCount = 0;
+    for (ValueVector source : sources)
+    {
+      BaseVariableWidthVector vector = (BaseVariableWidthVector) source;
+      ArrowBuf offsets = vector.getOffsetBuffer();
+      int count = vector.getValueCount();
+      if (count > 0)
+      {
+        byteCount += offsets.getInt(count * width) - offsets.getInt(0);
+      }
+    }
+    target.allocateNew(byteCount, valueCount);
+
+    ArrowBuf targetOffsets = target.getOffsetBuffer();
+    targetOffsets.setInt(0, 0);
+    int offset = 0;
+    int dataEnd = 0;
+    for (ValueVector source : sources)
+    {
+      BaseVariableWidthVector vector = (BaseVariableWidthVector) source;
+      int count = vector.getValueCount();
+      if (count == 0)
+      {
+        continue;
+      }
+
+      ArrowBuf offsets = vector.getOffsetBuffer();
+      int start = offsets.getInt(0);
+      int end = offsets.getInt(count * width);
+      target.getDataBuffer().setBytes(dataEnd, vector.getDataBuffer(),
+                                      start, end - start);
+
+      // rebase the offsets on the end of the data copied so far
+      int delta = dataEnd - start;
+      for (int i = 1; i <= count; i++)
+      {
+        targetOffsets.setInt((offset + i) * width,
+                             offsets.getInt(i * width) + delta);
+      }
+
+      copyBits(vector.getValidityBuffer(), count,
+               target.getValidityBuffer(), offset);
+      offset += count;
+      dataEnd += end - start;
+    }
+
+    // otherwise setValueCount() treats the copied values as holes
+    target.setLastSet(valueCount - 1);
+    target.setValueCount(valueCount);
+  }
+
+  /**
+   * Copy a bitmap into another one at a given bit offset. The bits of the
+   * target past the copied ones are cleared.
+   *
+   * @param source source bitmap
+   * @param count  number of bits to copy
+   * @param target target bitmap, with the bits before offset already set
+   * @param offset index of the first bit to write in the target
+   */
+  static void copyBits(ArrowBuf source, int count, ArrowBuf target, int offset)
+  {
+    if (count == 0)
+    {
+      return;
+    }
+
+    int byteCount = BitVectorHelper.getValidityBufferSize(count);
+    int targetByte = BitVectorHelper.byteIndex(offset);
+    int shift = BitVectorHelper.bitIndex(offset);
+    if (shift == 0)
+    {
+      target.setBytes(targetByte, source, 0, byteCount);
+    }
+    else
+    {
+      // each source byte spans two target bytes
+      int lastTargetByte = BitVectorHelper.byteIndex(offset + count - 1);
+      int carry = target.getByte(targetByte) & ((1 << shift) - 1);
+      for (int i = 0; i < byteCount; i++)
+      {
+        int bits = source.getByte(i) & 0xFF;
+        target.setByte(targetByte + i, carry | (bits << shift));
+        carry = bits >>> (8 - shift);
+      }
+      if (targetByte + byteCount <= lastTargetByte)
+      {
+        target.setByte(targetByte + byteCount, carry);
+      }
+    }
+
+    int end = offset + count;
+    if (BitVectorHelper.bitIndex(end) != 0)
+    {
+      int lastByte = BitVectorHelper.byteIndex(end);
+      target.setByte(lastByte, target.getByte(lastByte) &
+                               ((1 << BitVectorHelper.bitIndex(end)) - 1));
+    }
+  }
+}
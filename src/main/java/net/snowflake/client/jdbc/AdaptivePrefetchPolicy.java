@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2012-2019 Snowflake Computing Inc. All rights reserved.
+ */
+
+package net.snowflake.client.jdbc;
+
+/**
+ * Computes how many result chunks should be in flight from the rate at
+ * which the consumer processes chunks and the rate at which a downloader
+ * thread downloads and parses them.
+ * <p>
+ * With chunks taking P ms per byte to download and parse and C ms per byte
+ * to consume, ceil(P / C) chunks must be in flight to keep the consumer
+ * busy, plus one so that the next chunk is ready when the current one is
+ * done. Both rates are smoothed with an exponentially weighted moving
+ * average.
+ */
+class AdaptivePrefetchPolicy
+{
+  // weight of the latest sample in the moving averages
+  private static final double SMOOTHING = 0.3;
+
+  // number of consumed chunks before the first adjustment
+  static final int WARMUP_CHUNKS = 2;
+
+  private final int minSlots;
+
+  private final int maxSlots;
+
+  private double consumeMillisPerByte = -1;
+
+  private double produceMillisPerByte = -1;
+
+  private int samples = 0;
+
+  /**
+   * @param minSlots minimum number of chunks in flight
+   * @param maxSlots maximum number of chunks in flight
+   */
+  AdaptivePrefetchPolicy(int minSlots, int maxSlots)
+  {
+    this.minSlots = minSlots;
+    this.maxSlots = maxSlots;
+  }
+
+  /**
+   * Record a consumed chunk
+   *
+   * @param consumeMillis time the consumer spent on the chunk
+   * @param produceMillis time spent downloading and parsing the chunk
+   * @param bytes         uncompressed size of the chunk
+   */
+  void record(long consumeMillis, long produceMillis, long bytes)
+  {
+    if (bytes <= 0)
+    {
+      return;
+    }
+    consumeMillisPerByte = average(consumeMillisPerByte,
+                                   (double) consumeMillis / bytes);
+    produceMillisPerByte = average(produceMillisPerByte,
+                                   (double) produceMillis / bytes);
+    samples++;
+  }
+
+  private static double average(double average, double sample)
+  {
+    return average < 0 ? sample :
+           SMOOTHING * sample + (1 - SMOOTHING) * average;
+  }
+
+  /**
+   * @param currentSlots number of chunks currently allowed in flight
+   * @return number of chunks that should be in flight
+   */
+  int getTargetSlots(int currentSlots)
+  {
+    if (samples < WARMUP_CHUNKS)
+    {
+      return currentSlots;
+    }
+
+    int target;
+    if (consumeMillisPerByte <= 0)
+    {
+      // the consumer takes no measurable time, prefetch as much as allowed
+      target = maxSlots;
+    }
+    else
+    {
+      target = (int) Math.min(
+          maxSlots, Math.ceil(produceMillisPerByte / consumeMillisPerByte) + 1);
+    }
+    return Math.max(minSlots, target);
+  }
+}
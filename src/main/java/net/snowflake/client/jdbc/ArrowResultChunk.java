@@ -6,6 +6,7 @@ package net.snowflake.client.jdbc;
 import net.snowflake.client.core.DataConversionContext;
 import net.snowflake.client.core.SFException;
 import net.snowflake.client.core.arrow.ArrowResultChunkIndexSorter;
+import net.snowflake.client.core.arrow.ArrowVectorConcatenator;
 import net.snowflake.client.core.arrow.ArrowVectorConverter;
 import net.snowflake.client.core.arrow.BigIntToFixedConverter;
 import net.snowflake.client.core.arrow.BigIntToScaledFixedConverter;
@@ -33,20 +34,9 @@ import net.snowflake.client.log.SFLogger;
 import net.snowflake.client.log.SFLoggerFactory;
 import net.snowflake.common.core.SqlState;
 import org.apache.arrow.memory.RootAllocator;
-import org.apache.arrow.vector.BigIntVector;
-import org.apache.arrow.vector.BitVector;
-import org.apache.arrow.vector.DateDayVector;
-import org.apache.arrow.vector.DecimalVector;
 import org.apache.arrow.vector.FieldVector;
-import org.apache.arrow.vector.Float8Vector;
-import org.apache.arrow.vector.IntVector;
-import org.apache.arrow.vector.SmallIntVector;
-import org.apache.arrow.vector.TinyIntVector;
 import org.apache.arrow.vector.ValueVector;
-import org.apache.arrow.vector.VarBinaryVector;
-import org.apache.arrow.vector.VarCharVector;
 import org.apache.arrow.vector.VectorSchemaRoot;
-import org.apache.arrow.vector.complex.StructVector;
 import org.apache.arrow.vector.ipc.ArrowStreamReader;
 import org.apache.arrow.vector.types.Types;
 import org.apache.arrow.vector.util.TransferPair;
@@ -58,6 +48,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 
 public class ArrowResultChunk extends SnowflakeResultChunk
 {
@@ -79,8 +70,15 @@ public class ArrowResultChunk extends SnowflakeResultChunk
    * arrow root allocator used by this resultSet
    */
   private RootAllocator rootAllocator;
-  private boolean enableSortFirstResultChunk;
-  private IntVector firstResultChunkSortedIndices;
+
+  /**
+   * state of client side sorting (only used in Snowflake internal
+   * regression tests): converters of the single record batch, sorter and
+   * sorted row indices
+   */
+  private List<ArrowVectorConverter> sortedConverters;
+  private ArrowResultChunkIndexSorter sorter;
+  private int[] sortedIndices;
 
   public ArrowResultChunk(String url, int rowCount, int colCount,
                           int uncompressedSize, RootAllocator rootAllocator)
@@ -90,7 +88,7 @@ public class ArrowResultChunk extends SnowflakeResultChunk
     this.rootAllocator = rootAllocator;
   }
 
-  private void addBatchData(List<ValueVector> batch)
+  void addBatchData(List<ValueVector> batch)
   {
     batchOfVectors.add(batch);
   }
@@ -168,9 +166,85 @@ public class ArrowResultChunk extends SnowflakeResultChunk
   public void freeData()
   {
     batchOfVectors.forEach(list -> list.forEach(ValueVector::close));
-    if (firstResultChunkSortedIndices != null)
+    sortedConverters = null;
+    sorter = null;
+    sortedIndices = null;
+  }
+
+  /**
+   * Move the data of this chunk to a new chunk, so that freeing this chunk,
+   * e.g. when the chunk downloader moves to the next chunk, keeps the data.
+   *
+   * @return chunk owning the data
+   */
+  public ArrowResultChunk transferData()
+  {
+    ArrowResultChunk chunk = new ArrowResultChunk(
+        getUrl(), getRowCount(), getColCount(), getUncompressedSize(),
+        rootAllocator);
+    chunk.batchOfVectors = batchOfVectors;
+    batchOfVectors = new ArrayList<>();
+    return chunk;
+  }
+
+  /**
+   * Merge the record batches of this chunk into one and compute the sort
+   * keys of its rows. Must run on the thread using the data conversion
+   * context.
+   *
+   * @param dataConversionContext formatters of the result set
+   * @throws SnowflakeSQLException if the chunk cannot be prepared
+   */
+  public void prepareSort(DataConversionContext dataConversionContext)
+  throws SnowflakeSQLException
+  {
+    if (batchOfVectors.isEmpty())
     {
-      firstResultChunkSortedIndices.close();
+      sortedConverters = Collections.emptyList();
+      sortedIndices = new int[0];
+      return;
+    }
+
+    if (batchOfVectors.size() > 1)
+    {
+      mergeBatchesIntoOne();
+    }
+
+    try
+    {
+      sortedConverters = initConverters(batchOfVectors.get(0),
+                                        dataConversionContext);
+      sorter = new ArrowResultChunkIndexSorter(batchOfVectors.get(0),
+                                               sortedConverters);
+    }
+    catch (SFException ex)
+    {
+      throw new SnowflakeSQLException(ex, SqlState.INTERNAL_ERROR,
+                                      ErrorCode.INTERNAL_ERROR.getMessageCode(),
+                                      "Failed to sort result chunk: "
+                                      + ex.getLocalizedMessage());
+    }
+  }
+
+  /**
+   * @return memory held by a prepared chunk: its data, its sort keys and
+   * its sorted row indices
+   */
+  public long computeSortedChunkMemory()
+  {
+    return computeNeededChunkMemory() +
+           (sorter != null ? sorter.getMemoryUsage() : 0) +
+           4L * getRowCount();
+  }
+
+  /**
+   * Sort the rows of a prepared chunk. May run on any thread.
+   */
+  public void sort()
+  {
+    if (sorter != null)
+    {
+      sortedIndices = sorter.sort();
     }
   }
 
@@ -409,9 +483,13 @@ public class ArrowResultChunk extends SnowflakeResultChunk
     return new ArrowChunkIterator(new EmptyArrowResultChunk());
   }
 
-  public void enableSortFirstResultChunk()
+  /**
+   * @param sortedChunks chunks that have been prepared and sorted
+   * @return an iterator going through the rows of all chunks in sorted order
+   */
+  public static ArrowChunkIterator getSortedIterator(List<ArrowResultChunk> sortedChunks)
   {
-    enableSortFirstResultChunk = true;
+    return new SortedChunksIterator(sortedChunks);
   }
 
   /**
@@ -494,32 +572,12 @@ public class ArrowResultChunk extends SnowflakeResultChunk
         if (currentRecordBatchIndex < totalRecordBatch)
         {
           this.currentRowInRecordBatch = 0;
-          if (currentRecordBatchIndex == 0 && resultChunk.sortFirstResultChunkEnabled())
-          {
-            // perform client-side sorting for the first chunk (only used in Snowflake internal regression tests)
-            // if first chunk has multiple record batches, merge them into one and sort it
-            if (resultChunk.batchOfVectors.size() > 1)
-            {
-              resultChunk.mergeBatchesIntoOne();
-              totalRecordBatch = 1;
-            }
-            this.rowCountInCurrentRecordBatch =
-                resultChunk.batchOfVectors.get(currentRecordBatchIndex)
-                    .get(0).getValueCount();
-            currentConverters = initConverters(
-                resultChunk.batchOfVectors.get(currentRecordBatchIndex),
-                dataConversionContext);
-            resultChunk.sortFirstResultChunk(currentConverters);
-          }
-          else
-          {
-            this.rowCountInCurrentRecordBatch =
-                resultChunk.batchOfVectors.get(currentRecordBatchIndex)
-                    .get(0).getValueCount();
-            currentConverters = initConverters(
-                resultChunk.batchOfVectors.get(currentRecordBatchIndex),
-                dataConversionContext);
-          }
+          this.rowCountInCurrentRecordBatch =
+              resultChunk.batchOfVectors.get(currentRecordBatchIndex)
+                  .get(0).getValueCount();
+          currentConverters = initConverters(
+              resultChunk.batchOfVectors.get(currentRecordBatchIndex),
+              dataConversionContext);
           return true;
         }
       }
@@ -543,6 +601,14 @@ public class ArrowResultChunk extends SnowflakeResultChunk
       return resultChunk;
     }
 
+    /**
+     * Free the data of the chunks the iterator goes through
+     */
+    public void freeData()
+    {
+      resultChunk.freeData();
+    }
+
     public ArrowVectorConverter getCurrentConverter(int columnIdx) throws SFException
     {
       if (columnIdx < 0 || columnIdx >= currentConverters.size())
@@ -558,316 +624,165 @@ public class ArrowResultChunk extends SnowflakeResultChunk
      */
     public int getCurrentRowInRecordBatch()
     {
-      if (resultChunk.sortFirstResultChunkEnabled() && currentRecordBatchIndex == 0)
-      {
-        return resultChunk.firstResultChunkSortedIndices.get(currentRowInRecordBatch);
-      }
-      else
-      {
-        return currentRowInRecordBatch;
-      }
+      return currentRowInRecordBatch;
     }
   }
 
   /**
-   * merge arrow result chunk with more than one batches into one record batch
-   * (Only used for the first chunk when client side sorting is required)
+   * Iterator going through several sorted chunks in sorted order, with a
+   * k-way merge of the chunks
+   * (Only used when client side sorting is required)
    */
-  private void mergeBatchesIntoOne() throws SnowflakeSQLException
+  private static class SortedChunksIterator extends ArrowChunkIterator
   {
-    try
-    {
-      List<ValueVector> first = batchOfVectors.get(0);
-      for (int i = 1; i < batchOfVectors.size(); i++)
-      {
-        List<ValueVector> batch = batchOfVectors.get(i);
-        mergeBatch(first, batch);
-        batch.forEach(ValueVector::close);
-      }
-      batchOfVectors = new ArrayList<>();
-      batchOfVectors.add(first);
-    }
-    catch (SFException ex)
-    {
-      throw new SnowflakeSQLException(ex, SqlState.INTERNAL_ERROR,
-                                      ErrorCode.INTERNAL_ERROR.getMessageCode(),
-                                      "Failed to merge first result chunk: "
-                                      + ex.getLocalizedMessage());
-    }
-  }
-
-  /**
-   * merge right batch into the left batch
-   *
-   * @param left
-   * @param right
-   */
-  private void mergeBatch(List<ValueVector> left, List<ValueVector> right) throws SFException
-  {
-    for (int i = 0; i < left.size(); i++)
+    /**
+     * position of the merge in a chunk
+     */
+    private static class Cursor
     {
-      mergeVector(left.get(i), right.get(i));
-    }
-  }
+      private final ArrowResultChunk chunk;
 
-  /**
-   * todo append values from the right vector to the left
-   *
-   * @param left
-   * @param right
-   */
-  private void mergeVector(ValueVector left, ValueVector right) throws SFException
-  {
-    if (left instanceof StructVector)
-    {
-      mergeStructVector((StructVector) left, (StructVector) right);
-    }
-    else
-    {
-      mergeNonStructVector(left, right);
-    }
-  }
+      private int position = 0;
 
-  /**
-   * TODO merge StructVector used by Snowflake timestamp types
-   *
-   * @param left
-   * @param right
-   */
-  private void mergeStructVector(StructVector left, StructVector right) throws SFException
-  {
-    int numOfChildren = left.getChildrenFromFields().size();
-    for (int i = 0; i < numOfChildren; i++)
-    {
-      mergeNonStructVector(left.getChildrenFromFields().get(i),
-                           right.getChildrenFromFields().get(i));
-    }
-    int offset = left.getValueCount();
-    for (int i = 0; i < right.getValueCount(); i++)
-    {
-      if (right.isNull(i))
+      Cursor(ArrowResultChunk chunk)
       {
-        left.setNull(offset + i);
+        this.chunk = chunk;
       }
-    }
-    left.setValueCount(offset + right.getValueCount());
-  }
 
-  /**
-   * merge not struct vectors
-   *
-   * @param left
-   * @param right
-   */
-  private void mergeNonStructVector(ValueVector left, ValueVector right)
-  throws SFException
-  {
-    if (left instanceof BigIntVector)
-    {
-      BigIntVector bigIntVectorLeft = (BigIntVector) left;
-      BigIntVector bigIntVectorRight = (BigIntVector) right;
-      int offset = bigIntVectorLeft.getValueCount();
-      for (int i = 0; i < bigIntVectorRight.getValueCount(); i++)
+      int getRow()
       {
-        if (bigIntVectorRight.isNull(i))
-        {
-          bigIntVectorLeft.setNull(offset + i);
-        }
-        else
-        {
-          bigIntVectorLeft.setSafe(offset + i, bigIntVectorRight.get(i));
-        }
+        return chunk.sortedIndices[position];
       }
-      bigIntVectorLeft.setValueCount(offset + bigIntVectorRight.getValueCount());
     }
-    else if (left instanceof BitVector)
-    {
-      BitVector bitVectorLeft = (BitVector) left;
-      BitVector bitVectorRight = (BitVector) right;
-      int offset = bitVectorLeft.getValueCount();
-      for (int i = 0; i < bitVectorRight.getValueCount(); i++)
-      {
-        if (bitVectorRight.isNull(i))
-        {
-          bitVectorLeft.setNull(offset + i);
-        }
-        else
-        {
-          bitVectorLeft.setSafe(offset + i, bitVectorRight.get(i));
-        }
-      }
-      bitVectorLeft.setValueCount(offset + bitVectorRight.getValueCount());
-    }
-    else if (left instanceof DateDayVector)
-    {
-      DateDayVector dateDayVectorLeft = (DateDayVector) left;
-      DateDayVector dateDayVectorRight = (DateDayVector) right;
-      int offset = dateDayVectorLeft.getValueCount();
-      for (int i = 0; i < dateDayVectorRight.getValueCount(); i++)
-      {
-        if (dateDayVectorRight.isNull(i))
-        {
-          dateDayVectorLeft.setNull(offset + i);
-        }
-        else
-        {
-          dateDayVectorLeft.setSafe(offset + i, dateDayVectorRight.get(i));
-        }
-      }
-      dateDayVectorLeft.setValueCount(offset + dateDayVectorRight.getValueCount());
-    }
-    else if (left instanceof DecimalVector)
+
+    private final List<ArrowResultChunk> chunks;
+
+    /**
+     * cursors of the chunks with remaining rows, except the current one
+     */
+    private final PriorityQueue<Cursor> queue;
+
+    private Cursor current;
+
+    private boolean started = false;
+
+    SortedChunksIterator(List<ArrowResultChunk> chunks)
     {
-      DecimalVector decimalVectorLeft = (DecimalVector) left;
-      DecimalVector decimalVectorRight = (DecimalVector) right;
-      int offset = decimalVectorLeft.getValueCount();
-      for (int i = 0; i < decimalVectorRight.getValueCount(); i++)
+      super(new EmptyArrowResultChunk());
+      this.chunks = chunks;
+      this.queue = new PriorityQueue<>(
+          Math.max(1, chunks.size()),
+          (cursor1, cursor2) -> cursor1.chunk.sorter.compare(
+              cursor1.getRow(), cursor2.chunk.sorter, cursor2.getRow()));
+      for (ArrowResultChunk chunk : chunks)
       {
-        if (decimalVectorRight.isNull(i))
+        if (chunk.sortedIndices.length > 0)
         {
-          decimalVectorLeft.setNull(offset + i);
-        }
-        else
-        {
-          decimalVectorLeft.setSafe(offset + i, decimalVectorRight.get(i));
+          queue.add(new Cursor(chunk));
         }
       }
-      decimalVectorLeft.setValueCount(offset + decimalVectorRight.getValueCount());
     }
-    else if (left instanceof Float8Vector)
+
+    @Override
+    public boolean next()
     {
-      Float8Vector float8VectorLeft = (Float8Vector) left;
-      Float8Vector float8VectorRight = (Float8Vector) right;
-      int offset = float8VectorLeft.getValueCount();
-      for (int i = 0; i < float8VectorRight.getValueCount(); i++)
+      started = true;
+      if (current != null)
       {
-        if (float8VectorRight.isNull(i))
+        current.position++;
+        if (current.position < current.chunk.sortedIndices.length)
         {
-          float8VectorLeft.setNull(offset + i);
+          queue.add(current);
         }
         else
         {
-          float8VectorLeft.setSafe(offset + i, float8VectorRight.get(i));
+          // free the chunk as soon as the merge is done with it
+          current.chunk.freeData();
         }
       }
-      float8VectorLeft.setValueCount(offset + float8VectorRight.getValueCount());
+      current = queue.poll();
+      return current != null;
     }
-    else if (left instanceof IntVector)
+
+    @Override
+    public boolean isLast()
     {
-      IntVector intVectorLeft = (IntVector) left;
-      IntVector intVectorRight = (IntVector) right;
-      int offset = intVectorLeft.getValueCount();
-      for (int i = 0; i < intVectorRight.getValueCount(); i++)
-      {
-        if (intVectorRight.isNull(i))
-        {
-          intVectorLeft.setNull(offset + i);
-        }
-        else
-        {
-          intVectorLeft.setSafe(offset + i, intVectorRight.get(i));
-        }
-      }
-      intVectorLeft.setValueCount(offset + intVectorRight.getValueCount());
+      return current != null && queue.isEmpty() &&
+             current.position + 1 == current.chunk.sortedIndices.length;
     }
-    else if (left instanceof SmallIntVector)
+
+    @Override
+    public boolean isAfterLast()
     {
-      SmallIntVector smallIntVectorLeft = (SmallIntVector) left;
-      SmallIntVector smallIntVectorRight = (SmallIntVector) right;
-      int offset = smallIntVectorLeft.getValueCount();
-      for (int i = 0; i < smallIntVectorRight.getValueCount(); i++)
-      {
-        if (smallIntVectorRight.isNull(i))
-        {
-          smallIntVectorLeft.setNull(offset + i);
-        }
-        else
-        {
-          smallIntVectorLeft.setSafe(offset + i, smallIntVectorRight.get(i));
-        }
-      }
-      smallIntVectorLeft.setValueCount(offset + smallIntVectorRight.getValueCount());
+      return started && current == null;
     }
-    else if (left instanceof TinyIntVector)
+
+    /**
+     * @return chunk of the current row, or an empty chunk if the merge is
+     * done. The other chunks are freed by freeData() of the iterator
+     */
+    @Override
+    public ArrowResultChunk getChunk()
     {
-      TinyIntVector tinyIntVectorLeft = (TinyIntVector) left;
-      TinyIntVector tinyIntVectorRight = (TinyIntVector) right;
-      int offset = tinyIntVectorLeft.getValueCount();
-      for (int i = 0; i < tinyIntVectorRight.getValueCount(); i++)
-      {
-        if (tinyIntVectorRight.isNull(i))
-        {
-          tinyIntVectorLeft.setNull(offset + i);
-        }
-        else
-        {
-          tinyIntVectorLeft.setSafe(offset + i, tinyIntVectorRight.get(i));
-        }
-      }
-      tinyIntVectorLeft.setValueCount(offset + tinyIntVectorRight.getValueCount());
+      return current != null ? current.chunk : super.getChunk();
     }
-    else if (left instanceof VarBinaryVector)
+
+    @Override
+    public void freeData()
     {
-      VarBinaryVector varBinaryVectorLeft = (VarBinaryVector) left;
-      VarBinaryVector varBinaryVectorRight = (VarBinaryVector) right;
-      int offset = varBinaryVectorLeft.getValueCount();
-      for (int i = 0; i < varBinaryVectorRight.getValueCount(); i++)
-      {
-        if (varBinaryVectorRight.isNull(i))
-        {
-          varBinaryVectorLeft.setNull(offset + i);
-        }
-        else
-        {
-          varBinaryVectorLeft.setSafe(offset + i, varBinaryVectorRight.get(i));
-        }
-      }
-      varBinaryVectorLeft.setValueCount(offset + varBinaryVectorRight.getValueCount());
+      chunks.forEach(ArrowResultChunk::freeData);
     }
-    else if (left instanceof VarCharVector)
+
+    @Override
+    public ArrowVectorConverter getCurrentConverter(int columnIdx) throws SFException
     {
-      VarCharVector varCharVectorLeft = (VarCharVector) left;
-      VarCharVector varCharVectorRight = (VarCharVector) right;
-      int offset = varCharVectorLeft.getValueCount();
-      for (int i = 0; i < varCharVectorRight.getValueCount(); i++)
+      if (current == null || columnIdx < 0 ||
+          columnIdx >= current.chunk.sortedConverters.size())
       {
-        if (varCharVectorRight.isNull(i))
-        {
-          varCharVectorLeft.setNull(offset + i);
-        }
-        else
-        {
-          varCharVectorLeft.setSafe(offset + i, varCharVectorRight.get(i));
-        }
+        throw new SFException(ErrorCode.COLUMN_DOES_NOT_EXIST, columnIdx + 1);
       }
-      varCharVectorLeft.setValueCount(offset + varCharVectorRight.getValueCount());
+      return current.chunk.sortedConverters.get(columnIdx);
     }
-    else
+
+    @Override
+    public int getCurrentRowInRecordBatch()
     {
-      throw new SFException(ErrorCode.INTERNAL_ERROR, "Failed to merge vector due to unknown vector type");
+      return current.getRow();
     }
   }
 
-  private void sortFirstResultChunk(List<ArrowVectorConverter> converters) throws SnowflakeSQLException
+  /**
+   * merge arrow result chunk with more than one batches into one record batch
+   * (Only used when client side sorting is required)
+   */
+  private void mergeBatchesIntoOne() throws SnowflakeSQLException
   {
+    List<ValueVector> merged = new ArrayList<>();
     try
     {
-      List<ValueVector> firstResultChunk = this.batchOfVectors.get(0);
-      ArrowResultChunkIndexSorter sorter = new ArrowResultChunkIndexSorter(firstResultChunk, converters);
-      firstResultChunkSortedIndices = sorter.sort();
+      int columnCount = batchOfVectors.get(0).size();
+      for (int i = 0; i < columnCount; i++)
+      {
+        List<ValueVector> column = new ArrayList<>(batchOfVectors.size());
+        for (List<ValueVector> batch : batchOfVectors)
+        {
+          column.add(batch.get(i));
+        }
+        merged.add(ArrowVectorConcatenator.concatenate(column, rootAllocator));
+      }
     }
     catch (SFException ex)
     {
+      merged.forEach(ValueVector::close);
       throw new SnowflakeSQLException(ex, SqlState.INTERNAL_ERROR,
                                       ErrorCode.INTERNAL_ERROR.getMessageCode(),
-                                      "Failed to sort first result chunk: "
+                                      "Failed to merge first result chunk: "
                                       + ex.getLocalizedMessage());
     }
-  }
 
-  private boolean sortFirstResultChunkEnabled()
-  {
-    return enableSortFirstResultChunk;
+    batchOfVectors.forEach(list -> list.forEach(ValueVector::close));
+    batchOfVectors = new ArrayList<>();
+    batchOfVectors.add(merged);
   }
 
   /**
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2012-2019 Snowflake Computing Inc. All rights reserved.
+ */
+
+package net.snowflake.client.jdbc;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Pool decoding the chunks fetched by the asynchronous chunk download
+ * transport, so that the download threads only wait on the network.
+ * <p>
+ * The decoding of a chunk is published before it is started, so a retry of
+ * the chunk always finds and cancels it. A download thread interrupted
+ * because its download was cancelled does not hand off its chunk.
+ */
+class ChunkDecodePool
+{
+  private final ExecutorService executor;
+
+  // decodings not completed yet, by chunk index
+  private final Map<Integer, Future<?>> decoderFutures =
+      new ConcurrentHashMap<>();
+
+  /**
+   * @param executor thread pool running the decodings
+   */
+  ChunkDecodePool(ExecutorService executor)
+  {
+    this.executor = executor;
+  }
+
+  /**
+   * Decode a chunk downloaded by the current thread
+   *
+   * @param chunkIndex index of the chunk
+   * @param decoding   decompresses and parses the chunk
+   * @return false if the download was cancelled and the chunk is not decoded
+   */
+  boolean submit(final int chunkIndex, Runnable decoding)
+  {
+    FutureTask<Void> decoderFuture = new FutureTask<Void>(decoding, null)
+    {
+      @Override
+      protected void done()
+      {
+        decoderFutures.remove(chunkIndex, this);
+      }
+    };
+    decoderFutures.put(chunkIndex, decoderFuture);
+
+    // a retry of the chunk interrupts the download thread before cancelling
+    // the decoding, so either the retry sees the decoding or this thread
+    // sees the interrupt
+    if (Thread.currentThread().isInterrupted())
+    {
+      decoderFuture.cancel(false);
+      return false;
+    }
+    executor.execute(decoderFuture);
+    return true;
+  }
+
+  /**
+   * Cancel the decoding of a chunk, if any
+   *
+   * @param chunkIndex index of the chunk
+   */
+  void cancel(int chunkIndex)
+  {
+    Future<?> decoderFuture = decoderFutures.remove(chunkIndex);
+    if (decoderFuture != null)
+    {
+      decoderFuture.cancel(true);
+    }
+  }
+
+  /**
+   * @return number of decodings not completed yet
+   */
+  int getPendingCount()
+  {
+    return decoderFutures.size();
+  }
+
+  /**
+   * Stop the decodings and the pool
+   */
+  void shutdown()
+  {
+    executor.shutdownNow();
+  }
+}
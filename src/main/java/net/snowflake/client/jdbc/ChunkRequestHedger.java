@@ -0,0 +1,353 @@
+/*
+ * Copyright (c) 2012-2019 Snowflake Computing Inc. All rights reserved.
+ */
+
+package net.snowflake.client.jdbc;
+
+import net.snowflake.client.log.SFLogger;
+import net.snowflake.client.log.SFLoggerFactory;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Decides when a result chunk request is hedged, i.e. when a duplicate
+ * request is sent because the first one has not returned a response yet.
+ * <p>
+ * A request is hedged once it has been waiting for its response for longer
+ * than the configured percentile of the first byte latencies observed by
+ * the same result set. The number of duplicate requests of a result set is
+ * capped by a budget.
+ * <p>
+ * Only the latencies of the original requests are observed. An original
+ * request which loses to its duplicate is aborted, and its latency is
+ * recorded as the time it had been waiting when the duplicate won, so that
+ * slow responses are not left out of the percentile.
+ */
+class ChunkRequestHedger
+{
+  private static final SFLogger logger =
+      SFLoggerFactory.getLogger(ChunkRequestHedger.class);
+
+  /**
+   * JVM property with the percentile of the observed first byte latencies
+   * after which a chunk request is hedged. Hedging is disabled when unset.
+   */
+  static final String HEDGE_PERCENTILE_PROPERTY =
+      "net.snowflake.jdbc.chunkHedgePercentile";
+
+  /**
+   * JVM property with the maximum number of hedged requests per result set
+   */
+  static final String HEDGE_BUDGET_PROPERTY =
+      "net.snowflake.jdbc.chunkHedgeBudget";
+
+  // number of latencies to observe before any request is hedged
+  static final int MIN_SAMPLES = 3;
+
+  // number of most recent latencies the percentile is computed from
+  private static final int MAX_SAMPLES = 128;
+
+  // a request is never hedged before this delay
+  private static final long MIN_HEDGE_DELAY_IN_MILLIS = 50;
+
+  private final double percentile;
+
+  private final AtomicInteger remainingBudget;
+
+  private final long[] samples = new long[MAX_SAMPLES];
+
+  private int sampleCount = 0;
+
+  private final AtomicInteger hedgesIssued = new AtomicInteger(0);
+
+  private final AtomicInteger hedgesWon = new AtomicInteger(0);
+
+  /**
+   * Request that can be sent again while a previous copy is in flight
+   *
+   * @param <T> response type
+   */
+  interface Request<T>
+  {
+    /**
+     * Send the request and wait for its response
+     *
+     * @param canceling set once another copy of the request won or the
+     *                  caller gave up, to stop the retries
+     * @return response
+     * @throws Exception if the request failed or was aborted
+     */
+    T execute(AtomicBoolean canceling) throws Exception;
+
+    /**
+     * Abort the request, releasing its connection
+     */
+    void abort();
+  }
+
+  /**
+   * @param percentile percentile of the observed first byte latencies, in
+   *                   (0, 100]
+   * @param budget     maximum number of hedged requests
+   */
+  ChunkRequestHedger(double percentile, int budget)
+  {
+    this.percentile = percentile;
+    this.remainingBudget = new AtomicInteger(budget);
+  }
+
+  /**
+   * Create a hedger from the JVM properties
+   *
+   * @param chunkCount number of chunks of the result set
+   * @return hedger or null if hedging is disabled
+   */
+  static ChunkRequestHedger fromSystemProperties(int chunkCount)
+  {
+    String percentileValue =
+        SnowflakeUtil.systemGetProperty(HEDGE_PERCENTILE_PROPERTY);
+    if (percentileValue == null || percentileValue.isEmpty())
+    {
+      return null;
+    }
+
+    try
+    {
+      double percentile = Double.parseDouble(percentileValue);
+      if (percentile <= 0 || percentile > 100)
+      {
+        logger.debug("Invalid {}: {}, chunk requests are not hedged",
+                     HEDGE_PERCENTILE_PROPERTY, percentileValue);
+        return null;
+      }
+
+      // by default at most one out of ten chunks is requested twice
+      String budgetValue =
+          SnowflakeUtil.systemGetProperty(HEDGE_BUDGET_PROPERTY);
+      int budget = (budgetValue == null || budgetValue.isEmpty()) ?
+                   Math.max(1, chunkCount / 10) :
+                   Integer.parseInt(budgetValue);
+
+      return new ChunkRequestHedger(percentile, budget);
+    }
+    catch (NumberFormatException ex)
+    {
+      logger.debug("Invalid chunk hedging property: {}, chunk requests " +
+                   "are not hedged", ex.getLocalizedMessage());
+      return null;
+    }
+  }
+
+  /**
+   * Record the time between sending a chunk request and receiving its
+   * response
+   *
+   * @param latencyInMillis first byte latency in milliseconds
+   */
+  synchronized void recordFirstByteLatency(long latencyInMillis)
+  {
+    samples[sampleCount % MAX_SAMPLES] = latencyInMillis;
+    sampleCount++;
+  }
+
+  /**
+   * @return delay in milliseconds after which a request without response is
+   * hedged, or -1 if not enough latencies have been observed yet
+   */
+  synchronized long getHedgeDelayInMillis()
+  {
+    int count = Math.min(sampleCount, MAX_SAMPLES);
+    if (count < MIN_SAMPLES)
+    {
+      return -1;
+    }
+
+    long[] sorted = Arrays.copyOf(samples, count);
+    Arrays.sort(sorted);
+    int index = (int) Math.ceil(percentile / 100 * count) - 1;
+    return Math.max(MIN_HEDGE_DELAY_IN_MILLIS,
+                    sorted[Math.max(0, Math.min(index, count - 1))]);
+  }
+
+  /**
+   * Take a hedged request from the budget
+   *
+   * @return true if the request may be hedged
+   */
+  boolean tryAcquire()
+  {
+    if (remainingBudget.getAndUpdate(n -> n > 0 ? n - 1 : n) > 0)
+    {
+      hedgesIssued.incrementAndGet();
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Record that a hedged request returned before the original one
+   */
+  void recordHedgeWon()
+  {
+    hedgesWon.incrementAndGet();
+  }
+
+  /**
+   * Send a request, and a duplicate of it if it has no response after the
+   * hedge delay. The first response wins and the other request is aborted.
+   *
+   * @param newRequest creates a copy of the request
+   * @param executor   runs the requests
+   * @param <T>        response type
+   * @return response of the request that returned first
+   * @throws ExecutionException   with the error of the last request if all
+   *                              the requests failed
+   * @throws InterruptedException if the current thread is interrupted, the
+   *                              requests are aborted
+   */
+  <T> T execute(Supplier<Request<T>> newRequest, Executor executor)
+  throws ExecutionException, InterruptedException
+  {
+    HedgedRequest<T> hedgedRequest = new HedgedRequest<>(executor);
+    long hedgeDelay = getHedgeDelayInMillis();
+    hedgedRequest.send(newRequest.get(), false);
+    try
+    {
+      if (hedgeDelay >= 0)
+      {
+        try
+        {
+          return hedgedRequest.winner.get(hedgeDelay, TimeUnit.MILLISECONDS);
+        }
+        catch (TimeoutException ex)
+        {
+          if (!hedgedRequest.winner.isDone() && tryAcquire())
+          {
+            logger.debug("No response after {} ms, send a hedged request",
+                         hedgeDelay);
+            hedgedRequest.pendingRequests.incrementAndGet();
+            hedgedRequest.send(newRequest.get(), true);
+          }
+        }
+      }
+      return hedgedRequest.winner.get();
+    }
+    catch (InterruptedException ex)
+    {
+      hedgedRequest.abortAll(null);
+      throw ex;
+    }
+  }
+
+  /**
+   * Copies of a request in flight
+   */
+  private class HedgedRequest<T>
+  {
+    private final Executor executor;
+
+    private final long startTime = System.currentTimeMillis();
+
+    private final CompletableFuture<T> winner = new CompletableFuture<>();
+
+    private final List<Request<T>> requests = new CopyOnWriteArrayList<>();
+
+    private final AtomicInteger pendingRequests = new AtomicInteger(1);
+
+    private final AtomicBoolean canceling = new AtomicBoolean(false);
+
+    // the latency of the original request is recorded once
+    private final AtomicBoolean latencyRecorded = new AtomicBoolean(false);
+
+    HedgedRequest(Executor executor)
+    {
+      this.executor = executor;
+    }
+
+    void send(final Request<T> request, final boolean hedged)
+    {
+      requests.add(request);
+      executor.execute(() ->
+      {
+        try
+        {
+          T response = request.execute(canceling);
+          if (!hedged)
+          {
+            recordLatency();
+          }
+          if (winner.complete(response))
+          {
+            if (hedged)
+            {
+              recordHedgeWon();
+              // the original request has been waiting at least this long
+              recordLatency();
+            }
+            abortAll(request);
+          }
+          else
+          {
+            // another request returned first, drop this connection
+            request.abort();
+          }
+        }
+        catch (Throwable ex)
+        {
+          if (pendingRequests.decrementAndGet() == 0)
+          {
+            winner.completeExceptionally(ex);
+          }
+        }
+      });
+    }
+
+    void recordLatency()
+    {
+      if (latencyRecorded.compareAndSet(false, true))
+      {
+        recordFirstByteLatency(System.currentTimeMillis() - startTime);
+      }
+    }
+
+    /**
+     * @param except request not to abort, may be null
+     */
+    void abortAll(Request<T> except)
+    {
+      canceling.set(true);
+      for (Request<T> request : requests)
+      {
+        if (request != except)
+        {
+          request.abort();
+        }
+      }
+    }
+  }
+
+  synchronized int getSampleCount()
+  {
+    return sampleCount;
+  }
+
+  int getHedgesIssued()
+  {
+    return hedgesIssued.get();
+  }
+
+  int getHedgesWon()
+  {
+    return hedgesWon.get();
+  }
+}
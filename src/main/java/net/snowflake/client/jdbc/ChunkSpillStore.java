@@ -0,0 +1,432 @@
+/*
+ * Copyright (c) 2012-2019 Snowflake Computing Inc. All rights reserved.
+ */
+
+package net.snowflake.client.jdbc;
+
+import net.snowflake.client.log.SFLogger;
+import net.snowflake.client.log.SFLoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local disk store of result chunks that were downloaded ahead of the
+ * consumer while the chunk memory budget was exhausted.
+ * <p>
+ * Chunks are kept in their compressed wire form, one file per chunk, and
+ * are memory-mapped back when the consumer reaches them. Each file is
+ * deleted once it has been read. The total size of the files spilled by all
+ * the result sets of the JVM is bounded.
+ */
+class ChunkSpillStore
+{
+  private static final SFLogger logger =
+      SFLoggerFactory.getLogger(ChunkSpillStore.class);
+
+  /**
+   * JVM property with the directory result chunks are spilled to. Chunks
+   * are not spilled when unset.
+   */
+  static final String SPILL_DIRECTORY_PROPERTY =
+      "net.snowflake.jdbc.chunkSpillDirectory";
+
+  /**
+   * JVM property with the maximum number of bytes spilled by all the result
+   * sets of the JVM
+   */
+  static final String SPILL_MAX_BYTES_PROPERTY =
+      "net.snowflake.jdbc.chunkSpillMaxBytes";
+
+  // 1GB
+  private static final long DEFAULT_SPILL_MAX_BYTES = 1024L * 1024 * 1024;
+
+  /**
+   * Chunk body written to disk
+   */
+  static class SpilledChunk
+  {
+    final Path path;
+
+    final String contentEncoding;
+
+    long size;
+
+    SpilledChunk(Path path, String contentEncoding)
+    {
+      this.path = path;
+      this.contentEncoding = contentEncoding;
+    }
+  }
+
+  // bytes on disk or reserved across JVM
+  private static final AtomicLong totalUsedBytes = new AtomicLong(0);
+
+  private final Path directory;
+
+  private final long maxBytes;
+
+  // bytes written or reserved for chunks being written
+  private long usedBytes = 0;
+
+  // chunks written and not deleted yet
+  private final Set<SpilledChunk> spilledChunks = new HashSet<>();
+
+  private final Map<Integer, Long> reservations = new HashMap<>();
+
+  private final Map<Integer, CompletableFuture<SpilledChunk>> spills =
+      new HashMap<>();
+
+  private boolean closed = false;
+
+  /**
+   * @param directory directory owned by this store
+   * @param maxBytes  maximum number of bytes on disk across JVM
+   */
+  ChunkSpillStore(Path directory, long maxBytes)
+  {
+    this.directory = directory;
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * Create a spill store from the JVM properties
+   *
+   * @return spill store or null if spilling is disabled
+   */
+  static ChunkSpillStore fromSystemProperties()
+  {
+    String root = SnowflakeUtil.systemGetProperty(SPILL_DIRECTORY_PROPERTY);
+    if (root == null || root.isEmpty())
+    {
+      return null;
+    }
+
+    try
+    {
+      String maxBytesValue =
+          SnowflakeUtil.systemGetProperty(SPILL_MAX_BYTES_PROPERTY);
+      long maxBytes = (maxBytesValue == null || maxBytesValue.isEmpty()) ?
+                      DEFAULT_SPILL_MAX_BYTES : Long.parseLong(maxBytesValue);
+
+      Path rootPath = Paths.get(root);
+      Files.createDirectories(rootPath);
+      Path directory = Files.createTempDirectory(rootPath, "result-chunks-");
+      logger.debug("Spill result chunks to {}, max bytes: {}",
+                   directory, maxBytes);
+      return new ChunkSpillStore(directory, maxBytes);
+    }
+    catch (IOException | RuntimeException ex)
+    {
+      logger.debug("Cannot spill result chunks to {}: {}",
+                   root, ex.getLocalizedMessage());
+      return null;
+    }
+  }
+
+  /**
+   * Reserve disk space for a chunk before downloading it
+   *
+   * @param chunkIndex chunk index
+   * @param bytes      expected size of the chunk
+   * @return true if the chunk should be downloaded and spilled
+   */
+  synchronized boolean tryReserve(int chunkIndex, long bytes)
+  {
+    if (closed || spills.containsKey(chunkIndex))
+    {
+      return false;
+    }
+    long used;
+    do
+    {
+      used = totalUsedBytes.get();
+      if (used + bytes > maxBytes)
+      {
+        return false;
+      }
+    }
+    while (!totalUsedBytes.compareAndSet(used, used + bytes));
+    usedBytes += bytes;
+    reservations.put(chunkIndex, bytes);
+    spills.put(chunkIndex, new CompletableFuture<>());
+    return true;
+  }
+
+  /**
+   * Write the body of a reserved chunk to disk. The reservation is settled
+   * whether or not the write succeeds.
+   *
+   * @param chunkIndex      chunk index
+   * @param body            compressed chunk body
+   * @param contentEncoding content encoding of the body, may be null
+   */
+  void write(int chunkIndex, InputStream body, String contentEncoding)
+  {
+    SpilledChunk spilled = null;
+    try
+    {
+      Path path = directory.resolve("chunk-" + chunkIndex);
+      spilled = new SpilledChunk(path, contentEncoding);
+      spilled.size = Files.copy(body, path,
+                                StandardCopyOption.REPLACE_EXISTING);
+    }
+    catch (IOException ex)
+    {
+      logger.debug("Failed to spill #chunk{}: {}",
+                   chunkIndex, ex.getLocalizedMessage());
+      delete(spilled);
+      spilled = null;
+    }
+    complete(chunkIndex, spilled);
+  }
+
+  /**
+   * Settle the reservation of a chunk
+   *
+   * @param chunkIndex chunk index
+   * @param spilled    spilled chunk or null if the chunk was not written
+   */
+  void complete(int chunkIndex, SpilledChunk spilled)
+  {
+    CompletableFuture<SpilledChunk> future;
+    synchronized (this)
+    {
+      Long reserved = reservations.remove(chunkIndex);
+      future = spills.get(chunkIndex);
+      if (reserved == null || future == null)
+      {
+        return;
+      }
+      addUsedBytes((spilled != null ? spilled.size : 0) - reserved);
+      if (closed && spilled != null)
+      {
+        delete(spilled);
+        addUsedBytes(-spilled.size);
+        spilled = null;
+      }
+      if (spilled != null)
+      {
+        spilledChunks.add(spilled);
+      }
+    }
+    future.complete(spilled);
+  }
+
+  /**
+   * Take a spilled chunk, waiting for it if it is still being written.
+   *
+   * @param chunkIndex chunk index
+   * @return spilled chunk, or null if the chunk was not spilled and must be
+   * downloaded
+   * @throws InterruptedException if interrupted while waiting
+   */
+  SpilledChunk take(int chunkIndex) throws InterruptedException
+  {
+    CompletableFuture<SpilledChunk> future;
+    synchronized (this)
+    {
+      future = spills.get(chunkIndex);
+    }
+    if (future == null)
+    {
+      return null;
+    }
+
+    try
+    {
+      return future.get();
+    }
+    catch (ExecutionException ex)
+    {
+      return null;
+    }
+    finally
+    {
+      synchronized (this)
+      {
+        // a retry of the chunk downloads it again
+        spills.remove(chunkIndex);
+      }
+    }
+  }
+
+  /**
+   * Memory-map a spilled chunk. The file is deleted when the stream is
+   * closed.
+   *
+   * @param spilled spilled chunk
+   * @return stream over the chunk body
+   * @throws IOException if the file cannot be mapped
+   */
+  InputStream open(final SpilledChunk spilled) throws IOException
+  {
+    final MappedByteBuffer buffer;
+    try (FileChannel channel =
+             FileChannel.open(spilled.path, StandardOpenOption.READ))
+    {
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, spilled.size);
+    }
+    catch (IOException ex)
+    {
+      release(spilled);
+      throw ex;
+    }
+
+    return new InputStream()
+    {
+      private boolean released = false;
+
+      @Override
+      public int read()
+      {
+        return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len)
+      {
+        if (len == 0)
+        {
+          return 0;
+        }
+        if (!buffer.hasRemaining())
+        {
+          return -1;
+        }
+        int n = Math.min(len, buffer.remaining());
+        buffer.get(b, off, n);
+        return n;
+      }
+
+      @Override
+      public int available()
+      {
+        return buffer.remaining();
+      }
+
+      @Override
+      public void close()
+      {
+        if (!released)
+        {
+          released = true;
+          release(spilled);
+        }
+      }
+    };
+  }
+
+  /**
+   * Delete a spilled chunk and give its space back
+   */
+  private void release(SpilledChunk spilled)
+  {
+    delete(spilled);
+    synchronized (this)
+    {
+      // the space of the chunks deleted by close() is given back already
+      if (spilledChunks.remove(spilled))
+      {
+        addUsedBytes(-spilled.size);
+      }
+    }
+  }
+
+  /**
+   * Update the bytes used by this store and across JVM, holding the lock
+   * of this store
+   */
+  private void addUsedBytes(long bytes)
+  {
+    usedBytes += bytes;
+    totalUsedBytes.addAndGet(bytes);
+  }
+
+  private static void delete(SpilledChunk spilled)
+  {
+    if (spilled == null)
+    {
+      return;
+    }
+    try
+    {
+      Files.deleteIfExists(spilled.path);
+    }
+    catch (IOException ex)
+    {
+      // a mapped file cannot be deleted on some platforms
+      spilled.path.toFile().deleteOnExit();
+    }
+  }
+
+  synchronized long getUsedBytes()
+  {
+    return usedBytes;
+  }
+
+  static long getTotalUsedBytes()
+  {
+    return totalUsedBytes.get();
+  }
+
+  /**
+   * Delete all spilled chunks and the spill directory. Chunks still being
+   * written are deleted once written.
+   */
+  void close()
+  {
+    synchronized (this)
+    {
+      if (closed)
+      {
+        return;
+      }
+      closed = true;
+
+      // nobody waits for the chunks that have not been written yet
+      for (CompletableFuture<SpilledChunk> future : spills.values())
+      {
+        future.complete(null);
+      }
+
+      // the chunks being written give their reservation back once written
+      for (SpilledChunk spilled : spilledChunks)
+      {
+        addUsedBytes(-spilled.size);
+      }
+      spilledChunks.clear();
+    }
+
+    File[] files = directory.toFile().listFiles();
+    if (files != null)
+    {
+      for (File file : files)
+      {
+        if (!file.delete())
+        {
+          file.deleteOnExit();
+        }
+      }
+    }
+    if (!directory.toFile().delete())
+    {
+      directory.toFile().deleteOnExit();
+    }
+  }
+}
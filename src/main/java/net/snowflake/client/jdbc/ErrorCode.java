@@ -90,7 +90,8 @@ public enum ErrorCode
   EXECUTE_BATCH_INTEGER_OVERFLOW(200058, SqlState.NUMERIC_VALUE_OUT_OF_RANGE),
   INVALID_CONNECT_STRING(200059, SqlState.CONNECTION_EXCEPTION),
   INVALID_OKTA_USERNAME(200060, SqlState.CONNECTION_EXCEPTION),
-  GCP_SERVICE_ERROR(200061, SqlState.SYSTEM_ERROR);
+  GCP_SERVICE_ERROR(200061, SqlState.SYSTEM_ERROR),
+  CONNECTION_POOL_TIMEOUT(200062, SqlState.CONNECTION_EXCEPTION);
 
   public final static String errorMessageResource =
       "net.snowflake.client.jdbc.jdbc_error_messages";
@@ -81,6 +81,44 @@ public class SnowflakeBasicDataSource implements DataSource
     }
   }
 
+  /**
+   * Create a connection for the configured user with extra connection
+   * properties on top of the ones configured on this data source. The data
+   * source itself is not modified.
+   *
+   * @param extraProperties additional connection properties
+   * @return a new connection
+   * @throws SQLException if failed to create a connection
+   */
+  protected Connection getConnection(Properties extraProperties)
+  throws SQLException
+  {
+    Properties connectionProperties = new Properties();
+    connectionProperties.putAll(properties);
+    connectionProperties.putAll(extraProperties);
+    connectionProperties.put("user", user);
+    if (password != null &&
+        !"SNOWFLAKE_JWT".equalsIgnoreCase(authenticator))
+    {
+      connectionProperties.put("password", password);
+    }
+
+    try
+    {
+      Connection con = SnowflakeDriver.INSTANCE.connect(getUrl(),
+                                                        connectionProperties);
+      logger.trace("Created a connection for {} at {}",
+                   user, (ArgSupplier) this::getUrl);
+      return con;
+    }
+    catch (SQLException e)
+    {
+      logger.error("Failed to create a connection for {} at {}: {}",
+                   user, getUrl(), e);
+      throw e;
+    }
+  }
+
   @Override
   public PrintWriter getLogWriter() throws SQLException
   {
@@ -17,6 +17,9 @@ import net.snowflake.client.core.ObjectMapperFactory;
 import net.snowflake.client.core.QueryResultFormat;
 import net.snowflake.client.core.SFArrowResultSet;
 import net.snowflake.client.jdbc.SnowflakeResultChunk.DownloadState;
+import net.snowflake.client.jdbc.metrics.Counter;
+import net.snowflake.client.jdbc.metrics.Histogram;
+import net.snowflake.client.jdbc.metrics.MetricsRegistry;
 import net.snowflake.client.jdbc.telemetryOOB.TelemetryService;
 import net.snowflake.client.log.ArgSupplier;
 import net.snowflake.client.log.SFLogger;
@@ -30,11 +33,14 @@ import org.apache.http.HttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.utils.URIBuilder;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.util.EntityUtils;
 
 import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.io.PrintWriter;
 import java.io.SequenceInputStream;
 import java.io.StringWriter;
@@ -44,17 +50,20 @@ import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.zip.GZIPInputStream;
 
@@ -88,6 +97,20 @@ public class SnowflakeChunkDownloader implements ChunkDownloader
   private static final SFLogger logger =
       SFLoggerFactory.getLogger(SnowflakeChunkDownloader.class);
   private static final int STREAM_BUFFER_SIZE = 1 * 1024 * 1024;
+
+  private static final Histogram downloadLatency =
+      MetricsRegistry.getInstance().histogram("chunk.download.micros");
+
+  private static final Histogram parseLatency =
+      MetricsRegistry.getInstance().histogram("chunk.parse.micros");
+
+  private static final Histogram waitLatency =
+      MetricsRegistry.getInstance().histogram("chunk.wait.micros");
+
+  // bytes received from the network, before decompression
+  private static final Counter downloadedBytes =
+      MetricsRegistry.getInstance().counter("chunk.download.bytes");
+
   private final SnowflakeConnectString snowflakeConnectionString;
   private final OCSPMode ocspMode;
 
@@ -101,14 +124,48 @@ public class SnowflakeChunkDownloader implements ChunkDownloader
   // index of next chunk to be downloaded
   private int nextChunkToDownload = 0;
 
-  // number of prefetch slots
-  private final int prefetchSlots;
+  // number of prefetch slots, adjusted to the consumption rate unless
+  // adaptive prefetch is disabled
+  private int prefetchSlots;
+
+  // computes the prefetch slots from the consumption rate, null if
+  // adaptive prefetch is disabled
+  private final AdaptivePrefetchPolicy prefetchPolicy;
+
+  // maximum number of downloader threads
+  private final int maxPrefetchThreads;
+
+  // number of times the prefetch slots were adjusted
+  private int prefetchAdjustments = 0;
+
+  // time the last chunk was handed to the consumer
+  private long lastChunkReturnedTime = 0;
 
   // TRUE if JsonParserV2 should be used FALSE otherwise.
   private boolean useJsonParserV2;
 
   // thread pool
-  private ThreadPoolExecutor executor;
+  private ExecutorService executor;
+
+  // decides when chunk requests are hedged, null if hedging is disabled
+  private final ChunkRequestHedger hedger;
+
+  // thread pool running the hedged chunk requests
+  private ExecutorService hedgeExecutor;
+
+  // spill tier for chunks downloaded beyond the memory limit, null if
+  // spilling is disabled
+  private final ChunkSpillStore spillStore;
+
+  // thread pool spilling chunks to disk
+  private ExecutorService spillExecutor;
+
+  // index of next chunk to be spilled
+  private int nextChunkToSpill = 0;
+
+  // pool decoding the chunks fetched by the asynchronous transport, null
+  // when chunks are downloaded and decoded by the same thread
+  private ChunkDecodePool decodePool;
 
   // number of millis main thread waiting for chunks from downloader
   private long numberMillisWaitingForChunks = 0;
@@ -135,7 +192,7 @@ public class SnowflakeChunkDownloader implements ChunkDownloader
   private static Long currentMemoryUsage = 0L;
 
   // used to track the downloading threads
-  private Map<Integer, Future> downloaderFutures = new HashMap<>();
+  private Map<Integer, Future<?>> downloaderFutures = new ConcurrentHashMap<>();
 
   /**
    * query result format
@@ -169,6 +226,12 @@ public class SnowflakeChunkDownloader implements ChunkDownloader
   private static final long downloadedConditionTimeoutInSeconds = HttpUtil.getDownloadedConditionTimeoutInSeconds();
 
   private static final int MAX_NUM_OF_RETRY = 10;
+
+  /**
+   * JVM property enabling the asynchronous chunk download transport
+   */
+  static final String ASYNC_CHUNK_DOWNLOAD_PROPERTY =
+      "net.snowflake.jdbc.asyncChunkDownload";
   private static final int MAX_RETRY_JITTER = 1000; // milliseconds
 
   public OCSPMode getOCSPMode()
@@ -186,7 +249,20 @@ public class SnowflakeChunkDownloader implements ChunkDownloader
   private static ThreadPoolExecutor createChunkDownloaderExecutorService(
       final String threadNamePrefix, final int parallel)
   {
-    ThreadFactory threadFactory = new ThreadFactory()
+    return (ThreadPoolExecutor) Executors.newFixedThreadPool(
+        parallel, createDaemonThreadFactory(threadNamePrefix));
+  }
+
+  /**
+   * Create a factory of daemon downloader threads.
+   *
+   * @param threadNamePrefix name of threads
+   * @return new thread factory
+   */
+  private static ThreadFactory createDaemonThreadFactory(
+      final String threadNamePrefix)
+  {
+    return new ThreadFactory()
     {
       private int threadCount = 1;
 
@@ -211,8 +287,36 @@ public class SnowflakeChunkDownloader implements ChunkDownloader
         return thread;
       }
     };
-    return (ThreadPoolExecutor) Executors.newFixedThreadPool(parallel,
-                                                             threadFactory);
+  }
+
+  /**
+   * Create an executor starting a virtual thread per download, so that the
+   * number of chunks in flight is not bounded by the number of platform
+   * threads.
+   *
+   * @return new executor or null if the JVM does not support virtual threads
+   */
+  private static ExecutorService createVirtualThreadExecutorService()
+  {
+    try
+    {
+      return (ExecutorService) Executors.class
+          .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    }
+    catch (ReflectiveOperationException ex)
+    {
+      logger.debug("Virtual threads are not available: {}", ex.toString());
+      return null;
+    }
+  }
+
+  /**
+   * @return true if the asynchronous chunk download transport is enabled
+   */
+  static boolean isAsyncChunkDownloadEnabled()
+  {
+    return Boolean.parseBoolean(
+        SnowflakeUtil.systemGetProperty(ASYNC_CHUNK_DOWNLOAD_PROPERTY));
   }
 
   /**
@@ -230,6 +334,11 @@ public class SnowflakeChunkDownloader implements ChunkDownloader
     this.qrmk = resultSetSerializable.getQrmk();
     this.networkTimeoutInMilli = resultSetSerializable.getNetworkTimeoutInMilli();
     this.prefetchSlots = resultSetSerializable.getResultPrefetchThreads() * 2;
+    // the prefetch never drops below the configured slots and threads
+    this.prefetchPolicy = resultSetSerializable.isAdaptivePrefetch() ?
+                          new AdaptivePrefetchPolicy(prefetchSlots,
+                                                     prefetchSlots * 2) :
+                          null;
     this.useJsonParserV2 = resultSetSerializable.getUseJsonParserV2();
     this.memoryLimit = resultSetSerializable.getMemoryLimit();
     this.queryResultFormat = resultSetSerializable.getQueryResultFormat();
@@ -294,10 +403,51 @@ public class SnowflakeChunkDownloader implements ChunkDownloader
         resultSetSerializable.getResultPrefetchThreads(),
         prefetchSlots, effectiveThreads);
 
+    // the pool may grow up to the initial number of prefetch slots when the
+    // consumer is faster than the downloads
+    this.maxPrefetchThreads = Math.min(prefetchSlots,
+                                       resultSetSerializable.getChunkFileCount());
+
+    this.hedger = ChunkRequestHedger.fromSystemProperties(
+        resultSetSerializable.getChunkFileCount());
+    if (this.hedger != null)
+    {
+      hedgeExecutor = Executors.newCachedThreadPool(
+          createDaemonThreadFactory("result-chunk-hedger-"));
+    }
+
+    this.spillStore = ChunkSpillStore.fromSystemProperties();
+    if (this.spillStore != null)
+    {
+      spillExecutor =
+          createChunkDownloaderExecutorService("result-chunk-spiller-",
+                                               effectiveThreads);
+    }
+
     // create thread pool
-    executor =
-        createChunkDownloaderExecutorService("result-chunk-downloader-",
-                                             effectiveThreads);
+    if (isAsyncChunkDownloadEnabled())
+    {
+      // download threads only fetch the chunk bodies and hand them to a
+      // CPU bound pool for decompression and parsing
+      executor = createVirtualThreadExecutorService();
+      if (executor == null)
+      {
+        executor =
+            createChunkDownloaderExecutorService("result-chunk-downloader-",
+                                                 effectiveThreads);
+      }
+      decodePool = new ChunkDecodePool(
+          createChunkDownloaderExecutorService(
+              "result-chunk-decoder-",
+              Math.min(effectiveThreads,
+                       Runtime.getRuntime().availableProcessors())));
+    }
+    else
+    {
+      executor =
+          createChunkDownloaderExecutorService("result-chunk-downloader-",
+                                               effectiveThreads);
+    }
 
     try
     {
@@ -349,6 +499,7 @@ public class SnowflakeChunkDownloader implements ChunkDownloader
         if (currentMemoryUsage + neededChunkMemory > memoryLimit &&
             nextChunkToDownload - nextChunkToConsume > 0)
         {
+          startNextSpills();
           break;
         }
 
@@ -373,11 +524,12 @@ public class SnowflakeChunkDownloader implements ChunkDownloader
           logger.debug("submit chunk #{} for downloading, url={}",
                        this.nextChunkToDownload, nextChunk.getScrubbedUrl());
 
-          Future downloaderFuture = executor.submit(getDownloadChunkCallable(this,
+          Future<?> downloaderFuture = executor.submit(getDownloadChunkCallable(this,
                                                                              nextChunk,
                                                                              qrmk, nextChunkToDownload,
                                                                              chunkHeadersMap,
-                                                                             networkTimeoutInMilli));
+                                                                             networkTimeoutInMilli,
+                                                                             false));
           downloaderFutures.put(nextChunkToDownload, downloaderFuture);
           // increment next chunk to download
           nextChunkToDownload++;
@@ -422,6 +574,36 @@ public class SnowflakeChunkDownloader implements ChunkDownloader
     chunkDataCache.clear();
   }
 
+  /**
+   * Submit spill tasks for the chunks after the ones that fit in memory,
+   * so that they are fetched while the consumer catches up.
+   * Number depends on the spill disk limit
+   */
+  private void startNextSpills()
+  {
+    if (spillStore == null)
+    {
+      return;
+    }
+
+    nextChunkToSpill = Math.max(nextChunkToSpill, nextChunkToDownload);
+    while (nextChunkToSpill < chunks.size() &&
+           spillStore.tryReserve(nextChunkToSpill,
+                                 chunks.get(nextChunkToSpill).getUncompressedSize()))
+    {
+      logger.debug("submit chunk #{} for spilling, url={}",
+                   nextChunkToSpill, chunks.get(nextChunkToSpill).getScrubbedUrl());
+
+      spillExecutor.submit(getDownloadChunkCallable(this,
+                                                    chunks.get(nextChunkToSpill),
+                                                    qrmk, nextChunkToSpill,
+                                                    chunkHeadersMap,
+                                                    networkTimeoutInMilli,
+                                                    true));
+      nextChunkToSpill++;
+    }
+  }
+
   private void releaseCurrentMemoryUsage(int chunkId, long releaseSize)
   {
     if (releaseSize > 0)
@@ -480,6 +662,8 @@ public class SnowflakeChunkDownloader implements ChunkDownloader
       logger.debug("free chunk data for chunk #{}",
                    prevChunk);
 
+      adaptPrefetch(chunks.get(prevChunk));
+
       long chunkMemUsage = chunks.get(prevChunk).computeNeededChunkMemory();
 
       // reuse chunkcache if json result
@@ -539,6 +723,7 @@ public class SnowflakeChunkDownloader implements ChunkDownloader
         releaseCurrentMemoryUsage(
             nextChunkToConsume - 1, chunks.get(nextChunkToConsume - 1).computeNeededChunkMemory());
       }
+      lastChunkReturnedTime = System.currentTimeMillis();
       return currentChunk;
     }
     else
@@ -575,6 +760,7 @@ public class SnowflakeChunkDownloader implements ChunkDownloader
         nextChunkToConsume++;
 
         // next chunk to consume is ready for consumption
+        lastChunkReturnedTime = System.currentTimeMillis();
         return currentChunk;
       }
       finally
@@ -599,6 +785,55 @@ public class SnowflakeChunkDownloader implements ChunkDownloader
     }
   }
 
+  /**
+   * Adjust the number of chunks in flight and the number of downloader
+   * threads to the rate at which the consumer processes chunks
+   *
+   * @param consumedChunk chunk the consumer is done with
+   */
+  private void adaptPrefetch(SnowflakeResultChunk consumedChunk)
+  {
+    if (prefetchPolicy == null || lastChunkReturnedTime == 0)
+    {
+      return;
+    }
+
+    long consumeMillis = System.currentTimeMillis() - lastChunkReturnedTime;
+    long produceMillis = consumedChunk.getDownloadTime() + consumedChunk.getParseTime();
+    prefetchPolicy.record(consumeMillis, produceMillis,
+                          consumedChunk.getUncompressedSize());
+
+    int targetSlots = prefetchPolicy.getTargetSlots(prefetchSlots);
+    if (targetSlots == prefetchSlots)
+    {
+      return;
+    }
+
+    int targetThreads = Math.min(targetSlots, maxPrefetchThreads);
+    logger.debug("Adjust prefetch slots from {} to {} and threads to {}: " +
+                 "consume time: {} ms, download and parse time: {} ms",
+                 prefetchSlots, targetSlots, targetThreads,
+                 consumeMillis, produceMillis);
+    prefetchSlots = targetSlots;
+    prefetchAdjustments++;
+
+    // virtual thread executors are not bounded
+    if (executor instanceof ThreadPoolExecutor)
+    {
+      ThreadPoolExecutor pool = (ThreadPoolExecutor) executor;
+      if (targetThreads > pool.getMaximumPoolSize())
+      {
+        pool.setMaximumPoolSize(targetThreads);
+        pool.setCorePoolSize(targetThreads);
+      }
+      else
+      {
+        pool.setCorePoolSize(targetThreads);
+        pool.setMaximumPoolSize(targetThreads);
+      }
+    }
+  }
+
   /**
    * wait for the current chunk to be ready to consume
    * if the downloader fails then let it retry for at most 10 times
@@ -647,11 +882,15 @@ public class SnowflakeChunkDownloader implements ChunkDownloader
                      Thread.currentThread().getId(),
                      retry,
                      nextChunkToConsume);
-        Future downloaderFuture = downloaderFutures.get(nextChunkToConsume);
+        Future<?> downloaderFuture = downloaderFutures.get(nextChunkToConsume);
         if (downloaderFuture != null)
         {
           downloaderFuture.cancel(true);
         }
+        if (decodePool != null)
+        {
+          decodePool.cancel(nextChunkToConsume);
+        }
         HttpUtil.closeExpiredAndIdleConnections();
 
         chunks.get(nextChunkToConsume).getLock().lock();
@@ -672,8 +911,9 @@ public class SnowflakeChunkDownloader implements ChunkDownloader
                                                                     chunks.get(nextChunkToConsume),
                                                                     qrmk, nextChunkToConsume,
                                                                     chunkHeadersMap,
-                                                                    networkTimeoutInMilli));
-        downloaderFutures.put(nextChunkToDownload, downloaderFuture);
+                                                                    networkTimeoutInMilli,
+                                                                    false));
+        downloaderFutures.put(nextChunkToConsume, downloaderFuture);
       }
     }
     if (currentChunk.getDownloadState() == DownloadState.SUCCESS)
@@ -688,8 +928,9 @@ public class SnowflakeChunkDownloader implements ChunkDownloader
                                                   "(Total chunks: %d) retry=%d", nextChunkToConsume,
                                                   this.chunks.size(), retry));
     }
-    this.numberMillisWaitingForChunks +=
-        (System.currentTimeMillis() - startTime);
+    long millisWaiting = System.currentTimeMillis() - startTime;
+    this.numberMillisWaitingForChunks += millisWaiting;
+    waitLatency.record(TimeUnit.MILLISECONDS.toMicros(millisWaiting));
   }
 
   /**
@@ -740,6 +981,25 @@ public class SnowflakeChunkDownloader implements ChunkDownloader
         executor.shutdownNow();
         executor = null;
       }
+      if (decodePool != null)
+      {
+        decodePool.shutdown();
+        decodePool = null;
+      }
+      if (hedgeExecutor != null)
+      {
+        hedgeExecutor.shutdownNow();
+        hedgeExecutor = null;
+      }
+      if (spillExecutor != null)
+      {
+        spillExecutor.shutdownNow();
+        spillExecutor = null;
+      }
+      if (spillStore != null)
+      {
+        spillStore.close();
+      }
       for (SnowflakeResultChunk chunk : chunks)
       {
         // explicitly free each chunk since Arrow chunk may hold direct memory
@@ -758,9 +1018,20 @@ public class SnowflakeChunkDownloader implements ChunkDownloader
       chunks = null;
 
       terminated = true;
+      if (hedger != null)
+      {
+        logger.debug("Hedged chunk requests: {}, won: {}",
+                     hedger.getHedgesIssued(), hedger.getHedgesWon());
+      }
+      logger.debug("Prefetch slots adjusted {} times, final slots: {}",
+                   prefetchAdjustments, prefetchSlots);
       return new DownloaderMetrics(numberMillisWaitingForChunks,
                                    totalMillisDownloadingChunks.get(),
-                                   totalMillisParsingChunks.get());
+                                   totalMillisParsingChunks.get(),
+                                   hedger != null ? hedger.getHedgesIssued() : 0,
+                                   hedger != null ? hedger.getHedgesWon() : 0,
+                                   prefetchAdjustments,
+                                   prefetchSlots);
     }
     return null;
   }
@@ -773,6 +1044,7 @@ public class SnowflakeChunkDownloader implements ChunkDownloader
   private void addDownloadTime(long downloadTime)
   {
     this.totalMillisDownloadingChunks.addAndGet(downloadTime);
+    downloadLatency.record(TimeUnit.MILLISECONDS.toMicros(downloadTime));
   }
 
   /**
@@ -783,6 +1055,7 @@ public class SnowflakeChunkDownloader implements ChunkDownloader
   private void addParsingTime(long parsingTime)
   {
     this.totalMillisParsingChunks.addAndGet(parsingTime);
+    parseLatency.record(TimeUnit.MILLISECONDS.toMicros(parsingTime));
   }
 
   /**
@@ -796,6 +1069,8 @@ public class SnowflakeChunkDownloader implements ChunkDownloader
    *                              chunks. This is mainly for logging purpose
    * @param chunkHeadersMap       contains headers needed to be added when downloading from s3
    * @param networkTimeoutInMilli network timeout
+   * @param spillOnly             true to write the chunk to the spill store
+   *                              instead of parsing it
    * @return A callable responsible for downloading chunk
    */
   private static Callable<Void> getDownloadChunkCallable(
@@ -803,7 +1078,8 @@ public class SnowflakeChunkDownloader implements ChunkDownloader
       final SnowflakeResultChunk resultChunk,
       final String qrmk, final int chunkIndex,
       final Map<String, String> chunkHeadersMap,
-      final int networkTimeoutInMilli)
+      final int networkTimeoutInMilli,
+      final boolean spillOnly)
   {
     return new Callable<Void>()
     {
@@ -814,6 +1090,15 @@ public class SnowflakeChunkDownloader implements ChunkDownloader
        */
       private InputStream getInputStream() throws SnowflakeSQLException
       {
+        if (downloader.spillStore != null)
+        {
+          InputStream spilledInputStream = getSpilledInputStream();
+          if (spilledInputStream != null)
+          {
+            return spilledInputStream;
+          }
+        }
+
         HttpResponse response;
         try
         {
@@ -851,56 +1136,38 @@ public class SnowflakeChunkDownloader implements ChunkDownloader
                                              : "null response"));
         }
 
-        InputStream inputStream;
         final HttpEntity entity = response.getEntity();
-        try
+        InputStream content = null;
+        if (downloader.decodePool != null)
         {
-          // read the chunk data
-          InputStream is = entity.getContent();
-
-          // Determine the format of the response, if it is not
-          // either plain text or gzip, raise an error.
-          Header encoding = response.getFirstHeader("Content-Encoding");
-          if (encoding != null)
-          {
-            if (encoding.getValue().equalsIgnoreCase("gzip"))
-            {
-              /* specify buffer size for GZIPInputStream */
-              is = new GZIPInputStream(is, STREAM_BUFFER_SIZE);
-            }
-            else
-            {
-              throw
-                  new SnowflakeSQLException(
-                      SqlState.INTERNAL_ERROR,
-                      ErrorCode.INTERNAL_ERROR.getMessageCode(),
-                      "Exception: unexpected compression got " +
-                      encoding.getValue());
-            }
-          }
-
-          if (downloader.useJsonParserV2 ||
-              downloader.queryResultFormat == QueryResultFormat.ARROW)
+          // read the whole body on the download thread, decompression and
+          // parsing happen on the decode pool
+          try
           {
-            inputStream = is;
+            byte[] body = EntityUtils.toByteArray(entity);
+            downloadedBytes.add(body.length);
+            content = new ByteArrayInputStream(body);
           }
-          else
+          catch (IOException ex)
           {
-            // Build a sequence of streams to wrap the input stream
-            // with '[' ... ']' to be able to plug this in the
-            // Jackson JSON parser.
-            // gzip stream uses 64KB
-            // no buffering as json parser does it internally
-            inputStream =
-                new SequenceInputStream(
-                    Collections.enumeration(Arrays.asList(
-                        new ByteArrayInputStream("[".getBytes(
-                            StandardCharsets.UTF_8)),
-                        is,
-                        new ByteArrayInputStream("]".getBytes(
-                            StandardCharsets.UTF_8)))));
+            throw new SnowflakeSQLException(SqlState.IO_ERROR,
+                                            ErrorCode.NETWORK_ERROR
+                                                .getMessageCode(),
+                                            "Error encountered when downloading a result chunk: "
+                                            + ex.getLocalizedMessage());
           }
         }
+
+        InputStream inputStream;
+        try
+        {
+          // read the chunk data
+          InputStream is = content != null ? content :
+                           new WireByteCountingInputStream(entity.getContent());
+
+          Header encoding = response.getFirstHeader("Content-Encoding");
+          inputStream = wrapContent(is, encoding != null ? encoding.getValue() : null);
+        }
         catch (Exception ex)
         {
           logger.error(
@@ -922,18 +1189,165 @@ public class SnowflakeChunkDownloader implements ChunkDownloader
       }
 
       /**
-       * Read the input stream and parse chunk data into memory
-       * @param inputStream
-       * @throws SnowflakeSQLException
+       * Open the chunk data if it has been spilled to disk
+       * @return input stream or null if the chunk must be downloaded
+       * @throws SnowflakeSQLException if interrupted while waiting for the
+       *                               chunk being spilled
        */
-      private void downloadAndParseChunk(InputStream inputStream) throws SnowflakeSQLException
+      private InputStream getSpilledInputStream() throws SnowflakeSQLException
       {
-        // remember the download time
-        resultChunk.setDownloadTime(System.currentTimeMillis() - startTime);
-        downloader.addDownloadTime(resultChunk.getDownloadTime());
+        ChunkSpillStore.SpilledChunk spilled;
+        try
+        {
+          spilled = downloader.spillStore.take(chunkIndex);
+        }
+        catch (InterruptedException ex)
+        {
+          Thread.currentThread().interrupt();
+          throw new SnowflakeSQLException(SqlState.INTERNAL_ERROR,
+                                          ErrorCode.INTERNAL_ERROR.getMessageCode(),
+                                          "Interrupted while waiting for the spill of #chunk"
+                                          + chunkIndex);
+        }
+        if (spilled == null)
+        {
+          return null;
+        }
 
-        startTime = System.currentTimeMillis();
+        logger.debug("Read #chunk{} from spill file {}", chunkIndex, spilled.path);
+        InputStream is = null;
+        try
+        {
+          is = downloader.spillStore.open(spilled);
+          return wrapContent(is, spilled.contentEncoding);
+        }
+        catch (Exception ex)
+        {
+          logger.debug("Failed to read spilled #chunk{}: {}",
+                       chunkIndex, ex.getLocalizedMessage());
+          if (is != null)
+          {
+            try
+            {
+              is.close();
+            }
+            catch (IOException ignored)
+            {
+            }
+          }
+          // download the chunk instead
+          return null;
+        }
+      }
+
+      /**
+       * Decompress the chunk data according to its content encoding and
+       * wrap JSON rows into an array if needed by the parser
+       * @param is chunk data
+       * @param encoding content encoding, may be null
+       * @return input stream to parse
+       * @throws Exception if the content encoding is not supported or the
+       *                   gzip header cannot be read
+       */
+      private InputStream wrapContent(InputStream is, String encoding) throws Exception
+      {
+        // Determine the format of the response, if it is not
+        // either plain text or gzip, raise an error.
+        if (encoding != null)
+        {
+          if (encoding.equalsIgnoreCase("gzip"))
+          {
+            /* specify buffer size for GZIPInputStream */
+            is = new GZIPInputStream(is, STREAM_BUFFER_SIZE);
+          }
+          else
+          {
+            throw
+                new SnowflakeSQLException(
+                    SqlState.INTERNAL_ERROR,
+                    ErrorCode.INTERNAL_ERROR.getMessageCode(),
+                    "Exception: unexpected compression got " +
+                    encoding);
+          }
+        }
+
+        if (downloader.useJsonParserV2 ||
+            downloader.queryResultFormat == QueryResultFormat.ARROW)
+        {
+          return is;
+        }
+
+        // Build a sequence of streams to wrap the input stream
+        // with '[' ... ']' to be able to plug this in the
+        // Jackson JSON parser.
+        // gzip stream uses 64KB
+        // no buffering as json parser does it internally
+        return new SequenceInputStream(
+            Collections.enumeration(Arrays.asList(
+                new ByteArrayInputStream("[".getBytes(
+                    StandardCharsets.UTF_8)),
+                is,
+                new ByteArrayInputStream("]".getBytes(
+                    StandardCharsets.UTF_8)))));
+      }
+
+      /**
+       * Download the chunk data to the spill store without parsing it
+       */
+      private void spillChunk()
+      {
+        HttpResponse response = null;
+        try
+        {
+          response = getResultChunk(resultChunk.getUrl());
+          if (response != null &&
+              response.getStatusLine().getStatusCode() == 200)
+          {
+            Header encoding = response.getFirstHeader("Content-Encoding");
+            downloader.spillStore.write(chunkIndex,
+                                        new WireByteCountingInputStream(
+                                            response.getEntity().getContent()),
+                                        encoding != null ? encoding.getValue() : null);
+            logger.debug("Spilled #chunk{}", chunkIndex);
+          }
+          else
+          {
+            logger.debug("Failed to spill #chunk{}, response: {}",
+                         chunkIndex, response);
+          }
+        }
+        catch (Exception ex)
+        {
+          logger.debug("Failed to spill #chunk{}: {}",
+                       chunkIndex, ex.getLocalizedMessage());
+        }
+        finally
+        {
+          if (response != null)
+          {
+            // release the connection whether or not the body was written
+            try
+            {
+              EntityUtils.consume(response.getEntity());
+            }
+            catch (IOException ex)
+            {
+              logger.debug("Failed to release the response of #chunk{}: {}",
+                           chunkIndex, ex.getLocalizedMessage());
+            }
+          }
+          // no-op if the chunk has been written
+          downloader.spillStore.complete(chunkIndex, null);
+        }
+      }
 
+      /**
+       * Read the input stream and parse chunk data into memory
+       * @param inputStream chunk data, closed once parsed
+       * @throws SnowflakeSQLException if the chunk data cannot be parsed
+       */
+      private void downloadAndParseChunk(InputStream inputStream) throws SnowflakeSQLException
+      {
         // parse the result json
         try
         {
@@ -989,35 +1403,26 @@ public class SnowflakeChunkDownloader implements ChunkDownloader
         downloader.addParsingTime(resultChunk.getParseTime());
       }
 
-      private long startTime;
-
-      public Void call()
+      /**
+       * Remember the download time and restart the clock for parsing
+       */
+      private void recordDownloadTime()
       {
-        resultChunk.getLock().lock();
-        try
-        {
-          resultChunk.setDownloadState(DownloadState.IN_PROGRESS);
-        }
-        finally
-        {
-          resultChunk.getLock().unlock();
-        }
-
-        logger.debug("Downloading #chunk{}, url={}, Thread {}",
-                    chunkIndex, resultChunk.getUrl(), Thread.currentThread().getId());
+        resultChunk.setDownloadTime(System.currentTimeMillis() - startTime);
+        downloader.addDownloadTime(resultChunk.getDownloadTime());
 
         startTime = System.currentTimeMillis();
+      }
 
-        // initialize the telemetry service for this downloader thread using the main telemetry service
-        TelemetryService.getInstance().updateContext(downloader.snowflakeConnectionString);
-
+      /**
+       * Parse the chunk data and wake up the consumer
+       * @param inputStream chunk data, closed once parsed
+       */
+      private void parseChunk(InputStream inputStream)
+      {
         try
         {
-          InputStream is = getInputStream();
-          logger.debug("Thread {} start downloading #chunk{}",
-                      Thread.currentThread().getId(),
-                      chunkIndex);
-          downloadAndParseChunk(is);
+          downloadAndParseChunk(inputStream);
           logger.debug("Thread {} finish downloading #chunk{}",
                       Thread.currentThread().getId(),
                       chunkIndex);
@@ -1052,35 +1457,104 @@ public class SnowflakeChunkDownloader implements ChunkDownloader
         }
         catch (SnowflakeSQLException ex)
         {
-          resultChunk.getLock().lock();
-          try
-          {
-            logger.debug("get lock to set chunk download error");
-            resultChunk.setDownloadState(DownloadState.FAILURE);
-            StringWriter errors = new StringWriter();
-            ex.printStackTrace(new PrintWriter(errors));
-            resultChunk.setDownloadError(errors.toString());
+          setChunkFailure(ex);
+        }
+      }
 
-            logger.debug(
-                "wake up consumer if it is waiting for a chunk to be ready");
+      /**
+       * Record the download error and wake up the consumer
+       * @param ex error raised by the download or the parsing of the chunk
+       */
+      private void setChunkFailure(SnowflakeSQLException ex)
+      {
+        resultChunk.getLock().lock();
+        try
+        {
+          logger.debug("get lock to set chunk download error");
+          resultChunk.setDownloadState(DownloadState.FAILURE);
+          StringWriter errors = new StringWriter();
+          ex.printStackTrace(new PrintWriter(errors));
+          resultChunk.setDownloadError(errors.toString());
 
-            resultChunk.getDownloadCondition().signal();
+          logger.debug(
+              "wake up consumer if it is waiting for a chunk to be ready");
+
+          resultChunk.getDownloadCondition().signal();
+        }
+        finally
+        {
+          logger.debug("Failed to download #chunk{}, free lock",
+                       chunkIndex);
+          resultChunk.getLock().unlock();
+        }
+
+        logger.debug(
+            "Thread {} Exception encountered ({}:{}) fetching #chunk{} from: {}, Error {}",
+            Thread.currentThread().getId(),
+            ex.getClass().getName(),
+            ex.getLocalizedMessage(),
+            chunkIndex,
+            resultChunk.getScrubbedUrl(),
+            resultChunk.getDownloadError());
+      }
+
+      private long startTime;
+
+      public Void call()
+      {
+        if (spillOnly)
+        {
+          TelemetryService.getInstance().updateContext(downloader.snowflakeConnectionString);
+          spillChunk();
+          return null;
+        }
+
+        resultChunk.getLock().lock();
+        try
+        {
+          resultChunk.setDownloadState(DownloadState.IN_PROGRESS);
+        }
+        finally
+        {
+          resultChunk.getLock().unlock();
+        }
+
+        logger.debug("Downloading #chunk{}, url={}, Thread {}",
+                    chunkIndex, resultChunk.getUrl(), Thread.currentThread().getId());
+
+        startTime = System.currentTimeMillis();
+
+        // initialize the telemetry service for this downloader thread using the main telemetry service
+        TelemetryService.getInstance().updateContext(downloader.snowflakeConnectionString);
+
+        try
+        {
+          final InputStream is = getInputStream();
+          logger.debug("Thread {} start downloading #chunk{}",
+                      Thread.currentThread().getId(),
+                      chunkIndex);
+          recordDownloadTime();
+          if (downloader.decodePool != null)
+          {
+            // the body is in memory, free this thread for the next download
+            if (!downloader.decodePool.submit(chunkIndex, () ->
+            {
+              TelemetryService.getInstance().updateContext(
+                  downloader.snowflakeConnectionString);
+              parseChunk(is);
+            }))
+            {
+              logger.debug("Download of #chunk{} cancelled", chunkIndex);
+            }
           }
-          finally
+          else
           {
-            logger.debug("Failed to download #chunk{}, free lock",
-                         chunkIndex);
-            resultChunk.getLock().unlock();
+            parseChunk(is);
           }
-
-          logger.debug(
-              "Thread {} Exception encountered ({}:{}) fetching #chunk{} from: {}, Error {}",
-              Thread.currentThread().getId(),
-              ex.getClass().getName(),
-              ex.getLocalizedMessage(),
-              chunkIndex,
-              resultChunk.getScrubbedUrl(),
-              resultChunk.getDownloadError());
+        }
+        catch (SnowflakeSQLException ex)
+        {
+          setChunkFailure(ex);
         }
 
         return null;
@@ -1163,6 +1637,85 @@ public class SnowflakeChunkDownloader implements ChunkDownloader
 
       private HttpResponse getResultChunk(String chunkUrl)
       throws URISyntaxException, IOException, SnowflakeSQLException
+      {
+        if (downloader.hedger != null)
+        {
+          return getResultChunkHedged(chunkUrl);
+        }
+        return executeChunkRequest(buildChunkRequest(chunkUrl), null);
+      }
+
+      /**
+       * Fetch the result chunk, sending a duplicate request if the response
+       * takes longer than most of the responses observed so far. The first
+       * response wins and the other request is aborted.
+       *
+       * @param chunkUrl chunk url
+       * @return response of the request that returned first
+       */
+      private HttpResponse getResultChunkHedged(String chunkUrl)
+      throws URISyntaxException, IOException, SnowflakeSQLException
+      {
+        final HttpGet firstRequest = buildChunkRequest(chunkUrl);
+        try
+        {
+          return downloader.hedger.execute(
+              () -> newChunkRequest(firstRequest),
+              downloader.hedgeExecutor);
+        }
+        catch (InterruptedException ex)
+        {
+          // the consumer gave up on this download
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException("Download of #chunk" + chunkIndex +
+                                           " is interrupted");
+        }
+        catch (ExecutionException ex)
+        {
+          if (ex.getCause() instanceof SnowflakeSQLException)
+          {
+            throw (SnowflakeSQLException) ex.getCause();
+          }
+          throw new IOException(ex.getCause());
+        }
+      }
+
+      /**
+       * Create a copy of a chunk request which can be hedged
+       *
+       * @param firstRequest request built for the chunk
+       * @return new request with the same url and headers
+       */
+      private ChunkRequestHedger.Request<HttpResponse> newChunkRequest(
+          HttpGet firstRequest)
+      {
+        final HttpGet httpRequest = new HttpGet(firstRequest.getURI());
+        httpRequest.setHeaders(firstRequest.getAllHeaders());
+        return new ChunkRequestHedger.Request<HttpResponse>()
+        {
+          @Override
+          public HttpResponse execute(AtomicBoolean canceling)
+          throws SnowflakeSQLException
+          {
+            return executeChunkRequest(httpRequest, canceling);
+          }
+
+          @Override
+          public void abort()
+          {
+            httpRequest.abort();
+          }
+        };
+      }
+
+      /**
+       * Build the request of a result chunk
+       *
+       * @param chunkUrl chunk url
+       * @return new request
+       */
+      private HttpGet buildChunkRequest(String chunkUrl)
+      throws URISyntaxException
       {
         URIBuilder uriBuilder = new URIBuilder(chunkUrl);
 
@@ -1184,7 +1737,20 @@ public class SnowflakeChunkDownloader implements ChunkDownloader
           httpRequest.addHeader(SSE_C_KEY, qrmk);
           logger.debug("Adding SSE-C headers");
         }
+        return httpRequest;
+      }
 
+      /**
+       * Execute a result chunk request
+       *
+       * @param httpRequest chunk request
+       * @param canceling   flag stopping the retries, may be null
+       * @return response
+       */
+      private HttpResponse executeChunkRequest(HttpGet httpRequest,
+                                               AtomicBoolean canceling)
+      throws SnowflakeSQLException
+      {
         logger.debug("Thread {} Fetching result #chunk{}: {}",
                      Thread.currentThread().getId(),
                      chunkIndex,
@@ -1200,7 +1766,7 @@ public class SnowflakeChunkDownloader implements ChunkDownloader
                                 httpRequest,
                                 networkTimeoutInMilli / 1000, // retry timeout
                                 0, // no socketime injection
-                                null, // no canceling
+                                canceling,
                                 false, // no cookie
                                 false, // no retry
                                 false, // no request_guid
@@ -1210,7 +1776,8 @@ public class SnowflakeChunkDownloader implements ChunkDownloader
         logger.debug("Thread {} Call #chunk{} returned for URL: {}, response={}",
                      Thread.currentThread().getId(),
                      chunkIndex,
-                     (ArgSupplier) () -> SecretDetector.maskSASToken(chunkUrl),
+                     (ArgSupplier) () -> SecretDetector.maskSASToken(
+                         httpRequest.getURI().toString()),
                      response);
         return response;
       }
@@ -1235,4 +1802,46 @@ public class SnowflakeChunkDownloader implements ChunkDownloader
       return null;
     }
   }
+
+  /**
+   * Counts the bytes of a chunk read from the network in the
+   * chunk.download.bytes metric, as they arrive
+   */
+  private static class WireByteCountingInputStream extends FilterInputStream
+  {
+    WireByteCountingInputStream(InputStream in)
+    {
+      super(in);
+    }
+
+    @Override
+    public int read() throws IOException
+    {
+      int b = super.read();
+      if (b >= 0)
+      {
+        downloadedBytes.increment();
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException
+    {
+      int count = super.read(b, off, len);
+      if (count > 0)
+      {
+        downloadedBytes.add(count);
+      }
+      return count;
+    }
+
+    @Override
+    public long skip(long n) throws IOException
+    {
+      long count = super.skip(n);
+      downloadedBytes.add(count);
+      return count;
+    }
+  }
 }
@@ -18,6 +18,7 @@ import net.snowflake.common.util.Wildcard;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.RowIdLifetime;
 import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
@@ -1408,6 +1409,85 @@ public class SnowflakeDatabaseMetaData implements DatabaseMetaData
     return SFPair.of(catalog, schemaPattern);
   }
 
+  /**
+   * @param pattern schema or object name pattern
+   * @return true if the pattern is set and does not match every name. An
+   * escaped wildcard matches itself only, so it makes the pattern selective.
+   */
+  static boolean isSelectivePattern(String pattern)
+  {
+    return pattern != null && !pattern.isEmpty() &&
+           !pattern.trim().matches("%+") && !pattern.trim().equals(".*");
+  }
+
+  /**
+   * Get the schemas of a database that match a pattern. The show command
+   * filters on the pattern case insensitively, so the result is matched
+   * again with the compiled pattern.
+   */
+  private List<String> getMatchingSchemaNames(Statement statement,
+                                              String catalog,
+                                              String schemaPattern,
+                                              Pattern compiledSchemaPattern)
+  throws SQLException
+  {
+    String showSchemas = "show /* JDBC:DatabaseMetaData.getColumns() */ schemas like '"
+                         + schemaPattern + "' in database \"" + catalog + "\"";
+
+    List<String> schemaNames = new ArrayList<>();
+    ResultSet resultSet = executeAndReturnEmptyResultIfNotFound(
+        statement, showSchemas, GET_SCHEMAS);
+    while (resultSet.next())
+    {
+      String schemaName = resultSet.getString(2);
+      if (compiledSchemaPattern == null ||
+          compiledSchemaPattern.matcher(schemaName).matches())
+      {
+        schemaNames.add(schemaName);
+      }
+    }
+    return schemaNames;
+  }
+
+  /**
+   * Get the schema and name of the tables and views that match a pattern,
+   * either in a given schema or in all schemas of a database matching the
+   * schema pattern.
+   */
+  private List<SFPair<String, String>> getMatchingTableNames(
+      Statement statement, String catalog, String schemaName,
+      String tableNamePattern, Pattern compiledSchemaPattern,
+      Pattern compiledTablePattern) throws SQLException
+  {
+    String showObjects = "show /* JDBC:DatabaseMetaData.getColumns() */ objects like '"
+                         + tableNamePattern + "'";
+    if (schemaName == null)
+    {
+      showObjects += " in database \"" + catalog + "\"";
+    }
+    else
+    {
+      showObjects += " in schema \"" + catalog + "\".\"" + schemaName + "\"";
+    }
+
+    List<SFPair<String, String>> tableNames = new ArrayList<>();
+    ResultSet resultSet = executeAndReturnEmptyResultIfNotFound(
+        statement, showObjects, GET_TABLES);
+    while (resultSet.next())
+    {
+      String tableName = resultSet.getString(2);
+      String tableSchemaName = resultSet.getString(4);
+      if ((compiledTablePattern == null
+           || compiledTablePattern.matcher(tableName).matches())
+          && (schemaName != null || compiledSchemaPattern == null
+              || compiledSchemaPattern.matcher(tableSchemaName).matches()))
+      {
+        tableNames.add(SFPair.of(tableSchemaName, tableName));
+      }
+    }
+    return tableNames;
+  }
+
   /* helper function for getProcedures, getFunctionColumns, etc. Returns sql command to show some type of result such
    as procedures or udfs */
   private String getFirstResultSetCommand(String catalog, String schemaPattern, String name, String type)
@@ -1671,7 +1751,8 @@ public class SnowflakeDatabaseMetaData implements DatabaseMetaData
     Statement statement = connection.createStatement();
     return new SnowflakeDatabaseMetaDataQueryResultSet(
         GET_CATALOGS,
-        statement.executeQuery(showDB), statement)
+        executeCachedShowCommand(statement, showDB, GET_CATALOGS, false),
+        statement)
     {
       @Override
       public boolean next() throws SQLException
@@ -1771,35 +1852,76 @@ public class SnowflakeDatabaseMetaData implements DatabaseMetaData
     }
     else
     {
-      if (schemaPattern == null || Wildcard.isWildcardPatternStr(schemaPattern))
-      {
-        showColumnCommand += " in database \"" + catalog + "\"";
-      }
-      else if (schemaPattern.isEmpty())
-      {
-        return SnowflakeDatabaseMetaDataResultSet.getEmptyResultSet(
-            extendedSet ? GET_COLUMNS_EXTENDED_SET : GET_COLUMNS, statement);
-      }
-      else
+      String schemaName = null;
+      String tableName = null;
+
+      if (schemaPattern != null && !Wildcard.isWildcardPatternStr(schemaPattern))
       {
-        schemaPattern = unescapeChars(schemaPattern);
-        if (tableNamePattern == null || Wildcard.isWildcardPatternStr(tableNamePattern))
+        if (schemaPattern.isEmpty())
         {
-          showColumnCommand += " in schema \"" + catalog + "\".\"" +
-                               schemaPattern + "\"";
+          return SnowflakeDatabaseMetaDataResultSet.getEmptyResultSet(
+              extendedSet ? GET_COLUMNS_EXTENDED_SET : GET_COLUMNS, statement);
         }
-        else if (tableNamePattern.isEmpty())
+        schemaName = unescapeChars(schemaPattern);
+
+        if (tableNamePattern != null && tableNamePattern.isEmpty())
         {
           return SnowflakeDatabaseMetaDataResultSet.getEmptyResultSet(
               extendedSet ? GET_COLUMNS_EXTENDED_SET : GET_COLUMNS, statement);
         }
-        else
+        if (tableNamePattern != null && !Wildcard.isWildcardPatternStr(tableNamePattern))
+        {
+          tableName = unescapeChars(tableNamePattern);
+        }
+      }
+
+      // show columns can only be scoped to a database, a schema or a single
+      // table and filters on the column name only. A selective schema or
+      // table pattern would otherwise be applied client side on every column
+      // of the database or schema, so first resolve the matching schemas and
+      // tables with cheaper show commands and narrow the scope when the
+      // pattern matches a single object.
+      if (schemaName == null && isSelectivePattern(schemaPattern))
+      {
+        List<String> schemaNames = getMatchingSchemaNames(
+            statement, catalog, schemaPattern, compiledSchemaPattern);
+        if (schemaNames.isEmpty())
         {
-          tableNamePattern = unescapeChars(tableNamePattern);
-          showColumnCommand += " in table \"" + catalog + "\".\"" +
-                               schemaPattern + "\".\"" + tableNamePattern + "\"";
+          return SnowflakeDatabaseMetaDataResultSet.getEmptyResultSet(
+              extendedSet ? GET_COLUMNS_EXTENDED_SET : GET_COLUMNS, statement);
+        }
+        else if (schemaNames.size() == 1)
+        {
+          schemaName = schemaNames.get(0);
         }
       }
+
+      if (tableName == null && isSelectivePattern(tableNamePattern))
+      {
+        List<SFPair<String, String>> tableNames = getMatchingTableNames(
+            statement, catalog, schemaName, tableNamePattern,
+            compiledSchemaPattern, compiledTablePattern);
+        if (tableNames.size() == 1)
+        {
+          schemaName = tableNames.get(0).left;
+          tableName = tableNames.get(0).right;
+        }
+      }
+
+      if (schemaName == null)
+      {
+        showColumnCommand += " in database \"" + catalog + "\"";
+      }
+      else if (tableName == null)
+      {
+        showColumnCommand += " in schema \"" + catalog + "\".\"" +
+                             schemaName + "\"";
+      }
+      else
+      {
+        showColumnCommand += " in table \"" + catalog + "\".\"" +
+                             schemaName + "\".\"" + tableName + "\"";
+      }
     }
 
     logger.debug("sql command to get column metadata: {}",
@@ -3294,6 +3416,83 @@ public class SnowflakeDatabaseMetaData implements DatabaseMetaData
                                                           DBMetadataResultSetMetadata metadataType)
   throws SQLException
   {
+    return executeCachedShowCommand(statement, sql, metadataType, true);
+  }
+
+  /**
+   * Execute a show command to get metadata. If the session has a metadata
+   * cache, the result of the show command is served from and materialized
+   * into the cache.
+   */
+  private ResultSet executeCachedShowCommand(Statement statement, String sql,
+                                             DBMetadataResultSetMetadata metadataType,
+                                             boolean emptyResultIfNotFound)
+  throws SQLException
+  {
+    SnowflakeMetadataCache metadataCache = session.getMetadataCache();
+    if (metadataCache == null)
+    {
+      return executeShowCommand(statement, sql, metadataType,
+                                emptyResultIfNotFound);
+    }
+
+    String key = SnowflakeMetadataCache.key(session.getUrl(),
+                                            session.getUser(),
+                                            session.getRole(),
+                                            session.getDatabase(),
+                                            session.getSchema(),
+                                            sql);
+    SnowflakeMetadataCache.Entry entry = metadataCache.get(key);
+    if (entry == null)
+    {
+      ResultSet resultSet = executeShowCommand(statement, sql, metadataType,
+                                               emptyResultIfNotFound);
+
+      List<String> columnNames = new ArrayList<>();
+      ResultSetMetaData resultSetMetaData = resultSet.getMetaData();
+      for (int i = 1; i <= resultSetMetaData.getColumnCount(); i++)
+      {
+        columnNames.add(resultSetMetaData.getColumnName(i));
+      }
+
+      List<Object[]> rows = new ArrayList<>();
+      while (resultSet.next())
+      {
+        Object[] row = new Object[columnNames.size()];
+        for (int i = 0; i < row.length; i++)
+        {
+          row[i] = resultSet.getString(i + 1);
+        }
+        rows.add(row);
+      }
+      // the empty result of a missing object closes the statement, which
+      // the cached result set returned below is bound to
+      if (!(resultSet instanceof SnowflakeDatabaseMetaDataResultSet))
+      {
+        resultSet.close();
+      }
+
+      entry = metadataCache.put(key, columnNames, rows.toArray(new Object[0][]));
+    }
+
+    return new SnowflakeDatabaseMetaDataResultSet(
+        entry.columnNames,
+        Collections.nCopies(entry.columnNames.size(), "TEXT"),
+        Collections.nCopies(entry.columnNames.size(), Types.VARCHAR),
+        entry.rows,
+        statement);
+  }
+
+  private ResultSet executeShowCommand(Statement statement, String sql,
+                                       DBMetadataResultSetMetadata metadataType,
+                                       boolean emptyResultIfNotFound)
+  throws SQLException
+  {
+    if (!emptyResultIfNotFound)
+    {
+      return statement.executeQuery(sql);
+    }
+
     ResultSet resultSet;
     try
     {
@@ -4,6 +4,7 @@
 
 package net.snowflake.client.jdbc;
 
+import net.snowflake.client.core.ConnectionPreloader;
 import net.snowflake.common.core.ResourceBundleManager;
 import net.snowflake.common.core.SqlState;
 
@@ -57,6 +58,9 @@ public class SnowflakeDriver implements Driver
      * Get the manifest properties here.
      */
     initializeClientVersionFromManifest();
+
+    // warm up TLS and OCSP for the first connection, if enabled
+    ConnectionPreloader.preloadInBackground();
   }
 
   static private void initializeClientVersionFromManifest()
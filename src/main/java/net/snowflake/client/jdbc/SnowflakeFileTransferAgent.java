@@ -25,6 +25,9 @@ import net.snowflake.client.jdbc.cloud.storage.StorageObjectMetadata;
 import net.snowflake.client.jdbc.cloud.storage.StorageObjectSummary;
 import net.snowflake.client.jdbc.cloud.storage.StorageObjectSummaryCollection;
 import net.snowflake.client.jdbc.cloud.storage.StorageProviderException;
+import net.snowflake.client.jdbc.metrics.Counter;
+import net.snowflake.client.jdbc.metrics.Histogram;
+import net.snowflake.client.jdbc.metrics.MetricsRegistry;
 import net.snowflake.client.jdbc.telemetryOOB.TelemetryService;
 import net.snowflake.client.log.ArgSupplier;
 import net.snowflake.client.log.SFLogger;
@@ -78,8 +81,6 @@ public class SnowflakeFileTransferAgent implements SnowflakeFixedView
   final static SFLogger logger =
       SFLoggerFactory.getLogger(SnowflakeFileTransferAgent.class);
 
-  final static StorageClientFactory storageFactory = StorageClientFactory.getFactory();
-
   private static final ObjectMapper mapper =
       ObjectMapperFactory.getObjectMapper();
 
@@ -90,6 +91,24 @@ public class SnowflakeFileTransferAgent implements SnowflakeFixedView
 
   private static final String FILE_PROTOCOL = "file://";
 
+  private static final Histogram uploadLatency =
+      MetricsRegistry.getInstance().histogram("put.file.micros");
+
+  private static final Counter uploadedBytes =
+      MetricsRegistry.getInstance().counter("put.bytes");
+
+  private static final Histogram uploadThroughput =
+      MetricsRegistry.getInstance().histogram("put.bytesPerSecond");
+
+  private static final Histogram downloadLatency =
+      MetricsRegistry.getInstance().histogram("get.file.micros");
+
+  private static final Counter downloadedBytes =
+      MetricsRegistry.getInstance().counter("get.bytes");
+
+  private static final Histogram downloadThroughput =
+      MetricsRegistry.getInstance().histogram("get.bytesPerSecond");
+
   static private String localFSFileSep = systemGetProperty("file.separator");
   static private int DEFAULT_PARALLEL = 10;
 
@@ -731,6 +750,8 @@ public class SnowflakeFileTransferAgent implements SnowflakeFixedView
 
         long uploadSize;
 
+        long transferStartTime = 0;
+
         String digest = null;
 
         logger.debug("Dest file name={}");
@@ -810,6 +831,7 @@ public class SnowflakeFileTransferAgent implements SnowflakeFixedView
           }
 
           // upload it
+          transferStartTime = System.nanoTime();
           switch (stage.getStageType())
           {
             case LOCAL_FS:
@@ -871,6 +893,8 @@ public class SnowflakeFileTransferAgent implements SnowflakeFixedView
 
         // set dest size
         metadata.destFileSize = uploadSize;
+        recordTransfer(uploadLatency, uploadedBytes, uploadThroughput,
+                       transferStartTime, uploadSize);
 
         // mark the file as being uploaded
         metadata.resultStatus = ResultStatus.UPLOADED;
@@ -880,6 +904,25 @@ public class SnowflakeFileTransferAgent implements SnowflakeFixedView
     };
   }
 
+  /**
+   * Record the transfer of a file
+   *
+   * @param latency    transfer time histogram
+   * @param bytes      transferred bytes counter
+   * @param throughput transfer rate histogram
+   * @param startTime  start of the transfer from System.nanoTime()
+   * @param size       size of the transferred file
+   */
+  private static void recordTransfer(Histogram latency, Counter bytes,
+                                     Histogram throughput, long startTime,
+                                     long size)
+  {
+    long elapsedNanos = Math.max(1, System.nanoTime() - startTime);
+    latency.record(TimeUnit.NANOSECONDS.toMicros(elapsedNanos));
+    bytes.add(size);
+    throughput.record((long) (size * 1e9 / elapsedNanos));
+  }
+
   /**
    * A callable that can be executed in a separate thread using executor service.
    * <p>
@@ -933,6 +976,7 @@ public class SnowflakeFileTransferAgent implements SnowflakeFixedView
         logger.debug("Started copying file from: {}:{} file path:{} to {} destName:{}",
                      stage.getStageType().name(), stage.getLocation(), srcFilePath, localLocation, destFileName);
 
+        long transferStartTime = System.nanoTime();
         try
         {
           switch (stage.getStageType())
@@ -978,6 +1022,8 @@ public class SnowflakeFileTransferAgent implements SnowflakeFixedView
 
         // set dest size
         metadata.destFileSize = downloadSize;
+        recordTransfer(downloadLatency, downloadedBytes, downloadThroughput,
+                       transferStartTime, downloadSize);
 
         // mark the file as being uploaded
         metadata.resultStatus = ResultStatus.DOWNLOADED;
@@ -1004,7 +1050,7 @@ public class SnowflakeFileTransferAgent implements SnowflakeFixedView
 
     if (stageInfo.getStageType() != StageInfo.StageType.LOCAL_FS)
     {
-      storageClient = storageFactory.createClient(stageInfo, parallel, null);
+      storageClient = StorageClientFactory.getFactory().createClient(stageInfo, parallel, null);
     }
   }
 
@@ -1552,7 +1598,7 @@ public class SnowflakeFileTransferAgent implements SnowflakeFixedView
                 SRC_FILE_NAME_FOR_STREAM,
                 fileMetadataMap.get(SRC_FILE_NAME_FOR_STREAM),
                 (stageInfo.getStageType() == StageInfo.StageType.LOCAL_FS) ?
-                null : storageFactory.createClient(stageInfo, parallel, encMat),
+                null : StorageClientFactory.getFactory().createClient(stageInfo, parallel, encMat),
                 connection,
                 command,
                 sourceStream,
@@ -1619,7 +1665,7 @@ public class SnowflakeFileTransferAgent implements SnowflakeFixedView
     RemoteStoreFileEncryptionMaterial encMat = srcFileToEncMat.get(fileName);
     String presignedUrl = srcFileToPresignedUrl.get(fileName);
 
-    return storageFactory.createClient(stageInfo, parallel, encMat)
+    return StorageClientFactory.getFactory().createClient(stageInfo, parallel, encMat)
         .downloadToStream(connection, command, parallel, remoteLocation.location,
                           stageFilePath, stageInfo.getRegion(), presignedUrl);
   }
@@ -1655,7 +1701,7 @@ public class SnowflakeFileTransferAgent implements SnowflakeFixedView
             localLocation,
             fileMetadataMap,
             (stageInfo.getStageType() == StageInfo.StageType.LOCAL_FS) ?
-            null : storageFactory.createClient(stageInfo, parallel, encMat),
+            null : StorageClientFactory.getFactory().createClient(stageInfo, parallel, encMat),
             connection,
             command,
             parallel,
@@ -1733,7 +1779,8 @@ public class SnowflakeFileTransferAgent implements SnowflakeFixedView
             srcFile,
             fileMetadata,
             (stageInfo.getStageType() == StageInfo.StageType.LOCAL_FS) ?
-            null : storageFactory.createClient(stageInfo, parallel, encryptionMaterial.get(0)),
+            null : StorageClientFactory.getFactory().createClient(
+                stageInfo, parallel, encryptionMaterial.get(0)),
             connection, command,
             null, false,
             (parallel > 1 ? 1 : this.parallel), srcFileObj, encryptionMaterial.get(0)));
@@ -2020,7 +2067,8 @@ public class SnowflakeFileTransferAgent implements SnowflakeFixedView
                      ? "NULL"
                      : encMat.getSmkId() + "|" + encMat.getQueryId()));
 
-    StorageObjectMetadata meta = storageFactory.createStorageMetadataObj(stage.getStageType());
+    StorageObjectMetadata meta = StorageClientFactory.getFactory()
+        .createStorageMetadataObj(stage.getStageType());
     meta.setContentLength(uploadSize);
     if (digest != null)
     {
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2012-2019 Snowflake Computing Inc. All rights reserved.
+ */
+package net.snowflake.client.jdbc;
+
+import net.snowflake.client.log.SFLogger;
+import net.snowflake.client.log.SFLoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache of the SHOW command results issued by SnowflakeDatabaseMetaData.
+ * <p>
+ * Entries are keyed by the SHOW command together with the account, user,
+ * role and current database and schema it runs for, expire after a TTL and
+ * are evicted in LRU order when the cache is full. The driver drops all
+ * entries whenever a DDL statement is executed by a session using the cache.
+ * DDL run by other clients is only picked up once the entries expire.
+ * <p>
+ * A cache is used by a single connection when created from the
+ * metadataCacheTtl connection property, or shared by all connections of a
+ * data source when passed as the metadataCache connection property.
+ */
+public class SnowflakeMetadataCache
+{
+  static final
+  SFLogger logger = SFLoggerFactory.getLogger(SnowflakeMetadataCache.class);
+
+  /**
+   * Materialized result of a SHOW command
+   */
+  static class Entry
+  {
+    final List<String> columnNames;
+
+    final Object[][] rows;
+
+    final long expirationTimeInMillis;
+
+    Entry(List<String> columnNames, Object[][] rows, long expirationTimeInMillis)
+    {
+      this.columnNames = columnNames;
+      this.rows = rows;
+      this.expirationTimeInMillis = expirationTimeInMillis;
+    }
+  }
+
+  private final long ttlInMillis;
+
+  private final int maxEntries;
+
+  private final LinkedHashMap<String, Entry> entries;
+
+  private final LongAdder hitCount = new LongAdder();
+  private final LongAdder missCount = new LongAdder();
+  private final LongAdder evictionCount = new LongAdder();
+  private final LongAdder invalidationCount = new LongAdder();
+
+  /**
+   * @param ttlInMillis time to live of an entry in milliseconds
+   * @param maxEntries  maximum number of SHOW results kept
+   */
+  public SnowflakeMetadataCache(long ttlInMillis, int maxEntries)
+  {
+    this.ttlInMillis = ttlInMillis;
+    this.maxEntries = maxEntries;
+    this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true)
+    {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest)
+      {
+        if (size() > SnowflakeMetadataCache.this.maxEntries)
+        {
+          evictionCount.increment();
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  /**
+   * Build the cache key of a SHOW command
+   *
+   * @param serverUrl server url of the session
+   * @param user      user name of the session
+   * @param role      current role of the session, which decides what
+   *                  objects are visible
+   * @param database  current database of the session
+   * @param schema    current schema of the session
+   * @param command   SHOW command text
+   * @return cache key
+   */
+  static String key(String serverUrl, String user, String role,
+                    String database, String schema, String command)
+  {
+    return serverUrl + '\u0000' + user + '\u0000' + role + '\u0000' +
+           database + '\u0000' + schema + '\u0000' + command;
+  }
+
+  synchronized Entry get(String key)
+  {
+    Entry entry = entries.get(key);
+    if (entry != null &&
+        System.currentTimeMillis() >= entry.expirationTimeInMillis)
+    {
+      entries.remove(key);
+      evictionCount.increment();
+      entry = null;
+    }
+
+    if (entry == null)
+    {
+      missCount.increment();
+    }
+    else
+    {
+      hitCount.increment();
+    }
+    return entry;
+  }
+
+  synchronized Entry put(String key, List<String> columnNames, Object[][] rows)
+  {
+    Entry entry = new Entry(columnNames, rows,
+                            System.currentTimeMillis() + ttlInMillis);
+    entries.put(key, entry);
+    return entry;
+  }
+
+  /**
+   * Drop all entries, e.g. after the driver has seen a DDL statement
+   */
+  public synchronized void invalidateAll()
+  {
+    if (!entries.isEmpty())
+    {
+      logger.debug("invalidate {} metadata cache entries", entries.size());
+      entries.clear();
+    }
+    invalidationCount.increment();
+  }
+
+  public synchronized int size()
+  {
+    return entries.size();
+  }
+
+  public long getHitCount()
+  {
+    return hitCount.sum();
+  }
+
+  public long getMissCount()
+  {
+    return missCount.sum();
+  }
+
+  public long getEvictionCount()
+  {
+    return evictionCount.sum();
+  }
+
+  public long getInvalidationCount()
+  {
+    return invalidationCount.sum();
+  }
+}
@@ -148,6 +148,7 @@ public class SnowflakeResultSetSerializableV1 implements SnowflakeResultSetSeria
   // uses http client to download chunk files
   boolean useJsonParserV2;
   int resultPrefetchThreads;
+  boolean adaptivePrefetch;
   String qrmk;
   Map<String, String> chunkHeadersMap = new HashMap<>();
   // Below fields are from session or statement
@@ -221,6 +222,7 @@ public class SnowflakeResultSetSerializableV1 implements SnowflakeResultSetSeria
     // below fields are used for building a ChunkDownloader
     this.useJsonParserV2 = toCopy.useJsonParserV2;
     this.resultPrefetchThreads = toCopy.resultPrefetchThreads;
+    this.adaptivePrefetch = toCopy.adaptivePrefetch;
     this.qrmk = toCopy.qrmk;
     this.chunkHeadersMap = toCopy.chunkHeadersMap;
 
@@ -355,6 +357,11 @@ public class SnowflakeResultSetSerializableV1 implements SnowflakeResultSetSeria
     return useJsonParserV2;
   }
 
+  public boolean isAdaptivePrefetch()
+  {
+    return adaptivePrefetch;
+  }
+
   public long getMemoryLimit()
   {
     return memoryLimit;
@@ -693,6 +700,7 @@ public class SnowflakeResultSetSerializableV1 implements SnowflakeResultSetSeria
         sfSession.getNetworkTimeoutInMilli();
     resultSetSerializable.isResultColumnCaseInsensitive =
         sfSession.isResultColumnCaseInsensitive();
+    resultSetSerializable.adaptivePrefetch = sfSession.isAdaptivePrefetch();
 
     // setup transient fields from parameter
     resultSetSerializable.setupFieldsFromParameters();
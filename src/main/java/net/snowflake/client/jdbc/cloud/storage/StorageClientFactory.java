@@ -24,12 +24,18 @@ public class StorageClientFactory
   private final static SFLogger logger =
       SFLoggerFactory.getLogger(SnowflakeS3Client.class);
 
-  private static StorageClientFactory factory;
-
   private StorageClientFactory()
   {
   }
 
+  /**
+   * Holds the factory, created on the first file transfer
+   */
+  private static class FactoryHolder
+  {
+    private static final StorageClientFactory factory = new StorageClientFactory();
+  }
+
   /**
    * Creates or returns the single instance of the factory object
    *
@@ -37,12 +43,7 @@ public class StorageClientFactory
    */
   public static StorageClientFactory getFactory()
   {
-    if (factory == null)
-    {
-      factory = new StorageClientFactory();
-    }
-
-    return factory;
+    return FactoryHolder.factory;
   }
 
   /**
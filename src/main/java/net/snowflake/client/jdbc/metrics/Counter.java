@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) 2012-2019 Snowflake Computing Inc. All rights reserved.
+ */
+
+package net.snowflake.client.jdbc.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Monotonic counter, e.g. number of requests or bytes transferred
+ */
+public class Counter
+{
+  private final LongAdder count = new LongAdder();
+
+  Counter()
+  {
+  }
+
+  public void increment()
+  {
+    count.increment();
+  }
+
+  public void add(long value)
+  {
+    count.add(value);
+  }
+
+  public long getCount()
+  {
+    return count.sum();
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2012-2019 Snowflake Computing Inc. All rights reserved.
+ */
+
+package net.snowflake.client.jdbc.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Distribution of non negative values, e.g. latencies in microseconds.
+ * <p>
+ * Values are counted in log-linear buckets: each power of two is split in
+ * four buckets, so percentiles are reported with an error of at most 25%.
+ * Recording a value costs a few atomic increments and never allocates.
+ */
+public class Histogram
+{
+  // linear buckets per power of two, as a number of bits
+  private static final int SUB_BUCKET_BITS = 2;
+
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+  private static final int BUCKETS =
+      SUB_BUCKETS + (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+  private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+  private final LongAdder count = new LongAdder();
+
+  private final LongAdder sum = new LongAdder();
+
+  private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+  Histogram()
+  {
+  }
+
+  /**
+   * @param value value to record, negative values are recorded as 0
+   */
+  public void record(long value)
+  {
+    value = Math.max(0, value);
+    buckets.incrementAndGet(bucketIndex(value));
+    count.increment();
+    sum.add(value);
+    max.accumulate(value);
+  }
+
+  /**
+   * Record the time elapsed since startNanos in microseconds
+   *
+   * @param startNanos start time from System.nanoTime()
+   */
+  public void recordElapsedSince(long startNanos)
+  {
+    record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+  }
+
+  static int bucketIndex(long value)
+  {
+    if (value < SUB_BUCKETS)
+    {
+      return (int) value;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return SUB_BUCKETS + (exponent - SUB_BUCKET_BITS) * SUB_BUCKETS + subBucket;
+  }
+
+  /**
+   * @return largest value counted in a bucket
+   */
+  static long bucketUpperBound(int index)
+  {
+    if (index < SUB_BUCKETS)
+    {
+      return index;
+    }
+    int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+    long subBucket = (index - SUB_BUCKETS) % SUB_BUCKETS;
+    return ((SUB_BUCKETS + subBucket + 1) << shift) - 1;
+  }
+
+  public long getCount()
+  {
+    return count.sum();
+  }
+
+  public long getSum()
+  {
+    return sum.sum();
+  }
+
+  public long getMax()
+  {
+    return max.get();
+  }
+
+  public double getMean()
+  {
+    long n = getCount();
+    return n == 0 ? 0 : (double) getSum() / n;
+  }
+
+  /**
+   * @param percentile percentile between 0 and 100
+   * @return approximate value at the percentile, 0 if nothing was recorded
+   */
+  public long getPercentile(double percentile)
+  {
+    long total = 0;
+    long[] counts = new long[BUCKETS];
+    for (int i = 0; i < BUCKETS; i++)
+    {
+      counts[i] = buckets.get(i);
+      total += counts[i];
+    }
+    if (total == 0)
+    {
+      return 0;
+    }
+
+    long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++)
+    {
+      seen += counts[i];
+      if (seen >= rank)
+      {
+        return Math.min(bucketUpperBound(i), getMax());
+      }
+    }
+    return getMax();
+  }
+}
@@ -0,0 +1,27 @@
+/*
+ * Copyright (c) 2012-2019 Snowflake Computing Inc. All rights reserved.
+ */
+
+package net.snowflake.client.jdbc.metrics;
+
+import java.util.Map;
+
+/**
+ * Receives the driver metrics periodically, e.g. to push them to a
+ * monitoring system.
+ * <p>
+ * An exporter is registered with MetricsRegistry.addExporter() or, with a
+ * public no-arg constructor, named by the net.snowflake.jdbc.metricsExporter
+ * system property.
+ */
+public interface MetricsExporter
+{
+  /**
+   * Export the metrics. Called on a driver background thread, must not
+   * block for long.
+   *
+   * @param metrics current value of the metrics by name, as returned by
+   *                MetricsRegistry.snapshot()
+   */
+  void export(Map<String, Number> metrics);
+}
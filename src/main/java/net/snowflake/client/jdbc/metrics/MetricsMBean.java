@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2012-2019 Snowflake Computing Inc. All rights reserved.
+ */
+
+package net.snowflake.client.jdbc.metrics;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanException;
+import javax.management.MBeanInfo;
+import javax.management.MBeanNotificationInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.ReflectionException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read only MBean with one attribute per metric of a registry. The
+ * attributes follow the metrics created since the MBean was registered.
+ */
+class MetricsMBean implements DynamicMBean
+{
+  private final MetricsRegistry registry;
+
+  MetricsMBean(MetricsRegistry registry)
+  {
+    this.registry = registry;
+  }
+
+  @Override
+  public Object getAttribute(String attribute)
+  throws AttributeNotFoundException
+  {
+    Number value = registry.snapshot().get(attribute);
+    if (value == null)
+    {
+      throw new AttributeNotFoundException(attribute);
+    }
+    return value;
+  }
+
+  @Override
+  public AttributeList getAttributes(String[] attributes)
+  {
+    Map<String, Number> snapshot = registry.snapshot();
+    AttributeList list = new AttributeList();
+    for (String attribute : attributes)
+    {
+      Number value = snapshot.get(attribute);
+      if (value != null)
+      {
+        list.add(new Attribute(attribute, value));
+      }
+    }
+    return list;
+  }
+
+  @Override
+  public void setAttribute(Attribute attribute)
+  throws AttributeNotFoundException
+  {
+    throw new AttributeNotFoundException(
+        "Metric " + attribute.getName() + " is read only");
+  }
+
+  @Override
+  public AttributeList setAttributes(AttributeList attributes)
+  {
+    // all attributes are read only
+    return new AttributeList();
+  }
+
+  @Override
+  public Object invoke(String actionName, Object[] params, String[] signature)
+  throws MBeanException, ReflectionException
+  {
+    throw new ReflectionException(
+        new NoSuchMethodException(actionName), "No operation " + actionName);
+  }
+
+  @Override
+  public MBeanInfo getMBeanInfo()
+  {
+    List<MBeanAttributeInfo> attributes = new ArrayList<>();
+    for (Map.Entry<String, Number> metric : registry.snapshot().entrySet())
+    {
+      attributes.add(new MBeanAttributeInfo(
+          metric.getKey(), metric.getValue().getClass().getName(),
+          metric.getKey(), true, false, false));
+    }
+    return new MBeanInfo(MetricsMBean.class.getName(),
+                         "Snowflake JDBC driver metrics",
+                         attributes.toArray(new MBeanAttributeInfo[0]),
+                         null,
+                         new MBeanOperationInfo[0],
+                         new MBeanNotificationInfo[0]);
+  }
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright (c) 2012-2019 Snowflake Computing Inc. All rights reserved.
+ */
+
+package net.snowflake.client.jdbc.metrics;
+
+import net.snowflake.client.jdbc.SnowflakeUtil;
+import net.snowflake.client.log.SFLogger;
+import net.snowflake.client.log.SFLoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Driver wide registry of counters, gauges and histograms.
+ * <p>
+ * Driver components look up their metrics once, typically into static
+ * fields, and record into them on the hot path. The metrics are read as a
+ * whole with snapshot(), through the JMX MBean
+ * net.snowflake.client:type=Metrics when the
+ * net.snowflake.jdbc.metricsJmxEnabled system property is true, or by
+ * exporters registered with addExporter().
+ * <p>
+ * Latency histograms are in microseconds and named with a .micros suffix.
+ */
+public class MetricsRegistry
+{
+  private static final SFLogger logger =
+      SFLoggerFactory.getLogger(MetricsRegistry.class);
+
+  static final String JMX_ENABLED_PROPERTY =
+      "net.snowflake.jdbc.metricsJmxEnabled";
+
+  static final String EXPORTER_PROPERTY = "net.snowflake.jdbc.metricsExporter";
+
+  static final String EXPORT_INTERVAL_PROPERTY =
+      "net.snowflake.jdbc.metricsExportInterval";
+
+  private static final long DEFAULT_EXPORT_INTERVAL_IN_SECONDS = 60;
+
+  static final String MBEAN_NAME = "net.snowflake.client:type=Metrics";
+
+  private static final MetricsRegistry instance = createInstance();
+
+  private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+  private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+  private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+
+  private final Map<MetricsExporter, ScheduledFuture<?>> exporters =
+      new ConcurrentHashMap<>();
+
+  private ScheduledExecutorService exportScheduler;
+
+  MetricsRegistry()
+  {
+  }
+
+  private static MetricsRegistry createInstance()
+  {
+    MetricsRegistry registry = new MetricsRegistry();
+    if (Boolean.parseBoolean(
+        SnowflakeUtil.systemGetProperty(JMX_ENABLED_PROPERTY)))
+    {
+      registry.registerMBean();
+    }
+
+    String exporterClass = SnowflakeUtil.systemGetProperty(EXPORTER_PROPERTY);
+    if (exporterClass != null && !exporterClass.isEmpty())
+    {
+      long interval = DEFAULT_EXPORT_INTERVAL_IN_SECONDS;
+      String intervalValue =
+          SnowflakeUtil.systemGetProperty(EXPORT_INTERVAL_PROPERTY);
+      try
+      {
+        if (intervalValue != null)
+        {
+          interval = Long.parseLong(intervalValue);
+        }
+        MetricsExporter exporter = (MetricsExporter) Class.forName(exporterClass)
+            .getDeclaredConstructor().newInstance();
+        registry.addExporter(exporter, interval, TimeUnit.SECONDS);
+      }
+      catch (ReflectiveOperationException | ClassCastException |
+          IllegalArgumentException ex)
+      {
+        logger.debug("Failed to create metrics exporter {}: {}",
+                     exporterClass, ex.toString());
+      }
+    }
+    return registry;
+  }
+
+  public static MetricsRegistry getInstance()
+  {
+    return instance;
+  }
+
+  /**
+   * @param name metric name
+   * @return counter of the name, created on first use
+   */
+  public Counter counter(String name)
+  {
+    return counters.computeIfAbsent(name, k -> new Counter());
+  }
+
+  /**
+   * @param name metric name
+   * @return histogram of the name, created on first use
+   */
+  public Histogram histogram(String name)
+  {
+    return histograms.computeIfAbsent(name, k -> new Histogram());
+  }
+
+  /**
+   * Register a gauge, replacing the gauge previously registered with the
+   * name
+   *
+   * @param name     metric name
+   * @param supplier current value of the gauge, must be cheap and thread
+   *                 safe
+   */
+  public void gauge(String name, LongSupplier supplier)
+  {
+    gauges.put(name, supplier);
+  }
+
+  /**
+   * Read all metrics. Histograms are reported as name.count, name.mean,
+   * name.p50, name.p95, name.p99 and name.max.
+   *
+   * @return metric values by name, in name order
+   */
+  public Map<String, Number> snapshot()
+  {
+    Map<String, Number> snapshot = new TreeMap<>();
+    counters.forEach((name, counter) -> snapshot.put(name, counter.getCount()));
+    for (Map.Entry<String, LongSupplier> gauge : gauges.entrySet())
+    {
+      try
+      {
+        snapshot.put(gauge.getKey(), gauge.getValue().getAsLong());
+      }
+      catch (RuntimeException ex)
+      {
+        logger.debug("Failed to read gauge {}: {}", gauge.getKey(), ex.toString());
+      }
+    }
+    for (Map.Entry<String, Histogram> entry : histograms.entrySet())
+    {
+      String name = entry.getKey();
+      Histogram histogram = entry.getValue();
+      snapshot.put(name + ".count", histogram.getCount());
+      snapshot.put(name + ".mean", histogram.getMean());
+      snapshot.put(name + ".p50", histogram.getPercentile(50));
+      snapshot.put(name + ".p95", histogram.getPercentile(95));
+      snapshot.put(name + ".p99", histogram.getPercentile(99));
+      snapshot.put(name + ".max", histogram.getMax());
+    }
+    return snapshot;
+  }
+
+  /**
+   * Export the metrics periodically
+   *
+   * @param exporter exporter
+   * @param interval interval between two exports
+   * @param unit     unit of the interval
+   */
+  public synchronized void addExporter(MetricsExporter exporter,
+                                       long interval, TimeUnit unit)
+  {
+    if (exportScheduler == null)
+    {
+      exportScheduler = Executors.newSingleThreadScheduledExecutor(runnable ->
+      {
+        Thread thread = new Thread(runnable, "metrics-exporter");
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+    removeExporter(exporter);
+    exporters.put(exporter, exportScheduler.scheduleAtFixedRate(
+        () -> export(exporter), interval, interval, unit));
+  }
+
+  public synchronized void removeExporter(MetricsExporter exporter)
+  {
+    ScheduledFuture<?> future = exporters.remove(exporter);
+    if (future != null)
+    {
+      future.cancel(false);
+    }
+  }
+
+  private void export(MetricsExporter exporter)
+  {
+    try
+    {
+      exporter.export(snapshot());
+    }
+    catch (RuntimeException ex)
+    {
+      // keep the schedule of the exporter
+      logger.debug("Metrics exporter failed: {}", ex.toString());
+    }
+  }
+
+  /**
+   * Expose the metrics as attributes of the MBean
+   * net.snowflake.client:type=Metrics on the platform MBean server
+   */
+  public void registerMBean()
+  {
+    try
+    {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = new ObjectName(MBEAN_NAME);
+      if (!server.isRegistered(name))
+      {
+        server.registerMBean(new MetricsMBean(this), name);
+      }
+    }
+    catch (JMException | SecurityException ex)
+    {
+      logger.debug("Failed to register the metrics MBean: {}", ex.toString());
+    }
+  }
+
+  /**
+   * Remove the MBean, e.g. before the driver is unloaded
+   */
+  public void unregisterMBean()
+  {
+    try
+    {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = new ObjectName(MBEAN_NAME);
+      if (server.isRegistered(name))
+      {
+        server.unregisterMBean(name);
+      }
+    }
+    catch (JMException | SecurityException ex)
+    {
+      logger.debug("Failed to unregister the metrics MBean: {}", ex.toString());
+    }
+  }
+}
@@ -6,24 +6,27 @@ package net.snowflake.client.jdbc.telemetry;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import net.snowflake.client.core.GzipJsonEntity;
 import net.snowflake.client.core.HttpUtil;
 import net.snowflake.client.core.OCSPMode;
 import net.snowflake.client.core.ObjectMapperFactory;
 import net.snowflake.client.core.SFSession;
 import net.snowflake.client.jdbc.SnowflakeConnectionV1;
 import net.snowflake.client.jdbc.SnowflakeSQLException;
-import net.snowflake.client.jdbc.telemetryOOB.TelemetryThreadPool;
+import net.snowflake.client.jdbc.telemetryOOB.TelemetryPipeline;
 import net.snowflake.client.log.SFLogger;
 import net.snowflake.client.log.SFLoggerFactory;
 import org.apache.http.client.methods.HttpPost;
-import org.apache.http.entity.StringEntity;
 
 import java.io.IOException;
 import java.rmi.UnexpectedException;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 
 /**
@@ -44,18 +47,25 @@ public class TelemetryClient implements Telemetry
 
   private static final int DEFAULT_FORCE_FLUSH_SIZE = 100;
 
+  // logs buffered beyond this are dropped, oldest first
+  private static final int MIN_BUFFER_CAPACITY = 1000;
+
+  // maximum time a log waits in the buffer before being sent
+  private static final long FLUSH_INTERVAL_MS = 10000;
+
+  // maximum time close waits for the remaining logs to be sent
+  private static final long CLOSE_TIMEOUT_MS = 5000;
+
   private final String serverUrl;
   private final String telemetryUrl;
 
 
   private final SFSession session;
-  private LinkedList<TelemetryData> logBatch;
+  private final TelemetryPipeline<TelemetryData> logBatch;
   private static final ObjectMapper mapper =
       ObjectMapperFactory.getObjectMapper();
 
-  private boolean isClosed;
-
-  private Object locker = new Object();
+  private volatile boolean isClosed;
 
   //false if meet any error when sending metrics
   private boolean isTelemetryServiceAvailable = true;
@@ -76,7 +86,9 @@ public class TelemetryClient implements Telemetry
       this.telemetryUrl = this.serverUrl + SF_PATH_TELEMETRY;
     }
 
-    this.logBatch = new LinkedList<>();
+    this.logBatch = new TelemetryPipeline<>(
+        Math.max(MIN_BUFFER_CAPACITY, 10 * flushSize), flushSize,
+        FLUSH_INTERVAL_MS, this::send);
     this.isClosed = false;
     this.forceFlushSize = flushSize;
 
@@ -157,8 +169,8 @@ public class TelemetryClient implements Telemetry
   }
 
   /**
-   * Add log to batch to be submitted to telemetry. Send batch if forceFlushSize
-   * reached
+   * Add log to batch to be submitted to telemetry. The batch is sent in the
+   * background when forceFlushSize is reached.
    *
    * @param log entry to add
    */
@@ -176,15 +188,7 @@ public class TelemetryClient implements Telemetry
       return; // if disable, do nothing
     }
 
-    synchronized (locker)
-    {
-      this.logBatch.add(log);
-    }
-
-    if (this.logBatch.size() >= this.forceFlushSize)
-    {
-      this.sendBatchAsync();
-    }
+    this.logBatch.add(log);
   }
 
   /**
@@ -214,8 +218,9 @@ public class TelemetryClient implements Telemetry
     try
     {
       // sendBatch when close is synchronous, otherwise client might be closed
-      // before data was sent.
-      sendBatchAsync().get();
+      // before data was sent. The wait is bounded so that an unreachable
+      // telemetry server does not hang the close of the connection.
+      sendBatchAsync().get(CLOSE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
     }
     catch(Throwable e)
     {
@@ -240,18 +245,12 @@ public class TelemetryClient implements Telemetry
   @Override
   public Future<Boolean> sendBatchAsync()
   {
-    return TelemetryThreadPool.getInstance().submit(
-        ()->{
-          try
-          {
-            return this.sendBatch();
-          }
-          catch (Throwable e)
-          {
-            logger.debug("Failed to send telemetry data, {}", e);
-            return false;
-          }
-        });
+    if (isClosed || !isTelemetryEnabled())
+    {
+      // keep the logs, as sendBatch does
+      return CompletableFuture.completedFuture(false);
+    }
+    return this.logBatch.flushAsync();
   }
 
   /**
@@ -271,43 +270,51 @@ public class TelemetryClient implements Telemetry
       return false;
     }
 
-    LinkedList<TelemetryData> tmpList;
-    synchronized (locker)
+    return this.logBatch.flushNow();
+  }
+
+  /**
+   * Send a batch of logs to the server. Called by the pipeline, in the
+   * background or by sendBatch.
+   *
+   * @param batch logs to send
+   * @return whether the logs were sent successfully
+   * @throws IOException if the session is closed or uploading batch fails
+   */
+  private boolean send(List<TelemetryData> batch) throws IOException
+  {
+    if (!isTelemetryEnabled())
     {
-      tmpList = this.logBatch;
-      this.logBatch = new LinkedList<>();
+      return false;
     }
-
     if (session.isClosed())
     {
       throw new UnexpectedException("Session is closed when sending log");
     }
 
-    if (!tmpList.isEmpty())
+    //session shared with JDBC
+    String sessionToken = this.session.getSessionToken();
+
+    HttpPost post = new HttpPost(this.telemetryUrl);
+    // serialized and compressed while being sent
+    post.setEntity(new GzipJsonEntity(mapper, logsToJson(batch)));
+    post.addHeader("content-encoding", "gzip");
+    post.setHeader("Authorization", "Snowflake Token=\"" + sessionToken +
+                                    "\"");
+
+    String response = null;
+
+    try
     {
-      //session shared with JDBC
-      String sessionToken = this.session.getSessionToken();
-
-      HttpPost post = new HttpPost(this.telemetryUrl);
-      post.setEntity(new StringEntity(logsToString(tmpList)));
-      post.setHeader("Content-type", "application/json");
-      post.setHeader("Authorization", "Snowflake Token=\"" + sessionToken +
-                                      "\"");
-
-      String response = null;
-
-      try
-      {
-        response = HttpUtil.executeGeneralRequest(post, 1000, OCSPMode.FAIL_OPEN);
-      }
-      catch (SnowflakeSQLException e)
-      {
-        disableTelemetry(); // when got error like 404 or bad request, disable telemetry in this telemetry instance
-        logger.error(
-            "Telemetry request failed, " +
-            "response: {}, exception: {}", response, e.getMessage());
-        return false;
-      }
+      response = HttpUtil.executeGeneralRequest(post, 1000, OCSPMode.FAIL_OPEN);
+    }
+    catch (SnowflakeSQLException e)
+    {
+      disableTelemetry(); // when got error like 404 or bad request, disable telemetry in this telemetry instance
+      logger.error(
+          "Telemetry request failed, " +
+          "response: {}, exception: {}", response, e.getMessage());
+      return false;
     }
     return true;
   }
@@ -345,7 +352,7 @@ public class TelemetryClient implements Telemetry
    * @param telemetryData a list of log
    * @return the result json string
    */
-  static ObjectNode logsToJson(LinkedList<TelemetryData> telemetryData)
+  static ObjectNode logsToJson(List<TelemetryData> telemetryData)
   {
     ObjectNode node = mapper.createObjectNode();
     ArrayNode logs = mapper.createArrayNode();
@@ -364,7 +371,7 @@ public class TelemetryClient implements Telemetry
    * @param telemetryData a list of log
    * @return the result json string
    */
-  static String logsToString(LinkedList<TelemetryData> telemetryData)
+  static String logsToString(List<TelemetryData> telemetryData)
   {
     return logsToJson(telemetryData).toString();
   }
@@ -379,6 +386,17 @@ public class TelemetryClient implements Telemetry
     return this.logBatch.size();
   }
 
+  /**
+   * For test use only
+   *
+   * @param autoFlush whether the logs are sent in the background, false to
+   *                  keep them in the buffer until sendBatchAsync or close
+   */
+  public void setAutoFlush(boolean autoFlush)
+  {
+    this.logBatch.setAutoFlush(autoFlush);
+  }
+
   /**
    * For test use only
    *
@@ -386,6 +404,14 @@ public class TelemetryClient implements Telemetry
    */
   public LinkedList<TelemetryData> logBuffer()
   {
-    return new LinkedList<>(this.logBatch);
+    return new LinkedList<>(this.logBatch.snapshot());
+  }
+
+  /**
+   * @return the number of logs dropped because the buffer was full
+   */
+  public long droppedCount()
+  {
+    return this.logBatch.getDroppedCount();
   }
 }
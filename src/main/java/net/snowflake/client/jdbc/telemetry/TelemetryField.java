@@ -11,6 +11,10 @@ public enum TelemetryField
   TIME_WAITING_FOR_CHUNKS("client_time_waiting_for_chunks"),
   TIME_DOWNLOADING_CHUNKS("client_time_downloading_chunks"),
   TIME_PARSING_CHUNKS("client_time_parsing_chunks"),
+  HEDGED_CHUNK_REQUESTS("client_hedged_chunk_requests"),
+  HEDGED_CHUNK_REQUESTS_WON("client_hedged_chunk_requests_won"),
+  PREFETCH_ADJUSTMENTS("client_prefetch_adjustments"),
+  PREFETCH_SLOTS("client_prefetch_slots"),
 
   FAILED_BIND_SERIALIZATION("client_failed_bind_serialization"),
   FAILED_BIND_UPLOAD("client_failed_bind_upload"),
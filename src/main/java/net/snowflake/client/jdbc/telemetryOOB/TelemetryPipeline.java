@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) 2012-2019 Snowflake Computing Inc. All rights reserved.
+ */
+package net.snowflake.client.jdbc.telemetryOOB;
+
+import net.snowflake.client.jdbc.metrics.Counter;
+import net.snowflake.client.jdbc.metrics.MetricsRegistry;
+import net.snowflake.client.log.SFLogger;
+import net.snowflake.client.log.SFLoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded buffer of telemetry items sent in batches by a background flusher.
+ * <p>
+ * Adding an item only appends it to a bounded queue; serializing
+ * and sending the batches is done by the sender on the flusher thread. A
+ * batch is sent as soon as batchSize items are buffered, and otherwise at
+ * most flushInterval after the first buffered item. When the buffer is full
+ * the oldest items are dropped and counted, so a slow or unreachable
+ * telemetry server never makes the buffer grow or blocks the caller.
+ * <p>
+ * All the pipelines share one daemon flusher thread.
+ *
+ * @param <T> item type
+ */
+public class TelemetryPipeline<T>
+{
+  private static final SFLogger logger =
+      SFLoggerFactory.getLogger(TelemetryPipeline.class);
+
+  private static final Counter droppedItems =
+      MetricsRegistry.getInstance().counter("telemetry.dropped");
+
+  private static final ScheduledExecutorService flusher =
+      Executors.newSingleThreadScheduledExecutor(runnable ->
+      {
+        Thread thread = new Thread(runnable, "telemetry-flusher");
+        thread.setDaemon(true);
+        return thread;
+      });
+
+  /**
+   * Sends a batch of items
+   *
+   * @param <T> item type
+   */
+  public interface Sender<T>
+  {
+    /**
+     * @param batch items to send, oldest first
+     * @return whether the batch was sent successfully
+     * @throws IOException if the batch cannot be sent
+     */
+    boolean send(List<T> batch) throws IOException;
+  }
+
+  private final BlockingQueue<T> buffer;
+
+  private final Sender<T> sender;
+
+  private final long flushIntervalMs;
+
+  private volatile int batchSize;
+
+  // whether buffered items are sent without an explicit flush
+  private volatile boolean autoFlush = true;
+
+  // serializes the sends so that batches are sent in order
+  private final Object sendLock = new Object();
+
+  // whether a size triggered flush is waiting for the flusher
+  private final AtomicBoolean flushPending = new AtomicBoolean();
+
+  // whether a time triggered flush is scheduled
+  private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+  private final AtomicLong dropped = new AtomicLong();
+
+  /**
+   * @param capacity        maximum number of buffered items
+   * @param batchSize       number of buffered items triggering a flush
+   * @param flushIntervalMs maximum time an item waits for a flush
+   * @param sender          sender of the batches
+   */
+  public TelemetryPipeline(int capacity, int batchSize, long flushIntervalMs,
+                           Sender<T> sender)
+  {
+    this.buffer = new ArrayBlockingQueue<>(capacity);
+    this.batchSize = batchSize;
+    this.flushIntervalMs = flushIntervalMs;
+    this.sender = sender;
+  }
+
+  public void setBatchSize(int batchSize)
+  {
+    this.batchSize = batchSize;
+  }
+
+  /**
+   * @param autoFlush whether batches are sent in the background when the
+   *                  batch size or the flush interval is reached. When
+   *                  false, items are only sent by an explicit flush.
+   */
+  public void setAutoFlush(boolean autoFlush)
+  {
+    this.autoFlush = autoFlush;
+  }
+
+  /**
+   * Buffer an item, dropping the oldest item if the buffer is full
+   *
+   * @param item item to add
+   */
+  public void add(T item)
+  {
+    while (!buffer.offer(item))
+    {
+      if (buffer.poll() != null)
+      {
+        dropped.incrementAndGet();
+        droppedItems.increment();
+      }
+    }
+
+    if (!autoFlush)
+    {
+      return;
+    }
+    if (buffer.size() >= batchSize)
+    {
+      requestFlush();
+    }
+    else if (flushScheduled.compareAndSet(false, true))
+    {
+      flusher.schedule(() ->
+                       {
+                         flushScheduled.set(false);
+                         flushQuietly();
+                       }, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Send the buffered items on the flusher thread as soon as possible
+   */
+  public void requestFlush()
+  {
+    if (flushPending.compareAndSet(false, true))
+    {
+      flusher.execute(() ->
+                      {
+                        flushPending.set(false);
+                        flushQuietly();
+                      });
+    }
+  }
+
+  /**
+   * Send the buffered items on the flusher thread
+   *
+   * @return whether all the batches were sent successfully
+   */
+  public Future<Boolean> flushAsync()
+  {
+    CompletableFuture<Boolean> result = new CompletableFuture<>();
+    flusher.execute(() -> result.complete(flushQuietly()));
+    return result;
+  }
+
+  private boolean flushQuietly()
+  {
+    try
+    {
+      return flushNow();
+    }
+    catch (Throwable ex)
+    {
+      logger.debug("Failed to send telemetry data, {}", ex);
+      return false;
+    }
+  }
+
+  /**
+   * Send the buffered items on the calling thread, in batches of at most
+   * batchSize items
+   *
+   * @return whether all the batches were sent successfully
+   * @throws IOException if a batch cannot be sent
+   */
+  public boolean flushNow() throws IOException
+  {
+    synchronized (sendLock)
+    {
+      boolean success = true;
+      List<T> batch = new ArrayList<>();
+      while (drain(batch, Math.max(1, batchSize)) > 0)
+      {
+        success &= sender.send(batch);
+        batch = new ArrayList<>();
+      }
+      return success;
+    }
+  }
+
+  private int drain(List<T> batch, int maxSize)
+  {
+    T item;
+    while (batch.size() < maxSize && (item = buffer.poll()) != null)
+    {
+      batch.add(item);
+    }
+    return batch.size();
+  }
+
+  /**
+   * Remove the buffered items without sending them
+   *
+   * @return the removed items, oldest first
+   */
+  public List<T> drain()
+  {
+    List<T> items = new ArrayList<>();
+    buffer.drainTo(items);
+    return items;
+  }
+
+  /**
+   * @return oldest buffered item, or null
+   */
+  public T peek()
+  {
+    return buffer.peek();
+  }
+
+  /**
+   * @return copy of the buffered items, oldest first
+   */
+  public List<T> snapshot()
+  {
+    return new ArrayList<>(buffer);
+  }
+
+  public int size()
+  {
+    return buffer.size();
+  }
+
+  /**
+   * @return number of items dropped because the buffer was full
+   */
+  public long getDroppedCount()
+  {
+    return dropped.get();
+  }
+}
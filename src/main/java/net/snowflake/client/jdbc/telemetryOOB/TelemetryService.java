@@ -17,16 +17,15 @@ import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.util.EntityUtils;
 
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.security.cert.CertificateException;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
@@ -85,14 +84,19 @@ public class TelemetryService
 
   private static final int DEFAULT_NUM_OF_RETRY_TO_TRIGGER_TELEMETRY = 10;
   private static final int DEFAULT_BATCH_SIZE = 100;
+  // events buffered beyond this are dropped, oldest first
+  private static final int QUEUE_CAPACITY = 1000;
+  // maximum time an event waits in the queue before being uploaded
+  private static final long FLUSH_INTERVAL_MS = 10000;
   /**
    * the number of retry to trigger the HTTP timeout telemetry event
    */
   private int numOfRetryToTriggerTelemetry = DEFAULT_NUM_OF_RETRY_TO_TRIGGER_TELEMETRY;
   // local parameters
-  private ConcurrentLinkedQueue<TelemetryEvent> queue
-      = new ConcurrentLinkedQueue<>();
-  private int batchSize = DEFAULT_BATCH_SIZE;
+  // events are serialized and uploaded by the sender on the flusher thread
+  private final TelemetryPipeline<TelemetryEvent> queue =
+      new TelemetryPipeline<>(QUEUE_CAPACITY, DEFAULT_BATCH_SIZE,
+                              FLUSH_INTERVAL_MS, this::upload);
   /**
    * the context (e.g., connection properties) to be included
    * in the telemetry events
@@ -109,8 +113,8 @@ public class TelemetryService
         sm.checkPermission(new RuntimePermission("shutdownHooks"));
       }
 
-      Runtime.getRuntime().addShutdownHook(new Thread(
-          new TelemetryUploader(this, exportQueueToString())));
+      // upload the events still in the queue when the application exits
+      Runtime.getRuntime().addShutdownHook(new Thread(this::flushOnExit));
     }
     catch (SecurityException e)
     {
@@ -118,6 +122,18 @@ public class TelemetryService
     }
   }
 
+  private void flushOnExit()
+  {
+    try
+    {
+      queue.flushNow();
+    }
+    catch (IOException e)
+    {
+      logger.debug("Failed to flush telemetry events on exit");
+    }
+  }
+
   public void resetNumOfRetryToTriggerTelemetry()
   {
     numOfRetryToTriggerTelemetry = DEFAULT_NUM_OF_RETRY_TO_TRIGGER_TELEMETRY;
@@ -273,12 +289,20 @@ public class TelemetryService
 
   public void setBatchSize(int size)
   {
-    this.batchSize = size;
+    queue.setBatchSize(size);
   }
 
   public void resetBatchSize()
   {
-    this.batchSize = DEFAULT_BATCH_SIZE;
+    queue.setBatchSize(DEFAULT_BATCH_SIZE);
+  }
+
+  /**
+   * @return number of events dropped because the queue was full
+   */
+  public long getDroppedCount()
+  {
+    return queue.getDroppedCount();
   }
 
   public String getDriverConnectionString()
@@ -368,14 +392,11 @@ public class TelemetryService
     {
       return;
     }
-    queue.offer(event);
-    if (queue.size() >= batchSize ||
-        (event.containsKey("Urgent") && (boolean) event.get("Urgent")))
+    // the queue uploads a batch by itself when it reaches the batch size
+    queue.add(event);
+    if (event.containsKey("Urgent") && (boolean) event.get("Urgent"))
     {
-      // When the queue is full or the event is urgent,
-      // then start a new thread to upload without blocking the current thread
-      Runnable runUpload = new TelemetryUploader(this, exportQueueToString());
-      TelemetryThreadPool.getInstance().execute(runUpload);
+      queue.requestFlush();
     }
   }
 
@@ -388,29 +409,47 @@ public class TelemetryService
     {
       return;
     }
-    if (!queue.isEmpty())
+    if (queue.size() > 0)
     {
-      // start a new thread to upload without blocking the current thread
-      Runnable runUpload = new TelemetryUploader(this, exportQueueToString());
-      TelemetryThreadPool.getInstance().execute(runUpload);
+      // upload on the flusher thread without blocking the current thread
+      queue.requestFlush();
     }
   }
 
   /**
-   * convert a list of json objects to a string
+   * Remove the events from the queue and convert them to a string
    *
    * @return the result json string
    */
   public String exportQueueToString()
+  {
+    return toPayload(queue.drain());
+  }
+
+  /**
+   * convert a list of json objects to a string
+   *
+   * @param events events to convert
+   * @return the result json string
+   */
+  private static String toPayload(List<TelemetryEvent> events)
   {
     JSONArray logs = new JSONArray();
-    while (!queue.isEmpty())
-    {
-      logs.add(queue.poll());
-    }
+    logs.addAll(events);
     return SecretDetector.maskSecrets(logs.toString());
   }
 
+  /**
+   * Upload a batch of events. Called by the queue on the flusher thread.
+   *
+   * @param events events to upload
+   * @return whether the upload succeeded
+   */
+  private boolean upload(List<TelemetryEvent> events)
+  {
+    return new TelemetryUploader(this, toPayload(events)).upload();
+  }
+
   static class TelemetryUploader implements Runnable
   {
     TelemetryService instance;
@@ -430,24 +469,29 @@ public class TelemetryService
     }
 
     public void run()
+    {
+      upload();
+    }
+
+    /**
+     * @return whether the payload was uploaded
+     */
+    boolean upload()
     {
       if (!instance.enabled)
       {
-        return;
+        return false;
       }
       if (payload == null || payload.equals("[]") || payload.isEmpty())
       {
         logger.debug("skip to run telemetry uploader for empty payload");
+        return true;
       }
-      else
-      {
-        // flush the queue
-        uploadPayload();
-        logger.debug("run telemetry uploader");
-      }
+      logger.debug("run telemetry uploader");
+      return uploadPayload();
     }
 
-    private void uploadPayload()
+    private boolean uploadPayload()
     {
       HttpResponse response = null;
       boolean success = true;
@@ -457,14 +501,14 @@ public class TelemetryService
         {
           // skip the disabled deployment
           logger.debug("skip the disabled deployment: ", instance.serverDeployment.name);
-          return;
+          return false;
         }
 
         if (!instance.serverDeployment.url.matches(TELEMETRY_SERVER_URL_PATTERN))
         {
           // skip the disabled deployment
           logger.debug("ignore invalid url: ", instance.serverDeployment.url);
-          return;
+          return false;
         }
 
         HttpPost post = new HttpPost(instance.serverDeployment.url);
@@ -498,13 +542,8 @@ public class TelemetryService
             "response: {}, exception: {}", response, e.getMessage());
         success = false;
       }
-      finally
-      {
-        logger.debug("Telemetry request success={} " +
-                     "and clean the current queue", success);
-        // clean the current queue
-        instance.queue.clear();
-      }
+      logger.debug("Telemetry request success={}", success);
+      return success;
     }
   }
 
@@ -15,6 +15,8 @@ import java.util.Date;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.zip.GZIPOutputStream;
 
+import net.snowflake.client.jdbc.metrics.Histogram;
+import net.snowflake.client.jdbc.metrics.MetricsRegistry;
 import net.snowflake.client.log.SFLogger;
 import net.snowflake.client.log.SFLoggerFactory;
 
@@ -29,6 +31,9 @@ public class BufferStage
   private static final SFLogger LOGGER = SFLoggerFactory.getLogger(
       BufferStage.class);
 
+  private static final Histogram uploadCompletionLatency =
+      MetricsRegistry.getInstance().histogram("loader.upload.micros");
+
   public enum State
   {
 
@@ -244,6 +249,7 @@ public class BufferStage
                  _currentSize, this._csvFileSize, _fileCount,
                  this._csvFileBucketSize);
 
+    long startTime = System.nanoTime();
     _outstream.flush();
     _outstream.close();
     //last file
@@ -264,6 +270,7 @@ public class BufferStage
       // Finish all files being uploaded
       fu.join();
     }
+    uploadCompletionLatency.recordElapsedSince(startTime);
 
     // Delete the directory once we are done (for easier tracking
     // of what is going on)
@@ -11,6 +11,8 @@ import java.io.File;
 import java.sql.ResultSet;
 import java.sql.Statement;
 
+import net.snowflake.client.jdbc.metrics.Histogram;
+import net.snowflake.client.jdbc.metrics.MetricsRegistry;
 import net.snowflake.client.log.SFLogger;
 import net.snowflake.client.log.SFLoggerFactory;
 
@@ -22,6 +24,9 @@ public class FileUploader implements Runnable
   private static final SFLogger LOGGER = SFLoggerFactory.getLogger(
       PutQueue.class);
 
+  private static final Histogram putLatency =
+      MetricsRegistry.getInstance().histogram("loader.put.micros");
+
   private final static int RETRY = 6;
   private final Thread _thread;
   private final StreamLoader _loader;
@@ -138,7 +143,9 @@ public class FileUploader implements Runnable
         try
         {
           LOGGER.debug("Put Statement start: {}", putStatement);
+          long putStartTime = System.nanoTime();
           statement.execute(putStatement);
+          putLatency.recordElapsedSince(putStartTime);
           LOGGER.debug("Put Statement end: {}", putStatement);
           ResultSet putResult = statement.getResultSet();
 
@@ -4,6 +4,8 @@
 
 package net.snowflake.client.loader;
 
+import net.snowflake.client.jdbc.metrics.Histogram;
+import net.snowflake.client.jdbc.metrics.MetricsRegistry;
 import net.snowflake.client.log.SFLogger;
 import net.snowflake.client.log.SFLoggerFactory;
 
@@ -23,6 +25,12 @@ public class ProcessQueue implements Runnable
   private static final SFLogger LOGGER = SFLoggerFactory.getLogger(
       ProcessQueue.class);
 
+  private static final Histogram processLatency =
+      MetricsRegistry.getInstance().histogram("loader.process.micros");
+
+  private static final Histogram loadLatency =
+      MetricsRegistry.getInstance().histogram("loader.load.micros");
+
   private final Thread _thread;
 
   private final StreamLoader _loader;
@@ -52,6 +60,7 @@ public class ProcessQueue implements Runnable
       try
       {
         stage = _loader.takeProcess();
+        long processStartTime = System.nanoTime();
 
         if (stage.getRowCount() == 0)
         {
@@ -333,7 +342,9 @@ public class ProcessQueue implements Runnable
 
           LOGGER.debug("Load Statement: {}", loadStatement);
           Statement s = conn.createStatement();
+          long loadStartTime = System.nanoTime();
           s.execute(loadStatement);
+          loadLatency.recordElapsedSince(loadStartTime);
 
           stage.setState(BufferStage.State.PROCESSED);
           currentState = State.FINISH;
@@ -367,6 +378,7 @@ public class ProcessQueue implements Runnable
 
           // delete stage file if all success
           conn.createStatement().execute("RM '" + remoteStage + "'");
+          processLatency.recordElapsedSince(processStartTime);
 
           if (stage.isTerminate())
           {
@@ -0,0 +1,329 @@
+/*
+ * Copyright (c) 2012-2019 Snowflake Computing Inc. All rights reserved.
+ */
+package net.snowflake.client.log;
+
+import net.snowflake.client.util.SecretDetector;
+
+import java.text.MessageFormat;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static net.snowflake.client.jdbc.SnowflakeUtil.systemGetProperty;
+
+/**
+ * Background writer of the asynchronous logging mode of JDK14Logger.
+ * <p>
+ * Logging threads only capture a compact record of the log call (logger,
+ * level, message template and arguments) into a lock free multi producer,
+ * single consumer queue: appending a record is one atomic swap of the tail,
+ * producers never wait for each other or for the writer. The writer thread
+ * formats and masks the messages and hands the records to the handlers, so
+ * message formatting, secret masking, the handler formatters and the I/O
+ * all run off the logging threads.
+ * <p>
+ * The queue is bounded by a count of the pending records. When it is full
+ * the logging thread wakes up the writer and waits for room, or writes the
+ * records itself if no other thread is writing, so records are never
+ * dropped and stay in order. Only one thread writes at a time; it claims
+ * the queue with a compare-and-set, other threads do not block on it. The
+ * writer thread is parked while the queue is empty and woken up by the next
+ * record.
+ * <p>
+ * The mode is enabled with the net.snowflake.jdbc.asyncLogging system
+ * property. The caller class and method are only captured when
+ * net.snowflake.jdbc.logCallerLocation is also true; the stack is then
+ * recorded cheaply on the logging thread and only walked by the writer.
+ */
+class AsyncLogWriter implements Runnable
+{
+  static final String ASYNC_LOGGING_PROPERTY = "net.snowflake.jdbc.asyncLogging";
+
+  static final String CALLER_LOCATION_PROPERTY =
+      "net.snowflake.jdbc.logCallerLocation";
+
+  private static final int BUFFER_SIZE = 8192;
+
+  // how long a logging thread waits for room before checking again
+  private static final long FULL_WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+  private final int capacity;
+
+  private final boolean captureCallerLocation;
+
+  // last record appended by the logging threads
+  private final AtomicReference<Entry> tail;
+
+  // record written last, its successors are the pending records. Only read
+  // and written by the thread which claimed the queue as the drainer.
+  private Entry head;
+
+  // number of records submitted and not written yet, checked before a
+  // record is appended, so racing producers may exceed the capacity by one
+  // record each
+  private final AtomicInteger pending = new AtomicInteger();
+
+  // thread writing the records, one at a time so that they stay in order
+  private final AtomicReference<Thread> drainer = new AtomicReference<>();
+
+  // writer thread, set while it is parked on an empty queue
+  private volatile Thread idleWriter;
+
+  AsyncLogWriter(int capacity, boolean captureCallerLocation)
+  {
+    this.capacity = capacity;
+    this.captureCallerLocation = captureCallerLocation;
+    this.head = new Entry();
+    this.tail = new AtomicReference<>(head);
+  }
+
+  /**
+   * @return the writer configured by the system properties, already
+   * started, or null if asynchronous logging is disabled
+   */
+  static AsyncLogWriter createFromProperties()
+  {
+    if (!Boolean.parseBoolean(systemGetProperty(ASYNC_LOGGING_PROPERTY)))
+    {
+      return null;
+    }
+    AsyncLogWriter writer = new AsyncLogWriter(
+        BUFFER_SIZE,
+        Boolean.parseBoolean(systemGetProperty(CALLER_LOCATION_PROPERTY)));
+
+    Thread thread = new Thread(writer, "snowflake-log-writer");
+    thread.setDaemon(true);
+    thread.start();
+
+    // write what is left when the application exits
+    Runtime.getRuntime().addShutdownHook(new Thread(writer::flushAll));
+    return writer;
+  }
+
+  /**
+   * Capture a log call. The level must have been checked by the caller.
+   *
+   * @param logger    logger to log to
+   * @param level     level
+   * @param msg       message, in SLF4J format if there are arguments
+   * @param arguments arguments of the message, or null
+   * @param thrown    throwable to log, or null
+   */
+  void submit(Logger logger, Level level, String msg, Object[] arguments,
+              Throwable thrown)
+  {
+    Entry entry = new Entry(logger, level, msg, arguments, thrown,
+                            captureCallerLocation ? new Throwable() : null);
+    // a handler logging while it writes the records does not wait for
+    // itself
+    while (pending.get() >= capacity &&
+           drainer.get() != Thread.currentThread())
+    {
+      wakeUpWriter();
+      if (flush() == 0)
+      {
+        // the writer is emptying the queue
+        LockSupport.parkNanos(this, FULL_WAIT_NANOS);
+      }
+    }
+    pending.incrementAndGet();
+
+    // the swap orders the producers, the link makes the record visible to
+    // the writer
+    Entry previous = tail.getAndSet(entry);
+    previous.next = entry;
+    wakeUpWriter();
+  }
+
+  private void wakeUpWriter()
+  {
+    Thread writer = idleWriter;
+    if (writer != null)
+    {
+      LockSupport.unpark(writer);
+    }
+  }
+
+  /**
+   * Publish the pending records on the calling thread, unless another
+   * thread is publishing them already
+   *
+   * @return number of records published
+   */
+  int flush()
+  {
+    if (!drainer.compareAndSet(null, Thread.currentThread()))
+    {
+      return 0;
+    }
+    int count = 0;
+    try
+    {
+      Entry entry;
+      while ((entry = head.next) != null)
+      {
+        head = entry;
+        try
+        {
+          entry.publish();
+        }
+        catch (RuntimeException ex)
+        {
+          // a failing handler must not lose the other records
+          reportError(entry.logger, ex);
+        }
+        finally
+        {
+          entry.clear();
+          pending.decrementAndGet();
+          count++;
+        }
+      }
+    }
+    finally
+    {
+      drainer.set(null);
+    }
+    return count;
+  }
+
+  /**
+   * Publish the records submitted so far, waiting for the thread which is
+   * publishing them, if any
+   */
+  void flushAll()
+  {
+    while (pending.get() > 0 && drainer.get() != Thread.currentThread())
+    {
+      if (flush() == 0)
+      {
+        Thread.yield();
+      }
+    }
+  }
+
+  /**
+   * Report a failure to publish a record to the error managers of the
+   * handlers, as a handler does with its own failures
+   */
+  private static void reportError(Logger logger, Exception ex)
+  {
+    for (Logger current = logger; current != null;
+         current = current.getParent())
+    {
+      for (Handler handler : current.getHandlers())
+      {
+        ErrorManager errorManager = handler.getErrorManager();
+        if (errorManager != null)
+        {
+          errorManager.error("Failed to publish a log record", ex,
+                             ErrorManager.WRITE_FAILURE);
+          return;
+        }
+      }
+      if (!current.getUseParentHandlers())
+      {
+        break;
+      }
+    }
+  }
+
+  @Override
+  public void run()
+  {
+    while (!Thread.currentThread().isInterrupted())
+    {
+      if (flush() == 0)
+      {
+        // publish the thread before checking the queue again, so that a
+        // record submitted in between either is seen here or unparks it
+        idleWriter = Thread.currentThread();
+        if (pending.get() == 0)
+        {
+          LockSupport.park(this);
+        }
+        idleWriter = null;
+      }
+    }
+  }
+
+  /**
+   * A log call captured on the logging thread, and a node of the queue. The
+   * record is created there, so that it carries the time and the thread of
+   * the call, but its message and source are only filled in by the writer.
+   */
+  private static class Entry
+  {
+    private final Logger logger;
+    private LogRecord record;
+    private Throwable callerLocation;
+
+    // next record in the queue, set once by the producer of that record
+    private volatile Entry next;
+
+    /**
+     * First node of an empty queue
+     */
+    Entry()
+    {
+      this.logger = null;
+    }
+
+    Entry(Logger logger, Level level, String msg, Object[] arguments,
+          Throwable thrown, Throwable callerLocation)
+    {
+      this.logger = logger;
+      this.record = new LogRecord(level, msg);
+      this.callerLocation = callerLocation;
+      record.setParameters(arguments);
+      record.setThrown(thrown);
+    }
+
+    void publish()
+    {
+      String message = record.getMessage();
+      if (message != null && record.getParameters() != null)
+      {
+        try
+        {
+          message = MessageFormat.format(JDK14Logger.refactorString(message),
+                                         record.getParameters());
+        }
+        catch (IllegalArgumentException ex)
+        {
+          // not a valid pattern, logged as is like Formatter.formatMessage
+        }
+        record.setParameters(null);
+      }
+      if (message != null)
+      {
+        record.setMessage(SecretDetector.maskSecrets(message));
+      }
+      record.setLoggerName(logger.getName());
+
+      String[] source = callerLocation != null ?
+                        JDK14Logger.findSourceInStack(callerLocation.getStackTrace()) :
+                        new String[2];
+      record.setSourceClassName(source[0] != null ? source[0] : logger.getName());
+      record.setSourceMethodName(source[1] != null ? source[1] : "");
+      logger.log(record);
+    }
+
+    /**
+     * Release the record once written, the entry stays the head of the
+     * queue until the next record is written
+     */
+    void clear()
+    {
+      record = null;
+      callerLocation = null;
+    }
+  }
+}
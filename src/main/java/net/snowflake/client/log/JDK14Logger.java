@@ -34,11 +34,15 @@ public class JDK14Logger implements SFLogger
 {
   private Logger jdkLogger;
 
-  private Set<String> logMethods = new HashSet<>(Arrays.asList(
+  private static final Set<String> logMethods = new HashSet<>(Arrays.asList(
       "debug", "error", "info", "trace", "warn"));
 
   private static boolean isLegacyLoggerInit = false;
 
+  // writer of the asynchronous logging mode, null if the mode is disabled
+  private static final AsyncLogWriter asyncWriter =
+      AsyncLogWriter.createFromProperties();
+
   public JDK14Logger(String name)
   {
     this.jdkLogger = Logger.getLogger(name);
@@ -148,6 +152,11 @@ public class JDK14Logger implements SFLogger
   {
     if (jdkLogger.isLoggable(level))
     {
+      if (asyncWriter != null)
+      {
+        asyncWriter.submit(jdkLogger, level, msg, null, null);
+        return;
+      }
       String[] source = findSourceInStack();
       jdkLogger.logp(level, source[0], source[1], msg);
     }
@@ -157,6 +166,13 @@ public class JDK14Logger implements SFLogger
   {
     if (jdkLogger.isLoggable(level))
     {
+      if (asyncWriter != null)
+      {
+        // suppliers are evaluated now, they may read state that changes
+        asyncWriter.submit(jdkLogger, level, msg,
+                           evaluateLambdaArgs(arguments), null);
+        return;
+      }
       String[] source = findSourceInStack();
       jdkLogger.logp(
           level,
@@ -171,6 +187,11 @@ public class JDK14Logger implements SFLogger
   {
     if (jdkLogger.isLoggable(level))
     {
+      if (asyncWriter != null)
+      {
+        asyncWriter.submit(jdkLogger, level, msg, null, t);
+        return;
+      }
       String[] source = findSourceInStack();
       jdkLogger.logp(level, source[0], source[1], msg, t);
     }
@@ -188,6 +209,18 @@ public class JDK14Logger implements SFLogger
     snowflakeLogger.setLevel(level);
   }
 
+  /**
+   * Write the records buffered by the asynchronous logging mode, e.g.
+   * before the log buffer is dumped. No-op when the mode is disabled.
+   */
+  public static void flushAsyncLog()
+  {
+    if (asyncWriter != null)
+    {
+      asyncWriter.flushAll();
+    }
+  }
+
   /**
    * This is legacy way of enable logging in JDBC (through TRACING parameter)
    * Only effective when java.util.logging.config.file is not specified
@@ -223,7 +256,7 @@ public class JDK14Logger implements SFLogger
    * <p>
    * This method will convert string in ex.1 to ex.2
    */
-  private String refactorString(String original)
+  static String refactorString(String original)
   {
     StringBuilder sb = new StringBuilder();
     int argCount = 0;
@@ -231,7 +264,7 @@ public class JDK14Logger implements SFLogger
     {
       if (original.charAt(i) == '{' && i < original.length() - 1 && original.charAt(i + 1) == '}')
       {
-        sb.append(String.format("{%d}", argCount));
+        sb.append('{').append(argCount).append('}');
         argCount++;
         i++;
       }
@@ -250,9 +283,18 @@ public class JDK14Logger implements SFLogger
    * @return an array of size two, first element is className and second is
    * methodName
    */
-  private String[] findSourceInStack()
+  private static String[] findSourceInStack()
+  {
+    return findSourceInStack(Thread.currentThread().getStackTrace());
+  }
+
+  /**
+   * @param stackTraces stack of a log call
+   * @return an array of size two, first element is className and second is
+   * methodName, null if the log method is not in the stack
+   */
+  static String[] findSourceInStack(StackTraceElement[] stackTraces)
   {
-    StackTraceElement[] stackTraces = Thread.currentThread().getStackTrace();
     String[] results = new String[2];
     for (int i = 0; i < stackTraces.length; i++)
     {
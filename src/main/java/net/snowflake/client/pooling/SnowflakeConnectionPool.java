@@ -0,0 +1,849 @@
+/*
+ * Copyright (c) 2012-2019 Snowflake Computing Inc. All rights reserved.
+ */
+package net.snowflake.client.pooling;
+
+import com.google.common.base.Strings;
+import net.snowflake.client.core.SFSession;
+import net.snowflake.client.jdbc.ErrorCode;
+import net.snowflake.client.jdbc.SnowflakeConnectionV1;
+import net.snowflake.client.jdbc.SnowflakeSQLException;
+import net.snowflake.client.log.SFLogger;
+import net.snowflake.client.log.SFLoggerFactory;
+
+import javax.sql.ConnectionEvent;
+import javax.sql.ConnectionEventListener;
+import javax.sql.PooledConnection;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Connection pool backing SnowflakePoolingDataSource.
+ * <p>
+ * Idle connections are kept in a lock free deque and handed out in LIFO
+ * order so that the most recently used (and therefore most likely still
+ * valid) session is reused first. The number of connections handed out is
+ * bounded by a semaphore, which only parks a thread when the pool is
+ * exhausted. A connection is always pushed back to the idle deque before its
+ * permit is released, so a thread holding a permit that finds the idle deque
+ * empty normally has room to open a new connection.
+ * <p>
+ * The number of physical connections, including the ones being opened, is
+ * bounded separately by a counter reserved with a compare-and-set before
+ * every login, so that logins opening idle connections, e.g. by prewarm()
+ * and the housekeeping, never take the pool over maxPoolSize.
+ */
+class SnowflakeConnectionPool implements ConnectionEventListener
+{
+  static final
+  SFLogger logger = SFLoggerFactory.getLogger(SnowflakeConnectionPool.class);
+
+  // headroom kept before master token expiration when deriving max lifetime
+  private static final long MASTER_TOKEN_HEADROOM_IN_MILLIS = 5 * 60 * 1000L;
+
+  // timeout used when validating a session that is not a Snowflake session
+  private static final int VALIDATION_TIMEOUT_IN_SECS = 5;
+
+  // wait of a borrower for a slot held by a connection being closed
+  private static final long BUSY_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  /**
+   * A physical connection managed by the pool with its bookkeeping
+   */
+  private static class PoolEntry
+  {
+    private final SnowflakePooledConnection pooledConnection;
+
+    private final long expirationTimeInMillis;
+
+    // current objects at creation time, restored when returned to the pool
+    private final String initialDatabase;
+    private final String initialSchema;
+    private final String initialRole;
+    private final String initialWarehouse;
+    private final boolean initialAutoCommit;
+
+    private volatile long lastAccessTimeInMillis;
+
+    // set if the application saw an error on this connection
+    private volatile boolean suspect = false;
+
+    PoolEntry(SnowflakePooledConnection pooledConnection,
+              long creationTimeInMillis,
+              long expirationTimeInMillis,
+              SFSession session) throws SQLException
+    {
+      this.pooledConnection = pooledConnection;
+      this.expirationTimeInMillis = expirationTimeInMillis;
+      this.lastAccessTimeInMillis = creationTimeInMillis;
+      this.initialAutoCommit =
+          pooledConnection.getPhysicalConnection().getAutoCommit();
+      this.initialDatabase = session == null ? null : session.getDatabase();
+      this.initialSchema = session == null ? null : session.getSchema();
+      this.initialRole = session == null ? null : session.getRole();
+      this.initialWarehouse = session == null ? null : session.getWarehouse();
+    }
+
+    boolean isExpired(long nowInMillis)
+    {
+      return expirationTimeInMillis > 0 &&
+             nowInMillis >= expirationTimeInMillis;
+    }
+  }
+
+  private final SnowflakePoolingDataSource dataSource;
+
+  private final int maxPoolSize;
+
+  private final int minIdle;
+
+  private final long connectionTimeoutInMillis;
+
+  private final long idleTimeoutInMillis;
+
+  private final long maxLifetimeInMillis;
+
+  private final long validationIntervalInMillis;
+
+  private final boolean resetSessionOnReturn;
+
+  private final int loginConcurrency;
+
+  private final boolean deriveSessionsFromIdToken;
+
+  // id token of an authenticated session, used to issue new sessions
+  private volatile String idToken;
+
+  // master token validity of the session the id token was taken from, used
+  // for issued sessions if the server does not return theirs
+  private volatile long idTokenSessionValidityInSeconds;
+
+  // idle connections, most recently returned first
+  private final ConcurrentLinkedDeque<PoolEntry> idleEntries =
+      new ConcurrentLinkedDeque<>();
+
+  // all connections owned by the pool, keyed by the pooled connection
+  private final Map<PooledConnection, PoolEntry> allEntries =
+      new ConcurrentHashMap<>();
+
+  // bounds the number of connections that are borrowed or being created
+  private final Semaphore permits;
+
+  private final AtomicInteger idleCount = new AtomicInteger(0);
+
+  // physical connections owned by the pool or being opened
+  private final AtomicInteger connectionCount = new AtomicInteger(0);
+
+  private final ScheduledExecutorService housekeeper;
+
+  // runs the logins of prewarm(), threads time out when idle
+  private final ThreadPoolExecutor loginExecutor;
+
+  private volatile boolean closed = false;
+
+  // metrics
+  private final LongAdder borrowCount = new LongAdder();
+  private final LongAdder timeoutCount = new LongAdder();
+  private final LongAdder createdCount = new LongAdder();
+  private final LongAdder destroyedCount = new LongAdder();
+  private final LongAdder totalWaitNanos = new LongAdder();
+  private final AtomicLong maxWaitNanos = new AtomicLong(0);
+  private final LongAdder totalCreationNanos = new LongAdder();
+  private final AtomicLong maxCreationNanos = new AtomicLong(0);
+
+  /**
+   * Create a pool with the settings of the given data source
+   *
+   * @param dataSource data source used to open physical connections
+   */
+  SnowflakeConnectionPool(SnowflakePoolingDataSource dataSource)
+  {
+    this.dataSource = dataSource;
+    this.maxPoolSize = dataSource.getMaxPoolSize();
+    this.minIdle = Math.min(dataSource.getMinIdle(), maxPoolSize);
+    this.connectionTimeoutInMillis = dataSource.getConnectionTimeout();
+    this.idleTimeoutInMillis = dataSource.getIdleTimeout();
+    this.maxLifetimeInMillis = dataSource.getMaxLifetime();
+    this.validationIntervalInMillis = dataSource.getValidationInterval();
+    this.resetSessionOnReturn = dataSource.isResetSessionOnReturn();
+    this.loginConcurrency = Math.max(dataSource.getLoginConcurrency(), 1);
+    this.deriveSessionsFromIdToken = dataSource.isDeriveSessionsFromIdToken();
+    this.permits = new Semaphore(maxPoolSize);
+
+    logger.debug("create connection pool: maxPoolSize={}, minIdle={}, " +
+                 "connectionTimeout={}, idleTimeout={}, maxLifetime={}, " +
+                 "validationInterval={}, loginConcurrency={}",
+                 maxPoolSize, minIdle, connectionTimeoutInMillis,
+                 idleTimeoutInMillis, maxLifetimeInMillis,
+                 validationIntervalInMillis, loginConcurrency);
+
+    this.housekeeper = Executors.newSingleThreadScheduledExecutor(
+        runnable -> newDaemonThread(runnable, "snowflake-pool-housekeeper"));
+    long housekeepingIntervalInMillis = dataSource.getHousekeepingInterval();
+    this.housekeeper.scheduleWithFixedDelay(this::houseKeep,
+                                            housekeepingIntervalInMillis,
+                                            housekeepingIntervalInMillis,
+                                            TimeUnit.MILLISECONDS);
+
+    this.loginExecutor = new ThreadPoolExecutor(
+        loginConcurrency, loginConcurrency,
+        60, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<>(),
+        runnable -> newDaemonThread(runnable, "snowflake-pool-login"));
+    this.loginExecutor.allowCoreThreadTimeOut(true);
+
+    if (minIdle > 0)
+    {
+      prewarm(minIdle);
+    }
+  }
+
+  private static Thread newDaemonThread(Runnable runnable, String name)
+  {
+    Thread thread = Executors.defaultThreadFactory().newThread(runnable);
+    thread.setName(name + " (" + thread.getId() + ")");
+    thread.setDaemon(true);
+    return thread;
+  }
+
+  /**
+   * Borrow a connection from the pool, opening a new session if there is no
+   * idle one and the pool is not full.
+   *
+   * @return a logical connection which returns to the pool when closed
+   * @throws SQLException if the pool is closed, no connection becomes
+   *                      available within the connection timeout, or a new
+   *                      session cannot be opened
+   */
+  Connection borrow() throws SQLException
+  {
+    raiseSQLExceptionIfPoolIsClosed();
+
+    long startTime = System.nanoTime();
+
+    try
+    {
+      if (!permits.tryAcquire(connectionTimeoutInMillis, TimeUnit.MILLISECONDS))
+      {
+        timeoutCount.increment();
+        throw new SnowflakeSQLException(ErrorCode.CONNECTION_POOL_TIMEOUT,
+                                        connectionTimeoutInMillis);
+      }
+    }
+    catch (InterruptedException ex)
+    {
+      Thread.currentThread().interrupt();
+      throw new SnowflakeSQLException(ex, ErrorCode.INTERRUPTED);
+    }
+
+    try
+    {
+      PoolEntry entry = null;
+      while (entry == null)
+      {
+        while ((entry = pollIdle()) != null && !isUsable(entry))
+        {
+          destroy(entry);
+        }
+
+        if (entry == null && (entry = create(maxPoolSize)) == null)
+        {
+          // the last slot is held by a connection being closed or opened
+          // for the idle deque
+          if (System.nanoTime() - startTime >
+              TimeUnit.MILLISECONDS.toNanos(connectionTimeoutInMillis))
+          {
+            timeoutCount.increment();
+            throw new SnowflakeSQLException(ErrorCode.CONNECTION_POOL_TIMEOUT,
+                                            connectionTimeoutInMillis);
+          }
+          LockSupport.parkNanos(BUSY_WAIT_NANOS);
+        }
+      }
+
+      entry.lastAccessTimeInMillis = currentTimeMillis();
+
+      long waitNanos = System.nanoTime() - startTime;
+      borrowCount.increment();
+      totalWaitNanos.add(waitNanos);
+      maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+
+      return entry.pooledConnection.getConnection();
+    }
+    catch (SQLException | RuntimeException ex)
+    {
+      permits.release();
+      throw ex;
+    }
+  }
+
+  /**
+   * Called when the application closes a logical connection: reset the
+   * session and make it available again.
+   */
+  @Override
+  public void connectionClosed(ConnectionEvent event)
+  {
+    PoolEntry entry = allEntries.get((PooledConnection) event.getSource());
+    if (entry == null)
+    {
+      return;
+    }
+
+    try
+    {
+      long now = currentTimeMillis();
+      if (closed || entry.isExpired(now) || !resetEntry(entry))
+      {
+        destroy(entry);
+      }
+      else
+      {
+        entry.lastAccessTimeInMillis = now;
+        idleEntries.offerFirst(entry);
+        idleCount.incrementAndGet();
+      }
+    }
+    finally
+    {
+      permits.release();
+    }
+  }
+
+  /**
+   * LogicalConnection reports every SQLException, most of which are plain
+   * query errors. Only flag the connection so that it gets validated when
+   * it is returned instead of discarding it right away.
+   */
+  @Override
+  public void connectionErrorOccurred(ConnectionEvent event)
+  {
+    PoolEntry entry = allEntries.get((PooledConnection) event.getSource());
+    if (entry != null)
+    {
+      entry.suspect = true;
+    }
+  }
+
+  /**
+   * Open idle connections in the background until the pool holds the given
+   * number of connections, with at most loginConcurrency logins in flight.
+   * <p>
+   * The first session is opened alone when the pool is empty, so that the
+   * HTTP client and OCSP cache are initialized once and its id token, if
+   * any, can be used to issue the remaining sessions.
+   *
+   * @param count number of connections the pool should hold
+   * @return future completed with the number of connections opened
+   */
+  CompletableFuture<Integer> prewarm(int count)
+  {
+    if (closed)
+    {
+      return CompletableFuture.completedFuture(0);
+    }
+
+    int target = Math.min(count, maxPoolSize);
+
+    CompletableFuture<Integer> seed = allEntries.isEmpty() && target > 0 ?
+        CompletableFuture.supplyAsync(() -> openIdle(target) ? 1 : 0,
+                                      loginExecutor) :
+        CompletableFuture.completedFuture(0);
+
+    CompletableFuture<Integer> result = seed.thenCompose(seeded ->
+    {
+      List<CompletableFuture<Integer>> logins = new ArrayList<>();
+      for (int i = allEntries.size(); i < target; i++)
+      {
+        logins.add(CompletableFuture.supplyAsync(
+            () -> openIdle(target) ? 1 : 0, loginExecutor));
+      }
+
+      return CompletableFuture
+          .allOf(logins.toArray(new CompletableFuture<?>[0]))
+          .thenApply(ignored -> seeded + logins.stream()
+              .mapToInt(CompletableFuture::join).sum());
+    });
+
+    result.whenComplete((opened, ex) ->
+                            logger.debug("prewarmed {} pooled connections",
+                                         opened));
+    return result;
+  }
+
+  /**
+   * Close the pool. Idle connections are closed right away and borrowed
+   * connections are closed when the application returns them.
+   */
+  void close()
+  {
+    if (closed)
+    {
+      return;
+    }
+    closed = true;
+    housekeeper.shutdownNow();
+    loginExecutor.shutdown();
+
+    PoolEntry entry;
+    while ((entry = pollIdle()) != null)
+    {
+      destroy(entry);
+    }
+  }
+
+  SnowflakeConnectionPoolMetrics getMetrics()
+  {
+    int idle = idleCount.get();
+    return new SnowflakeConnectionPoolMetrics(
+        Math.max(allEntries.size() - idle, 0),
+        idle,
+        permits.getQueueLength(),
+        borrowCount.sum(),
+        timeoutCount.sum(),
+        createdCount.sum(),
+        destroyedCount.sum(),
+        TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.sum()),
+        TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get()),
+        TimeUnit.NANOSECONDS.toMillis(totalCreationNanos.sum()),
+        TimeUnit.NANOSECONDS.toMillis(maxCreationNanos.get()));
+  }
+
+  private void raiseSQLExceptionIfPoolIsClosed() throws SQLException
+  {
+    if (closed)
+    {
+      throw new SnowflakeSQLException(ErrorCode.CONNECTION_CLOSED);
+    }
+  }
+
+  private PoolEntry pollIdle()
+  {
+    PoolEntry entry = idleEntries.pollFirst();
+    if (entry != null)
+    {
+      idleCount.decrementAndGet();
+    }
+    return entry;
+  }
+
+  /**
+   * Open a new connection and add it to the idle connections if the pool
+   * holds fewer connections than the limit.
+   *
+   * @param limit number of connections the pool should not exceed
+   * @return true if a connection was added
+   */
+  private boolean openIdle(int limit)
+  {
+    if (closed || !permits.tryAcquire())
+    {
+      return false;
+    }
+
+    try
+    {
+      PoolEntry entry = create(limit);
+      if (entry == null)
+      {
+        return false;
+      }
+      idleEntries.offerLast(entry);
+      idleCount.incrementAndGet();
+      return true;
+    }
+    catch (SQLException ex)
+    {
+      logger.debug("failed to open pooled connection: {}", ex.getMessage());
+      return false;
+    }
+    finally
+    {
+      permits.release();
+    }
+  }
+
+  /**
+   * Reserve a physical connection slot
+   *
+   * @param limit number of connections the pool should not exceed
+   * @return false if the pool already holds limit connections
+   */
+  private boolean reserveConnection(int limit)
+  {
+    int limitInPool = Math.min(limit, maxPoolSize);
+    while (true)
+    {
+      int count = connectionCount.get();
+      if (count >= limitInPool)
+      {
+        return false;
+      }
+      if (connectionCount.compareAndSet(count, count + 1))
+      {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Open a new physical connection. The caller must hold a permit.
+   *
+   * @param limit number of connections the pool should not exceed
+   * @return the new connection, or null if the pool already holds limit
+   * connections
+   */
+  private PoolEntry create(int limit) throws SQLException
+  {
+    if (!reserveConnection(limit))
+    {
+      return null;
+    }
+
+    long startTime = System.nanoTime();
+
+    String currentIdToken = idToken;
+    SnowflakePooledConnection pooledConnection;
+    try
+    {
+      pooledConnection = currentIdToken == null ?
+          (SnowflakePooledConnection) dataSource.getPooledConnection() :
+          dataSource.getPooledConnectionFromIdToken(currentIdToken);
+    }
+    catch (SQLException | RuntimeException ex)
+    {
+      connectionCount.decrementAndGet();
+      throw ex;
+    }
+
+    long creationNanos = System.nanoTime() - startTime;
+    createdCount.increment();
+    totalCreationNanos.add(creationNanos);
+    maxCreationNanos.accumulateAndGet(creationNanos, Math::max);
+
+    SFSession session = getSession(pooledConnection.getPhysicalConnection());
+
+    if (deriveSessionsFromIdToken && session != null &&
+        !Strings.isNullOrEmpty(session.getIdToken()) && currentIdToken == null)
+    {
+      idTokenSessionValidityInSeconds =
+          session.getMasterTokenValidityInSeconds();
+      idToken = session.getIdToken();
+    }
+
+    long now = currentTimeMillis();
+    PoolEntry entry;
+    try
+    {
+      entry = new PoolEntry(pooledConnection,
+                            now,
+                            computeExpirationTime(session, now),
+                            session);
+    }
+    catch (SQLException ex)
+    {
+      closeQuietly(pooledConnection);
+      destroyedCount.increment();
+      connectionCount.decrementAndGet();
+      throw ex;
+    }
+
+    pooledConnection.addConnectionEventListener(this);
+    allEntries.put(pooledConnection, entry);
+
+    logger.debug("opened pooled connection in {} ms",
+                 TimeUnit.NANOSECONDS.toMillis(creationNanos));
+    return entry;
+  }
+
+  /**
+   * The session cannot outlive its master token unless it is renewed, so
+   * the lifetime of a pooled connection is capped by the master token
+   * validity minus some headroom.
+   */
+  private long computeExpirationTime(SFSession session, long nowInMillis)
+  {
+    long lifetimeInMillis = maxLifetimeInMillis;
+
+    long masterTokenValidityInSeconds = session == null ? 0 :
+        session.getMasterTokenValidityInSeconds();
+    if (masterTokenValidityInSeconds <= 0 && session != null &&
+        session.getIdToken() != null)
+    {
+      masterTokenValidityInSeconds = idTokenSessionValidityInSeconds;
+    }
+
+    if (masterTokenValidityInSeconds > 0)
+    {
+      long masterTokenLifetimeInMillis = masterTokenValidityInSeconds * 1000L;
+      masterTokenLifetimeInMillis = Math.max(
+          masterTokenLifetimeInMillis - MASTER_TOKEN_HEADROOM_IN_MILLIS,
+          masterTokenLifetimeInMillis / 2);
+
+      if (lifetimeInMillis <= 0 || lifetimeInMillis > masterTokenLifetimeInMillis)
+      {
+        lifetimeInMillis = masterTokenLifetimeInMillis;
+      }
+    }
+
+    return lifetimeInMillis > 0 ? nowInMillis + lifetimeInMillis : 0;
+  }
+
+  private void destroy(PoolEntry entry)
+  {
+    if (allEntries.remove(entry.pooledConnection) != null)
+    {
+      destroyedCount.increment();
+      closeQuietly(entry.pooledConnection);
+      connectionCount.decrementAndGet();
+    }
+  }
+
+  private static void closeQuietly(PooledConnection pooledConnection)
+  {
+    try
+    {
+      pooledConnection.close();
+    }
+    catch (SQLException ex)
+    {
+      logger.debug("failed to close pooled connection: {}", ex.getMessage());
+    }
+  }
+
+  /**
+   * Check an idle connection before handing it out. Connections that have
+   * been idle longer than the validation interval are validated with a
+   * session heartbeat.
+   */
+  private boolean isUsable(PoolEntry entry)
+  {
+    long now = currentTimeMillis();
+    if (entry.isExpired(now))
+    {
+      logger.debug("pooled connection exceeded max lifetime");
+      return false;
+    }
+
+    if (validationIntervalInMillis >= 0 &&
+        now - entry.lastAccessTimeInMillis > validationIntervalInMillis)
+    {
+      return validate(entry);
+    }
+
+    try
+    {
+      return !entry.pooledConnection.getPhysicalConnection().isClosed();
+    }
+    catch (SQLException ex)
+    {
+      return false;
+    }
+  }
+
+  private boolean validate(PoolEntry entry)
+  {
+    Connection connection = entry.pooledConnection.getPhysicalConnection();
+    if (connection == null)
+    {
+      return false;
+    }
+
+    SFSession session = getSession(connection);
+    if (session != null)
+    {
+      return session.isValid();
+    }
+
+    try
+    {
+      return connection.isValid(VALIDATION_TIMEOUT_IN_SECS);
+    }
+    catch (SQLException ex)
+    {
+      return false;
+    }
+  }
+
+  /**
+   * Reset a returned connection to the state it had when it was opened.
+   *
+   * @return true if the connection can be reused, false if it should be
+   * discarded
+   */
+  private boolean resetEntry(PoolEntry entry)
+  {
+    Connection connection = entry.pooledConnection.getPhysicalConnection();
+
+    try
+    {
+      if (connection == null || connection.isClosed())
+      {
+        return false;
+      }
+
+      if (entry.suspect)
+      {
+        if (!validate(entry))
+        {
+          logger.debug("discard pooled connection failing validation");
+          return false;
+        }
+        entry.suspect = false;
+      }
+
+      if (!resetSessionOnReturn)
+      {
+        return true;
+      }
+
+      if (connection.getAutoCommit() != entry.initialAutoCommit)
+      {
+        if (!connection.getAutoCommit())
+        {
+          connection.rollback();
+        }
+        connection.setAutoCommit(entry.initialAutoCommit);
+      }
+      else if (!entry.initialAutoCommit)
+      {
+        connection.rollback();
+      }
+
+      SFSession session = getSession(connection);
+      if (session == null)
+      {
+        return true;
+      }
+
+      // parameters and variables set by the application cannot be told
+      // apart from the ones the session was opened with
+      if (session.isSessionStateAltered())
+      {
+        logger.debug("discard pooled connection with altered session state");
+        return false;
+      }
+
+      try (Statement statement = connection.createStatement())
+      {
+        return restoreObject(statement, "role",
+                             entry.initialRole, session.getRole()) &&
+               restoreObject(statement, "warehouse",
+                             entry.initialWarehouse, session.getWarehouse()) &&
+               restoreObject(statement, "database",
+                             entry.initialDatabase, session.getDatabase()) &&
+               restoreObject(statement, "schema",
+                             entry.initialSchema, session.getSchema());
+      }
+    }
+    catch (SQLException ex)
+    {
+      logger.debug("failed to reset pooled connection: {}", ex.getMessage());
+      return false;
+    }
+  }
+
+  /**
+   * Switch back to the given object with a USE command. An object that was
+   * not set when the session was opened cannot be unset again, so such a
+   * connection is discarded instead.
+   */
+  private static boolean restoreObject(Statement statement,
+                                       String objectType,
+                                       String initialValue,
+                                       String currentValue)
+  throws SQLException
+  {
+    if (initialValue == null ? currentValue == null :
+        initialValue.equals(currentValue))
+    {
+      return true;
+    }
+
+    if (initialValue == null)
+    {
+      logger.debug("cannot unset {}, discard pooled connection", objectType);
+      return false;
+    }
+
+    logger.debug("reset {} to {} on pooled connection",
+                 objectType, initialValue);
+    statement.execute("use " + objectType + " \"" +
+                      initialValue.replace("\"", "\"\"") + "\"");
+    return true;
+  }
+
+  SFSession getSession(Connection connection)
+  {
+    try
+    {
+      if (connection != null &&
+          connection.isWrapperFor(SnowflakeConnectionV1.class))
+      {
+        return connection.unwrap(SnowflakeConnectionV1.class).getSfSession();
+      }
+    }
+    catch (SQLException ex)
+    {
+      logger.debug("not a Snowflake connection: {}", ex.getMessage());
+    }
+    return null;
+  }
+
+  long currentTimeMillis()
+  {
+    return System.currentTimeMillis();
+  }
+
+  /**
+   * Evict idle connections that expired or have been idle for too long, and
+   * open new ones to keep at least minIdle connections around.
+   */
+  void houseKeep()
+  {
+    try
+    {
+      long now = currentTimeMillis();
+
+      for (PoolEntry entry : idleEntries)
+      {
+        boolean idleTooLong = idleTimeoutInMillis > 0 &&
+                              now - entry.lastAccessTimeInMillis > idleTimeoutInMillis &&
+                              allEntries.size() > minIdle;
+
+        if ((entry.isExpired(now) || idleTooLong) &&
+            idleEntries.removeFirstOccurrence(entry))
+        {
+          idleCount.decrementAndGet();
+          destroy(entry);
+        }
+      }
+
+      while (!closed && allEntries.size() < minIdle && openIdle(minIdle))
+      {
+        logger.debug("opened idle connection to keep minIdle connections");
+      }
+    }
+    catch (Throwable ex)
+    {
+      logger.debug("connection pool housekeeping failed: {}", ex.getMessage());
+    }
+  }
+}
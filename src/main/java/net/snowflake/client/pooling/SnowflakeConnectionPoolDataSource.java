@@ -9,6 +9,7 @@ import javax.sql.ConnectionPoolDataSource;
 import javax.sql.PooledConnection;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.Properties;
 
 public class SnowflakeConnectionPoolDataSource
     extends SnowflakeBasicDataSource
@@ -28,4 +29,22 @@ public class SnowflakeConnectionPoolDataSource
     Connection connection = super.getConnection(user, password);
     return new SnowflakePooledConnection(connection);
   }
+
+  /**
+   * Open a pooled connection for the configured user by issuing a new
+   * session from the id token of an already authenticated session. This
+   * skips the authenticator round trips (e.g. SSO) of a full login.
+   *
+   * @param idToken id token of an authenticated session
+   * @return a new pooled connection
+   * @throws SQLException if failed to create a connection
+   */
+  SnowflakePooledConnection getPooledConnectionFromIdToken(String idToken)
+  throws SQLException
+  {
+    Properties extraProperties = new Properties();
+    extraProperties.put("id_token", idToken);
+    extraProperties.put("issueSessionFromIdToken", "true");
+    return new SnowflakePooledConnection(getConnection(extraProperties));
+  }
 }
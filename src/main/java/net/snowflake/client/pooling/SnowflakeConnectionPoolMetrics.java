@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2012-2019 Snowflake Computing Inc. All rights reserved.
+ */
+package net.snowflake.client.pooling;
+
+/**
+ * Point-in-time snapshot of the statistics of a SnowflakePoolingDataSource
+ */
+public class SnowflakeConnectionPoolMetrics
+{
+  /**
+   * number of connections currently handed out to the application
+   */
+  private final int activeConnections;
+
+  /**
+   * number of connections sitting in the pool ready to be borrowed
+   */
+  private final int idleConnections;
+
+  /**
+   * number of threads currently blocked waiting for a connection
+   */
+  private final int pendingThreads;
+
+  /**
+   * number of successful borrows since the pool was created
+   */
+  private final long borrowCount;
+
+  /**
+   * number of borrows that timed out waiting for a connection
+   */
+  private final long timeoutCount;
+
+  /**
+   * number of physical connections opened by the pool
+   */
+  private final long createdCount;
+
+  /**
+   * number of physical connections closed by the pool
+   */
+  private final long destroyedCount;
+
+  /**
+   * total and max time in millis callers waited to borrow a connection
+   */
+  private final long totalWaitMillis;
+  private final long maxWaitMillis;
+
+  /**
+   * total and max time in millis spent opening physical connections
+   */
+  private final long totalCreationMillis;
+  private final long maxCreationMillis;
+
+  SnowflakeConnectionPoolMetrics(int activeConnections,
+                                 int idleConnections,
+                                 int pendingThreads,
+                                 long borrowCount,
+                                 long timeoutCount,
+                                 long createdCount,
+                                 long destroyedCount,
+                                 long totalWaitMillis,
+                                 long maxWaitMillis,
+                                 long totalCreationMillis,
+                                 long maxCreationMillis)
+  {
+    this.activeConnections = activeConnections;
+    this.idleConnections = idleConnections;
+    this.pendingThreads = pendingThreads;
+    this.borrowCount = borrowCount;
+    this.timeoutCount = timeoutCount;
+    this.createdCount = createdCount;
+    this.destroyedCount = destroyedCount;
+    this.totalWaitMillis = totalWaitMillis;
+    this.maxWaitMillis = maxWaitMillis;
+    this.totalCreationMillis = totalCreationMillis;
+    this.maxCreationMillis = maxCreationMillis;
+  }
+
+  public int getActiveConnections()
+  {
+    return activeConnections;
+  }
+
+  public int getIdleConnections()
+  {
+    return idleConnections;
+  }
+
+  public int getPendingThreads()
+  {
+    return pendingThreads;
+  }
+
+  public long getBorrowCount()
+  {
+    return borrowCount;
+  }
+
+  public long getTimeoutCount()
+  {
+    return timeoutCount;
+  }
+
+  public long getCreatedCount()
+  {
+    return createdCount;
+  }
+
+  public long getDestroyedCount()
+  {
+    return destroyedCount;
+  }
+
+  public long getTotalWaitMillis()
+  {
+    return totalWaitMillis;
+  }
+
+  public long getMaxWaitMillis()
+  {
+    return maxWaitMillis;
+  }
+
+  public long getAverageWaitMillis()
+  {
+    return borrowCount == 0 ? 0 : totalWaitMillis / borrowCount;
+  }
+
+  public long getTotalCreationMillis()
+  {
+    return totalCreationMillis;
+  }
+
+  public long getMaxCreationMillis()
+  {
+    return maxCreationMillis;
+  }
+
+  public long getAverageCreationMillis()
+  {
+    return createdCount == 0 ? 0 : totalCreationMillis / createdCount;
+  }
+
+  @Override
+  public String toString()
+  {
+    return "SnowflakeConnectionPoolMetrics{" +
+           "active=" + activeConnections +
+           ", idle=" + idleConnections +
+           ", pending=" + pendingThreads +
+           ", borrowed=" + borrowCount +
+           ", timeouts=" + timeoutCount +
+           ", created=" + createdCount +
+           ", destroyed=" + destroyedCount +
+           ", avgWaitMillis=" + getAverageWaitMillis() +
+           ", maxWaitMillis=" + maxWaitMillis +
+           ", avgCreationMillis=" + getAverageCreationMillis() +
+           ", maxCreationMillis=" + maxCreationMillis +
+           '}';
+  }
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright (c) 2012-2019 Snowflake Computing Inc. All rights reserved.
+ */
+package net.snowflake.client.pooling;
+
+import net.snowflake.client.jdbc.ErrorCode;
+import net.snowflake.client.jdbc.SnowflakeSQLException;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * DataSource that keeps a pool of open Snowflake sessions so that
+ * getConnection() does not go through a full login for every call.
+ * <p>
+ * Connections returned by getConnection() go back to the pool when closed.
+ * Their role, warehouse, database, schema and auto commit mode are reset to
+ * the values the session was opened with, and connections on which ALTER
+ * SESSION or SET ran are closed instead. Connections idle for longer than
+ * the validation interval are validated with a session heartbeat before
+ * being handed out, and a connection never outlives the validity of its
+ * master token.
+ * <p>
+ * getConnection(user, password) is not pooled and always opens a new
+ * physical connection.
+ */
+public class SnowflakePoolingDataSource
+    extends SnowflakeConnectionPoolDataSource
+    implements AutoCloseable
+{
+  private int maxPoolSize = 10;
+
+  private int minIdle = 0;
+
+  private long connectionTimeoutInMillis = 30000;
+
+  private long idleTimeoutInMillis = 600000;
+
+  // 0 means derive from the master token validity
+  private long maxLifetimeInMillis = 0;
+
+  private long validationIntervalInMillis = 60000;
+
+  private long housekeepingIntervalInMillis = 30000;
+
+  private boolean resetSessionOnReturn = true;
+
+  private int loginConcurrency = 8;
+
+  private boolean deriveSessionsFromIdToken = true;
+
+  private volatile SnowflakeConnectionPool pool;
+
+  private volatile boolean closed = false;
+
+  @Override
+  public Connection getConnection() throws SQLException
+  {
+    return getPool().borrow();
+  }
+
+  private SnowflakeConnectionPool getPool() throws SQLException
+  {
+    if (closed)
+    {
+      throw new SnowflakeSQLException(ErrorCode.CONNECTION_CLOSED);
+    }
+
+    SnowflakeConnectionPool result = pool;
+    if (result == null)
+    {
+      synchronized (this)
+      {
+        if (closed)
+        {
+          throw new SnowflakeSQLException(ErrorCode.CONNECTION_CLOSED);
+        }
+        result = pool;
+        if (result == null)
+        {
+          result = pool = new SnowflakeConnectionPool(this);
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Open connections in the background, with at most loginConcurrency
+   * logins in parallel, until the pool holds the given number of
+   * connections. Use this at application startup so that the first requests
+   * do not wait for authentication.
+   *
+   * @param count number of connections the pool should hold
+   * @return future completed with the number of connections opened
+   * @throws SQLException if the data source is closed
+   */
+  public CompletableFuture<Integer> prewarm(int count) throws SQLException
+  {
+    return getPool().prewarm(count);
+  }
+
+  /**
+   * Close the pool and all idle connections. Connections still in use are
+   * closed when they are returned. The data source cannot be used anymore
+   * afterwards.
+   */
+  @Override
+  public synchronized void close()
+  {
+    closed = true;
+    if (pool != null)
+    {
+      pool.close();
+    }
+  }
+
+  /**
+   * @return statistics of the pool, or null if no connection has been
+   * requested yet
+   */
+  public SnowflakeConnectionPoolMetrics getPoolMetrics()
+  {
+    SnowflakeConnectionPool current = pool;
+    return current == null ? null : current.getMetrics();
+  }
+
+  /**
+   * The following settings take effect when the pool is created, i.e. on
+   * the first call to getConnection() or prewarm()
+   */
+  public void setMaxPoolSize(int maxPoolSize)
+  {
+    this.maxPoolSize = maxPoolSize;
+  }
+
+  public void setMinIdle(int minIdle)
+  {
+    this.minIdle = minIdle;
+  }
+
+  public void setConnectionTimeout(long connectionTimeoutInMillis)
+  {
+    this.connectionTimeoutInMillis = connectionTimeoutInMillis;
+  }
+
+  public void setIdleTimeout(long idleTimeoutInMillis)
+  {
+    this.idleTimeoutInMillis = idleTimeoutInMillis;
+  }
+
+  public void setMaxLifetime(long maxLifetimeInMillis)
+  {
+    this.maxLifetimeInMillis = maxLifetimeInMillis;
+  }
+
+  public void setValidationInterval(long validationIntervalInMillis)
+  {
+    this.validationIntervalInMillis = validationIntervalInMillis;
+  }
+
+  public void setHousekeepingInterval(long housekeepingIntervalInMillis)
+  {
+    this.housekeepingIntervalInMillis = housekeepingIntervalInMillis;
+  }
+
+  public void setResetSessionOnReturn(boolean resetSessionOnReturn)
+  {
+    this.resetSessionOnReturn = resetSessionOnReturn;
+  }
+
+  /**
+   * @param loginConcurrency max number of logins running in parallel when
+   *                         prewarming the pool
+   */
+  public void setLoginConcurrency(int loginConcurrency)
+  {
+    this.loginConcurrency = loginConcurrency;
+  }
+
+  /**
+   * @param deriveSessionsFromIdToken whether new sessions are issued from
+   *                                  the id token of an already
+   *                                  authenticated session (e.g. external
+   *                                  browser SSO) instead of going through
+   *                                  a full login
+   */
+  public void setDeriveSessionsFromIdToken(boolean deriveSessionsFromIdToken)
+  {
+    this.deriveSessionsFromIdToken = deriveSessionsFromIdToken;
+  }
+
+  int getMaxPoolSize()
+  {
+    return maxPoolSize;
+  }
+
+  int getMinIdle()
+  {
+    return minIdle;
+  }
+
+  long getConnectionTimeout()
+  {
+    return connectionTimeoutInMillis;
+  }
+
+  long getIdleTimeout()
+  {
+    return idleTimeoutInMillis;
+  }
+
+  long getMaxLifetime()
+  {
+    return maxLifetimeInMillis;
+  }
+
+  long getValidationInterval()
+  {
+    return validationIntervalInMillis;
+  }
+
+  long getHousekeepingInterval()
+  {
+    return housekeepingIntervalInMillis;
+  }
+
+  boolean isResetSessionOnReturn()
+  {
+    return resetSessionOnReturn;
+  }
+
+  int getLoginConcurrency()
+  {
+    return loginConcurrency;
+  }
+
+  boolean isDeriveSessionsFromIdToken()
+  {
+    return deriveSessionsFromIdToken;
+  }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2012-2019 Snowflake Computing Inc. All rights reserved.
+ */
+
+package net.snowflake.client.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * Finds all occurrences of a set of ASCII keywords in a text in a single
+ * pass, using an Aho-Corasick automaton.
+ * <p>
+ * Keywords are matched ignoring the case of ASCII letters only, like
+ * java.util.regex.Pattern.CASE_INSENSITIVE. Overlapping occurrences are all
+ * reported.
+ */
+class KeywordScanner
+{
+  private static final int ALPHABET_SIZE = 128;
+
+  private final String[] keywords;
+
+  // next state by state and lower case ASCII character
+  private final int[][] transitions;
+
+  // keywords ending at each state, including the ones reached by suffix
+  private final int[][] outputs;
+
+  /**
+   * @param keywords lower case ASCII keywords
+   */
+  KeywordScanner(String... keywords)
+  {
+    this.keywords = keywords.clone();
+
+    // trie of the keywords, state 0 is the root
+    List<int[]> trie = new ArrayList<>();
+    List<int[]> trieOutputs = new ArrayList<>();
+    trie.add(newState());
+    trieOutputs.add(new int[0]);
+    for (int k = 0; k < keywords.length; k++)
+    {
+      int state = 0;
+      for (char c : keywords[k].toCharArray())
+      {
+        if (c >= ALPHABET_SIZE || c != toLowerCase(c))
+        {
+          throw new IllegalArgumentException(
+              "Keyword is not lower case ASCII: " + keywords[k]);
+        }
+        if (trie.get(state)[c] < 0)
+        {
+          trie.get(state)[c] = trie.size();
+          trie.add(newState());
+          trieOutputs.add(new int[0]);
+        }
+        state = trie.get(state)[c];
+      }
+      trieOutputs.set(state, append(trieOutputs.get(state), k));
+    }
+
+    // complete the trie into a deterministic automaton, breadth first so
+    // that the failure state of a state is done before the state
+    transitions = trie.toArray(new int[0][]);
+    outputs = trieOutputs.toArray(new int[0][]);
+    int[] failure = new int[transitions.length];
+    Queue<Integer> queue = new ArrayDeque<>();
+    for (int c = 0; c < ALPHABET_SIZE; c++)
+    {
+      if (transitions[0][c] < 0)
+      {
+        transitions[0][c] = 0;
+      }
+      else
+      {
+        queue.add(transitions[0][c]);
+      }
+    }
+    while (!queue.isEmpty())
+    {
+      int state = queue.poll();
+      for (int c = 0; c < ALPHABET_SIZE; c++)
+      {
+        int next = transitions[state][c];
+        if (next < 0)
+        {
+          transitions[state][c] = transitions[failure[state]][c];
+        }
+        else
+        {
+          failure[next] = transitions[failure[state]][c];
+          for (int k : outputs[failure[next]])
+          {
+            outputs[next] = append(outputs[next], k);
+          }
+          queue.add(next);
+        }
+      }
+    }
+  }
+
+  private static int[] newState()
+  {
+    int[] state = new int[ALPHABET_SIZE];
+    Arrays.fill(state, -1);
+    return state;
+  }
+
+  private static int[] append(int[] array, int value)
+  {
+    int[] result = Arrays.copyOf(array, array.length + 1);
+    result[array.length] = value;
+    return result;
+  }
+
+  static char toLowerCase(char c)
+  {
+    return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+  }
+
+  /**
+   * @param text text to scan
+   * @return occurrences of the keywords, ordered by end position
+   */
+  List<Hit> scan(String text)
+  {
+    List<Hit> hits = new ArrayList<>();
+    int state = 0;
+    for (int i = 0; i < text.length(); i++)
+    {
+      char c = text.charAt(i);
+      if (c >= ALPHABET_SIZE)
+      {
+        // no keyword contains the character
+        state = 0;
+        continue;
+      }
+      state = transitions[state][toLowerCase(c)];
+      for (int k : outputs[state])
+      {
+        hits.add(new Hit(k, i + 1 - keywords[k].length()));
+      }
+    }
+    return hits;
+  }
+
+  /**
+   * @return true if the keyword is at the position of the text
+   */
+  boolean matchesAt(String text, int position, int keyword)
+  {
+    String value = keywords[keyword];
+    if (position < 0 || position + value.length() > text.length())
+    {
+      return false;
+    }
+    for (int i = 0; i < value.length(); i++)
+    {
+      if (toLowerCase(text.charAt(position + i)) != value.charAt(i))
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  int length(int keyword)
+  {
+    return keywords[keyword].length();
+  }
+
+  /**
+   * An occurrence of a keyword
+   */
+  static class Hit implements Comparable<Hit>
+  {
+    final int keyword;
+    final int start;
+
+    Hit(int keyword, int start)
+    {
+      this.keyword = keyword;
+      this.start = start;
+    }
+
+    /**
+     * Orders by start position, then by keyword index
+     */
+    @Override
+    public int compareTo(Hit other)
+    {
+      return start != other.start ?
+             Integer.compare(start, other.start) :
+             Integer.compare(keyword, other.keyword);
+    }
+  }
+}
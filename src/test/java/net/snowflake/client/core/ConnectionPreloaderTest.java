@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2012-2019 Snowflake Computing Inc. All rights reserved.
+ */
+package net.snowflake.client.core;
+
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+public class ConnectionPreloaderTest
+{
+  @Test
+  public void testRunOnDedicatedDaemonThread() throws Exception
+  {
+    AtomicReference<Thread> thread = new AtomicReference<>();
+    ConnectionPreloader.runAsync(() -> thread.set(Thread.currentThread()))
+        .get(10, TimeUnit.SECONDS);
+
+    assertThat(thread.get().isDaemon(), is(true));
+    assertThat(thread.get().getName().startsWith("snowflake-preload"),
+               is(true));
+    // not a thread of the common pool shared with the application
+    assertThat(thread.get() instanceof ForkJoinWorkerThread, is(false));
+  }
+
+  @Test
+  public void testFailurePropagated() throws Exception
+  {
+    IllegalStateException failure = new IllegalStateException("failed");
+    CompletableFuture<Void> future = ConnectionPreloader.runAsync(() ->
+    {
+      throw failure;
+    });
+
+    try
+    {
+      future.get(10, TimeUnit.SECONDS);
+      fail("the task failed");
+    }
+    catch (ExecutionException ex)
+    {
+      assertThat(ex.getCause(), instanceOf(IllegalStateException.class));
+      assertThat(ex.getCause().getMessage(), is("failed"));
+    }
+  }
+}
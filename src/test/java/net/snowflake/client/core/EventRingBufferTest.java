@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2012-2019 Snowflake Computing Inc. All right reserved.
+ */
+package net.snowflake.client.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.startsWith;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class EventRingBufferTest
+{
+  @Test
+  public void testOfferAndPoll()
+  {
+    EventRingBuffer<Integer> buffer = new EventRingBuffer<>(3);
+    assertThat(buffer.capacity(), is(4));
+    assertThat(buffer.poll(), nullValue());
+
+    for (int i = 0; i < 4; i++)
+    {
+      assertThat(buffer.offer(i), is(true));
+    }
+    assertThat(buffer.offer(4), is(false));
+    assertThat(buffer.size(), is(4));
+
+    assertThat(buffer.poll(), is(0));
+    assertThat(buffer.offer(4), is(true));
+
+    List<Integer> drained = new ArrayList<>();
+    assertThat(buffer.drainTo(drained), is(4));
+    assertThat(drained.toString(), is("[1, 2, 3, 4]"));
+    assertThat(buffer.size(), is(0));
+  }
+
+  @Test
+  public void testOfferOverwrite()
+  {
+    EventRingBuffer<Integer> buffer = new EventRingBuffer<>(4);
+    for (int i = 0; i < 10; i++)
+    {
+      buffer.offerOverwrite(i);
+    }
+
+    List<Integer> drained = new ArrayList<>();
+    buffer.drainTo(drained);
+    assertThat(drained.toString(), is("[6, 7, 8, 9]"));
+  }
+
+  @Test
+  public void testConcurrentProducers() throws Exception
+  {
+    final int producers = 8;
+    final int perProducer = 10000;
+    EventRingBuffer<Integer> buffer = new EventRingBuffer<>(64);
+    Set<Integer> consumed = new HashSet<>();
+
+    runConcurrently(producers, producer ->
+    {
+      for (int i = 0; i < perProducer; i++)
+      {
+        Integer value = producer * perProducer + i;
+        while (!buffer.offer(value))
+        {
+          // drain from the producers too, like EventHandler.pushEvent
+          drain(buffer, consumed);
+        }
+      }
+    });
+    drain(buffer, consumed);
+
+    // every element is consumed exactly once
+    assertThat(consumed.size(), is(producers * perProducer));
+  }
+
+  @Test
+  public void testStateTransitionMessage()
+  {
+    BasicEvent event =
+        new BasicEvent(BasicEvent.QueryState.WAITING_FOR_RESULT, "abc", 3);
+    assertThat(event.getType(), is(Event.EventType.STATE_TRANSITION));
+    assertThat(event.getMessage(), startsWith(
+        "{newState: Waiting for Result, info: {requestId: abc,numberPings: 3}, " +
+        "timestamp: "));
+  }
+
+  private static synchronized void drain(EventRingBuffer<Integer> buffer,
+                                         Set<Integer> consumed)
+  {
+    Integer value;
+    while ((value = buffer.poll()) != null)
+    {
+      assertThat(consumed.add(value), is(true));
+    }
+  }
+
+  private static void runConcurrently(int threads, IntConsumer task)
+  throws Exception
+  {
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<?>> futures = new ArrayList<>();
+    try
+    {
+      for (int i = 0; i < threads; i++)
+      {
+        final int thread = i;
+        futures.add(executor.submit(() ->
+                        {
+                          start.await();
+                          task.accept(thread);
+                          return null;
+                        }));
+      }
+      start.countDown();
+    }
+    finally
+    {
+      executor.shutdown();
+      assertThat(executor.awaitTermination(1, TimeUnit.MINUTES), is(true));
+    }
+    for (Future<?> future : futures)
+    {
+      // rethrows the failures of the task
+      future.get();
+    }
+  }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2012-2019 Snowflake Computing Inc. All rights reserved.
+ */
+package net.snowflake.client.core;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Contended throughput benchmark: several producers offer events to one
+ * buffer drained by a single consumer, like the EventHandler, once with the
+ * EventRingBuffer and once with a bounded queue guarded by a monitor.
+ */
+public class EventRingBufferThroughputIT
+{
+  private static final int PRODUCERS = 8;
+
+  private static final int CAPACITY = 1024;
+
+  private static final int PER_PRODUCER = 1_000_000;
+
+  private static final int ROUNDS = 3;
+
+  /**
+   * Buffer operations used by the benchmark
+   */
+  private interface Buffer
+  {
+    boolean offer(Integer element);
+
+    int drainTo(Collection<Integer> collection);
+  }
+
+  /**
+   * Bounded queue with every operation under one monitor
+   */
+  private static class SynchronizedBuffer implements Buffer
+  {
+    private final ArrayDeque<Integer> queue = new ArrayDeque<>(CAPACITY);
+
+    @Override
+    public synchronized boolean offer(Integer element)
+    {
+      if (queue.size() >= CAPACITY)
+      {
+        return false;
+      }
+      return queue.offer(element);
+    }
+
+    @Override
+    public synchronized int drainTo(Collection<Integer> collection)
+    {
+      int count = queue.size();
+      collection.addAll(queue);
+      queue.clear();
+      return count;
+    }
+  }
+
+  @Test
+  public void testContendedThroughput() throws Exception
+  {
+    int producers = PRODUCERS;
+    long ringNanos = Long.MAX_VALUE;
+    long lockedNanos = Long.MAX_VALUE;
+
+    // alternate the runs, the first ones also warm up the JIT
+    for (int round = 0; round < ROUNDS; round++)
+    {
+      final EventRingBuffer<Integer> ring = new EventRingBuffer<>(CAPACITY);
+      ringNanos = Math.min(ringNanos, run(producers, new Buffer()
+      {
+        @Override
+        public boolean offer(Integer element)
+        {
+          return ring.offer(element);
+        }
+
+        @Override
+        public int drainTo(Collection<Integer> collection)
+        {
+          return ring.drainTo(collection);
+        }
+      }));
+      lockedNanos = Math.min(lockedNanos,
+                             run(producers, new SynchronizedBuffer()));
+    }
+
+    long events = (long) producers * PER_PRODUCER;
+    System.out.println(String.format(
+        "%d producers, %d events: EventRingBuffer %d ms (%.1f M events/s), " +
+        "synchronized %d ms (%.1f M events/s)",
+        producers, events,
+        TimeUnit.NANOSECONDS.toMillis(ringNanos),
+        events * 1000.0 / ringNanos,
+        TimeUnit.NANOSECONDS.toMillis(lockedNanos),
+        events * 1000.0 / lockedNanos));
+  }
+
+  /**
+   * @return nanoseconds until the consumer received every event
+   */
+  private static long run(int producers, Buffer buffer) throws Exception
+  {
+    long expected = (long) producers * PER_PRODUCER;
+    AtomicLong consumed = new AtomicLong();
+    AtomicLong checksum = new AtomicLong();
+    CountDownLatch start = new CountDownLatch(1);
+
+    Thread consumer = new Thread(() ->
+    {
+      List<Integer> drained = new ArrayList<>(CAPACITY);
+      long count = 0;
+      long sum = 0;
+      while (count < expected)
+      {
+        if (buffer.drainTo(drained) == 0)
+        {
+          Thread.yield();
+          continue;
+        }
+        for (Integer value : drained)
+        {
+          sum += value;
+        }
+        count += drained.size();
+        drained.clear();
+      }
+      consumed.set(count);
+      checksum.set(sum);
+    });
+
+    List<Thread> threads = new ArrayList<>();
+    for (int p = 0; p < producers; p++)
+    {
+      threads.add(new Thread(() ->
+      {
+        try
+        {
+          start.await();
+        }
+        catch (InterruptedException ex)
+        {
+          return;
+        }
+        for (int i = 0; i < PER_PRODUCER; i++)
+        {
+          Integer value = i;
+          while (!buffer.offer(value))
+          {
+            Thread.yield();
+          }
+        }
+      }));
+    }
+
+    consumer.start();
+    for (Thread thread : threads)
+    {
+      thread.start();
+    }
+    long startNanos = System.nanoTime();
+    start.countDown();
+    for (Thread thread : threads)
+    {
+      thread.join();
+    }
+    consumer.join();
+    long elapsed = System.nanoTime() - startNanos;
+
+    assertThat(consumed.get(), is(expected));
+    assertThat(checksum.get(),
+               is((long) producers * PER_PRODUCER * (PER_PRODUCER - 1) / 2));
+    return elapsed;
+  }
+}
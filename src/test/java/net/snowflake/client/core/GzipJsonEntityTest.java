@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2012-2019 Snowflake Computing Inc. All right reserved.
+ */
+package net.snowflake.client.core;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Collections;
+import java.util.zip.GZIPInputStream;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class GzipJsonEntityTest
+{
+  private static final ObjectMapper mapper = ObjectMapperFactory.getObjectMapper();
+
+  @Test
+  public void testWriteIsRepeatable() throws Exception
+  {
+    GzipJsonEntity entity = new GzipJsonEntity(
+        mapper, Collections.singletonMap("sqlText", "select 1"));
+
+    // a retried request writes the entity again
+    for (int i = 0; i < 2; i++)
+    {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      entity.writeTo(out);
+
+      JsonNode json = mapper.readTree(
+          new GZIPInputStream(new ByteArrayInputStream(out.toByteArray())));
+      assertThat(json.path("sqlText").asText(), equalTo("select 1"));
+    }
+    assertThat(entity.isChunked(), equalTo(true));
+    assertThat(entity.getContentLength(), equalTo(-1L));
+  }
+}
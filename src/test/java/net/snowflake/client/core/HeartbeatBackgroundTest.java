@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2012-2019 Snowflake Computing Inc. All rights reserved.
+ */
+package net.snowflake.client.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class HeartbeatBackgroundTest
+{
+  /**
+   * Session counting its heartbeats instead of sending them
+   */
+  private static class CountingSession extends SFSession
+  {
+    private int heartbeats = 0;
+
+    @Override
+    protected void heartbeat()
+    {
+      heartbeats++;
+    }
+  }
+
+  /**
+   * Executor keeping the heartbeats until the test runs them
+   */
+  private static class ManualExecutor implements Executor
+  {
+    private final List<Runnable> pending = new ArrayList<>();
+
+    @Override
+    public void execute(Runnable command)
+    {
+      pending.add(command);
+    }
+
+    void runAll()
+    {
+      while (!pending.isEmpty())
+      {
+        pending.remove(0).run();
+      }
+    }
+  }
+
+  private final ManualExecutor executor = new ManualExecutor();
+
+  private long now;
+
+  /**
+   * Creates the wheel, then takes the current time, which must not be before
+   * the time the wheel starts from
+   */
+  private HeartbeatBackground newHeartbeatBackground()
+  {
+    HeartbeatBackground heartbeat = new HeartbeatBackground(executor);
+    now = System.currentTimeMillis();
+    return heartbeat;
+  }
+
+  @Test
+  public void testHeartbeatWhenDue()
+  {
+    HeartbeatBackground heartbeat = newHeartbeatBackground();
+    CountingSession session = new CountingSession();
+    heartbeat.add(session, 8, now);
+
+    // first heartbeat is spread over the last quarter of the interval
+    heartbeat.tick(now + 5000);
+    executor.runAll();
+    assertThat(session.heartbeats, is(0));
+
+    heartbeat.tick(now + 9000);
+    executor.runAll();
+    assertThat(session.heartbeats, is(1));
+
+    // next one is an interval later
+    heartbeat.tick(now + 16000);
+    executor.runAll();
+    assertThat(session.heartbeats, is(1));
+    heartbeat.tick(now + 17000);
+    executor.runAll();
+    assertThat(session.heartbeats, is(2));
+  }
+
+  @Test
+  public void testRecentlyUsedSessionSkipped()
+  {
+    HeartbeatBackground heartbeat = newHeartbeatBackground();
+    CountingSession session = new CountingSession();
+    heartbeat.add(session, 4, now - 4000);
+    session.recordActivity();
+
+    heartbeat.tick(now + 1000);
+    executor.runAll();
+    assertThat(session.heartbeats, is(0));
+
+    // due an interval after the activity
+    heartbeat.tick(now + 5000);
+    executor.runAll();
+    assertThat(session.heartbeats, is(1));
+  }
+
+  @Test
+  public void testRemovedSessionSkipped()
+  {
+    HeartbeatBackground heartbeat = newHeartbeatBackground();
+    CountingSession removed = new CountingSession();
+    CountingSession kept = new CountingSession();
+    heartbeat.add(removed, 4, now);
+    heartbeat.add(kept, 4, now);
+    heartbeat.removeSession(removed);
+
+    heartbeat.tick(now + 5000);
+    executor.runAll();
+    assertThat(kept.heartbeats, is(1));
+    assertThat(removed.heartbeats, is(0));
+  }
+
+  @Test
+  public void testSlowHeartbeatDoesNotBlockOthers()
+  {
+    CountingSession slow = new CountingSession();
+    CountingSession fast = new CountingSession();
+
+    HeartbeatBackground heartbeat = newHeartbeatBackground();
+    heartbeat.add(slow, 1, now);
+    heartbeat.add(fast, 1, now);
+    heartbeat.tick(now + 1000);
+    assertThat(executor.pending.size(), is(2));
+
+    // the heartbeat of the slow session is still running, the one of the
+    // fast session completes
+    Runnable slowHeartbeat = executor.pending.remove(0);
+    executor.runAll();
+    assertThat(fast.heartbeats, is(1));
+
+    // the slow session misses its next heartbeat, the fast one does not
+    heartbeat.tick(now + 2000);
+    executor.runAll();
+    assertThat(fast.heartbeats, is(2));
+    assertThat(slow.heartbeats, is(0));
+
+    slowHeartbeat.run();
+    heartbeat.tick(now + 3000);
+    executor.runAll();
+    assertThat(slow.heartbeats, is(2));
+    assertThat(fast.heartbeats, is(3));
+  }
+}
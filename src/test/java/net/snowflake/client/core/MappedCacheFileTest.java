@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2012-2019 Snowflake Computing Inc. All rights reserved.
+ */
+package net.snowflake.client.core;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class MappedCacheFileTest
+{
+  private static final long EXPIRATION = 3600 * 1000L;
+
+  @Rule
+  public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+  @Test
+  public void testAppendChangedEntries() throws Exception
+  {
+    File file = new File(tmpFolder.getRoot(), "cache.bin");
+    MappedCacheFile cache = new MappedCacheFile(file, EXPIRATION);
+    assertThat(cache.read(), nullValue());
+
+    Map<String, String> entries = new HashMap<>();
+    entries.put("a", "1");
+    entries.put("b", "2");
+    assertThat(cache.write(entries), is(true));
+    long length = file.length();
+
+    // an unchanged entry is not appended again
+    entries.put("b", "3");
+    cache.write(entries);
+    assertThat(file.length(), is(length + 12 + 2));
+
+    entries.remove("a");
+    cache.write(entries);
+    assertThat(cache.read(), is(entries));
+    assertThat(new MappedCacheFile(file, EXPIRATION).read(), is(entries));
+  }
+
+  @Test
+  public void testIgnoreIncompleteRecord() throws Exception
+  {
+    File file = new File(tmpFolder.getRoot(), "cache.bin");
+    MappedCacheFile cache = new MappedCacheFile(file, EXPIRATION);
+    Map<String, String> entries = new HashMap<>();
+    entries.put("a", "1");
+    cache.write(entries);
+    long length = file.length();
+
+    Map<String, String> changed = new HashMap<>();
+    changed.put("a", "2");
+    cache.write(changed);
+    // a corrupted record
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw"))
+    {
+      raf.seek(length + 8);
+      raf.write('b');
+    }
+    assertThat(cache.read(), is(entries));
+    // a record being appended
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw"))
+    {
+      raf.setLength(file.length() - 1);
+    }
+    assertThat(cache.read(), is(entries));
+
+    // the next writer rewrites the file
+    cache.write(changed);
+    assertThat(cache.read(), is(changed));
+  }
+
+  @Test
+  public void testCompaction() throws Exception
+  {
+    File file = new File(tmpFolder.getRoot(), "cache.bin");
+    MappedCacheFile cache = new MappedCacheFile(file, EXPIRATION);
+    Map<String, String> entries = new HashMap<>();
+    char[] value = new char[1000];
+    for (int i = 0; i < 200; ++i)
+    {
+      value[0] = (char) ('a' + i % 26);
+      entries.put("key", new String(value));
+      cache.write(entries);
+    }
+    assertThat(cache.read(), is(entries));
+    assertThat(file.length() < 100 * 1000, is(true));
+  }
+
+  @Test
+  public void testIncrementalRead() throws Exception
+  {
+    File file = new File(tmpFolder.getRoot(), "cache.bin");
+    MappedCacheFile reader = new MappedCacheFile(file, EXPIRATION);
+    MappedCacheFile writer = new MappedCacheFile(file, EXPIRATION);
+    Map<String, String> entries = new HashMap<>();
+    entries.put("a", "1");
+    writer.write(entries);
+
+    // an unchanged file is not decoded again
+    MappedCacheFile.Content content = reader.readContent();
+    assertThat(reader.readContent(), sameInstance(content));
+
+    // only the appended records are decoded, into a copy
+    entries.put("b", "2");
+    writer.write(entries);
+    MappedCacheFile.Content appended = reader.readContent();
+    assertThat(appended.entries, is(entries));
+    assertThat(appended.validBytes, is(file.length()));
+    assertThat(content.entries.containsKey("b"), is(false));
+
+    // a replaced file is decoded again
+    File other = new File(tmpFolder.getRoot(), "other.bin");
+    Map<String, String> replaced = new HashMap<>();
+    replaced.put("c", "3");
+    new MappedCacheFile(other, EXPIRATION).write(replaced);
+    Files.move(other.toPath(), file.toPath(),
+               StandardCopyOption.REPLACE_EXISTING);
+    assertThat(reader.read(), is(replaced));
+  }
+
+  @Test
+  public void testExpiration() throws Exception
+  {
+    File file = new File(tmpFolder.getRoot(), "cache.bin");
+    Map<String, String> entries = new HashMap<>();
+    entries.put("a", "1");
+    new MappedCacheFile(file, EXPIRATION).write(entries);
+    assertThat(new MappedCacheFile(file, -1).read().isEmpty(), is(true));
+  }
+
+  @Test
+  public void testMigrateJsonCacheFile() throws Exception
+  {
+    File jsonFile = tmpFolder.newFile("cache.json");
+    Files.write(jsonFile.toPath(),
+                "{\"a\":[1,\"x\"],\"b\":{\"c\":\"d\"}}"
+                    .getBytes(StandardCharsets.UTF_8));
+    FileCacheManager manager = FileCacheManager.builder()
+        .setCacheExpirationInSeconds(3600)
+        .setCacheFileLockExpirationInSeconds(60);
+    manager.overrideCacheFile(jsonFile);
+
+    JsonNode migrated = manager.readCacheFile();
+    assertThat(migrated.get("a").get(1).asText(), is("x"));
+    assertThat(FileCacheManager.mappedCacheFileOf(jsonFile).exists(), is(true));
+
+    // read from the binary file from now on
+    Files.write(jsonFile.toPath(), "{}".getBytes(StandardCharsets.UTF_8));
+    assertThat(manager.readCacheFile(), is(migrated));
+
+    manager.writeCacheFile(((ObjectNode) migrated.deepCopy()).without("a"));
+    assertThat(manager.readCacheFile().get("b").get("c").asText(), is("d"));
+    assertThat(manager.readCacheFile().has("a"), is(false));
+  }
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright (c) 2012-2019 Snowflake Computing Inc. All right reserved.
+ */
+package net.snowflake.client.core;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class QueryResultCacheTest
+{
+  private static final ObjectMapper mapper = ObjectMapperFactory.getObjectMapper();
+
+  private static final String[] CONTEXT =
+      new String[]{"url", "user", "role", "wh", "db", "schema"};
+
+  private static final Map<String, Object> NO_PARAMETERS =
+      Collections.emptyMap();
+
+  @Rule
+  public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+  @Test
+  public void testNormalizeSql()
+  {
+    assertThat(QueryResultCache.normalizeSql("  select  a,\tb   from t  "),
+               equalTo("select a, b from t"));
+    // whitespace in string literals and quoted identifiers is kept
+    assertThat(QueryResultCache.normalizeSql("select 'a  b', \"c  d\"  from t"),
+               equalTo("select 'a  b', \"c  d\" from t"));
+    assertThat(QueryResultCache.normalizeSql("select 'it''s  x'  from t"),
+               equalTo("select 'it''s  x' from t"));
+    // line breaks end line comments
+    assertThat(QueryResultCache.normalizeSql("select 1 -- one\n  , 2"),
+               equalTo("select 1 -- one\n, 2"));
+  }
+
+  @Test
+  public void testKey()
+  {
+    String key = QueryResultCache.key(CONTEXT, NO_PARAMETERS,
+                                      "select ?", null);
+    assertThat(QueryResultCache.key(CONTEXT, NO_PARAMETERS,
+                                    "select  ?", null),
+               equalTo(key));
+
+    Map<String, ParameterBindingDTO> bindings = Collections.singletonMap(
+        "1", new ParameterBindingDTO("TEXT", "a"));
+    assertThat(QueryResultCache.key(CONTEXT, NO_PARAMETERS,
+                                    "select ?", bindings),
+               not(equalTo(key)));
+
+    String[] otherRole =
+        new String[]{"url", "user", "other", "wh", "db", "schema"};
+    assertThat(QueryResultCache.key(otherRole, NO_PARAMETERS,
+                                    "select ?", null),
+               not(equalTo(key)));
+  }
+
+  @Test
+  public void testIsCacheable() throws Exception
+  {
+    assertThat(QueryResultCache.isCacheable(mapper.readTree(
+        "{\"success\":true,\"data\":{\"statementTypeId\":4096,\"rowset\":[]}}")),
+               is(true));
+    // results with chunks only hold presigned urls
+    assertThat(QueryResultCache.isCacheable(mapper.readTree(
+        "{\"success\":true,\"data\":{\"statementTypeId\":4096," +
+        "\"chunks\":[{\"url\":\"u\"}]}}")),
+               is(false));
+    // DML
+    assertThat(QueryResultCache.isCacheable(mapper.readTree(
+        "{\"success\":true,\"data\":{\"statementTypeId\":12544}}")),
+               is(false));
+  }
+
+  @Test
+  public void testPutGetAndInvalidate() throws Exception
+  {
+    Path directory = tmpFolder.newFolder().toPath();
+    QueryResultCache cache = new QueryResultCache(directory, 60000, 1024 * 1024);
+    JsonNode result = mapper.readTree("{\"success\":true,\"data\":{\"rowset\":[[\"1\"]]}}");
+
+    assertThat(cache.get("key"), nullValue());
+    cache.put("key", result, System.currentTimeMillis());
+    assertThat(cache.get("key"), equalTo(result));
+    assertThat(cache.getHitCount(), is(1L));
+    assertThat(cache.getMissCount(), is(1L));
+
+    // entries survive the process
+    QueryResultCache reopened =
+        new QueryResultCache(directory, 60000, 1024 * 1024);
+    assertThat(reopened.get("key"), equalTo(result));
+
+    cache.invalidateAll();
+    assertThat(cache.size(), is(0));
+    assertThat(cache.getTotalBytes(), is(0L));
+    assertThat(cache.get("key"), nullValue());
+  }
+
+  @Test
+  public void testExpiration() throws Exception
+  {
+    QueryResultCache cache = new QueryResultCache(
+        tmpFolder.newFolder().toPath(), 1, 1024 * 1024);
+    cache.put("key", mapper.readTree("{\"success\":true}"), System.currentTimeMillis());
+    Thread.sleep(20);
+
+    assertThat(cache.get("key"), nullValue());
+    assertThat(cache.getEvictionCount(), is(1L));
+  }
+
+  @Test
+  public void testLeastRecentlyUsedEviction() throws Exception
+  {
+    JsonNode result = mapper.readTree("{\"success\":true}");
+    Path directory = tmpFolder.newFolder().toPath();
+    QueryResultCache cache = new QueryResultCache(directory, 60000, 1024 * 1024);
+    cache.put("probe", result, System.currentTimeMillis());
+    long entrySize = cache.getTotalBytes();
+
+    // room for two entries
+    cache = new QueryResultCache(tmpFolder.newFolder().toPath(), 60000,
+                                 entrySize * 2);
+    cache.put("key1", result, System.currentTimeMillis());
+    cache.put("key2", result, System.currentTimeMillis());
+    cache.get("key1");
+    cache.put("key3", result, System.currentTimeMillis());
+
+    assertThat(cache.size(), is(2));
+    assertThat(cache.get("key1"), notNullValue());
+    assertThat(cache.get("key2"), nullValue());
+    assertThat(cache.get("key3"), notNullValue());
+  }
+
+  @Test
+  public void testIsCacheableQuery()
+  {
+    assertThat(QueryResultCache.isCacheableQuery("  SELECT a FROM t"), is(true));
+    assertThat(QueryResultCache.isCacheableQuery(
+        "with x as (select 1) select * from x"), is(true));
+    assertThat(QueryResultCache.isCacheableQuery("insert into t values (1)"),
+               is(false));
+    assertThat(QueryResultCache.isCacheableQuery("select seq.nextval"),
+               is(false));
+    assertThat(QueryResultCache.isCacheableQuery("select current_timestamp()"),
+               is(false));
+    assertThat(QueryResultCache.isCacheableQuery("select RANDOM() from t"),
+               is(false));
+    assertThat(QueryResultCache.isCacheableQuery(
+        "select * from table(result_scan(last_query_id()))"), is(false));
+  }
+
+  @Test
+  public void testCreatesTemporaryObject()
+  {
+    assertThat(QueryResultCache.createsTemporaryObject(
+        "CREATE OR REPLACE TEMPORARY TABLE t (a int)"), is(true));
+    assertThat(QueryResultCache.createsTemporaryObject(
+        "create local temp table t (a int)"), is(true));
+    assertThat(QueryResultCache.createsTemporaryObject(
+        "create table t (a int)"), is(false));
+  }
+
+  @Test
+  public void testReplayedResultHasNoQueryId() throws Exception
+  {
+    QueryResultCache cache = new QueryResultCache(
+        tmpFolder.newFolder().toPath(), 60000, 1024 * 1024);
+    cache.put("key", mapper.readTree(
+        "{\"success\":true,\"data\":{\"queryId\":\"q1\",\"rowset\":[]}}"),
+              System.currentTimeMillis());
+
+    JsonNode result = cache.get("key");
+    assertThat(result.path("data").has("queryId"), is(false));
+    assertThat(result.path("data").has("rowset"), is(true));
+  }
+
+  @Test
+  public void testInvalidationAcrossProcesses() throws Exception
+  {
+    Path directory = tmpFolder.newFolder().toPath();
+    QueryResultCache cache = new QueryResultCache(directory, 60000, 1024 * 1024);
+    JsonNode result = mapper.readTree("{\"success\":true}");
+    long queryStartTime = System.currentTimeMillis() - 1000;
+    cache.put("key", result, queryStartTime);
+
+    // another process sharing the directory runs a DML
+    QueryResultCache otherProcess =
+        new QueryResultCache(directory, 60000, 1024 * 1024);
+    Files.setLastModifiedTime(
+        directory.resolve("key.json.gz"),
+        FileTime.fromMillis(queryStartTime));
+    otherProcess.invalidateAll();
+    assertThat(cache.get("key"), nullValue());
+
+    // a query started before the invalidation is not cached
+    cache.put("key", result, queryStartTime);
+    assertThat(cache.size(), is(0));
+  }
+
+  @Test
+  public void testOwnerOnlyFiles() throws Exception
+  {
+    Assume.assumeTrue(tmpFolder.getRoot().toPath().getFileSystem()
+                          .supportedFileAttributeViews().contains("posix"));
+    Path directory = tmpFolder.getRoot().toPath().resolve("cache");
+    QueryResultCache cache = new QueryResultCache(directory, 60000, 1024 * 1024);
+    cache.put("key", mapper.readTree("{\"success\":true}"),
+              System.currentTimeMillis());
+
+    assertThat(PosixFilePermissions.toString(
+        Files.getPosixFilePermissions(directory)), equalTo("rwx------"));
+    assertThat(PosixFilePermissions.toString(
+        Files.getPosixFilePermissions(directory.resolve("key.json.gz"))),
+               equalTo("rw-------"));
+  }
+}
@@ -1,10 +1,48 @@
 package net.snowflake.client.core;
 
+import net.snowflake.client.jdbc.OCSPErrorCode;
+import net.snowflake.client.util.SFPair;
+import org.apache.commons.codec.binary.Base64;
+import org.bouncycastle.asn1.ASN1Integer;
+import org.bouncycastle.asn1.DEROctetString;
+import org.bouncycastle.asn1.ocsp.CertID;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.Certificate;
+import org.bouncycastle.cert.ocsp.BasicOCSPResp;
+import org.bouncycastle.cert.ocsp.BasicOCSPRespBuilder;
+import org.bouncycastle.cert.ocsp.CertificateID;
+import org.bouncycastle.cert.ocsp.CertificateStatus;
+import org.bouncycastle.cert.ocsp.OCSPReq;
+import org.bouncycastle.cert.ocsp.OCSPResp;
+import org.bouncycastle.cert.ocsp.OCSPRespBuilder;
+import org.bouncycastle.cert.ocsp.RespID;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
 import org.junit.Test;
 
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.cert.CertificateException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
 
 public class SFTrustManagerTest
 {
@@ -113,4 +151,290 @@ public class SFTrustManagerTest
       System.clearProperty("net.snowflake.jdbc.ocsp_activate_new_endpoint");
     }
   }
+
+  /**
+   * Test the time range in which a verified OCSP response is valid
+   */
+  @Test
+  public void testVerifiedCacheEntry() throws Exception
+  {
+    long now = System.currentTimeMillis();
+    long hour = 3600 * 1000L;
+    BasicOCSPResp basicOcspResp =
+        newBasicOcspResp(new Date(now - hour), new Date(now + hour));
+
+    SFTrustManager.OcspResponseCacheEntry entry =
+        new SFTrustManager.OcspResponseCacheEntry(now / 1000, "response");
+    assertThat(entry.isVerifiedAt(now), is(false));
+
+    entry.setVerified(basicOcspResp, null);
+    assertThat(entry.isVerifiedAt(now), is(true));
+    // nextUpdate plus the tolerable validity of 1% of the validity, at
+    // least 5 hours
+    assertThat(entry.isVerifiedAt(now + 5 * hour), is(true));
+    assertThat(entry.isVerifiedAt(now + 7 * hour), is(false));
+    // thisUpdate minus the 15 minutes clock skew
+    assertThat(entry.isVerifiedAt(now - hour - hour / 2), is(false));
+  }
+
+  /**
+   * Test the certificates of a chain are checked at the same time and the
+   * first error is raised
+   */
+  @Test
+  public void testParallelRevocationChecks() throws Exception
+  {
+    List<SFPair<Certificate, Certificate>> chain = Arrays.asList(
+        SFPair.of(null, null), SFPair.of(null, null), SFPair.of(null, null));
+    // every check waits for the others, so it only passes if all of them
+    // run in parallel
+    CyclicBarrier barrier = new CyclicBarrier(chain.size());
+    AtomicBoolean revoked = new AtomicBoolean(false);
+    SFTrustManager trustManager = new SFTrustManager(OCSPMode.FAIL_OPEN, null)
+    {
+      @Override
+      void executeOneRevocationStatusCheck(
+          SFPair<Certificate, Certificate> pairIssuerSubject,
+          long currentTimeSecond, String peerHost) throws CertificateException
+      {
+        try
+        {
+          barrier.await(10, TimeUnit.SECONDS);
+        }
+        catch (Exception ex)
+        {
+          throw new CertificateException(ex);
+        }
+        if (revoked.get() && pairIssuerSubject == chain.get(2))
+        {
+          throw new CertificateException("revoked");
+        }
+      }
+    };
+
+    trustManager.executeRevocationStatusChecks(chain, "host");
+
+    revoked.set(true);
+    try
+    {
+      trustManager.executeRevocationStatusChecks(chain, "host");
+      fail("the revoked certificate should fail the check");
+    }
+    catch (CertificateException ex)
+    {
+      assertThat(ex.getMessage(), is("revoked"));
+    }
+  }
+
+  /**
+   * Test concurrent checks of the same certificate share one OCSP request
+   */
+  @Test
+  public void testSingleFlightOcspRequest() throws Exception
+  {
+    SFTrustManager.OcspResponseCacheKey key = newCacheKey(1);
+    OCSPResp response = newOcspResp(new Date(), new Date());
+    AtomicInteger fetchCount = new AtomicInteger();
+    SFTrustManager trustManager = new SFTrustManager(OCSPMode.FAIL_OPEN, null)
+    {
+      @Override
+      OCSPResp fetchOcspResponse(
+          SFPair<Certificate, Certificate> pairIssuerSubject, OCSPReq req,
+          String cid_enc, String hname, OCSPTelemetryData telemetryData)
+      {
+        fetchCount.incrementAndGet();
+        // complete the request once the other thread waits for it
+        CompletableFuture<OCSPResp> inFlight =
+            SFTrustManager.OCSP_RESPONSE_IN_FLIGHT.get(key);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (inFlight.getNumberOfDependents() == 0 &&
+               System.nanoTime() < deadline)
+        {
+          Thread.yield();
+        }
+        return response;
+      }
+    };
+
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try
+    {
+      List<Future<OCSPResp>> futures = new ArrayList<>();
+      for (int i = 0; i < 2; i++)
+      {
+        futures.add(executor.submit(() -> trustManager.fetchOcspResponseOnce(
+            SFPair.of(null, null), null, key, "host", new OCSPTelemetryData())));
+      }
+      for (Future<OCSPResp> future : futures)
+      {
+        assertThat(future.get(10, TimeUnit.SECONDS) == response, is(true));
+      }
+    }
+    finally
+    {
+      executor.shutdownNow();
+    }
+    assertThat(fetchCount.get(), is(1));
+    assertThat(SFTrustManager.OCSP_RESPONSE_IN_FLIGHT.containsKey(key), is(false));
+  }
+
+  /**
+   * Test the expired responses are evicted first, then the oldest ones
+   */
+  @Test
+  public void testExpiryAwareEviction()
+  {
+    Map<SFTrustManager.OcspResponseCacheKey, SFTrustManager.OcspResponseCacheEntry>
+        savedCache = new HashMap<>(SFTrustManager.OCSP_RESPONSE_CACHE);
+    boolean savedCacheUpdated = SFTrustManager.WAS_CACHE_UPDATED.get();
+    SFTrustManager.OCSP_RESPONSE_CACHE.clear();
+    try
+    {
+      long now = System.currentTimeMillis() / 1000L;
+      int maxEntries = SFTrustManager.OCSP_RESPONSE_CACHE_MAX_ENTRIES;
+      // the oldest valid responses first
+      for (int i = 0; i < maxEntries - 10; i++)
+      {
+        SFTrustManager.putOcspResponseCache(
+            newCacheKey(i),
+            new SFTrustManager.OcspResponseCacheEntry(now - maxEntries + i, "r"));
+      }
+      // then responses fetched two days ago
+      for (int i = maxEntries - 10; i <= maxEntries; i++)
+      {
+        SFTrustManager.putOcspResponseCache(
+            newCacheKey(i),
+            new SFTrustManager.OcspResponseCacheEntry(now - 2 * 86400, "r"));
+      }
+
+      assertThat(SFTrustManager.OCSP_RESPONSE_CACHE.size(), is(maxEntries * 9 / 10));
+      for (int i = maxEntries - 10; i <= maxEntries; i++)
+      {
+        assertThat(SFTrustManager.OCSP_RESPONSE_CACHE.containsKey(newCacheKey(i)),
+                   is(false));
+      }
+      assertThat(SFTrustManager.OCSP_RESPONSE_CACHE.containsKey(newCacheKey(0)),
+                 is(false));
+      assertThat(SFTrustManager.OCSP_RESPONSE_CACHE.containsKey(
+          newCacheKey(maxEntries - 11)), is(true));
+    }
+    finally
+    {
+      SFTrustManager.OCSP_RESPONSE_CACHE.clear();
+      SFTrustManager.OCSP_RESPONSE_CACHE.putAll(savedCache);
+      SFTrustManager.WAS_CACHE_UPDATED.set(savedCacheUpdated);
+    }
+  }
+
+  /**
+   * Test the background refresh renews the responses due for refresh and
+   * drops revoked certificates
+   */
+  @Test
+  public void testBackgroundRefresh() throws Exception
+  {
+    long now = System.currentTimeMillis() / 1000L;
+    long hour = 3600L;
+    OCSPResp response = newOcspResp(new Date((now - hour) * 1000L),
+                                    new Date((now + 3 * hour) * 1000L));
+    AtomicInteger fetchCount = new AtomicInteger();
+    AtomicBoolean revoked = new AtomicBoolean(false);
+    SFTrustManager trustManager = new SFTrustManager(OCSPMode.FAIL_OPEN, null)
+    {
+      @Override
+      OCSPResp fetchOcspResponseOnce(
+          SFPair<Certificate, Certificate> pairIssuerSubject, OCSPReq req,
+          OcspResponseCacheKey keyOcspResponse, String peerHost,
+          OCSPTelemetryData telemetryData)
+      {
+        fetchCount.incrementAndGet();
+        return response;
+      }
+
+      @Override
+      void validateRevocationStatusMain(
+          SFPair<Certificate, Certificate> pairIssuerSubject,
+          OcspResponseCacheEntry cachedResp) throws SFOCSPException
+      {
+        if (revoked.get())
+        {
+          throw new SFOCSPException(OCSPErrorCode.CERTIFICATE_STATUS_REVOKED,
+                                    "revoked");
+        }
+      }
+    };
+
+    SFTrustManager.OcspResponseCacheKey key = newCacheKey(-1);
+    SFTrustManager.OcspResponseCacheKey uncachedKey = newCacheKey(-2);
+    boolean savedCacheUpdated = SFTrustManager.WAS_CACHE_UPDATED.get();
+    try
+    {
+      SFTrustManager.OCSP_RESPONSE_CACHE.put(
+          key, new SFTrustManager.OcspResponseCacheEntry(
+              now, Base64.encodeBase64String(response.getEncoded())));
+      SFTrustManager.OCSP_REFRESH_TARGETS.put(
+          key, new SFTrustManager.OcspRefreshTarget(
+              trustManager, SFPair.of(null, null), null, "host"));
+      SFTrustManager.OCSP_REFRESH_TARGETS.put(
+          uncachedKey, new SFTrustManager.OcspRefreshTarget(
+              trustManager, SFPair.of(null, null), null, "host"));
+
+      // refreshed an hour before nextUpdate
+      SFTrustManager.refreshDueOcspResponses(now + hour);
+      assertThat(fetchCount.get(), is(0));
+      assertThat(SFTrustManager.OCSP_REFRESH_TARGETS.containsKey(uncachedKey),
+                 is(false));
+
+      SFTrustManager.refreshDueOcspResponses(now + 2 * hour);
+      assertThat(fetchCount.get(), is(1));
+      assertThat(SFTrustManager.OCSP_RESPONSE_CACHE.get(key).cachedTimeSecond,
+                 is(now + 2 * hour));
+
+      revoked.set(true);
+      SFTrustManager.refreshDueOcspResponses(now + 2 * hour);
+      assertThat(fetchCount.get(), is(2));
+      assertThat(SFTrustManager.OCSP_RESPONSE_CACHE.containsKey(key), is(false));
+      assertThat(SFTrustManager.OCSP_REFRESH_TARGETS.containsKey(key), is(false));
+    }
+    finally
+    {
+      SFTrustManager.OCSP_RESPONSE_CACHE.remove(key);
+      SFTrustManager.OCSP_REFRESH_TARGETS.remove(key);
+      SFTrustManager.OCSP_REFRESH_TARGETS.remove(uncachedKey);
+      SFTrustManager.WAS_CACHE_UPDATED.set(savedCacheUpdated);
+    }
+  }
+
+  private static SFTrustManager.OcspResponseCacheKey newCacheKey(long serialNumber)
+  {
+    return new SFTrustManager.OcspResponseCacheKey(
+        new byte[20], new byte[20], BigInteger.valueOf(serialNumber));
+  }
+
+  private static BasicOCSPResp newBasicOcspResp(Date thisUpdate, Date nextUpdate)
+  throws Exception
+  {
+    KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+    generator.initialize(1024);
+    KeyPair keyPair = generator.generateKeyPair();
+
+    CertificateID certificateId = new CertificateID(new CertID(
+        new SFTrustManager.SHA1DigestCalculator().getAlgorithmIdentifier(),
+        new DEROctetString(new byte[20]), new DEROctetString(new byte[20]),
+        new ASN1Integer(BigInteger.ONE)));
+    BasicOCSPRespBuilder builder =
+        new BasicOCSPRespBuilder(new RespID(new X500Name("CN=responder")));
+    builder.addResponse(certificateId, CertificateStatus.GOOD,
+                        thisUpdate, nextUpdate, null);
+    return builder.build(
+        new JcaContentSignerBuilder("SHA256withRSA").build(keyPair.getPrivate()),
+        null, new Date());
+  }
+
+  private static OCSPResp newOcspResp(Date thisUpdate, Date nextUpdate)
+  throws Exception
+  {
+    return new OCSPRespBuilder().build(OCSPRespBuilder.SUCCESSFUL,
+                                       newBasicOcspResp(thisUpdate, nextUpdate));
+  }
 }
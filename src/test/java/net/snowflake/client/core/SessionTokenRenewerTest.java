@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2012-2019 Snowflake Computing Inc. All rights reserved.
+ */
+package net.snowflake.client.core;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class SessionTokenRenewerTest
+{
+  /**
+   * Open session recording the token it is asked to renew
+   */
+  private static class RenewingSession extends SFSession
+  {
+    private final CountDownLatch renewed = new CountDownLatch(1);
+
+    private volatile String renewedToken;
+
+    @Override
+    public boolean isClosed()
+    {
+      return false;
+    }
+
+    @Override
+    void renewSession(String prevSessionToken)
+    {
+      renewedToken = prevSessionToken;
+      renewed.countDown();
+    }
+  }
+
+  @Test
+  public void testRenewBeforeExpiration() throws Exception
+  {
+    RenewingSession session = new RenewingSession();
+    ScheduledFuture<?> renewal =
+        new SessionTokenRenewer(true).schedule(session, "token", 1);
+
+    // renewed after 90% of the validity
+    assertThat(renewal.getDelay(TimeUnit.MILLISECONDS) <= 900, is(true));
+    assertThat(session.renewed.await(10, TimeUnit.SECONDS), is(true));
+    assertThat(session.renewedToken, is("token"));
+  }
+
+  @Test
+  public void testSlowRenewalDoesNotDelayOthers() throws Exception
+  {
+    CountDownLatch release = new CountDownLatch(1);
+    RenewingSession slow = new RenewingSession()
+    {
+      @Override
+      void renewSession(String prevSessionToken)
+      {
+        super.renewSession(prevSessionToken);
+        try
+        {
+          release.await();
+        }
+        catch (InterruptedException ex)
+        {
+          Thread.currentThread().interrupt();
+        }
+      }
+    };
+    RenewingSession fast = new RenewingSession();
+
+    SessionTokenRenewer renewer = new SessionTokenRenewer(true);
+    renewer.schedule(slow, "slow", 1);
+    renewer.schedule(fast, "fast", 1);
+    try
+    {
+      assertThat(slow.renewed.await(10, TimeUnit.SECONDS), is(true));
+      assertThat(fast.renewed.await(10, TimeUnit.SECONDS), is(true));
+    }
+    finally
+    {
+      release.countDown();
+    }
+  }
+
+  @Test
+  public void testNoRenewal()
+  {
+    RenewingSession session = new RenewingSession();
+    assertThat(new SessionTokenRenewer(false).schedule(session, "token", 1),
+               nullValue());
+    // the server did not return the validity
+    assertThat(new SessionTokenRenewer(true).schedule(session, "token", 0),
+               nullValue());
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2012-2019 Snowflake Computing Inc. All rights reserved.
+ */
+package net.snowflake.client.core.arrow;
+
+import net.snowflake.client.core.SFException;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.ValueVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.types.Types;
+import org.apache.arrow.vector.types.pojo.FieldType;
+import org.junit.After;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class ArrowResultChunkIndexSorterTest extends BaseConverterTest
+{
+  private BufferAllocator allocator = new RootAllocator(Integer.MAX_VALUE);
+
+  private VarCharVector vector1;
+
+  private VarCharVector vector2;
+
+  @After
+  public void closeVectors()
+  {
+    vector1.close();
+    vector2.close();
+    allocator.close();
+  }
+
+  private VarCharVector createVector(String... values)
+  {
+    Map<String, String> customFieldMeta = new HashMap<>();
+    customFieldMeta.put("logicalType", "TEXT");
+    FieldType fieldType = new FieldType(true,
+                                        Types.MinorType.VARCHAR.getType(),
+                                        null, customFieldMeta);
+
+    VarCharVector vector = new VarCharVector("col_one", fieldType, allocator);
+    for (int i = 0; i < values.length; i++)
+    {
+      if (values[i] == null)
+      {
+        vector.setNull(i);
+      }
+      else
+      {
+        vector.setSafe(i, values[i].getBytes(StandardCharsets.UTF_8));
+      }
+    }
+    vector.setValueCount(values.length);
+    return vector;
+  }
+
+  private ArrowResultChunkIndexSorter createSorter(VarCharVector vector)
+  throws SFException
+  {
+    return new ArrowResultChunkIndexSorter(
+        Collections.<ValueVector>singletonList(vector),
+        Collections.<ArrowVectorConverter>singletonList(
+            new VarCharConverter(vector, 0, this)));
+  }
+
+  @Test
+  public void testSortAndCompareAcrossChunks() throws SFException
+  {
+    vector1 = createVector("c", null, "a", "b", "a");
+    vector2 = createVector("b", null);
+
+    ArrowResultChunkIndexSorter sorter1 = createSorter(vector1);
+    ArrowResultChunkIndexSorter sorter2 = createSorter(vector2);
+
+    // nulls last, equal values keep their order
+    assertThat(sorter1.sort(), equalTo(new int[]{2, 4, 3, 0, 1}));
+    assertThat(sorter2.sort(), equalTo(new int[]{0, 1}));
+
+    assertThat(sorter1.compare(3, sorter2, 0), is(0));
+    assertThat(sorter1.compare(2, sorter2, 0) < 0, is(true));
+    assertThat(sorter1.compare(0, sorter2, 1) < 0, is(true));
+    assertThat(sorter1.compare(1, sorter2, 1), is(0));
+  }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2012-2019 Snowflake Computing Inc. All rights reserved.
+ */
+package net.snowflake.client.core.arrow;
+
+import net.snowflake.client.core.SFException;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.ValueVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.complex.StructVector;
+import org.apache.arrow.vector.types.Types;
+import org.apache.arrow.vector.types.pojo.FieldType;
+import org.junit.After;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class ArrowVectorConcatenatorTest
+{
+  // batch sizes not aligned on bytes of the validity bitmaps
+  private static final int[] BATCH_SIZES = {5, 0, 3, 11, 16, 1};
+
+  private BufferAllocator allocator = new RootAllocator(Integer.MAX_VALUE);
+
+  private Random random = new Random();
+
+  private List<ValueVector> vectors = new ArrayList<>();
+
+  @After
+  public void closeVectors()
+  {
+    vectors.forEach(ValueVector::close);
+    allocator.close();
+  }
+
+  private FieldVector concatenate(List<ValueVector> batches) throws SFException
+  {
+    vectors.addAll(batches);
+    FieldVector result = ArrowVectorConcatenator.concatenate(batches, allocator);
+    vectors.add(result);
+    return result;
+  }
+
+  @Test
+  public void testConcatenateIntVectors() throws SFException
+  {
+    List<ValueVector> batches = new ArrayList<>();
+    List<Integer> expected = new ArrayList<>();
+    for (int size : BATCH_SIZES)
+    {
+      IntVector vector = new IntVector("col_one", allocator);
+      for (int i = 0; i < size; i++)
+      {
+        if (random.nextBoolean())
+        {
+          vector.setNull(i);
+          expected.add(null);
+        }
+        else
+        {
+          int value = random.nextInt();
+          vector.setSafe(i, value);
+          expected.add(value);
+        }
+      }
+      vector.setValueCount(size);
+      batches.add(vector);
+    }
+
+    IntVector result = (IntVector) concatenate(batches);
+    assertThat(result.getValueCount(), is(expected.size()));
+    for (int i = 0; i < expected.size(); i++)
+    {
+      assertThat(result.getObject(i), equalTo(expected.get(i)));
+    }
+  }
+
+  @Test
+  public void testConcatenateBitVectors() throws SFException
+  {
+    List<ValueVector> batches = new ArrayList<>();
+    List<Boolean> expected = new ArrayList<>();
+    for (int size : BATCH_SIZES)
+    {
+      BitVector vector = new BitVector("col_one", allocator);
+      for (int i = 0; i < size; i++)
+      {
+        int value = random.nextInt(3);
+        if (value == 2)
+        {
+          vector.setNull(i);
+          expected.add(null);
+        }
+        else
+        {
+          vector.setSafe(i, value);
+          expected.add(value == 1);
+        }
+      }
+      vector.setValueCount(size);
+      batches.add(vector);
+    }
+
+    BitVector result = (BitVector) concatenate(batches);
+    assertThat(result.getValueCount(), is(expected.size()));
+    for (int i = 0; i < expected.size(); i++)
+    {
+      assertThat(result.getObject(i), equalTo(expected.get(i)));
+    }
+  }
+
+  @Test
+  public void testConcatenateVarCharVectors() throws SFException
+  {
+    List<ValueVector> batches = new ArrayList<>();
+    List<String> expected = new ArrayList<>();
+    for (int size : BATCH_SIZES)
+    {
+      VarCharVector vector = new VarCharVector("col_one", allocator);
+      for (int i = 0; i < size; i++)
+      {
+        if (random.nextInt(4) == 0)
+        {
+          vector.setNull(i);
+          expected.add(null);
+        }
+        else
+        {
+          String value = "value" + random.nextInt(1000);
+          vector.setSafe(i, value.getBytes(StandardCharsets.UTF_8));
+          expected.add(value);
+        }
+      }
+      vector.setValueCount(size);
+      batches.add(vector);
+    }
+
+    VarCharVector result = (VarCharVector) concatenate(batches);
+    assertThat(result.getValueCount(), is(expected.size()));
+    for (int i = 0; i < expected.size(); i++)
+    {
+      String value = result.isNull(i) ? null :
+                     new String(result.get(i), StandardCharsets.UTF_8);
+      assertThat(value, equalTo(expected.get(i)));
+    }
+  }
+
+  @Test
+  public void testConcatenateStructVectors() throws SFException
+  {
+    List<ValueVector> batches = new ArrayList<>();
+    List<Long> expectedEpochs = new ArrayList<>();
+    List<Integer> expectedFractions = new ArrayList<>();
+    for (int size : BATCH_SIZES)
+    {
+      StructVector vector = StructVector.empty("col_one", allocator);
+      BigIntVector epochs = vector.addOrGet(
+          "epoch", FieldType.nullable(Types.MinorType.BIGINT.getType()),
+          BigIntVector.class);
+      IntVector fractions = vector.addOrGet(
+          "fraction", FieldType.nullable(Types.MinorType.INT.getType()),
+          IntVector.class);
+      for (int i = 0; i < size; i++)
+      {
+        if (random.nextInt(4) == 0)
+        {
+          vector.setNull(i);
+          expectedEpochs.add(null);
+          expectedFractions.add(null);
+        }
+        else
+        {
+          long epoch = random.nextLong();
+          int fraction = random.nextInt();
+          epochs.setSafe(i, epoch);
+          fractions.setSafe(i, fraction);
+          vector.setIndexDefined(i);
+          expectedEpochs.add(epoch);
+          expectedFractions.add(fraction);
+        }
+      }
+      vector.setValueCount(size);
+      batches.add(vector);
+    }
+
+    StructVector result = (StructVector) concatenate(batches);
+    BigIntVector epochs = (BigIntVector) result.getChildrenFromFields().get(0);
+    IntVector fractions = (IntVector) result.getChildrenFromFields().get(1);
+    assertThat(result.getValueCount(), is(expectedEpochs.size()));
+    for (int i = 0; i < expectedEpochs.size(); i++)
+    {
+      assertThat(result.isNull(i), is(expectedEpochs.get(i) == null));
+      if (!result.isNull(i))
+      {
+        assertThat(epochs.get(i), equalTo(expectedEpochs.get(i)));
+        assertThat(fractions.get(i), equalTo(expectedFractions.get(i)));
+      }
+    }
+  }
+}
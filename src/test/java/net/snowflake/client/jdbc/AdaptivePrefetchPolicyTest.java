@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2012-2019 Snowflake Computing Inc. All right reserved.
+ */
+package net.snowflake.client.jdbc;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class AdaptivePrefetchPolicyTest
+{
+  private static final long CHUNK_SIZE = 1000;
+
+  @Test
+  public void testNoAdjustmentDuringWarmup()
+  {
+    AdaptivePrefetchPolicy policy = new AdaptivePrefetchPolicy(1, 16);
+    policy.record(10, 1000, CHUNK_SIZE);
+    assertThat(policy.getTargetSlots(8), is(8));
+  }
+
+  @Test
+  public void testFastConsumerGetsMoreSlots()
+  {
+    AdaptivePrefetchPolicy policy = new AdaptivePrefetchPolicy(1, 16);
+    for (int i = 0; i < AdaptivePrefetchPolicy.WARMUP_CHUNKS; i++)
+    {
+      // a chunk takes 10 times longer to download than to consume
+      policy.record(100, 1000, CHUNK_SIZE);
+    }
+    assertThat(policy.getTargetSlots(8), is(11));
+
+    // bounded
+    for (int i = 0; i < 10; i++)
+    {
+      policy.record(1, 1000, CHUNK_SIZE);
+    }
+    assertThat(policy.getTargetSlots(8), is(16));
+  }
+
+  @Test
+  public void testSlowConsumerGetsFewerSlots()
+  {
+    AdaptivePrefetchPolicy policy = new AdaptivePrefetchPolicy(1, 16);
+    for (int i = 0; i < AdaptivePrefetchPolicy.WARMUP_CHUNKS; i++)
+    {
+      policy.record(5000, 1000, CHUNK_SIZE);
+    }
+    assertThat(policy.getTargetSlots(8), is(2));
+  }
+
+  @Test
+  public void testInstantConsumer()
+  {
+    AdaptivePrefetchPolicy policy = new AdaptivePrefetchPolicy(2, 16);
+    for (int i = 0; i < AdaptivePrefetchPolicy.WARMUP_CHUNKS; i++)
+    {
+      policy.record(0, 1000, CHUNK_SIZE);
+    }
+    assertThat(policy.getTargetSlots(8), is(16));
+  }
+}
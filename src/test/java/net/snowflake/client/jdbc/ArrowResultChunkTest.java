@@ -3,8 +3,24 @@
  */
 package net.snowflake.client.jdbc;
 
+import net.snowflake.client.core.SFException;
+import net.snowflake.client.core.arrow.BaseConverterTest;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.ValueVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.types.Types;
+import org.apache.arrow.vector.types.pojo.FieldType;
 import org.junit.Test;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 
@@ -20,4 +36,77 @@ public class ArrowResultChunkTest
     assertThat(iterator.isAfterLast(), is(true));
     assertThat(iterator.isLast(), is(false));
   }
+
+  @Test
+  public void testSortedIteratorMergesChunks()
+      throws SnowflakeSQLException, SFException
+  {
+    try (RootAllocator allocator = new RootAllocator(Integer.MAX_VALUE))
+    {
+      List<ArrowResultChunk> chunks = Arrays.asList(
+          createSortedChunk(allocator, "d", null, "a"),
+          createSortedChunk(allocator),
+          createSortedChunk(allocator, "c", "b", "e"),
+          createSortedChunk(allocator, "b"));
+      for (ArrowResultChunk chunk : chunks)
+      {
+        assertThat(chunk.computeSortedChunkMemory() > 0, is(true));
+      }
+
+      ArrowResultChunk.ArrowChunkIterator iterator =
+          ArrowResultChunk.getSortedIterator(chunks);
+      List<String> values = new ArrayList<>();
+      while (iterator.next())
+      {
+        values.add(iterator.getCurrentConverter(0)
+                       .toString(iterator.getCurrentRowInRecordBatch()));
+        if (values.size() == 7)
+        {
+          assertThat(iterator.isLast(), is(true));
+        }
+      }
+
+      // nulls last
+      assertThat(values,
+                 equalTo(Arrays.asList("a", "b", "b", "c", "d", "e", null)));
+      assertThat(iterator.isAfterLast(), is(true));
+      // the merge freed every chunk
+      assertThat(allocator.getAllocatedMemory(), is(0L));
+    }
+  }
+
+  /**
+   * @return chunk of one text column with the given values, prepared and
+   * sorted
+   */
+  private static ArrowResultChunk createSortedChunk(RootAllocator allocator,
+                                                    String... values)
+      throws SnowflakeSQLException
+  {
+    Map<String, String> customFieldMeta = new HashMap<>();
+    customFieldMeta.put("logicalType", "TEXT");
+    FieldType fieldType = new FieldType(true,
+                                        Types.MinorType.VARCHAR.getType(),
+                                        null, customFieldMeta);
+    VarCharVector vector = new VarCharVector("col_one", fieldType, allocator);
+    for (int i = 0; i < values.length; i++)
+    {
+      if (values[i] == null)
+      {
+        vector.setNull(i);
+      }
+      else
+      {
+        vector.setSafe(i, values[i].getBytes(StandardCharsets.UTF_8));
+      }
+    }
+    vector.setValueCount(values.length);
+
+    ArrowResultChunk chunk =
+        new ArrowResultChunk("", values.length, 1, 0, allocator);
+    chunk.addBatchData(Collections.<ValueVector>singletonList(vector));
+    chunk.prepareSort(new BaseConverterTest());
+    chunk.sort();
+    return chunk;
+  }
 }
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2012-2019 Snowflake Computing Inc. All rights reserved.
+ */
+package net.snowflake.client.jdbc;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class ChunkDecodePoolTest
+{
+  private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+  private final ChunkDecodePool decodePool = new ChunkDecodePool(executor);
+
+  @After
+  public void tearDown()
+  {
+    decodePool.shutdown();
+  }
+
+  @Test
+  public void testDecodeOnPool() throws Exception
+  {
+    AtomicReference<Thread> decoderThread = new AtomicReference<>();
+    CountDownLatch decoded = new CountDownLatch(1);
+
+    assertThat(decodePool.submit(0, () ->
+    {
+      decoderThread.set(Thread.currentThread());
+      decoded.countDown();
+    }), is(true));
+
+    assertThat(decoded.await(10, TimeUnit.SECONDS), is(true));
+    assertThat(decoderThread.get(), not(Thread.currentThread()));
+    waitForPendingCount(0);
+  }
+
+  @Test
+  public void testCancelDecoding() throws Exception
+  {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch interrupted = new CountDownLatch(1);
+
+    decodePool.submit(1, () ->
+    {
+      started.countDown();
+      try
+      {
+        Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+      }
+      catch (InterruptedException ex)
+      {
+        interrupted.countDown();
+      }
+    });
+    assertThat(started.await(10, TimeUnit.SECONDS), is(true));
+    assertThat(decodePool.getPendingCount(), is(1));
+
+    // a retry of the chunk
+    decodePool.cancel(1);
+    assertThat(interrupted.await(10, TimeUnit.SECONDS), is(true));
+    assertThat(decodePool.getPendingCount(), is(0));
+  }
+
+  @Test
+  public void testCancelledDownloadNotDecoded() throws Exception
+  {
+    AtomicBoolean decoded = new AtomicBoolean(false);
+
+    // the download thread was interrupted by a retry of the chunk
+    Thread.currentThread().interrupt();
+    boolean submitted;
+    try
+    {
+      submitted = decodePool.submit(2, () -> decoded.set(true));
+    }
+    finally
+    {
+      Thread.interrupted();
+    }
+
+    assertThat(submitted, is(false));
+    assertThat(decodePool.getPendingCount(), is(0));
+
+    // the pool has run everything submitted before this task
+    executor.submit(() -> null).get(10, TimeUnit.SECONDS);
+    assertThat(decoded.get(), is(false));
+  }
+
+  private void waitForPendingCount(int count) throws InterruptedException
+  {
+    // done() runs right after the decoding completes
+    for (int i = 0; i < 1000 && decodePool.getPendingCount() != count; i++)
+    {
+      Thread.sleep(10);
+    }
+    assertThat(decodePool.getPendingCount(), is(count));
+  }
+}
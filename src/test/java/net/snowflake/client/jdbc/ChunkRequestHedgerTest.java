@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) 2012-2019 Snowflake Computing Inc. All right reserved.
+ */
+package net.snowflake.client.jdbc;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+public class ChunkRequestHedgerTest
+{
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+
+  /**
+   * Request returning its response once released, or failing once aborted
+   */
+  private static class FakeRequest implements ChunkRequestHedger.Request<String>
+  {
+    final String response;
+
+    final CountDownLatch released = new CountDownLatch(1);
+
+    final CountDownLatch aborted = new CountDownLatch(1);
+
+    FakeRequest(String response)
+    {
+      this.response = response;
+    }
+
+    @Override
+    public String execute(AtomicBoolean canceling) throws Exception
+    {
+      while (!released.await(10, TimeUnit.MILLISECONDS))
+      {
+        if (aborted.getCount() == 0)
+        {
+          throw new Exception("aborted");
+        }
+      }
+      if (response == null)
+      {
+        throw new Exception("failed");
+      }
+      return response;
+    }
+
+    @Override
+    public void abort()
+    {
+      aborted.countDown();
+    }
+  }
+
+  @After
+  public void tearDown()
+  {
+    executor.shutdownNow();
+  }
+  @Test
+  public void testHedgeDelayFromPercentile()
+  {
+    ChunkRequestHedger hedger = new ChunkRequestHedger(90, 1);
+
+    // no hedging until enough latencies are observed
+    hedger.recordFirstByteLatency(100);
+    hedger.recordFirstByteLatency(200);
+    assertThat(hedger.getHedgeDelayInMillis(), is(-1L));
+
+    for (long latency = 300; latency <= 1000; latency += 100)
+    {
+      hedger.recordFirstByteLatency(latency);
+    }
+    assertThat(hedger.getHedgeDelayInMillis(), is(900L));
+  }
+
+  @Test
+  public void testMinimumHedgeDelay()
+  {
+    ChunkRequestHedger hedger = new ChunkRequestHedger(50, 1);
+    for (int i = 0; i < ChunkRequestHedger.MIN_SAMPLES; i++)
+    {
+      hedger.recordFirstByteLatency(1);
+    }
+    assertThat(hedger.getHedgeDelayInMillis(), is(50L));
+  }
+
+  @Test
+  public void testBudget()
+  {
+    ChunkRequestHedger hedger = new ChunkRequestHedger(95, 2);
+    assertThat(hedger.tryAcquire(), is(true));
+    assertThat(hedger.tryAcquire(), is(true));
+    assertThat(hedger.tryAcquire(), is(false));
+    hedger.recordHedgeWon();
+
+    assertThat(hedger.getHedgesIssued(), is(2));
+    assertThat(hedger.getHedgesWon(), is(1));
+  }
+
+  @Test
+  public void testNoHedgeBeforeEnoughSamples() throws Exception
+  {
+    ChunkRequestHedger hedger = new ChunkRequestHedger(90, 1);
+    FakeRequest request = new FakeRequest("first");
+    request.released.countDown();
+    AtomicInteger sent = new AtomicInteger(0);
+
+    String response = hedger.execute(() ->
+                                     {
+                                       sent.incrementAndGet();
+                                       return request;
+                                     }, executor);
+
+    assertThat(response, is("first"));
+    assertThat(sent.get(), is(1));
+    assertThat(hedger.getHedgesIssued(), is(0));
+    assertThat(hedger.getSampleCount(), is(1));
+  }
+
+  @Test
+  public void testHedgeWins() throws Exception
+  {
+    ChunkRequestHedger hedger = primedHedger(1);
+    FakeRequest slowRequest = new FakeRequest("first");
+    FakeRequest hedgedRequest = new FakeRequest("hedged");
+    hedgedRequest.released.countDown();
+    FakeRequest[] requests = {slowRequest, hedgedRequest};
+    AtomicInteger sent = new AtomicInteger(0);
+
+    String response = hedger.execute(() -> requests[sent.getAndIncrement()],
+                                     executor);
+
+    assertThat(response, is("hedged"));
+    assertThat(slowRequest.aborted.await(10, TimeUnit.SECONDS), is(true));
+    assertThat(hedger.getHedgesIssued(), is(1));
+    assertThat(hedger.getHedgesWon(), is(1));
+    // the original request is observed although it lost
+    assertThat(hedger.getSampleCount(), is(ChunkRequestHedger.MIN_SAMPLES + 1));
+    assertThat(hedger.getHedgeDelayInMillis() >= 50, is(true));
+  }
+
+  @Test
+  public void testOriginalRequestWins() throws Exception
+  {
+    ChunkRequestHedger hedger = primedHedger(1);
+    FakeRequest firstRequest = new FakeRequest("first");
+    FakeRequest hedgedRequest = new FakeRequest("hedged");
+    FakeRequest[] requests = {firstRequest, hedgedRequest};
+    AtomicInteger sent = new AtomicInteger(0);
+
+    String response = hedger.execute(() ->
+                                     {
+                                       FakeRequest request =
+                                           requests[sent.getAndIncrement()];
+                                       if (request == hedgedRequest)
+                                       {
+                                         // the original request returns
+                                         // once hedged
+                                         firstRequest.released.countDown();
+                                       }
+                                       return request;
+                                     }, executor);
+
+    assertThat(response, is("first"));
+    assertThat(hedgedRequest.aborted.await(10, TimeUnit.SECONDS), is(true));
+    assertThat(hedger.getHedgesIssued(), is(1));
+    assertThat(hedger.getHedgesWon(), is(0));
+    assertThat(hedger.getSampleCount(), is(ChunkRequestHedger.MIN_SAMPLES + 1));
+  }
+
+  @Test
+  public void testAllRequestsFail() throws Exception
+  {
+    ChunkRequestHedger hedger = primedHedger(1);
+    FakeRequest failedRequest = new FakeRequest(null);
+    failedRequest.released.countDown();
+
+    try
+    {
+      hedger.execute(() -> failedRequest, executor);
+      fail("all requests failed");
+    }
+    catch (ExecutionException ex)
+    {
+      assertThat(ex.getCause().getMessage(), is("failed"));
+    }
+  }
+
+  @Test
+  public void testInterrupted() throws Exception
+  {
+    ChunkRequestHedger hedger = new ChunkRequestHedger(90, 1);
+    FakeRequest request = new FakeRequest("first");
+
+    Thread.currentThread().interrupt();
+    try
+    {
+      hedger.execute(() -> request, executor);
+      fail("current thread is interrupted");
+    }
+    catch (Exception ex)
+    {
+      assertThat(ex, instanceOf(InterruptedException.class));
+    }
+    assertThat(request.aborted.await(10, TimeUnit.SECONDS), is(true));
+    assertThat(hedger.getSampleCount(), is(0));
+  }
+
+  /**
+   * @return hedger hedging the requests without response after the minimum
+   * delay
+   */
+  private static ChunkRequestHedger primedHedger(int budget)
+  {
+    ChunkRequestHedger hedger = new ChunkRequestHedger(50, budget);
+    for (int i = 0; i < ChunkRequestHedger.MIN_SAMPLES; i++)
+    {
+      hedger.recordFirstByteLatency(1);
+    }
+    return hedger;
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2012-2019 Snowflake Computing Inc. All right reserved.
+ */
+package net.snowflake.client.jdbc;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class ChunkSpillStoreTest
+{
+  @Rule
+  public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+  @Test
+  public void testSpillAndRead() throws Exception
+  {
+    Path directory = tmpFolder.newFolder().toPath();
+    ChunkSpillStore store = new ChunkSpillStore(directory, 100);
+
+    assertThat(store.tryReserve(0, 50), is(true));
+    // the same chunk is spilled once
+    assertThat(store.tryReserve(0, 50), is(false));
+
+    byte[] body = "[1,2],[3,4]".getBytes(StandardCharsets.UTF_8);
+    store.write(0, new ByteArrayInputStream(body), "gzip");
+    assertThat(store.getUsedBytes(), is((long) body.length));
+
+    ChunkSpillStore.SpilledChunk spilled = store.take(0);
+    assertThat(spilled.contentEncoding, equalTo("gzip"));
+    try (InputStream is = store.open(spilled))
+    {
+      assertThat(IOUtils.toByteArray(is), equalTo(body));
+    }
+
+    // the file is deleted once read, a retry downloads the chunk again
+    assertThat(Files.exists(spilled.path), is(false));
+    assertThat(store.getUsedBytes(), is(0L));
+    assertThat(store.take(0), nullValue());
+
+    store.close();
+    assertThat(Files.exists(directory), is(false));
+  }
+
+  @Test
+  public void testDiskLimit() throws Exception
+  {
+    ChunkSpillStore store =
+        new ChunkSpillStore(tmpFolder.newFolder().toPath(), 100);
+
+    assertThat(store.tryReserve(0, 60), is(true));
+    assertThat(store.tryReserve(1, 60), is(false));
+
+    // a failed spill gives its reservation back
+    store.complete(0, null);
+    assertThat(store.take(0), nullValue());
+    assertThat(store.getUsedBytes(), is(0L));
+    assertThat(store.tryReserve(1, 60), is(true));
+    store.close();
+  }
+
+  @Test
+  public void testDiskLimitAcrossStores() throws Exception
+  {
+    ChunkSpillStore store =
+        new ChunkSpillStore(tmpFolder.newFolder().toPath(), 100);
+    ChunkSpillStore otherStore =
+        new ChunkSpillStore(tmpFolder.newFolder().toPath(), 100);
+
+    assertThat(store.tryReserve(0, 60), is(true));
+    byte[] body = new byte[60];
+    store.write(0, new ByteArrayInputStream(body), null);
+    assertThat(otherStore.tryReserve(0, 60), is(false));
+    assertThat(ChunkSpillStore.getTotalUsedBytes(), is(60L));
+
+    // closing a store gives its space back to the other result sets
+    ChunkSpillStore.SpilledChunk spilled = store.take(0);
+    store.close();
+    assertThat(ChunkSpillStore.getTotalUsedBytes(), is(0L));
+    assertThat(otherStore.tryReserve(0, 60), is(true));
+
+    // a chunk deleted by close() is not given back twice
+    try
+    {
+      store.open(spilled).close();
+    }
+    catch (IOException ex)
+    {
+      // the file is deleted
+    }
+    otherStore.complete(0, null);
+    assertThat(ChunkSpillStore.getTotalUsedBytes(), is(0L));
+    otherStore.close();
+  }
+}
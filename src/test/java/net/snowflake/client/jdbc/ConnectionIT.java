@@ -103,6 +103,24 @@ public class ConnectionIT extends BaseJDBCTest
     con.close(); // ensure no exception
   }
 
+  @Test
+  public void testOpenPhaseTimings() throws SQLException
+  {
+    try (Connection con = getConnection())
+    {
+      Map<String, Long> timings =
+          con.unwrap(SnowflakeConnectionV1.class).getSfSession()
+              .getOpenPhaseMicros();
+      for (String phase : new String[]{"properties", "httpClient", "login",
+                                       "parameters", "total"})
+      {
+        assertTrue(phase, timings.containsKey(phase));
+      }
+      assertThat(timings.get("total"),
+                 greaterThanOrEqualTo(timings.get("login")));
+    }
+  }
+
   /**
    * Test that login timeout kick in when connect through datasource
    *
@@ -986,6 +986,40 @@ public class DatabaseMetaDataIT extends BaseJDBCTest
     }
   }
 
+  @Test
+  public void testGetColumnsWithSchemaPattern() throws Throwable
+  {
+    try (Connection connection = getConnection())
+    {
+      String database = connection.getCatalog();
+      String schema = connection.getSchema();
+      final String targetTable = "T_COLUMNS_PATTERN";
+
+      connection.createStatement().execute(
+          "create or replace table " + targetTable + "(C1 int, C2 varchar(100))");
+
+      DatabaseMetaData metaData = connection.getMetaData();
+
+      // schema pattern narrowed to a single schema and table
+      String schemaPattern = schema.substring(0, schema.length() - 1) + "%";
+      ResultSet resultSet = metaData.getColumns(
+          database, schemaPattern, targetTable, "%");
+      assertEquals(2, getSizeOfResultSet(resultSet));
+
+      // table pattern narrowed to a single table
+      resultSet = metaData.getColumns(
+          database, schema, "T\\_COLUMNS\\_PATT%", "C%");
+      assertEquals(2, getSizeOfResultSet(resultSet));
+
+      // no schema matches the pattern
+      resultSet = metaData.getColumns(
+          database, "NO\\_SUCH\\_SCHEMA%", targetTable, "%");
+      assertFalse(resultSet.next());
+
+      connection.createStatement().execute("drop table if exists " + targetTable);
+    }
+  }
+
   @Test
   public void testGetObjectsDoesNotExists() throws Throwable
   {
@@ -1251,6 +1251,10 @@ public class ResultSetIT extends BaseJDBCTest
   {
     Connection con = getConnection();
     Statement statement = con.createStatement();
+    Telemetry telemetry = con.unwrap(SnowflakeConnectionV1.class).getSfSession().getTelemetryClient();
+
+    // keep the logs in the buffer to inspect them
+    ((TelemetryClient) telemetry).setAutoFlush(false);
 
     // 10000 rows should be enough to force result into multiple chunks
     ResultSet resultSet =
@@ -1261,7 +1265,6 @@ public class ResultSetIT extends BaseJDBCTest
       ++cnt;
     }
     assertTrue(cnt >= 0);
-    Telemetry telemetry = con.unwrap(SnowflakeConnectionV1.class).getSfSession().getTelemetryClient();
     LinkedList<TelemetryData> logs = ((TelemetryClient) telemetry).logBuffer();
 
     // there should be a log for each of the following fields
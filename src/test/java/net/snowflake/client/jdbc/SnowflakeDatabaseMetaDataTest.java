@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2012-2019 Snowflake Computing Inc. All rights reserved.
+ */
+package net.snowflake.client.jdbc;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class SnowflakeDatabaseMetaDataTest
+{
+  @Test
+  public void testMatchAllPatternsNotSelective()
+  {
+    assertThat(SnowflakeDatabaseMetaData.isSelectivePattern(null), is(false));
+    assertThat(SnowflakeDatabaseMetaData.isSelectivePattern(""), is(false));
+    assertThat(SnowflakeDatabaseMetaData.isSelectivePattern("%"), is(false));
+    assertThat(SnowflakeDatabaseMetaData.isSelectivePattern("%%%"), is(false));
+    assertThat(SnowflakeDatabaseMetaData.isSelectivePattern(" % "), is(false));
+    assertThat(SnowflakeDatabaseMetaData.isSelectivePattern(".*"), is(false));
+  }
+
+  @Test
+  public void testWildcardPatternsSelective()
+  {
+    assertThat(SnowflakeDatabaseMetaData.isSelectivePattern("PUBLIC"), is(true));
+    assertThat(SnowflakeDatabaseMetaData.isSelectivePattern("TEST%"), is(true));
+    assertThat(SnowflakeDatabaseMetaData.isSelectivePattern("%_TMP"), is(true));
+    assertThat(SnowflakeDatabaseMetaData.isSelectivePattern("_"), is(true));
+    assertThat(SnowflakeDatabaseMetaData.isSelectivePattern("%A%"), is(true));
+  }
+
+  @Test
+  public void testEscapedWildcardsSelective()
+  {
+    // an escaped wildcard only matches the wildcard character itself
+    assertThat(SnowflakeDatabaseMetaData.isSelectivePattern("\\%"), is(true));
+    assertThat(SnowflakeDatabaseMetaData.isSelectivePattern("%\\%"), is(true));
+    assertThat(SnowflakeDatabaseMetaData.isSelectivePattern("\\_%"), is(true));
+    assertThat(SnowflakeDatabaseMetaData.isSelectivePattern("MY\\_SCHEMA"),
+               is(true));
+  }
+}
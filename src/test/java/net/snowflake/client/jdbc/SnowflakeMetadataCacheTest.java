@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2012-2019 Snowflake Computing Inc. All right reserved.
+ */
+package net.snowflake.client.jdbc;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Metadata cache unit test
+ */
+public class SnowflakeMetadataCacheTest
+{
+  private static final List<String> COLUMNS = Collections.singletonList("name");
+
+  private static final Object[][] ROWS = new Object[][]{{"DB1"}, {"DB2"}};
+
+  @Test
+  public void testHitAndMiss()
+  {
+    SnowflakeMetadataCache cache = new SnowflakeMetadataCache(60000, 10);
+    String key = SnowflakeMetadataCache.key(
+        "url", "user", "role", "db", "schema", "show databases");
+
+    assertThat(cache.get(key), nullValue());
+    cache.put(key, COLUMNS, ROWS);
+
+    SnowflakeMetadataCache.Entry entry = cache.get(key);
+    assertThat(entry, notNullValue());
+    assertThat(entry.rows.length, is(2));
+    assertThat(cache.getHitCount(), is(1L));
+    assertThat(cache.getMissCount(), is(1L));
+
+    // a different role sees different objects
+    assertThat(cache.get(SnowflakeMetadataCache.key(
+        "url", "user", "other", "db", "schema", "show databases")),
+               nullValue());
+  }
+
+  @Test
+  public void testExpiration() throws InterruptedException
+  {
+    SnowflakeMetadataCache cache = new SnowflakeMetadataCache(10, 10);
+    cache.put("key", COLUMNS, ROWS);
+    Thread.sleep(50);
+
+    assertThat(cache.get("key"), nullValue());
+    assertThat(cache.size(), is(0));
+    assertThat(cache.getEvictionCount(), is(1L));
+  }
+
+  @Test
+  public void testLeastRecentlyUsedEviction()
+  {
+    SnowflakeMetadataCache cache = new SnowflakeMetadataCache(60000, 2);
+    cache.put("key1", COLUMNS, ROWS);
+    cache.put("key2", COLUMNS, ROWS);
+
+    // touch key1 so that key2 is the least recently used entry
+    cache.get("key1");
+    cache.put("key3", COLUMNS, ROWS);
+
+    assertThat(cache.size(), is(2));
+    assertThat(cache.get("key1"), notNullValue());
+    assertThat(cache.get("key2"), nullValue());
+    assertThat(cache.get("key3"), notNullValue());
+  }
+
+  @Test
+  public void testInvalidateAll()
+  {
+    SnowflakeMetadataCache cache = new SnowflakeMetadataCache(60000, 10);
+    cache.put("key1", COLUMNS, ROWS);
+    cache.put("key2", COLUMNS, ROWS);
+
+    cache.invalidateAll();
+    assertThat(cache.size(), is(0));
+    assertThat(cache.getInvalidationCount(), is(1L));
+  }
+}
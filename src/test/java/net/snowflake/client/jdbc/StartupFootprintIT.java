@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2012-2019 Snowflake Computing Inc. All rights reserved.
+ */
+package net.snowflake.client.jdbc;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Startup benchmark: connects and runs a first query against a stub server
+ * in a new JVM, and reports the time of the first query and the number of
+ * classes loaded. Checks that the file transfer stack, the cloud storage
+ * SDKs, Arrow and Bouncy Castle are not loaded by a session which does not
+ * use them, and that the number of classes loaded stays under a ceiling.
+ */
+public class StartupFootprintIT
+{
+  private static final String LOGIN_RESPONSE =
+      "{\"success\":true,\"data\":{\"token\":\"token\"," +
+      "\"masterToken\":\"masterToken\",\"validityInSeconds\":3600," +
+      "\"masterValidityInSeconds\":14400,\"serverVersion\":\"1.0\"," +
+      "\"sessionId\":1,\"sessionInfo\":{\"databaseName\":null," +
+      "\"schemaName\":null,\"warehouseName\":null,\"roleName\":\"PUBLIC\"}," +
+      "\"parameters\":[]}}";
+
+  private static final String QUERY_RESPONSE =
+      "{\"success\":true,\"data\":{\"queryId\":\"query\"," +
+      "\"statementTypeId\":4096,\"queryResultFormat\":\"json\"," +
+      "\"rowtype\":[{\"name\":\"1\",\"type\":\"fixed\",\"precision\":1," +
+      "\"scale\":0,\"nullable\":false}],\"rowset\":[[\"1\"]],\"total\":1," +
+      "\"returned\":1,\"parameters\":[]}}";
+
+  private static final String EMPTY_RESPONSE = "{\"success\":true,\"data\":{}}";
+
+  // packages which a JSON query on a new connection must not load
+  private static final List<String> LAZY_PACKAGES = Arrays.asList(
+      "org.apache.arrow.",
+      "com.amazonaws.",
+      "com.microsoft.azure.",
+      "com.google.cloud.",
+      "org.apache.tika.",
+      "org.bouncycastle.",
+      "net.snowflake.client.jdbc.cloud.",
+      "net.snowflake.client.jdbc.SnowflakeFileTransferAgent");
+
+  // about 3250 classes are loaded on Java 17, leaving room for JDK updates
+  private static final int MAX_LOADED_CLASSES = 3600;
+
+  private static final Pattern RESULT_PATTERN = Pattern.compile(
+      Pattern.quote(FirstQuery.RESULT) + " (\\d+) ms, (\\d+) classes loaded");
+
+  @Test
+  public void testFirstQueryFootprint() throws Exception
+  {
+    ProcessBuilder builder = new ProcessBuilder(
+        System.getProperty("java.home") + File.separator + "bin" +
+        File.separator + "java",
+        "-verbose:class",
+        "-cp", System.getProperty("java.class.path"),
+        FirstQuery.class.getName());
+    builder.redirectErrorStream(true);
+    Process process = builder.start();
+
+    // read on another thread, so that a hung process does not block the test
+    List<String> loaded = Collections.synchronizedList(new ArrayList<>());
+    AtomicReference<Matcher> result = new AtomicReference<>();
+    Thread reader = new Thread(() ->
+    {
+      try (BufferedReader lines = new BufferedReader(new InputStreamReader(
+          process.getInputStream(), StandardCharsets.UTF_8)))
+      {
+        String line;
+        while ((line = lines.readLine()) != null)
+        {
+          Matcher matcher = RESULT_PATTERN.matcher(line);
+          if (matcher.matches())
+          {
+            result.set(matcher);
+          }
+          for (String pkg : LAZY_PACKAGES)
+          {
+            // [Loaded <class> from ...] up to Java 8, [...][class,load]
+            // <class> source: ... after
+            if (line.contains(" " + pkg) || line.contains("[Loaded " + pkg))
+            {
+              loaded.add(line);
+            }
+          }
+        }
+      }
+      catch (IOException ex)
+      {
+        // the process was destroyed
+      }
+    });
+    reader.setDaemon(true);
+    reader.start();
+
+    if (!process.waitFor(60, TimeUnit.SECONDS))
+    {
+      process.destroyForcibly();
+      fail("first query did not complete in time");
+    }
+    reader.join(TimeUnit.SECONDS.toMillis(10));
+    assertThat("first query failed", result.get() != null, is(true));
+
+    long firstQueryMs = Long.parseLong(result.get().group(1));
+    int loadedClasses = Integer.parseInt(result.get().group(2));
+    System.out.println("first query: " + firstQueryMs + " ms, " +
+                       loadedClasses + " classes loaded");
+    assertThat(loaded.toString(), loaded.isEmpty(), is(true));
+    assertThat(loadedClasses + " classes loaded",
+               loadedClasses <= MAX_LOADED_CLASSES, is(true));
+  }
+
+  /**
+   * Connects to a stub server and runs a first query
+   */
+  public static class FirstQuery
+  {
+    static final String RESULT = "first query:";
+
+    public static void main(String[] args) throws Exception
+    {
+      HttpServer server =
+          HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+      server.createContext("/", exchange ->
+      {
+        InputStream in = exchange.getRequestBody();
+        while (in.read() >= 0)
+        {
+          // the request body is not used
+        }
+        String path = exchange.getRequestURI().getPath();
+        String response = path.contains("login") ? LOGIN_RESPONSE :
+                          path.contains("query-request") ? QUERY_RESPONSE :
+                          EMPTY_RESPONSE;
+        byte[] body = response.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, body.length);
+        exchange.getResponseBody().write(body);
+        exchange.close();
+      });
+      server.start();
+      try
+      {
+        long startNanos = System.nanoTime();
+        Properties properties = new Properties();
+        properties.put("account", "account");
+        properties.put("user", "user");
+        properties.put("password", "password");
+        properties.put("ssl", "off");
+        try (Connection connection = DriverManager.getConnection(
+            "jdbc:snowflake://localhost:" + server.getAddress().getPort(),
+            properties);
+             ResultSet resultSet =
+                 connection.createStatement().executeQuery("select 1"))
+        {
+          resultSet.next();
+          resultSet.getInt(1);
+        }
+        System.out.println(RESULT + " " +
+                           TimeUnit.NANOSECONDS.toMillis(
+                               System.nanoTime() - startNanos) + " ms, " +
+                           ManagementFactory.getClassLoadingMXBean()
+                               .getLoadedClassCount() + " classes loaded");
+      }
+      finally
+      {
+        server.stop(0);
+      }
+    }
+  }
+}
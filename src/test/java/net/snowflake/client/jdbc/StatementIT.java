@@ -692,6 +692,10 @@ public class StatementIT extends BaseJDBCTest
   {
     Connection connection = getConnection();
     Statement statement = connection.createStatement();
+    Telemetry telemetryClient = ((SnowflakeStatementV1) statement).connection.getSfSession().getTelemetryClient();
+
+    // only the close of the statement sends the logs
+    ((TelemetryClient) telemetryClient).setAutoFlush(false);
 
     ResultSet rs;
     String sqlSelect = "select seq4() from table(generator(rowcount=>3))";
@@ -706,8 +710,6 @@ public class StatementIT extends BaseJDBCTest
     assertEquals(3, getSizeOfResultSet(rs));
     rs.close();
 
-    Telemetry telemetryClient = ((SnowflakeStatementV1) statement).connection.getSfSession().getTelemetryClient();
-
     // there should be logs ready to be sent
     assertTrue(((TelemetryClient) telemetryClient).bufferSize() > 0);
 
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2012-2019 Snowflake Computing Inc. All right reserved.
+ */
+package net.snowflake.client.jdbc.metrics;
+
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+public class MetricsRegistryTest
+{
+  @Test
+  public void testHistogramBuckets()
+  {
+    for (long value : new long[]{0, 1, 3, 4, 7, 8, 9, 1000, 123456789L, Long.MAX_VALUE})
+    {
+      int index = Histogram.bucketIndex(value);
+      assertThat(Histogram.bucketUpperBound(index),
+                 greaterThanOrEqualTo(value));
+      if (index > 0)
+      {
+        assertThat(Histogram.bucketUpperBound(index - 1) < value, is(true));
+      }
+    }
+  }
+
+  @Test
+  public void testHistogramPercentiles()
+  {
+    Histogram histogram = new Histogram();
+    assertThat(histogram.getPercentile(50), is(0L));
+
+    for (int i = 1; i <= 1000; i++)
+    {
+      histogram.record(i);
+    }
+    assertThat(histogram.getCount(), is(1000L));
+    assertThat(histogram.getMax(), is(1000L));
+    assertThat(histogram.getMean(), is(500.5));
+
+    // within the 25% resolution of the buckets
+    assertThat(histogram.getPercentile(50), greaterThanOrEqualTo(500L));
+    assertThat(histogram.getPercentile(50), lessThanOrEqualTo(625L));
+    assertThat(histogram.getPercentile(99), greaterThanOrEqualTo(990L));
+    assertThat(histogram.getPercentile(100), is(1000L));
+  }
+
+  @Test
+  public void testSnapshot()
+  {
+    MetricsRegistry registry = new MetricsRegistry();
+    registry.counter("requests").add(3);
+    registry.counter("requests").increment();
+    registry.gauge("connections", () -> 7);
+    registry.histogram("latency.micros").record(42);
+
+    Map<String, Number> snapshot = registry.snapshot();
+    assertThat(snapshot.get("requests"), equalTo(4L));
+    assertThat(snapshot.get("connections"), equalTo(7L));
+    assertThat(snapshot.get("latency.micros.count"), equalTo(1L));
+    assertThat(snapshot.get("latency.micros.max"), equalTo(42L));
+  }
+
+  @Test
+  public void testExporter() throws Exception
+  {
+    MetricsRegistry registry = new MetricsRegistry();
+    registry.counter("requests").increment();
+
+    CountDownLatch exported = new CountDownLatch(1);
+    AtomicReference<Map<String, Number>> metrics = new AtomicReference<>();
+    MetricsExporter exporter = snapshot ->
+    {
+      metrics.set(snapshot);
+      exported.countDown();
+    };
+    registry.addExporter(exporter, 10, TimeUnit.MILLISECONDS);
+    try
+    {
+      assertThat(exported.await(10, TimeUnit.SECONDS), is(true));
+      assertThat(metrics.get().get("requests"), equalTo(1L));
+    }
+    finally
+    {
+      registry.removeExporter(exporter);
+    }
+  }
+
+  @Test
+  public void testMBean() throws Exception
+  {
+    MetricsRegistry registry = MetricsRegistry.getInstance();
+    registry.counter("test.mbean.requests").add(5);
+    registry.registerMBean();
+    try
+    {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = new ObjectName(MetricsRegistry.MBEAN_NAME);
+      assertThat(server.getAttribute(name, "test.mbean.requests"),
+                 equalTo((Object) 5L));
+    }
+    finally
+    {
+      registry.unregisterMBean();
+    }
+  }
+}
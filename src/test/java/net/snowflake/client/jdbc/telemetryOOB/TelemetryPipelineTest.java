@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2012-2019 Snowflake Computing Inc. All rights reserved.
+ */
+package net.snowflake.client.jdbc.telemetryOOB;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class TelemetryPipelineTest
+{
+  private final List<List<Integer>> batches =
+      Collections.synchronizedList(new ArrayList<>());
+
+  @Test
+  public void testFlushInBatches() throws Exception
+  {
+    TelemetryPipeline<Integer> pipeline = new TelemetryPipeline<>(
+        16, 100, 60000, batch -> batches.add(batch));
+    for (int i = 0; i < 5; i++)
+    {
+      pipeline.add(i);
+    }
+    assertThat(pipeline.size(), is(5));
+    assertThat(pipeline.peek(), is(0));
+    assertThat(pipeline.snapshot(), is(Arrays.asList(0, 1, 2, 3, 4)));
+
+    pipeline.setBatchSize(2);
+    assertThat(pipeline.flushNow(), is(true));
+    assertThat(pipeline.size(), is(0));
+    assertThat(batches, is(Arrays.asList(Arrays.asList(0, 1),
+                                         Arrays.asList(2, 3),
+                                         Collections.singletonList(4))));
+  }
+
+  @Test
+  public void testDropOldestWhenFull()
+  {
+    TelemetryPipeline<Integer> pipeline = new TelemetryPipeline<>(
+        4, 100, 60000, batch -> true);
+    for (int i = 0; i < 10; i++)
+    {
+      pipeline.add(i);
+    }
+    assertThat(pipeline.getDroppedCount(), is(6L));
+    assertThat(pipeline.drain(), is(Arrays.asList(6, 7, 8, 9)));
+  }
+
+  @Test
+  public void testNoBackgroundFlushWhenPaused() throws Exception
+  {
+    TelemetryPipeline<Integer> pipeline = new TelemetryPipeline<>(
+        16, 1, 1, batch -> batches.add(batch));
+    pipeline.setAutoFlush(false);
+    pipeline.add(0);
+    pipeline.add(1);
+
+    // the shared flusher has run everything submitted before this flush
+    TelemetryPipeline<Integer> other = new TelemetryPipeline<>(
+        16, 1, 1, batch -> true);
+    assertThat(other.flushAsync().get(10, TimeUnit.SECONDS), is(true));
+    assertThat(pipeline.size(), is(2));
+    assertThat(batches.isEmpty(), is(true));
+
+    assertThat(pipeline.flushAsync().get(10, TimeUnit.SECONDS), is(true));
+    assertThat(batches, is(Arrays.asList(Collections.singletonList(0),
+                                         Collections.singletonList(1))));
+  }
+
+  @Test
+  public void testSizeTriggersBackgroundFlush() throws Exception
+  {
+    CountDownLatch sent = new CountDownLatch(1);
+    TelemetryPipeline<Integer> pipeline = new TelemetryPipeline<>(
+        16, 3, 60000, batch ->
+    {
+      batches.add(batch);
+      sent.countDown();
+      return true;
+    });
+    pipeline.add(1);
+    pipeline.add(2);
+    assertThat(batches.isEmpty(), is(true));
+
+    pipeline.add(3);
+    assertThat(sent.await(10, TimeUnit.SECONDS), is(true));
+    assertThat(batches.get(0), is(Arrays.asList(1, 2, 3)));
+  }
+
+  @Test
+  public void testIntervalTriggersBackgroundFlush() throws Exception
+  {
+    CountDownLatch sent = new CountDownLatch(1);
+    TelemetryPipeline<Integer> pipeline = new TelemetryPipeline<>(
+        16, 100, 10, batch ->
+    {
+      batches.add(batch);
+      sent.countDown();
+      return true;
+    });
+    pipeline.add(1);
+    assertThat(sent.await(10, TimeUnit.SECONDS), is(true));
+    assertThat(batches.get(0), is(Collections.singletonList(1)));
+  }
+
+  @Test
+  public void testFlushAsync() throws Exception
+  {
+    TelemetryPipeline<Integer> pipeline = new TelemetryPipeline<>(
+        16, 100, 60000, batch -> false);
+    pipeline.add(1);
+    assertThat(pipeline.flushAsync().get(), is(false));
+    assertThat(pipeline.size(), is(0));
+  }
+}
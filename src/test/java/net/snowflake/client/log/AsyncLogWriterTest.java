@@ -0,0 +1,333 @@
+/*
+ * Copyright (c) 2012-2019 Snowflake Computing Inc. All rights reserved.
+ */
+package net.snowflake.client.log;
+
+import net.snowflake.client.util.SecretDetector;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import java.util.logging.SimpleFormatter;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class AsyncLogWriterTest
+{
+  private final Logger logger =
+      Logger.getLogger(AsyncLogWriterTest.class.getName());
+
+  private final List<LogRecord> records = new ArrayList<>();
+
+  private final Handler handler = new Handler()
+  {
+    @Override
+    public void publish(LogRecord record)
+    {
+      records.add(record);
+    }
+
+    @Override
+    public void flush()
+    {
+    }
+
+    @Override
+    public void close()
+    {
+    }
+  };
+
+  @Before
+  public void setUp()
+  {
+    logger.setUseParentHandlers(false);
+    logger.setLevel(Level.ALL);
+    logger.addHandler(handler);
+  }
+
+  @After
+  public void tearDown()
+  {
+    logger.removeHandler(handler);
+    logger.setLevel(null);
+    logger.setUseParentHandlers(true);
+  }
+
+  @Test
+  public void testRecordsFormattedOnFlush()
+  {
+    AsyncLogWriter writer = new AsyncLogWriter(16, false);
+    Exception thrown = new Exception("failure");
+    writer.submit(logger, Level.INFO, "value {} of {}", new Object[]{1, "x"},
+                  null);
+    writer.submit(logger, Level.SEVERE, "failed", null, thrown);
+    assertThat(records.isEmpty(), is(true));
+
+    assertThat(writer.flush(), is(2));
+    assertThat(records.size(), is(2));
+
+    SimpleFormatter formatter = new SimpleFormatter();
+    assertThat(formatter.formatMessage(records.get(0)), is("value 1 of x"));
+    assertThat(records.get(0).getLevel(), is(Level.INFO));
+    assertThat(records.get(0).getThreadID(),
+               is((int) Thread.currentThread().getId()));
+    assertThat(records.get(0).getSourceClassName(), is(logger.getName()));
+
+    assertThat(records.get(1).getMessage(), is("failed"));
+    assertThat(records.get(1).getThrown(), sameInstance((Throwable) thrown));
+  }
+
+  @Test
+  public void testFullBufferWrittenByCaller()
+  {
+    AsyncLogWriter writer = new AsyncLogWriter(4, false);
+    for (int i = 0; i < 10; i++)
+    {
+      writer.submit(logger, Level.INFO, "message " + i, null, null);
+    }
+    writer.flush();
+
+    // nothing is dropped and the order is kept
+    assertThat(records.size(), is(10));
+    for (int i = 0; i < 10; i++)
+    {
+      assertThat(records.get(i).getMessage(), is("message " + i));
+    }
+  }
+
+  @Test
+  public void testMessageMasked()
+  {
+    String url = "https://host/file?sig=abcdefghijklmnopqrstuvwxyz0123";
+    AsyncLogWriter writer = new AsyncLogWriter(16, false);
+    writer.submit(logger, Level.INFO, "url: {}", new Object[]{url}, null);
+    writer.flush();
+
+    assertThat(records.get(0).getMessage(),
+               is(SecretDetector.maskSecrets("url: " + url)));
+    assertThat(records.get(0).getMessage().contains("abcdefghijklmnop"),
+               is(false));
+    assertThat(records.get(0).getParameters() == null, is(true));
+  }
+
+  @Test
+  public void testConcurrentProducers() throws InterruptedException
+  {
+    final int producers = 4;
+    final int perProducer = 1000;
+    AsyncLogWriter writer = new AsyncLogWriter(8, false);
+    List<Thread> threads = new ArrayList<>();
+    for (int p = 0; p < producers; p++)
+    {
+      final String name = "producer" + p;
+      threads.add(new Thread(() ->
+      {
+        for (int i = 0; i < perProducer; i++)
+        {
+          writer.submit(logger, Level.INFO, name + " " + i, null, null);
+        }
+      }));
+    }
+    for (Thread thread : threads)
+    {
+      thread.start();
+    }
+    for (Thread thread : threads)
+    {
+      thread.join();
+    }
+    writer.flushAll();
+
+    // nothing is dropped and the records of each thread stay in order
+    assertThat(records.size(), is(producers * perProducer));
+    Map<String, Integer> next = new HashMap<>();
+    for (LogRecord record : records)
+    {
+      String[] parts = record.getMessage().split(" ");
+      int expected = next.getOrDefault(parts[0], 0);
+      assertThat(Integer.parseInt(parts[1]), is(expected));
+      next.put(parts[0], expected + 1);
+    }
+  }
+
+  @Test
+  public void testHandlerLoggingWhileFull()
+  {
+    AsyncLogWriter writer = new AsyncLogWriter(2, false);
+    Handler loggingHandler = new Handler()
+    {
+      @Override
+      public void publish(LogRecord record)
+      {
+        if (record.getMessage().startsWith("message"))
+        {
+          // the queue is full, the writer must not wait for itself
+          writer.submit(logger, Level.INFO, "nested", null, null);
+          writer.submit(logger, Level.INFO, "nested", null, null);
+          writer.submit(logger, Level.INFO, "nested", null, null);
+        }
+      }
+
+      @Override
+      public void flush()
+      {
+      }
+
+      @Override
+      public void close()
+      {
+      }
+    };
+    logger.addHandler(loggingHandler);
+    try
+    {
+      writer.submit(logger, Level.INFO, "message 0", null, null);
+      writer.submit(logger, Level.INFO, "message 1", null, null);
+      writer.flushAll();
+    }
+    finally
+    {
+      logger.removeHandler(loggingHandler);
+    }
+    assertThat(records.size(), is(8));
+  }
+
+  @Test
+  public void testCallerLocation()
+  {
+    AsyncLogWriter writer = new AsyncLogWriter(16, true);
+    debug(writer, "located");
+    writer.flush();
+
+    assertThat(records.get(0).getSourceClassName(),
+               is(AsyncLogWriterTest.class.getName()));
+    assertThat(records.get(0).getSourceMethodName(), is("testCallerLocation"));
+  }
+
+  @Test
+  public void testHandlerFailureReported()
+  {
+    List<Exception> errors = new ArrayList<>();
+    handler.setErrorManager(new ErrorManager()
+    {
+      @Override
+      public synchronized void error(String msg, Exception ex, int code)
+      {
+        errors.add(ex);
+      }
+    });
+    Handler failingHandler = new Handler()
+    {
+      @Override
+      public void publish(LogRecord record)
+      {
+        if ("fail".equals(record.getMessage()))
+        {
+          throw new IllegalStateException("handler failure");
+        }
+      }
+
+      @Override
+      public void flush()
+      {
+      }
+
+      @Override
+      public void close()
+      {
+      }
+    };
+    logger.addHandler(failingHandler);
+    try
+    {
+      AsyncLogWriter writer = new AsyncLogWriter(16, false);
+      writer.submit(logger, Level.INFO, "fail", null, null);
+      writer.submit(logger, Level.INFO, "next", null, null);
+      writer.flush();
+    }
+    finally
+    {
+      logger.removeHandler(failingHandler);
+    }
+
+    assertThat(errors.size(), is(1));
+    assertThat(errors.get(0).getMessage(), is("handler failure"));
+    assertThat(records.get(records.size() - 1).getMessage(), is("next"));
+  }
+
+  @Test
+  public void testIdleWriterWokenUp() throws InterruptedException
+  {
+    CountDownLatch published = new CountDownLatch(2);
+    Handler latchHandler = new Handler()
+    {
+      @Override
+      public void publish(LogRecord record)
+      {
+        published.countDown();
+      }
+
+      @Override
+      public void flush()
+      {
+      }
+
+      @Override
+      public void close()
+      {
+      }
+    };
+    logger.removeHandler(handler);
+    logger.addHandler(latchHandler);
+
+    AsyncLogWriter writer = new AsyncLogWriter(16, false);
+    Thread writerThread = new Thread(writer);
+    writerThread.setDaemon(true);
+    writerThread.start();
+    try
+    {
+      writer.submit(logger, Level.INFO, "first", null, null);
+
+      // wait for the writer to park on the empty queue
+      while (writerThread.getState() != Thread.State.WAITING)
+      {
+        Thread.yield();
+      }
+      writer.submit(logger, Level.INFO, "second", null, null);
+      assertThat(published.await(10, TimeUnit.SECONDS), is(true));
+    }
+    finally
+    {
+      writerThread.interrupt();
+      logger.removeHandler(latchHandler);
+      logger.addHandler(handler);
+    }
+  }
+
+  @Test
+  public void testRefactorString()
+  {
+    assertThat(JDK14Logger.refactorString("a {} b {} c {"),
+               is("a {0} b {1} c {"));
+  }
+
+  // named like a log method, as the location is the caller of the log method
+  private void debug(AsyncLogWriter writer, String msg)
+  {
+    writer.submit(logger, Level.FINE, msg, null, null);
+  }
+}
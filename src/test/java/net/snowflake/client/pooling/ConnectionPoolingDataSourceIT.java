@@ -98,6 +98,100 @@ public class ConnectionPoolingDataSourceIT extends AbstractDriverIT
     assertThat(physicalConnection.isClosed(), is(true));
   }
 
+  @Test
+  public void testPoolingDataSource() throws SQLException
+  {
+    Map<String, String> properties = getConnectionParameters();
+
+    SnowflakePoolingDataSource poolingDataSource =
+        new SnowflakePoolingDataSource();
+
+    poolingDataSource.setUrl(properties.get("uri"));
+    poolingDataSource.setPortNumber(Integer.parseInt(properties.get("port")));
+    poolingDataSource.setSsl("on".equals(properties.get("ssl")));
+    poolingDataSource.setAccount(properties.get("account"));
+    poolingDataSource.setUser(properties.get("user"));
+    poolingDataSource.setPassword(properties.get("password"));
+    poolingDataSource.setMaxPoolSize(1);
+    poolingDataSource.setConnectionTimeout(1000);
+
+    try
+    {
+      Connection connection = poolingDataSource.getConnection();
+      String schema = connection.getSchema();
+      connection.createStatement().execute("create or replace schema pooling_reset_test");
+      connection.createStatement().execute("drop schema pooling_reset_test");
+
+      try
+      {
+        // pool is exhausted
+        poolingDataSource.getConnection();
+        fail();
+      }
+      catch (SQLException e)
+      {
+        assertThat(e.getErrorCode(), is(200062));
+      }
+      connection.close();
+
+      // same session is reused and its schema is reset
+      connection = poolingDataSource.getConnection();
+      assertThat(connection.getSchema(), is(schema));
+      connection.close();
+
+      SnowflakeConnectionPoolMetrics metrics =
+          poolingDataSource.getPoolMetrics();
+      assertThat(metrics.getCreatedCount(), is(1L));
+      assertThat(metrics.getBorrowCount(), is(2L));
+      assertThat(metrics.getTimeoutCount(), is(1L));
+      assertThat(metrics.getIdleConnections(), is(1));
+      assertThat(metrics.getActiveConnections(), is(0));
+    }
+    finally
+    {
+      poolingDataSource.close();
+    }
+  }
+
+  @Test
+  public void testPoolingDataSourcePrewarm() throws Exception
+  {
+    Map<String, String> properties = getConnectionParameters();
+
+    SnowflakePoolingDataSource poolingDataSource =
+        new SnowflakePoolingDataSource();
+
+    poolingDataSource.setUrl(properties.get("uri"));
+    poolingDataSource.setPortNumber(Integer.parseInt(properties.get("port")));
+    poolingDataSource.setSsl("on".equals(properties.get("ssl")));
+    poolingDataSource.setAccount(properties.get("account"));
+    poolingDataSource.setUser(properties.get("user"));
+    poolingDataSource.setPassword(properties.get("password"));
+    poolingDataSource.setMaxPoolSize(4);
+    poolingDataSource.setLoginConcurrency(2);
+
+    try
+    {
+      // cannot open more connections than the pool size
+      assertThat(poolingDataSource.prewarm(6).get(), is(4));
+
+      SnowflakeConnectionPoolMetrics metrics =
+          poolingDataSource.getPoolMetrics();
+      assertThat(metrics.getCreatedCount(), is(4L));
+      assertThat(metrics.getIdleConnections(), is(4));
+
+      try (Connection connection = poolingDataSource.getConnection())
+      {
+        connection.createStatement().execute("select 1");
+      }
+      assertThat(poolingDataSource.getPoolMetrics().getCreatedCount(), is(4L));
+    }
+    finally
+    {
+      poolingDataSource.close();
+    }
+  }
+
   private static class TestingConnectionListener implements
                                                  ConnectionEventListener
   {
@@ -0,0 +1,415 @@
+/*
+ * Copyright (c) 2012-2019 Snowflake Computing Inc. All rights reserved.
+ */
+package net.snowflake.client.pooling;
+
+import net.snowflake.client.core.SFSession;
+import net.snowflake.client.jdbc.ErrorCode;
+import org.junit.After;
+import org.junit.Test;
+
+import javax.sql.PooledConnection;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for SnowflakeConnectionPool with fake physical connections and a
+ * manual clock
+ */
+public class SnowflakeConnectionPoolTest
+{
+  /**
+   * Physical connection backed by an SFSession which is never opened
+   */
+  private static class FakeConnection
+  {
+    final SFSession session = new SFSession();
+
+    final List<String> executedSql = new ArrayList<>();
+
+    boolean autoCommit = true;
+
+    int rollbackCount = 0;
+
+    boolean closed = false;
+
+    final Connection connection = (Connection) Proxy.newProxyInstance(
+        Connection.class.getClassLoader(),
+        new Class<?>[]{Connection.class},
+        (proxy, method, args) ->
+        {
+          switch (method.getName())
+          {
+            case "getAutoCommit":
+              return autoCommit;
+            case "setAutoCommit":
+              autoCommit = (Boolean) args[0];
+              return null;
+            case "rollback":
+              rollbackCount++;
+              return null;
+            case "isClosed":
+              return closed;
+            case "close":
+              closed = true;
+              return null;
+            case "createStatement":
+              return createStatement();
+            case "isWrapperFor":
+              return false;
+            case "hashCode":
+              return System.identityHashCode(proxy);
+            case "equals":
+              return proxy == args[0];
+            default:
+              throw new UnsupportedOperationException(method.getName());
+          }
+        });
+
+    FakeConnection(boolean withDatabase)
+    {
+      session.setRole("SYSADMIN");
+      session.setWarehouse("WH");
+      if (withDatabase)
+      {
+        session.setDatabase("DB");
+        session.setSchema("PUBLIC");
+      }
+    }
+
+    private Statement createStatement()
+    {
+      return (Statement) Proxy.newProxyInstance(
+          Statement.class.getClassLoader(),
+          new Class<?>[]{Statement.class},
+          (proxy, method, args) ->
+          {
+            switch (method.getName())
+            {
+              case "execute":
+                executedSql.add((String) args[0]);
+                return false;
+              case "close":
+                return null;
+              default:
+                throw new UnsupportedOperationException(method.getName());
+            }
+          });
+    }
+  }
+
+  private final AtomicLong clock = new AtomicLong(1000000L);
+
+  // physical connections in creation order
+  private final List<FakeConnection> createdConnections =
+      Collections.synchronizedList(new ArrayList<>());
+
+  private final Map<Connection, FakeConnection> fakeConnections =
+      new ConcurrentHashMap<>();
+
+  private volatile boolean openWithDatabase = true;
+
+  // logins wait for it when set
+  private volatile CountDownLatch loginGate;
+
+  private final AtomicInteger concurrentLogins = new AtomicInteger();
+
+  private final AtomicInteger maxConcurrentLogins = new AtomicInteger();
+
+  private final SnowflakePoolingDataSource dataSource =
+      new SnowflakePoolingDataSource()
+      {
+        @Override
+        public PooledConnection getPooledConnection()
+        {
+          maxConcurrentLogins.accumulateAndGet(
+              concurrentLogins.incrementAndGet(), Math::max);
+          try
+          {
+            CountDownLatch gate = loginGate;
+            if (gate != null)
+            {
+              gate.await(10, TimeUnit.SECONDS);
+            }
+          }
+          catch (InterruptedException ex)
+          {
+            Thread.currentThread().interrupt();
+          }
+          finally
+          {
+            concurrentLogins.decrementAndGet();
+          }
+          FakeConnection fakeConnection = new FakeConnection(openWithDatabase);
+          createdConnections.add(fakeConnection);
+          fakeConnections.put(fakeConnection.connection, fakeConnection);
+          return new SnowflakePooledConnection(fakeConnection.connection);
+        }
+      };
+
+  private SnowflakeConnectionPool pool;
+
+  private SnowflakeConnectionPool newPool()
+  {
+    // housekeeping and validation are driven by the tests
+    dataSource.setHousekeepingInterval(3600 * 1000L);
+    dataSource.setValidationInterval(-1);
+    pool = new SnowflakeConnectionPool(dataSource)
+    {
+      @Override
+      long currentTimeMillis()
+      {
+        return clock.get();
+      }
+
+      @Override
+      SFSession getSession(Connection connection)
+      {
+        FakeConnection fakeConnection = fakeConnections.get(connection);
+        return fakeConnection == null ? null : fakeConnection.session;
+      }
+    };
+    return pool;
+  }
+
+  @After
+  public void tearDown()
+  {
+    if (pool != null)
+    {
+      pool.close();
+    }
+  }
+
+  @Test
+  public void testBorrowAndReturn() throws SQLException
+  {
+    newPool();
+
+    Connection first = pool.borrow();
+    FakeConnection physicalConnection = createdConnections.get(0);
+    assertThat(pool.getMetrics().getActiveConnections(), is(1));
+    assertThat(pool.getMetrics().getIdleConnections(), is(0));
+
+    first.close();
+    assertThat(pool.getMetrics().getActiveConnections(), is(0));
+    assertThat(pool.getMetrics().getIdleConnections(), is(1));
+
+    pool.borrow().close();
+
+    SnowflakeConnectionPoolMetrics metrics = pool.getMetrics();
+    assertThat(metrics.getBorrowCount(), is(2L));
+    assertThat(metrics.getCreatedCount(), is(1L));
+    assertThat(metrics.getDestroyedCount(), is(0L));
+    assertThat(physicalConnection.executedSql.isEmpty(), is(true));
+  }
+
+  @Test
+  public void testResetOnReturn() throws SQLException
+  {
+    newPool();
+
+    Connection connection = pool.borrow();
+    FakeConnection physicalConnection = createdConnections.get(0);
+    connection.setAutoCommit(false);
+    physicalConnection.session.setRole("PUBLIC");
+    physicalConnection.session.setSchema("OTHER");
+    connection.close();
+
+    assertThat(physicalConnection.autoCommit, is(true));
+    assertThat(physicalConnection.rollbackCount, is(1));
+    assertThat(physicalConnection.executedSql.size(), is(2));
+    assertThat(physicalConnection.executedSql.get(0), is("use role \"SYSADMIN\""));
+    assertThat(physicalConnection.executedSql.get(1), is("use schema \"PUBLIC\""));
+    assertThat(pool.getMetrics().getIdleConnections(), is(1));
+  }
+
+  @Test
+  public void testDiscardAlteredSession() throws SQLException
+  {
+    newPool();
+
+    Connection connection = pool.borrow();
+    FakeConnection physicalConnection = createdConnections.get(0);
+    physicalConnection.session.setSessionStateAltered(true);
+    connection.close();
+
+    assertThat(physicalConnection.closed, is(true));
+    assertThat(pool.getMetrics().getIdleConnections(), is(0));
+    assertThat(pool.getMetrics().getDestroyedCount(), is(1L));
+  }
+
+  @Test
+  public void testDiscardUnsetObject() throws SQLException
+  {
+    // a session opened without a database cannot get back to that state
+    openWithDatabase = false;
+    newPool();
+
+    Connection connection = pool.borrow();
+    FakeConnection physicalConnection = createdConnections.get(0);
+    physicalConnection.session.setWarehouse("OTHER_WH");
+    physicalConnection.session.setDatabase("OTHER_DB");
+    connection.close();
+
+    assertThat(physicalConnection.executedSql.get(0), is("use warehouse \"WH\""));
+    assertThat(physicalConnection.closed, is(true));
+    assertThat(pool.getMetrics().getIdleConnections(), is(0));
+  }
+
+  @Test
+  public void testIdleTimeout() throws SQLException
+  {
+    dataSource.setIdleTimeout(10000);
+    newPool();
+
+    Connection first = pool.borrow();
+    Connection second = pool.borrow();
+    FakeConnection firstPhysicalConnection = createdConnections.get(0);
+    first.close();
+    clock.addAndGet(5000);
+    second.close();
+
+    clock.addAndGet(5001);
+    pool.houseKeep();
+    assertThat(firstPhysicalConnection.closed, is(true));
+    assertThat(pool.getMetrics().getIdleConnections(), is(1));
+
+    clock.addAndGet(5000);
+    pool.houseKeep();
+    assertThat(pool.getMetrics().getIdleConnections(), is(0));
+    assertThat(pool.getMetrics().getDestroyedCount(), is(2L));
+  }
+
+  @Test
+  public void testMaxLifetime() throws SQLException
+  {
+    dataSource.setMaxLifetime(60000);
+    newPool();
+
+    Connection connection = pool.borrow();
+    FakeConnection physicalConnection = createdConnections.get(0);
+    connection.close();
+
+    clock.addAndGet(30000);
+    connection = pool.borrow();
+    assertThat(pool.getMetrics().getCreatedCount(), is(1L));
+
+    // an expired connection is closed when returned
+    clock.addAndGet(30000);
+    connection.close();
+    assertThat(physicalConnection.closed, is(true));
+    assertThat(pool.getMetrics().getIdleConnections(), is(0));
+
+    pool.borrow().close();
+    assertThat(pool.getMetrics().getCreatedCount(), is(2L));
+
+    // an expired idle connection is evicted by the housekeeping
+    clock.addAndGet(60000);
+    pool.houseKeep();
+    assertThat(pool.getMetrics().getIdleConnections(), is(0));
+    assertThat(pool.getMetrics().getCreatedCount(), is(2L));
+    assertThat(pool.getMetrics().getDestroyedCount(), is(2L));
+  }
+
+  @Test
+  public void testConnectionTimeout() throws SQLException
+  {
+    dataSource.setMaxPoolSize(1);
+    dataSource.setConnectionTimeout(10);
+    newPool();
+
+    Connection connection = pool.borrow();
+    try
+    {
+      pool.borrow();
+      fail("pool should be exhausted");
+    }
+    catch (SQLException ex)
+    {
+      assertThat(ex.getErrorCode(),
+                 is(ErrorCode.CONNECTION_POOL_TIMEOUT.getMessageCode()));
+    }
+    assertThat(pool.getMetrics().getTimeoutCount(), is(1L));
+
+    connection.close();
+    pool.borrow().close();
+    assertThat(pool.getMetrics().getBorrowCount(), is(2L));
+  }
+
+  @Test
+  public void testConcurrentPrewarmBounded() throws Exception
+  {
+    dataSource.setMaxPoolSize(3);
+    dataSource.setLoginConcurrency(8);
+    loginGate = new CountDownLatch(1);
+    newPool();
+
+    // prewarms and the housekeeping refill racing on an empty pool
+    CompletableFuture<Integer> first = pool.prewarm(10);
+    CompletableFuture<Integer> second = pool.prewarm(10);
+    CompletableFuture<Void> houseKeep =
+        CompletableFuture.runAsync(pool::houseKeep);
+    loginGate.countDown();
+
+    int opened = first.get(10, TimeUnit.SECONDS) +
+                 second.get(10, TimeUnit.SECONDS);
+    houseKeep.get(10, TimeUnit.SECONDS);
+
+    assertThat(opened, is(3));
+    assertThat(maxConcurrentLogins.get() <= 3, is(true));
+    assertThat(pool.getMetrics().getCreatedCount(), is(3L));
+    assertThat(pool.getMetrics().getIdleConnections(), is(3));
+  }
+
+  @Test
+  public void testClosedDataSource() throws SQLException
+  {
+    dataSource.setHousekeepingInterval(3600 * 1000L);
+    Connection connection = dataSource.getConnection();
+    dataSource.close();
+
+    // a borrowed connection is closed when returned
+    FakeConnection physicalConnection = createdConnections.get(0);
+    connection.close();
+    assertThat(physicalConnection.closed, is(true));
+
+    try
+    {
+      dataSource.getConnection();
+      fail("data source is closed");
+    }
+    catch (SQLException ex)
+    {
+      assertThat(ex.getErrorCode(),
+                 is(ErrorCode.CONNECTION_CLOSED.getMessageCode()));
+    }
+
+    try
+    {
+      dataSource.prewarm(1);
+      fail("data source is closed");
+    }
+    catch (SQLException ex)
+    {
+      assertThat(ex.getErrorCode(),
+                 is(ErrorCode.CONNECTION_CLOSED.getMessageCode()));
+    }
+  }
+}